@@ -5,15 +5,33 @@ import org.slf4j.LoggerFactory;
 import wat.helper.DefaultSettingValues;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * scores can be updated from many threads at once. every thread writes to its own {@link ScoreShard}
+ * without locking, totals are the sum of shards. matches are summed as counts of every rank and
+ * similarity as a fixed point number, so totals are the same bit by bit however threads are scheduled.
+ */
 public class Calculator {
 
     private static final Logger log = LoggerFactory.getLogger(Calculator.class);
     private static final boolean debugEnabled = log.isDebugEnabled();
 
     private double[] scores;
-    private double analogyScore, similarityScore, maxScoreForAnalogy;
-    private int totalCalculations, totalMatchForAnalogy;
+    private double maxScoreForAnalogy;
+
+    /**
+     * shards of current scores and the thread local that gives every thread its own shard. both are
+     * replaced when scores are reset or shards are folded into the totals below.
+     */
+    private volatile ConcurrentLinkedQueue<ScoreShard> shards;
+    private volatile ThreadLocal<ScoreShard> localShard;
+
+    /**
+     * totals of shards that are folded before scores of ranks are changed.
+     */
+    private double foldedAnalogyScore;
+    private long foldedCalculations, foldedMatches, foldedSimilarityHigh, foldedSimilarityLow;
 
     /**
      * base number to set maximum score while evaluating word2vec's accuracy. higher number means
@@ -22,6 +40,11 @@ public class Calculator {
     private int sensitivity = DefaultSettingValues.BASE_SENSITIVITY;
     private boolean calculationOption = DefaultSettingValues.CALCULATE_PROPORTIONALLY;
 
+    /**
+     * intervals of the scores if they are calculated from a sample of words, null otherwise.
+     */
+    private SamplingEstimate samplingEstimate = null;
+
     public Calculator() {
 
         this.resetProperties();
@@ -85,11 +108,13 @@ public class Calculator {
      */
     private void fillScoresUpToSensitivity(int closestWordSize) {
 
+        this.foldShards();
         scores = new double[closestWordSize];
         for (int i = 0; i < closestWordSize; i++) {
             scores[i] = maxScoreForAnalogy - Math.pow(sensitivity, i + 1);
             log.info((i + 1) + ". Word Score: " + scores[i]);
         }
+        this.startShards();
     }
 
     /**
@@ -110,37 +135,55 @@ public class Calculator {
      */
     private void fillScoresProportionally(int closestWordSize) {
 
+        this.foldShards();
         scores = new double[closestWordSize];
         for (int i = 0; i < closestWordSize; i++) {
             scores[i] = maxScoreForAnalogy - Math.pow(i + 1, 2);
             log.info((i + 1) + ". Word Score: " + scores[i]);
         }
+        this.startShards();
     }
 
     /**
-     * @param expectedWordLemma string value of compared IWord.
-     * @param closestWords      words that returned from embedding model.
+     * every expected word can match a returned word only once. rank of a match is counted among the
+     * returned words that are not matched yet, list of returned words is not changed.
+     *
+     * @param expectedWordLemmas string values of compared IWord's expected words.
+     * @param closestWords       words that returned from embedding model.
      */
-    public void updateAnalogicalAccuracy(final String expectedWordLemma, final List<String> closestWords) {
+    public void updateAnalogicalAccuracy(final List<String> expectedWordLemmas, final List<String> closestWords) {
 
-        String wordReturnedFromModel;
-        totalCalculations++;
+        final ScoreShard shard = localShard.get();
+        final int closestWordSize = closestWords.size();
+        boolean[] matched = null;
 
-        int closestWordSize = closestWords.size();
-        for (int i = 0; i < closestWordSize; i++) {
-            wordReturnedFromModel = closestWords.get(i);
-            if (expectedWordLemma.equalsIgnoreCase(wordReturnedFromModel)) {
-                if (debugEnabled) {
-                    log.debug(expectedWordLemma + " is found in "
-                            + (i + 1) + ". result from word vectors.");
-                }
-                analogyScore += scores[i];
-                totalMatchForAnalogy++;
+        int sizeOfExpectedWords = expectedWordLemmas.size();
+        for (int e = 0; e < sizeOfExpectedWords; e++) {
+            final String expectedWordLemma = expectedWordLemmas.get(e);
+            shard.totalCalculations++;
+
+            int rank = 0;
+            for (int i = 0; i < closestWordSize; i++) {
                 // birden çok related kelime varsa, bunlardan 2. sıradaki closestWord listesinde de
                 // 2. sırada olabilir ama önceden 1. sıradaki başka bir related kelimeyle closestWord
-                // eşleşmişse skorda azalma olmamalı, bu yüzden match olan kelime listeden çıkarılıyor
-                closestWords.remove(i);
-                break;
+                // eşleşmişse skorda azalma olmamalı, bu yüzden match olan kelime sıralamada sayılmıyor
+                if (matched != null && matched[i]) {
+                    continue;
+                }
+                if (expectedWordLemma.equalsIgnoreCase(closestWords.get(i))) {
+                    if (debugEnabled) {
+                        log.debug(expectedWordLemma + " is found in "
+                                + (rank + 1) + ". result from word vectors.");
+                    }
+                    shard.hitsOfRank[rank]++;
+                    shard.totalMatchForAnalogy++;
+                    if (matched == null) {
+                        matched = new boolean[closestWordSize];
+                    }
+                    matched[i] = true;
+                    break;
+                }
+                rank++;
             }
         }
     }
@@ -152,16 +195,110 @@ public class Calculator {
      */
     public void updateSimilarity(final double similarity) {
 
-        this.similarityScore += similarity;
-        this.totalCalculations++;
+        final ScoreShard shard = localShard.get();
+        shard.addSimilarity(similarity);
+        shard.totalCalculations++;
     }
 
+    /**
+     * should not be called while scores are being updated.
+     */
     public void resetProperties() {
 
-        totalMatchForAnalogy = 0;
-        totalCalculations = 0;
-        similarityScore = 0.0d;
-        analogyScore = 0.0d;
+        foldedAnalogyScore = 0.0d;
+        foldedCalculations = 0L;
+        foldedMatches = 0L;
+        foldedSimilarityHigh = 0L;
+        foldedSimilarityLow = 0L;
+        samplingEstimate = null;
+        this.startShards();
+    }
+
+    private void startShards() {
+
+        final ConcurrentLinkedQueue<ScoreShard> created = new ConcurrentLinkedQueue<>();
+        final int ranks = scores == null ? 0 : scores.length;
+        localShard = ThreadLocal.withInitial(() -> {
+            final ScoreShard shard = new ScoreShard(ranks);
+            created.add(shard);
+            return shard;
+        });
+        shards = created;
+    }
+
+    /**
+     * adds shards to folded totals with the scores of ranks they are counted for, so scores
+     * can be changed without changing the score that is already calculated. new shards should
+     * be started after scores are changed.
+     */
+    private void foldShards() {
+
+        if (shards == null) {
+            return;
+        }
+        final double[] ranks = this.sumRanks();
+        for (int i = 0; i < ranks.length; i++) {
+            foldedAnalogyScore += ranks[i] * scores[i];
+        }
+        final long[] totals = this.sumTotals();
+        foldedCalculations = totals[0];
+        foldedMatches = totals[1];
+        foldedSimilarityHigh = totals[2];
+        foldedSimilarityLow = totals[3];
+        shards = null;
+    }
+
+    /**
+     * @return matches of every rank in all shards.
+     */
+    private double[] sumRanks() {
+
+        final long[] hits = this.sumHits();
+        final double[] ranks = new double[hits.length];
+        for (int i = 0; i < hits.length; i++) {
+            ranks[i] = hits[i];
+        }
+        return ranks;
+    }
+
+    private long[] sumHits() {
+
+        final long[] hits = new long[scores == null ? 0 : scores.length];
+        for (ScoreShard shard : shards) {
+            for (int i = 0; i < hits.length && i < shard.hitsOfRank.length; i++) {
+                hits[i] += shard.hitsOfRank[i];
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * integer sums do not depend on the order of shards.
+     *
+     * @return calculations, matches, high and low parts of similarity including folded totals.
+     */
+    private long[] sumTotals() {
+
+        long calculations = foldedCalculations, matches = foldedMatches;
+        long high = foldedSimilarityHigh, low = foldedSimilarityLow;
+        for (ScoreShard shard : shards) {
+            calculations += shard.totalCalculations;
+            matches += shard.totalMatchForAnalogy;
+            final long sum = low + shard.similarityLow;
+            high += shard.similarityHigh + (Long.compareUnsigned(sum, low) < 0 ? 1 : 0);
+            low = sum;
+        }
+        return new long[]{calculations, matches, high, low};
+    }
+
+    private double getAnalogyScore() {
+
+        final double[] ranks = this.sumRanks();
+        double analogyScore = foldedAnalogyScore;
+        for (int i = 0; i < ranks.length; i++) {
+            analogyScore += ranks[i] * scores[i];
+        }
+        return analogyScore;
     }
 
     /**
@@ -169,8 +306,9 @@ public class Calculator {
      */
     public double getSimilarityPercentage() {
 
-        if (totalCalculations > 0.0d) {
-            return 100 * similarityScore / totalCalculations;
+        final long[] totals = this.sumTotals();
+        if (totals[0] > 0L) {
+            return 100 * ScoreShard.toSimilarity(totals[2], totals[3]) / totals[0];
         } else {
             return -1.0d;
         }
@@ -181,13 +319,90 @@ public class Calculator {
      */
     public double getAnalogicalPercentage() {
 
-        if (totalCalculations > 0.0d) {
-            return (analogyScore / totalCalculations) * 100 / maxScoreForAnalogy;
+        final long totalCalculations = this.sumTotals()[0];
+        if (totalCalculations > 0L) {
+            return (this.getAnalogyScore() / totalCalculations) * 100 / maxScoreForAnalogy;
         } else {
             return -1;
         }
     }
 
+    /**
+     * percentages are the second and the third values divided by the first one.
+     *
+     * @return calculations, percentage points of analogy and percentage points of similarity so far.
+     */
+    public double[] getTotals() {
+
+        final long[] totals = this.sumTotals();
+        return new double[]{totals[0], this.getAnalogyScore() * 100 / maxScoreForAnalogy,
+                100 * ScoreShard.toSimilarity(totals[2], totals[3])};
+    }
+
+    /**
+     * should not be called while scores are being updated.
+     *
+     * @return calculations, matches, high and low parts of similarity, then matches of every rank
+     * that are not folded yet.
+     */
+    public long[] getAccumulators() {
+
+        final long[] totals = this.sumTotals();
+        final long[] hits = this.sumHits();
+        final long[] accumulators = new long[totals.length + hits.length];
+        System.arraycopy(totals, 0, accumulators, 0, totals.length);
+        System.arraycopy(hits, 0, accumulators, totals.length, hits.length);
+        return accumulators;
+    }
+
+    /**
+     * score of matches that are folded when scores of ranks are changed.
+     */
+    public double getFoldedAnalogyScore() {
+
+        return foldedAnalogyScore;
+    }
+
+    /**
+     * resets scores and continues from accumulators of {@link #getAccumulators()}. they are kept as one
+     * shard, so totals are summed the same way with a calculation that is never stopped.
+     *
+     * @param foldedAnalogyScore score of {@link #getFoldedAnalogyScore()}.
+     * @param accumulators       accumulators that are taken with the same scores of ranks.
+     */
+    public void restoreAccumulators(final double foldedAnalogyScore, final long[] accumulators) {
+
+        final int ranks = scores == null ? 0 : scores.length;
+        if (accumulators.length != 4 + ranks) {
+            throw new IllegalArgumentException("Accumulators are for " + (accumulators.length - 4)
+                    + " ranks, scores have " + ranks + " ranks.");
+        }
+        this.resetProperties();
+        this.foldedAnalogyScore = foldedAnalogyScore;
+        final ScoreShard shard = new ScoreShard(ranks);
+        shard.totalCalculations = accumulators[0];
+        shard.totalMatchForAnalogy = accumulators[1];
+        shard.similarityHigh = accumulators[2];
+        shard.similarityLow = accumulators[3];
+        System.arraycopy(accumulators, 4, shard.hitsOfRank, 0, ranks);
+        shards.add(shard);
+    }
+
+    public int getSensitivity() {
+
+        return sensitivity;
+    }
+
+    public SamplingEstimate getSamplingEstimate() {
+
+        return samplingEstimate;
+    }
+
+    public void setSamplingEstimate(SamplingEstimate samplingEstimate) {
+
+        this.samplingEstimate = samplingEstimate;
+    }
+
     public boolean getCalculationOption() {
 
         return calculationOption;
@@ -200,11 +415,12 @@ public class Calculator {
 
     public String toString() {
 
-        final StringBuilder strBuilder = new StringBuilder("totalCalculations: " + totalCalculations
-                + "\ntotalMatchForAnalogy: " + totalMatchForAnalogy
+        final long[] totals = this.sumTotals();
+        final StringBuilder strBuilder = new StringBuilder("totalCalculations: " + totals[0]
+                + "\ntotalMatchForAnalogy: " + totals[1]
                 + "\nmaxScoreForAnalogy: " + maxScoreForAnalogy
-                + "\nanalogyScore: " + analogyScore
-                + "\nsimilarityScore: " + similarityScore + "\nscores: ");
+                + "\nanalogyScore: " + this.getAnalogyScore()
+                + "\nsimilarityScore: " + ScoreShard.toSimilarity(totals[2], totals[3]) + "\nscores: ");
 
         for (int i = 0; i < scores.length; i++) {
             strBuilder.append((i + 1) + "-" + scores[i] + " / ");
@@ -0,0 +1,131 @@
+package wat.calculator;
+
+/**
+ * confidence intervals of percentages that are calculated from a random sample of words. words are
+ * evaluated in rounds, every round adds its calculations and its scores as one observation. percentage
+ * is the ratio of summed scores to summed calculations, so it is the same with the calculator's
+ * percentage. variance of the ratio is estimated from the rounds by linearization, and it is corrected
+ * for the words that are sampled without replacement.
+ */
+public class SamplingEstimate {
+
+    private final int population;
+    private final double z;
+
+    private int rounds = 0;
+    private long sampledWords = 0L;
+    private double sumOfCalculations, sumOfCalculationsSquared;
+    private double sumOfAnalogy, sumOfAnalogySquared, sumOfAnalogyProducts;
+    private double sumOfSimilarity, sumOfSimilaritySquared, sumOfSimilarityProducts;
+
+    /**
+     * @param population words that the sample is drawn from.
+     * @param z          z value of the confidence level, 1.96 gives 95% intervals.
+     */
+    public SamplingEstimate(final int population, final double z) {
+
+        this.population = population;
+        this.z = z;
+    }
+
+    /**
+     * @param words  words that are evaluated in the round.
+     * @param before totals of the calculator before the round, see {@link Calculator#getTotals()}.
+     * @param after  totals of the calculator after the round.
+     */
+    public void addRound(final int words, final double[] before, final double[] after) {
+
+        final double calculations = after[0] - before[0];
+        final double analogy = after[1] - before[1];
+        final double similarity = after[2] - before[2];
+        rounds++;
+        sampledWords += words;
+        sumOfCalculations += calculations;
+        sumOfCalculationsSquared += calculations * calculations;
+        sumOfAnalogy += analogy;
+        sumOfAnalogySquared += analogy * analogy;
+        sumOfAnalogyProducts += analogy * calculations;
+        sumOfSimilarity += similarity;
+        sumOfSimilaritySquared += similarity * similarity;
+        sumOfSimilarityProducts += similarity * calculations;
+    }
+
+    public double getAnalogicalPercentage() {
+
+        return sumOfCalculations > 0 ? sumOfAnalogy / sumOfCalculations : -1.0d;
+    }
+
+    public double getSimilarityPercentage() {
+
+        return sumOfCalculations > 0 ? sumOfSimilarity / sumOfCalculations : -1.0d;
+    }
+
+    /**
+     * @return half width of the interval of analogical percentage, infinity till two rounds with
+     * calculations are added.
+     */
+    public double getAnalogicalHalfWidth() {
+
+        return this.halfWidth(sumOfAnalogy, sumOfAnalogySquared, sumOfAnalogyProducts);
+    }
+
+    /**
+     * @return half width of the interval of similarity percentage, infinity till two rounds with
+     * calculations are added.
+     */
+    public double getSimilarityHalfWidth() {
+
+        return this.halfWidth(sumOfSimilarity, sumOfSimilaritySquared, sumOfSimilarityProducts);
+    }
+
+    /**
+     * sum of squared residuals of rounds is sum((y - r * x)^2), it is expanded so rounds need not be kept.
+     */
+    private double halfWidth(final double sumOfScores, final double sumOfSquares, final double sumOfProducts) {
+
+        if (rounds < 2 || sumOfCalculations <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final double ratio = sumOfScores / sumOfCalculations;
+        final double residuals = Math.max(0.0d, sumOfSquares - 2 * ratio * sumOfProducts
+                + ratio * ratio * sumOfCalculationsSquared);
+        final double meanOfCalculations = sumOfCalculations / rounds;
+        final double sampledFraction = population > 0 ? Math.min(1.0d, (double) sampledWords / population) : 0.0d;
+        final double variance = (1 - sampledFraction) * residuals / (rounds - 1)
+                / (rounds * meanOfCalculations * meanOfCalculations);
+        return z * Math.sqrt(variance);
+    }
+
+    /**
+     * @param isAnalogyTest true to check the interval of analogical percentage, false for similarity.
+     * @return half width of the interval of the percentage that is calculated in the test.
+     */
+    public double getHalfWidth(final boolean isAnalogyTest) {
+
+        return isAnalogyTest ? this.getAnalogicalHalfWidth() : this.getSimilarityHalfWidth();
+    }
+
+    public int getRounds() {
+
+        return rounds;
+    }
+
+    public long getSampledWords() {
+
+        return sampledWords;
+    }
+
+    public int getPopulation() {
+
+        return population;
+    }
+
+    public String toString() {
+
+        return "sampled " + sampledWords + " of " + population + " words in " + rounds + " rounds"
+                + "\nanalogical percentage: " + this.getAnalogicalPercentage() + " +- " + this.getAnalogicalHalfWidth()
+                + "\nsimilarity percentage: " + this.getSimilarityPercentage() + " +- " + this.getSimilarityHalfWidth()
+                + "\nz: " + z;
+    }
+
+}
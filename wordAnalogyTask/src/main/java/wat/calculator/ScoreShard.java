@@ -0,0 +1,49 @@
+package wat.calculator;
+
+/**
+ * accumulators of one thread for {@link Calculator}. only its own thread writes to a shard, so
+ * updates need no lock. matches are counted by their rank and similarity is kept as a 128 bit fixed
+ * point number, so adding shards together gives the same totals in any order.
+ */
+final class ScoreShard {
+
+    /**
+     * similarities are multiplied by 2^60 before they are added, cosine values fit easily.
+     */
+    static final double SIMILARITY_SCALE = 0x1p60;
+
+    // başka thread'in shard'ı ile aynı cache line'a düşmesin diye
+    long p1, p2, p3, p4, p5, p6, p7;
+
+    long totalCalculations;
+    long totalMatchForAnalogy;
+    long similarityHigh;
+    long similarityLow;
+    final long[] hitsOfRank;
+
+    long q1, q2, q3, q4, q5, q6, q7;
+
+    ScoreShard(final int ranks) {
+
+        this.hitsOfRank = new long[ranks];
+    }
+
+    void addSimilarity(final double similarity) {
+
+        final long value = Math.round(similarity * SIMILARITY_SCALE);
+        final long low = similarityLow + value;
+        // işaret genişletmesi ve alt 64 bitten gelen elde
+        similarityHigh += (value >> 63) + (Long.compareUnsigned(low, similarityLow) < 0 ? 1 : 0);
+        similarityLow = low;
+    }
+
+    /**
+     * @return 128 bit number that is given by its high and low parts as double, scaled back.
+     */
+    static double toSimilarity(final long high, final long low) {
+
+        final double unsignedLow = (double) (low >>> 1) * 2.0d + (low & 1L);
+        return (high * 0x1p64 + unsignedLow) / SIMILARITY_SCALE;
+    }
+
+}
@@ -7,12 +7,16 @@ public class Constants {
     public static final int ADJECTIVES_ONLY = 3;
     public static final int ADVERBS_ONLY = 4;
     public static final int ALL_WORDS = 5;
+    public static final int SAMPLE_OF_ALL_WORDS = 6;
 
     public static final int GLOVE = 1;
     public static final int WORD2VEC = 2;
+    public static final int EMBEDDING_STORE = 3;
 
     public static final int TRAIN_CORPUS = 1;
     public static final int CORPUS_IS_PRETRAINED = 2;
+    public static final int PRETRAINED_WITH_MAX_VOCABULARY = 3;
+    public static final int PRETRAINED_WITH_TRAINING_STATE = 4;
 
     public static final boolean IS_ANALOGY_TEST = true;
     public static final boolean IS_SIMILARITY_TEST = false;
@@ -24,5 +28,23 @@ public class Constants {
     public static final int RESET_ITERATION_CAP_SETTING = 5;
     public static final int RESET_SCORES_SETTING = 6;
     public static final int PHRASE_SETTING = 7;
+    public static final int ANALOGY_BATCH_SIZE_SETTING = 8;
+    public static final int NEAREST_NEIGHBOUR_INDEX_SETTING = 9;
+    public static final int VECTOR_STORAGE_SETTING = 10;
+    public static final int SIMILARITY_CACHE_SETTING = 11;
+    public static final int CANDIDATE_RESTRICTION_SETTING = 12;
+    public static final int MODEL_MEMORY_BUDGET_SETTING = 13;
+    public static final int EVALUATION_PARALLELISM_SETTING = 14;
+    public static final int ANALOGY_PLAN_SETTING = 15;
+    public static final int SIMILARITY_PRE_FILTER_SETTING = 16;
+
+    public static final int SAVE_IN_MODEL_FORMAT = 1;
+    public static final int SAVE_IN_NATIVE_FORMAT = 2;
+    public static final int SAVE_IN_NATIVE_BLOCKS = 3;
+    public static final int SAVE_IN_COMPRESSED_NATIVE_BLOCKS = 4;
+
+    public static final int VECTORS_AS_FLOAT = 1;
+    public static final int VECTORS_AS_HALF_FLOAT = 2;
+    public static final int VECTORS_AS_INT8 = 3;
 
 }
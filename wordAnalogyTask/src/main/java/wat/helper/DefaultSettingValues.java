@@ -7,9 +7,83 @@ public class DefaultSettingValues {
     public static final int BASE_SENSITIVITY = 4;
     public static final int CLOSEST_WORD_SIZE = 10;
     public static final int ITERATION_CAP_FOR_POINTER = 10;
+    public static final int ANALOGY_BATCH_SIZE = 64;
+    public static final int ANALOGY_BATCH_SIZE_CAP = 4096;
 
     public static final double MIN_SIMILARITY_FOR_COMPARISON = 0.65d;
 
+    public static final int INDEX_M = 16;
+    public static final int INDEX_M_LEAST = 4;
+    public static final int INDEX_M_CAP = 64;
+    public static final int INDEX_EF_CAP = 2000;
+    public static final int INDEX_EF_CONSTRUCTION = 100;
+    public static final int INDEX_EF_SEARCH = 64;
+    public static final int INDEX_SEED = 24;
+    public static final int INDEX_RECALL_SAMPLE_SIZE = 200;
+
+    // int8 taramasında istenen kelime sayısının kaç katı aday tekrar hesaplanacak
+    public static final int QUANTIZED_RERANK_FACTOR = 4;
+
+    public static final int SIMILARITY_CACHE_SIZE = 200000;
+    public static final int SIMILARITY_CACHE_SIZE_CAP = 20000000;
+
+    // aday kümesi ile bulunan kelimeler her 100 sorguda bir tüm kelimelerle karşılaştırılıyor
+    public static final int CANDIDATE_CHECK_INTERVAL = 100;
+
+    // 0 bütün kelimeleri yüklüyor
+    public static final int MAX_VOCABULARY_SIZE = 0;
+    public static final int MAX_VOCABULARY_SIZE_LEAST = 1000;
+    public static final int MAX_VOCABULARY_SIZE_CAP = 100000000;
+
+    // syn1, syn1Neg ve huffman kodları sadece eğitime devam edilecekse yükleniyor
+    public static final boolean LOAD_TRAINING_STATE = false;
+
+    // saniye
+    public static final int LOADING_PROGRESS_INTERVAL = 5;
+    public static final boolean SEARCH_ONLY_WORDNET_LEMMAS = false;
+
+    // bellekte tutulan modellerin toplam boyutu, varsayılan olarak heap'in yarısı (MB)
+    public static final int MODEL_MEMORY_BUDGET = (int) (Runtime.getRuntime().maxMemory() / 2 / (1024 * 1024));
+    public static final int MODEL_MEMORY_BUDGET_LEAST = 64;
+    public static final int MODEL_MEMORY_BUDGET_CAP = 1024 * 1024;
+    public static final String MODEL_CACHE_FOLDER = "wat_model_cache";
+
+    // skorları hesaplayan thread sayısı, 1 verilirse çağıran thread'de hesaplanıyor
+    public static final int EVALUATION_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    public static final int EVALUATION_PARALLELISM_CAP = 256;
+    // kelimeler paralellikten bağımsız olarak bu kadar parçaya bölünüyor, skor thread sayısıyla değişmiyor
+    public static final int EVALUATION_CHUNK_COUNT = 1024;
+    // bir çalıştırmada tekrar eden analoji sorgularının cevapları en fazla bu kadar tutuluyor
+    public static final int QUERY_MEMO_CAPACITY = 2000000;
+    // dl4j modellerinde sadece aday kümesi veya index için float store oluşturulmuşsa kullanılıyor
+    public static final boolean USE_SIMILARITY_PRE_FILTER = true;
+    // kıyaslanacak kelimelerin benzerliği pointer'ın kelimeleri için bu büyüklükteki bloklarla hesaplanıyor
+    public static final int PRE_FILTER_BLOCK_SIZE = 256;
+
+    // örneklemede 95% güven aralığı, aralığın yarı genişliği epsilon'dan küçük olunca duruluyor
+    public static final double SAMPLING_CONFIDENCE_Z = 1.96d;
+    public static final double SAMPLING_EPSILON = 0.5d;
+    public static final double SAMPLING_EPSILON_LEAST = 0.01d;
+    public static final double SAMPLING_EPSILON_CAP = 50.0d;
+    // saniye
+    public static final int SAMPLING_TIME_BUDGET = 1800;
+    public static final int SAMPLING_TIME_BUDGET_CAP = 7 * 24 * 3600;
+    public static final long SAMPLING_SEED = 1L;
+    // her turda bu kadar kelime hesaplanıyor, aralık en az bu kadar turdan sonra kontrol ediliyor
+    public static final int SAMPLING_ROUND_SIZE = 500;
+    public static final int SAMPLING_MIN_ROUNDS = 5;
+
+    // uzun hesaplamalar bu kadar parçada yapılıyor, her parçadan sonra checkpoint yazılıyor
+    public static final int CHECKPOINT_SEGMENT_COUNT = 50;
+    public static final String CHECKPOINT_FOLDER = "wat_checkpoints";
+    // checkpoint bu kadar kelimenin benzerlikleri aynıysa aynı modele aittir
+    public static final int CHECKPOINT_FINGERPRINT_WORDS = 32;
+
+    // analoji görevi WordNet sürümü için bir kere derlenip her modelde tekrar kullanılıyor
+    public static final boolean USE_ANALOGY_PLAN = true;
+    // pointer-word map dosyaları da aynı klasörde tutuluyor
+    public static final String ANALOGY_PLAN_FOLDER = "wat_analogy_plans";
+
     public static final int WINDOW_SIZE_LEAST = 1;
     public static final int WINDOW_SIZE_CAP = 100;
     public static final int EPOCHS_LEAST = 1;
@@ -7,6 +7,7 @@ import edu.mit.jwi.item.POS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import wat.calculator.Calculator;
+import wat.calculator.SamplingEstimate;
 import wat.exceptions.ModelBuildException;
 import wat.file.FileActions;
 import wat.helper.Constants;
@@ -14,24 +15,44 @@ import wat.helper.DefaultSettingValues;
 import wat.helper.TrainingParamTypes;
 import wat.training.model.BaseModelInt;
 import wat.training.model.BaseTrainingParams;
+import wat.training.model.ModelRegistry;
 import wat.training.model.glove.GloveTrainingParams;
 import wat.training.model.glove.GloveUtil;
+import wat.training.model.store.CandidateSubset;
+import wat.training.model.store.EmbeddingStoreUtil;
+import wat.training.model.store.NativeModelFile;
 import wat.training.model.word2vec.Word2vecTrainingParams;
 import wat.training.model.word2vec.Word2vecUtil;
 import wat.wordnet.WordNetUtil;
 import wat.wordnet.WordNetUtilInt;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class ApplicationController {
 
     private static final Logger log = LoggerFactory.getLogger(ApplicationController.class);
 
-    private Word2vecUtil word2vecUtil = new Word2vecUtil();
-    private GloveUtil gloveUtil = new GloveUtil();
+    private BaseModelInt word2vecUtil = new Word2vecUtil();
+    private BaseModelInt gloveUtil = new GloveUtil();
+    private BaseModelInt embeddingStoreUtil = new EmbeddingStoreUtil();
+
+    /**
+     * models that are loaded before, they are kept in memory as long as memory budget allows.
+     */
+    private final ModelRegistry modelRegistry = new ModelRegistry(DefaultSettingValues.MODEL_MEMORY_BUDGET
+            * 1024L * 1024L, new File(System.getProperty("user.home"), DefaultSettingValues.MODEL_CACHE_FOLDER));
 
     // bu kaldırılabilir
     private int usedModelID = Constants.WORD2VEC;
@@ -39,11 +60,217 @@ public class ApplicationController {
     private BaseModelInt usedModel = word2vecUtil;
     private WordNetUtilInt wordNetUtil = null;
 
+    // arka planda yükleme için, thread'ler daemon olduğundan exit'i beklemiyor
+    private final ExecutorService backgroundLoader = Executors.newFixedThreadPool(2, runnable -> {
+        final Thread thread = new Thread(runnable, "background-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService progressLogger = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                final Thread thread = new Thread(runnable, "loading-progress");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private volatile Future<?> dictionaryReady = CompletableFuture.completedFuture(null);
+    private volatile Future<?> modelReady = CompletableFuture.completedFuture(null);
+    private volatile Future<?> vocabularyReady = CompletableFuture.completedFuture(null);
+    private volatile Future<?> loadingFinished = CompletableFuture.completedFuture(null);
+
     public ApplicationController(String wordNetPath) throws IOException, ModelBuildException {
 
         wordNetUtil = new WordNetUtil(wordNetPath, ILoadPolicy.NO_LOAD);
     }
 
+    /**
+     * loads WordNet into memory and the pretrained model from corpus path of the used model at the
+     * same time on background threads, so waiting time is the longer of the two loads instead of
+     * their sum. progress is logged till both are done, commands that need them wait for them.
+     * vocabulary of the model is read before its vectors, so evaluations can prepare WordNet
+     * lemmas while vectors are loading.
+     */
+    public void loadInBackground() {
+
+        if (!this.isBackgroundLoadingDone()) {
+            log.warn("Background loading is already in progress.");
+            return;
+        }
+        this.prepareUsedModelForLoading(Constants.CORPUS_IS_PRETRAINED);
+        final BaseModelInt model = usedModel;
+        final long start = System.currentTimeMillis();
+        dictionaryReady = backgroundLoader.submit(() -> wordNetUtil.loadDictionaryIntoMemory());
+        final CompletableFuture<Void> vocabulary = new CompletableFuture<>();
+        vocabularyReady = vocabulary;
+        modelReady = backgroundLoader.submit(() -> {
+            try {
+                model.loadVocabulary();
+            } finally {
+                vocabulary.complete(null);
+            }
+            try {
+                model.createModel(Constants.CORPUS_IS_PRETRAINED);
+            } catch (ModelBuildException | RuntimeException e) {
+                // vektörler yüklenemediyse kelimelere göre cevap verilmemeli
+                model.dropLoadingVocabulary();
+                throw e;
+            }
+            return null;
+        });
+
+        final ScheduledFuture<?> progress = progressLogger.scheduleAtFixedRate(() -> {
+            final Runtime runtime = Runtime.getRuntime();
+            log.info("Loading in background for " + (System.currentTimeMillis() - start) / 1000
+                    + " seconds. WordNet: " + (dictionaryReady.isDone() ? "ready" : "loading")
+                    + ", " + model.getName() + ": " + (modelReady.isDone() ? "ready" : model.isVocabularyReady()
+                    ? "vocabulary ready, loading vectors" : "loading")
+                    + ", used memory: " + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + " MB");
+        }, DefaultSettingValues.LOADING_PROGRESS_INTERVAL, DefaultSettingValues.LOADING_PROGRESS_INTERVAL,
+                TimeUnit.SECONDS);
+        loadingFinished = backgroundLoader.submit(() -> {
+            this.waitForLoadedParts();
+            progress.cancel(false);
+            if (model.isModelReady()) {
+                modelRegistry.register(model);
+            }
+            log.info("Background loading is finished in " + (System.currentTimeMillis() - start) / 1000
+                    + " seconds.");
+        });
+    }
+
+    /**
+     * loading is done after loaded model is registered too, model should not be changed before that.
+     */
+    private boolean isBackgroundLoadingDone() {
+
+        return dictionaryReady.isDone() && modelReady.isDone() && loadingFinished.isDone();
+    }
+
+    /**
+     * blocks until WordNet and model that are loading in background are ready and the model is
+     * registered, failures are logged. commands that change the used model should call this first,
+     * loader is still writing its fields otherwise.
+     */
+    private void waitForBackgroundLoading() {
+
+        if (!this.isBackgroundLoadingDone()) {
+            log.info("Waiting for WordNet and model to be loaded in background...");
+        }
+        this.waitForLoadedParts();
+        try {
+            loadingFinished.get();
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Loaded model could not be registered!", e);
+        }
+    }
+
+    /**
+     * blocks until WordNet and model are loaded, it does not wait for the registration.
+     */
+    private void waitForLoadedParts() {
+
+        try {
+            dictionaryReady.get();
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("WordNet could not be loaded into memory in background!", e);
+        }
+        try {
+            modelReady.get();
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Model could not be loaded in background!", e);
+        }
+    }
+
+    /**
+     * if vectors of the used model are loading in background, lemma registry and pointer map are
+     * prepared from its vocabulary instead of waiting for the vectors.
+     */
+    private void prepareWhileVectorsAreLoading(final boolean isAnalogyTest, final boolean onlySynsets) {
+
+        if (modelReady.isDone()) {
+            return;
+        }
+        try {
+            vocabularyReady.get();
+            dictionaryReady.get();
+        } catch (InterruptedException | ExecutionException e) {
+            // hata arka plan yüklemesi beklenirken loglanıyor
+            return;
+        }
+        if (!modelReady.isDone() && usedModel.isVocabularyReady()) {
+            log.info("Preparing WordNet lemmas from vocabulary of " + usedModel.getName()
+                    + " while its vectors are loading...");
+            wordNetUtil.prepareFromVocabulary(usedModel, isAnalogyTest, onlySynsets);
+        }
+    }
+
+    /**
+     * @return true if model is ready after waiting for background loading, if there is any.
+     */
+    private boolean isModelReadyAfterLoading() {
+
+        this.waitForBackgroundLoading();
+        return usedModel.isModelReady();
+    }
+
+    /**
+     * a model that is kept in registry is not loaded again with another file, an empty model of the
+     * same type with the same settings takes its place. least recently used models are evicted if
+     * the file that will be loaded may not fit into memory budget.
+     */
+    private void prepareUsedModelForLoading(final int corpusIsPretrained) {
+
+        if (modelRegistry.isRegistered(usedModel)) {
+            this.replaceUsedModel(usedModel.newEmptyModel());
+        }
+        final String path = usedModel.getCorpusPath();
+        if (corpusIsPretrained != Constants.TRAIN_CORPUS && path != null) {
+            modelRegistry.makeRoomFor(new File(path).length());
+        }
+    }
+
+    /**
+     * @param model model that is used from now on, it has the same type with the used model.
+     */
+    private void replaceUsedModel(final BaseModelInt model) {
+
+        usedModel = model;
+        if (usedModelID == Constants.GLOVE) {
+            gloveUtil = model;
+        } else if (usedModelID == Constants.WORD2VEC) {
+            word2vecUtil = model;
+        } else if (usedModelID == Constants.EMBEDDING_STORE) {
+            embeddingStoreUtil = model;
+        }
+    }
+
+    /**
+     * switches to a model that is loaded before, it is opened from its cached file if it is evicted.
+     */
+    public void useResidentModel() throws ModelBuildException {
+
+        this.waitForBackgroundLoading();
+        final List<String> keys = modelRegistry.getKeys();
+        if (keys.isEmpty()) {
+            log.warn("There is not any model that is loaded before.");
+            return;
+        }
+        log.info("Models use about " + modelRegistry.getResidentFootprint() / (1024 * 1024)
+                + " MB of " + modelRegistry.getMemoryBudget() / (1024 * 1024) + " MB budget.");
+        final int selection = UserInput.getResidentModelSelection(modelRegistry.describe());
+        if (selection != 0) {
+            final BaseModelInt model = modelRegistry.use(keys.get(selection - 1));
+            if (model instanceof GloveUtil) {
+                usedModelID = Constants.GLOVE;
+            } else if (model instanceof Word2vecUtil) {
+                usedModelID = Constants.WORD2VEC;
+            } else {
+                usedModelID = Constants.EMBEDDING_STORE;
+            }
+            this.replaceUsedModel(model);
+            wordNetUtil.getCalc().prepareScoresForAnalogyTask(usedModel.getClosestWordSize());
+        }
+    }
+
     /**
      * closes the wordnet and exits from the program.
      */
@@ -57,15 +284,18 @@ public class ApplicationController {
     /**
      * updates the info of which model is being used.
      *
-     * @param choice 1 for glove, 2 for word2vec.
+     * @param choice 1 for glove, 2 for word2vec, 3 for embedding store.
      */
     public void changeModelToUse(int choice) {
 
+        this.waitForBackgroundLoading();
         if (usedModelID != choice) {
             if (choice == Constants.GLOVE) {
                 usedModel = gloveUtil;
             } else if (choice == Constants.WORD2VEC) {
                 usedModel = word2vecUtil;
+            } else if (choice == Constants.EMBEDDING_STORE) {
+                usedModel = embeddingStoreUtil;
             }
             usedModelID = choice;
         } else {
@@ -74,20 +304,33 @@ public class ApplicationController {
     }
 
     /**
-     * sends the compressed zip file to save model.
-     * creates any non existing directory while creating file.
+     * sends the compressed zip file to save model, or the native file that can be loaded
+     * by memory mapping. creates any non existing directory while creating file.
      */
     public void saveTrainedModel() throws IOException {
 
         String name = usedModel.getName();
-        if (usedModel.isModelReady()) {
+        if (this.isModelReadyAfterLoading()) {
+            final int format = UserInput.getSaveFormat();
+            final boolean nativeFormat = format != Constants.SAVE_IN_MODEL_FORMAT;
             long start = System.currentTimeMillis();
-            Path path = FileActions.getUniquePathForGivenFileName(
-                    name + "_saved", "trained_" + name);
-
-            if (usedModel.saveTrainedModel(path.toFile())) {
-                log.info(name + " embeddings are saved successfully in "
-                        + (System.currentTimeMillis() - start) / 1000 + " seconds.");
+            Path path = FileActions.getUniquePathForGivenFileName(name + "_saved",
+                    "trained_" + name + (nativeFormat ? NativeModelFile.FILE_EXTENSION : ""));
+
+            final boolean saved;
+            if (format == Constants.SAVE_IN_NATIVE_BLOCKS) {
+                saved = usedModel.saveNativeModel(path.toFile(), NativeModelFile.LAYOUT_BLOCKS);
+            } else if (format == Constants.SAVE_IN_COMPRESSED_NATIVE_BLOCKS) {
+                saved = usedModel.saveNativeModel(path.toFile(), NativeModelFile.LAYOUT_COMPRESSED_BLOCKS);
+            } else if (format == Constants.SAVE_IN_NATIVE_FORMAT) {
+                saved = usedModel.saveNativeModel(path.toFile(), NativeModelFile.LAYOUT_MAPPED);
+            } else {
+                saved = usedModel.saveTrainedModel(path.toFile());
+            }
+            if (saved) {
+                final long millis = Math.max(1L, System.currentTimeMillis() - start);
+                log.info(name + " embeddings are saved successfully in " + millis / 1000 + " seconds, "
+                        + path.toFile().length() / 1024 / millis + " MB/s written.");
             }
         } else {
             log.warn(name + " is not created.");
@@ -105,7 +348,8 @@ public class ApplicationController {
      */
     public void calculateScore(int choice, boolean isAnalogyTest, boolean onlySynsets) throws IOException {
 
-        if (usedModel.isModelReady()) {
+        this.prepareWhileVectorsAreLoading(isAnalogyTest, onlySynsets);
+        if (this.isModelReadyAfterLoading()) {
             switch (choice) {
                 case Constants.ALL_WORDS:
                     wordNetUtil.calculateScoreForAllWords(usedModel, isAnalogyTest, onlySynsets);
@@ -117,9 +361,26 @@ public class ApplicationController {
                     wordNetUtil.calculateScoreForPOSFromController(usedModel,
                             POS.getPartOfSpeech(choice), isAnalogyTest, onlySynsets);
                     break;
+                case Constants.SAMPLE_OF_ALL_WORDS:
+                    System.out.println("\nHalf width of confidence interval to stop sampling at (suggested "
+                            + DefaultSettingValues.SAMPLING_EPSILON + "):");
+                    final double epsilon = UserInput.getDoubleSelection(DefaultSettingValues.SAMPLING_EPSILON_LEAST,
+                            DefaultSettingValues.SAMPLING_EPSILON_CAP);
+                    System.out.println("\nTime budget in seconds (suggested "
+                            + DefaultSettingValues.SAMPLING_TIME_BUDGET + "):");
+                    final int timeBudget = UserInput.getSelectionBetween(1,
+                            DefaultSettingValues.SAMPLING_TIME_BUDGET_CAP);
+                    System.out.println("\nSeed for drawing words (suggested " + DefaultSettingValues.SAMPLING_SEED
+                            + "):");
+                    final int seed = UserInput.getSelectionBetween(0, Integer.MAX_VALUE);
+                    wordNetUtil.calculateScoreBySampling(usedModel, isAnalogyTest, onlySynsets, seed, epsilon,
+                            timeBudget);
+                    break;
                 default:
                     log.error("Invalid POS choice: " + choice);
             }
+            log.info("Similarity cache of " + usedModel.getName() + ": " + usedModel.getSimilarityCache());
+            this.logCandidateSubset();
             // first save scores
             this.saveCalculationScore();
             // then reset all
@@ -129,12 +390,46 @@ public class ApplicationController {
         }
     }
 
+    /**
+     * continues the last evaluation of all words or a POS of the model that is used now, scores are
+     * saved when it is finished as if it was never stopped.
+     */
+    public void resumeEvaluation() {
+
+        if (this.isModelReadyAfterLoading()) {
+            if (wordNetUtil.resumeEvaluation(usedModel)) {
+                log.info("Similarity cache of " + usedModel.getName() + ": " + usedModel.getSimilarityCache());
+                this.logCandidateSubset();
+                // first save scores
+                this.saveCalculationScore();
+                // then reset all
+                wordNetUtil.getCalc().resetProperties();
+            }
+        } else {
+            log.warn("You should first train or load a model.");
+        }
+    }
+
+    /**
+     * logs how often restricting analogy answers to WordNet lemmas changed the closest words.
+     */
+    private void logCandidateSubset() {
+
+        final CandidateSubset subset = usedModel.getCandidateSubset();
+        if (subset != null) {
+            log.info("Top " + usedModel.getClosestWordSize() + " words changed for " + subset.getChangedQueries()
+                    + " of " + subset.getCheckedQueries() + " queries compared with full search: " + subset);
+            subset.resetCounters();
+        }
+    }
+
     public void getAnalogyScoreOfTypedWord() {
 
-        if (usedModel.isModelReady()) {
+        if (this.isModelReadyAfterLoading()) {
             final String wordInput = UserInput.getWordInput();
             if (wordInput != null) {
                 wordNetUtil.calculateAnalogyScoreOfWordInput(usedModel, wordInput, UserInput.getAnalogyAlgorithm());
+                this.logCandidateSubset();
                 // first save scores
                 this.saveCalculationScore();
                 // then reset all
@@ -153,6 +448,16 @@ public class ApplicationController {
             add("Analogical percentage: " + calc.getAnalogicalPercentage());
             add("Similarity percentage: " + calc.getSimilarityPercentage());
         }};
+        // örneklemeyle hesaplandıysa güven aralıkları da yazılıyor
+        final SamplingEstimate estimate = calc.getSamplingEstimate();
+        if (estimate != null) {
+            lines.add("Sampled " + estimate.getSampledWords() + " of " + estimate.getPopulation() + " words in "
+                    + estimate.getRounds() + " rounds");
+            lines.add("Analogical percentage interval: " + estimate.getAnalogicalPercentage() + " +- "
+                    + estimate.getAnalogicalHalfWidth());
+            lines.add("Similarity percentage interval: " + estimate.getSimilarityPercentage() + " +- "
+                    + estimate.getSimilarityHalfWidth());
+        }
 
         try {
             FileActions.writeToFileByCreatingFile(lines,
@@ -164,27 +469,57 @@ public class ApplicationController {
 
     public void loadDictionaryIntoMemory() {
         // a wordnet will definetely be created when program starts.
+        this.waitForBackgroundLoading();
         wordNetUtil.loadDictionaryIntoMemory();
     }
 
     public void changeCorpusPath(String newPath) {
 
+        this.waitForBackgroundLoading();
         usedModel.setCorpusPath(newPath);
     }
 
     /**
-     * @param corpusIsPretrained true if corpus is not raw text but a prebuilt model.
+     * @param corpusIsPretrained 1 to train corpus, 2 to load a pretrained model with all of its words,
+     *                           3 to load only the most frequent words of a pretrained model,
+     *                           4 to load a pretrained model with its training state.
      * @throws ModelBuildException
      */
     public void prepareModel(int corpusIsPretrained) throws ModelBuildException {
 
-        usedModel.createModel(corpusIsPretrained);
+        this.waitForBackgroundLoading();
+        this.prepareUsedModelForLoading(corpusIsPretrained);
+        if (corpusIsPretrained == Constants.PRETRAINED_WITH_MAX_VOCABULARY) {
+            System.out.println("\nMax vocabulary size:");
+            usedModel.setMaxVocabularySize(UserInput.getSelectionBetween(
+                    DefaultSettingValues.MAX_VOCABULARY_SIZE_LEAST, DefaultSettingValues.MAX_VOCABULARY_SIZE_CAP));
+            usedModel.setLoadTrainingState(DefaultSettingValues.LOAD_TRAINING_STATE);
+            usedModel.createModel(Constants.CORPUS_IS_PRETRAINED);
+        } else if (corpusIsPretrained == Constants.PRETRAINED_WITH_TRAINING_STATE) {
+            usedModel.setMaxVocabularySize(DefaultSettingValues.MAX_VOCABULARY_SIZE);
+            usedModel.setLoadTrainingState(true);
+            usedModel.createModel(Constants.CORPUS_IS_PRETRAINED);
+        } else {
+            if (corpusIsPretrained == Constants.CORPUS_IS_PRETRAINED) {
+                usedModel.setMaxVocabularySize(DefaultSettingValues.MAX_VOCABULARY_SIZE);
+                usedModel.setLoadTrainingState(DefaultSettingValues.LOAD_TRAINING_STATE);
+            }
+            usedModel.createModel(corpusIsPretrained);
+        }
+        if (usedModel.isModelReady()) {
+            modelRegistry.register(usedModel);
+        }
     }
 
     public void updateSelectedModelParams(final TrainingParamTypes trainingParamType) {
 
+        this.waitForBackgroundLoading();
         boolean notCommon = false;
         final BaseTrainingParams params = usedModel.getParams();
+        if (params == null) {
+            log.warn(usedModel.getName() + " does not have any training params.");
+            return;
+        }
 
         switch (trainingParamType) {
             case LAYER_SIZE:
@@ -299,6 +634,8 @@ public class ApplicationController {
 
     public void changeSettings(int setting) {
 
+        // ayarlar arka planda yüklenen model ve WordNet'i değiştiriyor
+        this.waitForBackgroundLoading();
         switch (setting) {
             case Constants.CALCULATION_SETTING:
                 wordNetUtil.getCalc().setCalculationOption(UserInput.getCalculationOption());
@@ -334,13 +671,110 @@ public class ApplicationController {
             case Constants.PHRASE_SETTING:
                 wordNetUtil.setPhraseComparisonSetting(UserInput.getPhraseSetting());
                 break;
+            case Constants.ANALOGY_BATCH_SIZE_SETTING:
+                wordNetUtil.setAnalogyBatchSize(UserInput.getSelectionBetween(1,
+                        DefaultSettingValues.ANALOGY_BATCH_SIZE_CAP));
+                break;
+            case Constants.NEAREST_NEIGHBOUR_INDEX_SETTING:
+                this.changeNearestNeighbourIndex(UserInput.getIndexOption());
+                break;
+            case Constants.VECTOR_STORAGE_SETTING:
+                usedModel.setVectorStorage(UserInput.getVectorStorage());
+                break;
+            case Constants.CANDIDATE_RESTRICTION_SETTING:
+                wordNetUtil.setCandidateRestriction(UserInput.getCandidateRestriction());
+                break;
+            case Constants.MODEL_MEMORY_BUDGET_SETTING:
+                System.out.println("\nMemory budget of models in memory (MB):");
+                modelRegistry.setMemoryBudget(UserInput.getSelectionBetween(DefaultSettingValues
+                        .MODEL_MEMORY_BUDGET_LEAST, DefaultSettingValues.MODEL_MEMORY_BUDGET_CAP) * 1024L * 1024L);
+                break;
+            case Constants.ANALOGY_PLAN_SETTING:
+                wordNetUtil.setAnalogyPlanUsage(UserInput.getAnalogyPlanOption());
+                break;
+            case Constants.SIMILARITY_PRE_FILTER_SETTING:
+                wordNetUtil.setSimilarityPreFilterUsage(UserInput.getSimilarityPreFilterOption());
+                break;
+            case Constants.EVALUATION_PARALLELISM_SETTING:
+                System.out.println("\nThreads to calculate scores (1 calculates on one thread):");
+                wordNetUtil.setEvaluationParallelism(UserInput.getSelectionBetween(1,
+                        DefaultSettingValues.EVALUATION_PARALLELISM_CAP));
+                break;
+            case Constants.SIMILARITY_CACHE_SETTING:
+                usedModel.getSimilarityCache().setCapacity(UserInput.getSelectionBetween(0,
+                        DefaultSettingValues.SIMILARITY_CACHE_SIZE_CAP));
+                break;
             default:
                 log.error("Invalid setting: " + setting);
         }
     }
 
+    /**
+     * index is kept by the model, so every model has its own index.
+     *
+     * @param option selection from index menu, 0 cancels.
+     */
+    public void changeNearestNeighbourIndex(int option) {
+
+        this.waitForBackgroundLoading();
+        final String name = usedModel.getName();
+        switch (option) {
+            case 0:
+                break;
+            case 1:
+                System.out.println("\nMax neighbours of a word (M):");
+                final int m = UserInput.getSelectionBetween(DefaultSettingValues.INDEX_M_LEAST,
+                        DefaultSettingValues.INDEX_M_CAP);
+                System.out.println("\nCandidate list size while building (efConstruction):");
+                final int efConstruction = UserInput.getSelectionBetween(m, DefaultSettingValues.INDEX_EF_CAP);
+                usedModel.buildNearestNeighbourIndex(m, efConstruction);
+                break;
+            case 2:
+                usedModel.setBuildIndexOnLoad(UserInput.getBuildIndexOnLoad());
+                break;
+            case 3:
+                System.out.println("\nCandidate list size while searching (efSearch):");
+                usedModel.setIndexEfSearch(UserInput.getSelectionBetween(usedModel.getClosestWordSize(),
+                        DefaultSettingValues.INDEX_EF_CAP));
+                break;
+            case 4:
+                final double recall = usedModel.measureIndexRecall(DefaultSettingValues.INDEX_RECALL_SAMPLE_SIZE);
+                if (recall >= 0.0d) {
+                    log.info("Recall@" + usedModel.getClosestWordSize() + " of " + name + " index: " + recall);
+                }
+                break;
+            case 5:
+                try {
+                    final Path path = FileActions.getUniquePathForGivenFileName(
+                            name + "_index", "hnsw_" + name);
+                    if (usedModel.saveNearestNeighbourIndex(path.toFile())) {
+                        log.info(name + " index is saved to: " + path.toAbsolutePath());
+                    }
+                } catch (IOException e) {
+                    log.error("Index file could not be created!", e);
+                }
+                break;
+            case 6:
+                final String indexPath = UserInput.getPathOfExistingFile("index file");
+                if (indexPath != null) {
+                    try {
+                        usedModel.loadNearestNeighbourIndex(new File(indexPath));
+                    } catch (IOException e) {
+                        log.error("Index could not be loaded from: " + indexPath, e);
+                    }
+                }
+                break;
+            case 7:
+                usedModel.dropNearestNeighbourIndex();
+                break;
+            default:
+                log.warn("Invalid selection for index: " + option);
+        }
+    }
+
     public void resetModelParams() {
 
+        this.waitForBackgroundLoading();
         usedModel.resetParams();
     }
 
@@ -380,7 +814,7 @@ public class ApplicationController {
 
     public void getNearestOfInputWord() {
 
-        if (usedModel.isModelReady()) {
+        if (this.isModelReadyAfterLoading()) {
             final String wordInput = UserInput.getWordInput();
             if (wordInput != null) {
                 if (usedModel.hasWord(wordInput)) {
@@ -402,7 +836,7 @@ public class ApplicationController {
 
     public void printTotalWordSizeInModelVocab() {
 
-        if (usedModel.isModelReady()) {
+        if (this.isModelReadyAfterLoading()) {
             log.info(usedModel.getName() + " has "
                     + usedModel.getTotalWordSizeInVocab() + " words in total.");
         } else {
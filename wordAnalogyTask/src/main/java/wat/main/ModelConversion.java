@@ -0,0 +1,214 @@
+package wat.main;
+
+import edu.mit.jwi.data.ILoadPolicy;
+import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wat.file.FileActions;
+import wat.training.model.store.EmbeddingStore;
+import wat.training.model.store.NativeModelFile;
+import wat.training.model.store.NativeModelWriter;
+import wat.training.model.store.PretrainedVectors;
+import wat.wordnet.WordNetUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+/**
+ * converts a pretrained model into {@link NativeModelFile native format} once, so the menu
+ * application opens it quickly every time after that. text and binary vectors are streamed
+ * row by row, only the vocabulary and a few blocks are kept in memory.
+ * <p>
+ * usage: input output [--normalize] [--max-words N] [--wordnet-lemmas] [--layout mapped|blocks|compressed]
+ */
+public class ModelConversion {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelConversion.class);
+
+    private static final String NORMALIZE_ARGUMENT = "--normalize";
+    private static final String MAX_WORDS_ARGUMENT = "--max-words";
+    private static final String WORDNET_LEMMAS_ARGUMENT = "--wordnet-lemmas";
+    private static final String LAYOUT_ARGUMENT = "--layout";
+
+    private final File output;
+    private final boolean normalize;
+    private final int maxWords;
+    private final int layout;
+    private final Set<String> lemmas;
+
+    private NativeModelWriter writer = null;
+    private long visited = 0L;
+
+    private ModelConversion(final File output, final boolean normalize, final int maxWords, final int layout,
+            final Set<String> lemmas) {
+
+        this.output = output;
+        this.normalize = normalize;
+        this.maxWords = maxWords;
+        this.layout = layout;
+        this.lemmas = lemmas;
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 2) {
+            log.error("Usage: <input> <output> [" + NORMALIZE_ARGUMENT + "] [" + MAX_WORDS_ARGUMENT + " N] ["
+                    + WORDNET_LEMMAS_ARGUMENT + "] [" + LAYOUT_ARGUMENT + " mapped|blocks|compressed]");
+            System.exit(1);
+        }
+        final File input = new File(args[0]);
+        if (!FileActions.isPathValid(args[0])) {
+            log.error(args[0] + " is not a valid path.");
+            System.exit(1);
+        }
+
+        boolean normalize = false;
+        boolean onlyLemmas = false;
+        int maxWords = 0;
+        int layout = NativeModelFile.LAYOUT_MAPPED;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case NORMALIZE_ARGUMENT:
+                    normalize = true;
+                    break;
+                case WORDNET_LEMMAS_ARGUMENT:
+                    onlyLemmas = true;
+                    break;
+                case MAX_WORDS_ARGUMENT:
+                    maxWords = Integer.parseInt(args[++i]);
+                    break;
+                case LAYOUT_ARGUMENT:
+                    layout = parseLayout(args[++i]);
+                    break;
+                default:
+                    log.error("Unknown argument: " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        Set<String> lemmas = null;
+        if (onlyLemmas) {
+            final String wordNetDictHome = System.getenv("WORDNET_PATH");
+            if (wordNetDictHome == null || !FileActions.isPathValid(wordNetDictHome)) {
+                log.error("WORDNET_PATH does not have a valid path, thus WordNet could not be found!");
+                System.exit(1);
+            }
+            final WordNetUtil wordNetUtil = new WordNetUtil(wordNetDictHome, ILoadPolicy.NO_LOAD);
+            lemmas = wordNetUtil.getAllLemmas();
+            wordNetUtil.closeDictionary();
+        }
+
+        new ModelConversion(new File(args[1]), normalize, maxWords, layout, lemmas).convert(input);
+    }
+
+    private static int parseLayout(final String layout) {
+
+        switch (layout) {
+            case "mapped":
+                return NativeModelFile.LAYOUT_MAPPED;
+            case "blocks":
+                return NativeModelFile.LAYOUT_BLOCKS;
+            case "compressed":
+                return NativeModelFile.LAYOUT_COMPRESSED_BLOCKS;
+            default:
+                throw new IllegalArgumentException("Unknown layout: " + layout);
+        }
+    }
+
+    private void convert(final File input) throws IOException {
+
+        final long start = System.currentTimeMillis();
+        try {
+            if (NativeModelFile.isNativeFile(input)) {
+                this.convertNativeFile(input);
+            } else if (isZipFile(input)) {
+                this.convertDl4jModel(input);
+            } else {
+                PretrainedVectors.stream(input, 0, this::addRow);
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        if (writer == null) {
+            log.warn("No word is written, " + output.getName() + " is not created.");
+            return;
+        }
+        final double seconds = Math.max(1L, System.currentTimeMillis() - start) / 1000.0d;
+        log.info(writer.size() + " of " + visited + " words are converted from " + input.getName() + " to "
+                + output.getName() + " in " + String.format("%.2f", seconds) + " seconds, "
+                + String.format("%.1f", input.length() / (1024.0d * 1024.0d) / seconds) + " MB/s.");
+    }
+
+    /**
+     * rows are read one by one, file can be rewritten with another layout or fewer words.
+     */
+    private void convertNativeFile(final File input) throws IOException {
+
+        final NativeModelFile model = NativeModelFile.open(input, 0);
+        final float[] vector = new float[model.getDimensions()];
+        for (int i = 0; i < model.size(); i++) {
+            model.copyRow(i, vector);
+            if (!this.addRow(model.wordAt(i), vector)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * dl4j zip cannot be streamed, so it is loaded without its training state and then visited.
+     */
+    private void convertDl4jModel(final File input) throws IOException {
+
+        log.warn(input.getName() + " is a dl4j model, it is loaded into memory before it is converted.");
+        final Word2Vec model = WordVectorSerializer.readWord2VecModel(input, false);
+        final VocabCache<VocabWord> vocab = model.vocab();
+        final INDArray weights = model.lookupTable().getWeights();
+        final float[] vector = new float[weights.columns()];
+        for (int i = 0; i < vocab.numWords(); i++) {
+            final INDArray row = weights.getRow(i);
+            for (int j = 0; j < vector.length; j++) {
+                vector[j] = row.getFloat(j);
+            }
+            if (!this.addRow(vocab.wordAtIndex(i), vector)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return false when max words are written, so reading can stop.
+     */
+    private boolean addRow(final String word, final float[] vector) throws IOException {
+
+        visited++;
+        if (lemmas != null && !lemmas.contains(word)) {
+            return true;
+        }
+        if (writer == null) {
+            // boyut ilk satırda belli oluyor
+            writer = new NativeModelWriter(output, vector.length, normalize, layout);
+        }
+        if (normalize) {
+            EmbeddingStore.normalizeRow(vector, 0, vector.length);
+        }
+        writer.addRow(word, vector);
+        return maxWords <= 0 || writer.size() < maxWords;
+    }
+
+    private static boolean isZipFile(final File file) throws IOException {
+
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() == 'P' && in.read() == 'K';
+        }
+    }
+
+}
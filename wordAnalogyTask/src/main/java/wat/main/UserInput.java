@@ -3,6 +3,7 @@ package wat.main;
 import wat.file.FileActions;
 
 import java.util.InputMismatchException;
+import java.util.List;
 import java.util.Scanner;
 
 public class UserInput {
@@ -61,8 +62,11 @@ public class UserInput {
         System.out.println("* 15-) change level of root logger       *");
         System.out.println("* 16-) log free, total and max memory    *");
         System.out.println("* 17-) options for logging WordNet       *");
+        System.out.println("* 18-) load WordNet and model together   *");
+        System.out.println("* 19-) switch to a model kept in memory  *");
+        System.out.println("* 20-) resume evaluation of model        *");
         System.out.println("******************************************");
-        return UserInput.getSelectionBetween(0, 17);
+        return UserInput.getSelectionBetween(0, 20);
     }
 
     public static int getPOSSelection() {
@@ -74,8 +78,9 @@ public class UserInput {
         System.out.println("3 for adjective");
         System.out.println("4 for adverb");
         System.out.println("5 for all");
+        System.out.println("6 for a random sample of all");
         System.out.println("******************");
-        return UserInput.getSelectionBetween(0, 5);
+        return UserInput.getSelectionBetween(0, 6);
     }
 
     public static int getCorpusType() {
@@ -84,8 +89,10 @@ public class UserInput {
         System.out.println("0 to cancel");
         System.out.println("1 to build model by training corpus");
         System.out.println("2 to use an already trained model");
+        System.out.println("3 to use only the most frequent words of an already trained model");
+        System.out.println("4 to use an already trained model with its training state to train it further");
         System.out.println("**************************************");
-        return UserInput.getSelectionBetween(0, 2);
+        return UserInput.getSelectionBetween(0, 4);
     }
 
     public static int getListingOptions() {
@@ -109,8 +116,24 @@ public class UserInput {
         System.out.println("0 to cancel");
         System.out.println("1 for glove");
         System.out.println("2 for word2vec");
+        System.out.println("3 for embedding store (only pretrained)");
         System.out.println("****************");
-        return UserInput.getSelectionBetween(0, 2);
+        return UserInput.getSelectionBetween(0, 3);
+    }
+
+    /**
+     * @param models one line for every model, the least recently used one first.
+     * @return 1-based index of the selected model, 0 to cancel.
+     */
+    public static int getResidentModelSelection(final List<String> models) {
+
+        System.out.println("\n****************");
+        System.out.println("0 to cancel");
+        for (int i = 0; i < models.size(); i++) {
+            System.out.println((i + 1) + " for " + models.get(i));
+        }
+        System.out.println("****************");
+        return UserInput.getSelectionBetween(0, models.size());
     }
 
     public static String getNewPathForCorpus() {
@@ -124,6 +147,17 @@ public class UserInput {
         return selection;
     }
 
+    public static String getPathOfExistingFile(String fileDescription) {
+
+        String selection;
+        do {
+            System.out.println("\nEnter a valid path for " + fileDescription + " or enter 'c' to cancel.");
+            selection = UserInput.getStringInput();
+        } while (selection != null && (selection.isEmpty() || !FileActions.isPathValid(selection)));
+
+        return selection;
+    }
+
     public static String getWordInput() {
 
         System.out.println("\nEnter a word or enter 'c' to cancel.");
@@ -167,8 +201,18 @@ public class UserInput {
         System.out.println("4 for iteration cap of a pointer while doing analogy test");
         System.out.println("5 for resetting iteration cap to default value");
         System.out.println("6 for resetting base sensitivity, closest word size and max score");
+        System.out.println("7 for including or excluding phrases");
+        System.out.println("8 for how many analogy queries are sent to model at once");
+        System.out.println("9 for approximate nearest neighbour index of the model");
+        System.out.println("10 for how vectors are kept in memory (float, half float or int8)");
+        System.out.println("11 for how many word pair similarities are cached, 0 disables cache");
+        System.out.println("12 for searching analogy answers only among WordNet lemmas");
+        System.out.println("13 for memory budget of models that are kept in memory together");
+        System.out.println("14 for how many threads calculate scores");
+        System.out.println("15 for calculating analogy by compiled plan of WordNet");
+        System.out.println("16 for calculating similarity of compared words for a pointer at once");
         System.out.println("**********************************************************************");
-        return UserInput.getSelectionBetween(0, 6);
+        return UserInput.getSelectionBetween(0, 16);
     }
 
     public static int getParamType() {
@@ -247,6 +291,67 @@ public class UserInput {
         return UserInput.getSelectionBetween(0, 1) == 1;
     }
 
+    public static int getIndexOption() {
+
+        System.out.println("\n*****************************************************************");
+        System.out.println("0 to cancel");
+        System.out.println("1 to build index now");
+        System.out.println("2 to choose if index is built every time model is loaded");
+        System.out.println("3 to change efSearch, higher means better recall but slower queries");
+        System.out.println("4 to measure recall of index against comparing every word");
+        System.out.println("5 to save index");
+        System.out.println("6 to load a saved index");
+        System.out.println("7 to drop index and compare every word again");
+        System.out.println("*****************************************************************");
+        return UserInput.getSelectionBetween(0, 7);
+    }
+
+    public static boolean getBuildIndexOnLoad() {
+
+        System.out.println("0 to build index only when it is asked (default)");
+        System.out.println("1 to build index every time model is trained or loaded");
+        return UserInput.getSelectionBetween(0, 1) == 1;
+    }
+
+    public static int getVectorStorage() {
+
+        System.out.println("1 for float, 4 bytes for a value (default)");
+        System.out.println("2 for half float, 2 bytes for a value");
+        System.out.println("3 for int8 codes re-ranked with float query, 1 byte for a value");
+        return UserInput.getSelectionBetween(1, 3);
+    }
+
+    public static int getSaveFormat() {
+
+        System.out.println("1 to save in the format of the model (default)");
+        System.out.println("2 to save in native format that is memory-mapped when it is loaded");
+        System.out.println("3 to save in native format as blocks with checksums, written in parallel");
+        System.out.println("4 to save in native format as compressed blocks with checksums, written in parallel");
+        return UserInput.getSelectionBetween(1, 4);
+    }
+
+    public static boolean getCandidateRestriction() {
+
+        System.out.println("0 to search analogy answers in whole vocabulary of model (default)");
+        System.out.println("1 to search analogy answers only among valid WordNet lemmas");
+        return UserInput.getSelectionBetween(0, 1) == 1;
+    }
+
+    public static boolean getAnalogyPlanOption() {
+
+        System.out.println("0 to walk WordNet for every analogy calculation");
+        System.out.println("1 to compile analogy task of WordNet once and reuse it for every model (default)");
+        return UserInput.getSelectionBetween(0, 1) == 1;
+    }
+
+    public static boolean getSimilarityPreFilterOption() {
+
+        System.out.println("0 to ask similarity of every compared word to model one by one");
+        System.out.println("1 to calculate similarity of root with all words of a pointer at once (default)");
+        System.out.println("  (dl4j models use it only if a float store is already built for candidates or index)");
+        return UserInput.getSelectionBetween(0, 1) == 1;
+    }
+
     public static int getLogLevel() {
 
         System.out.println("0 to cancel");
@@ -13,6 +13,11 @@ public class WordAnalogyTask {
 
     private static final Logger log = LoggerFactory.getLogger(WordAnalogyTask.class);
 
+    /**
+     * starts loading WordNet and pretrained model in background as soon as the program starts.
+     */
+    private static final String PRELOAD_ARGUMENT = "--preload";
+
     public static void main(String[] args) throws IOException, ModelBuildException {
 
         final String wordNetDictHome = System.getenv("WORDNET_PATH");
@@ -24,6 +29,10 @@ public class WordAnalogyTask {
         log.info("Application started. WordNet home: " + wordNetDictHome
                 + " Java home: " + System.getenv("JAVA_HOME"));
         final ApplicationController controller = new ApplicationController(wordNetDictHome);
+        if (args.length > 0 && PRELOAD_ARGUMENT.equals(args[0])) {
+            // WordNet ve DEFAULT_CORPUS_PATH'teki model menü beklenmeden yükleniyor
+            controller.loadInBackground();
+        }
         for (; ; ) {
             try {
                 log.info("Using " + controller.getUsedModelName());
@@ -134,6 +143,18 @@ public class WordAnalogyTask {
                             controller.listBySelection(listing);
                         }
                         break;
+                    case 18:
+                        // load WordNet and pretrained model in parallel
+                        controller.loadInBackground();
+                        break;
+                    case 19:
+                        // models that are loaded before are kept in memory or in cache
+                        controller.useResidentModel();
+                        break;
+                    case 20:
+                        // continue an evaluation from its last checkpoint
+                        controller.resumeEvaluation();
+                        break;
                     default:
                         log.warn("Wrong input!");
                 }
@@ -0,0 +1,35 @@
+package wat.training.model;
+
+import java.util.List;
+
+/**
+ * one 3CosAdd query for {@link BaseModelInt#getClosestWordsBatch(List)},
+ * same as the arguments of {@link BaseModelInt#getClosestWords(List, List)}.
+ */
+public class AnalogyQuery {
+
+    private final List<String> positive;
+    private final List<String> negative;
+
+    public AnalogyQuery(final List<String> positive, final List<String> negative) {
+
+        this.positive = positive;
+        this.negative = negative;
+    }
+
+    public List<String> getPositive() {
+
+        return positive;
+    }
+
+    public List<String> getNegative() {
+
+        return negative;
+    }
+
+    public String toString() {
+
+        return positive + " - " + negative;
+    }
+
+}
@@ -1,9 +1,41 @@
 package wat.training.model;
 
+import org.deeplearning4j.models.embeddings.WeightLookupTable;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wat.exceptions.ModelBuildException;
+import wat.helper.Constants;
 import wat.helper.DefaultSettingValues;
+import wat.training.model.store.CandidateSubset;
+import wat.training.model.store.EmbeddingStore;
+import wat.training.model.store.HnswIndex;
+import wat.training.model.store.PretrainedVectors;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public abstract class BaseModel implements BaseModelInt {
 
+    private static final Logger log = LoggerFactory.getLogger(BaseModel.class);
+
+    /**
+     * approximate heap size of a word in vocabulary with its string, map entry and index.
+     */
+    private static final int BYTES_PER_VOCABULARY_WORD = 96;
+
+    /**
+     * approximate heap size of a pair in similarity cache with its linked map entry, table slot,
+     * pair key and boxed similarity. words of the pair are strings of WordNet, they are not counted.
+     */
+    private static final int BYTES_PER_CACHED_SIMILARITY = 96;
+
     /**
      * raw text file if model is to built. csv, binary or
      * dl4j compressed file can be set if model is prebuilt.
@@ -16,12 +48,208 @@ public abstract class BaseModel implements BaseModelInt {
      */
     protected int closestWordSize = DefaultSettingValues.CLOSEST_WORD_SIZE;
 
+    /**
+     * only the first (most frequent) words of a pretrained file are loaded if it is
+     * greater than 0, 0 loads all words.
+     */
+    protected int maxVocabularySize = DefaultSettingValues.MAX_VOCABULARY_SIZE;
+
+    /**
+     * queries need only the vectors and the vocabulary, output weights, huffman codes and
+     * frequencies of a pretrained model are loaded only if it will be trained further.
+     */
+    protected boolean loadTrainingState = DefaultSettingValues.LOAD_TRAINING_STATE;
+
+    /**
+     * approximate nearest neighbour index, closest and nearest words are
+     * searched in it instead of comparing with every word when it is set.
+     */
+    protected volatile HnswIndex nearestNeighbourIndex = null;
+
+    /**
+     * normalized copy of model's vectors, it is created only when raw rows of the model are needed
+     * (e.g. for building index). for dl4j models this doubles the memory used by vectors.
+     */
+    private volatile EmbeddingStore embeddingStore = null;
+
+    /**
+     * when it is set, analogy queries are searched only in these rows instead of the whole vocabulary.
+     */
+    protected volatile CandidateSubset candidateSubset = null;
+
+    /**
+     * how vectors of the model are kept in {@link EmbeddingStore}, float, half float or int8.
+     */
+    protected int vectorStorage = Constants.VECTORS_AS_FLOAT;
+
+    /**
+     * similarities that are already calculated by model, it is cleared when model changes.
+     */
+    protected final SimilarityCache similarityCache = new SimilarityCache(DefaultSettingValues.SIMILARITY_CACHE_SIZE);
+
+    /**
+     * words of the pretrained model whose vectors are still loading, {@link #hasWord(String)} answers
+     * from it until vectors are loaded, so WordNet lemmas can be filtered in the meantime.
+     */
+    private volatile Set<String> loadingVocabulary = null;
+
+    /**
+     * increased every time model is trained or loaded, so anything that is
+     * built for the previous vectors can tell that it is out of date.
+     */
+    private volatile int modelVersion = 0;
+
+    private boolean buildIndexOnLoad = false;
+    private int indexM = DefaultSettingValues.INDEX_M;
+    private int indexEfConstruction = DefaultSettingValues.INDEX_EF_CONSTRUCTION;
+    private int indexEfSearch = DefaultSettingValues.INDEX_EF_SEARCH;
+
     @Override
     public void setCorpusPath(String corpusPath) {
 
         this.corpusPath = corpusPath;
     }
 
+    @Override
+    public String getCorpusPath() {
+
+        return corpusPath;
+    }
+
+    /**
+     * @return empty model of the same type with the same settings, so another model can be
+     * loaded while this one stays in memory.
+     */
+    @Override
+    public BaseModelInt newEmptyModel() {
+
+        final BaseModel model = this.createEmptyModel();
+        model.corpusPath = corpusPath;
+        model.closestWordSize = closestWordSize;
+        model.maxVocabularySize = maxVocabularySize;
+        model.loadTrainingState = loadTrainingState;
+        model.vectorStorage = vectorStorage;
+        model.buildIndexOnLoad = buildIndexOnLoad;
+        model.indexM = indexM;
+        model.indexEfConstruction = indexEfConstruction;
+        model.indexEfSearch = indexEfSearch;
+        model.similarityCache.setCapacity(similarityCache.getCapacity());
+        return model;
+    }
+
+    /**
+     * @return new model of the same type, training params can be shared with it.
+     */
+    protected abstract BaseModel createEmptyModel();
+
+    /**
+     * vectors of the model, its normalized copy, index and vocabulary are counted.
+     *
+     * @return approximate heap size of the model, 0 if it is not ready.
+     */
+    @Override
+    public long estimateMemoryFootprint() {
+
+        if (!this.isModelReady()) {
+            return 0L;
+        }
+        long bytes = this.getVectorsSizeInBytes() + (long) BYTES_PER_VOCABULARY_WORD * this.getTotalWordSizeInVocab();
+        final EmbeddingStore store = embeddingStore;
+        if (store != null && this.isEmbeddingStoreCopied()) {
+            bytes += store.sizeInBytes();
+        }
+        final HnswIndex index = nearestNeighbourIndex;
+        if (index != null) {
+            bytes += index.sizeInBytes();
+        }
+        return bytes + (long) BYTES_PER_CACHED_SIMILARITY * similarityCache.size();
+    }
+
+    /**
+     * @return approximate heap size of the vectors that model is built with.
+     */
+    protected abstract long getVectorsSizeInBytes();
+
+    /**
+     * @return false if {@link #createEmbeddingStore()} gives vectors of the model itself, not a copy.
+     */
+    protected boolean isEmbeddingStoreCopied() {
+
+        return true;
+    }
+
+    /**
+     * drops vectors and everything built from them, so their memory can be used by another model.
+     * model can be loaded again from a file after that.
+     */
+    @Override
+    public void releaseModel() {
+
+        this.releaseVectors();
+        modelVersion++;
+        loadingVocabulary = null;
+        embeddingStore = null;
+        nearestNeighbourIndex = null;
+        candidateSubset = null;
+        similarityCache.clear();
+        log.info("Vectors of " + this.getName() + " are released.");
+    }
+
+    protected abstract void releaseVectors();
+
+    /**
+     * @return size of the vectors and output weights of a dl4j lookup table, if they are loaded.
+     */
+    protected static long sizeOfLookupTable(final WeightLookupTable<?> table) {
+
+        long bytes = 4L * table.getWeights().length();
+        if (table instanceof InMemoryLookupTable) {
+            final InMemoryLookupTable<?> inMemory = (InMemoryLookupTable<?>) table;
+            if (inMemory.getSyn1() != null) {
+                bytes += 4L * inMemory.getSyn1().length();
+            }
+            if (inMemory.getSyn1Neg() != null) {
+                bytes += 4L * inMemory.getSyn1Neg().length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * used the next time a pretrained model is loaded.
+     *
+     * @param maxVocabularySize 0 to load all words.
+     */
+    @Override
+    public void setMaxVocabularySize(int maxVocabularySize) {
+
+        this.maxVocabularySize = maxVocabularySize;
+    }
+
+    @Override
+    public int getMaxVocabularySize() {
+
+        return maxVocabularySize;
+    }
+
+    /**
+     * used the next time a pretrained model is loaded, models that cannot keep training
+     * state ignore it.
+     *
+     * @param loadTrainingState false to load only what queries need.
+     */
+    @Override
+    public void setLoadTrainingState(boolean loadTrainingState) {
+
+        this.loadTrainingState = loadTrainingState;
+    }
+
+    @Override
+    public boolean isLoadTrainingState() {
+
+        return loadTrainingState;
+    }
+
     @Override
     public int getClosestWordSize() {
 
@@ -41,4 +269,444 @@ public abstract class BaseModel implements BaseModelInt {
         }
     }
 
+    /**
+     * models that cannot answer many queries at once send them one by one.
+     *
+     * @param queries
+     * @return closest words for each query in the same order.
+     */
+    @Override
+    public List<List<String>> getClosestWordsBatch(List<AnalogyQuery> queries) {
+
+        final List<List<String>> result = new ArrayList<>(queries.size());
+        for (AnalogyQuery query : queries) {
+            result.add(this.getClosestWords(query.getPositive(), query.getNegative()));
+        }
+        return result;
+    }
+
+    /**
+     * similarity of a pair is calculated by model only once while it stays in cache,
+     * order of the words does not matter.
+     *
+     * @param firstWord
+     * @param secondWord
+     * @return cosine value [-1,1] for proximity, NaN if any of the words does not exist.
+     */
+    @Override
+    public double getSimilarity(final String firstWord, final String secondWord) {
+
+        final Double cached = similarityCache.get(firstWord, secondWord);
+        if (cached != null) {
+            return cached;
+        }
+        final double result = this.calculateSimilarity(firstWord, secondWord);
+        similarityCache.put(firstWord, secondWord, result);
+        return result;
+    }
+
+    /**
+     * similarity is calculated by model, it is not looked up in cache or put into it.
+     *
+     * @return cosine value [-1,1] for proximity, NaN if any of the words does not exist.
+     */
+    @Override
+    public double getUncachedSimilarity(final String firstWord, final String secondWord) {
+
+        return this.calculateSimilarity(firstWord, secondWord);
+    }
+
+    /**
+     * rows of a dl4j model are in a store that is a copy of its vectors, it is not created only to compare
+     * rows. half float and int8 rows of a copied store give other similarities than the model, so only
+     * float rows are compared. store of a model that keeps its vectors only in the store is always used,
+     * its similarities are calculated from the same rows.
+     *
+     * @return true if {@link #similaritiesOfRows} gives similarities of the model without copying vectors.
+     */
+    @Override
+    public boolean canCompareRows() {
+
+        if (!this.isEmbeddingStoreCopied()) {
+            return true;
+        }
+        return embeddingStore != null && vectorStorage == Constants.VECTORS_AS_FLOAT;
+    }
+
+    /**
+     * rows are valid till the model changes, they can be compared by {@link #similaritiesOfRows}.
+     *
+     * @param words
+     * @return rows of the words in contiguous store of the model, -1 for words that do not exist.
+     */
+    @Override
+    public int[] rowsOf(final List<String> words) {
+
+        final EmbeddingStore store = this.getEmbeddingStore();
+        final int[] rows = new int[words.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = store.indexOf(words.get(i));
+        }
+        return rows;
+    }
+
+    /**
+     * similarities of one word with many words by one pass over their rows, instead of asking
+     * {@link #getSimilarity(String, String)} for every pair. results are not put in cache.
+     *
+     * @param row  row of the word that is compared, it should not be -1.
+     * @param rows rows that are returned by {@link #rowsOf(List)}, -1 is not accepted.
+     * @param from first index of rows.
+     * @param to   index after the last one.
+     * @param dest dest[i - from] gets similarity with rows[i].
+     */
+    @Override
+    public void similaritiesOfRows(final int row, final int[] rows, final int from, final int to,
+            final float[] dest) {
+
+        this.getEmbeddingStore().similarities(row, rows, from, to, dest);
+    }
+
+    /**
+     * asks the model for similarity without looking at cache.
+     */
+    protected abstract double calculateSimilarity(String firstWord, String secondWord);
+
+    /**
+     * vocabulary that is read before the vectors is used while vectors are loading.
+     *
+     * @param word
+     * @return true if word has a vector in the model.
+     */
+    @Override
+    public boolean hasWord(final String word) {
+
+        final Set<String> vocabulary = loadingVocabulary;
+        if (vocabulary != null) {
+            return vocabulary.contains(word);
+        }
+        return this.containsWord(word);
+    }
+
+    /**
+     * checks vocabulary of the model that is built or loaded.
+     */
+    protected abstract boolean containsWord(String word);
+
+    /**
+     * first phase of loading a pretrained model, only the words of corpus path are read and
+     * {@link #hasWord(String)} can answer before vectors are loaded by {@link #createModel(int)}.
+     * model version is increased here instead of when vectors are loaded, so anything that is
+     * built from vocabulary meanwhile stays valid.
+     *
+     * @return false if words of the file cannot be read without its vectors.
+     */
+    @Override
+    public boolean loadVocabulary() throws ModelBuildException {
+
+        this.validateCorpusPath();
+        final long start = System.currentTimeMillis();
+        final String[] words;
+        try {
+            words = PretrainedVectors.readVocabulary(new File(corpusPath), maxVocabularySize);
+        } catch (IOException e) {
+            log.error("Vocabulary could not be read from: " + corpusPath);
+            throw new ModelBuildException(e);
+        }
+        if (words == null) {
+            log.info("Vocabulary of " + corpusPath + " cannot be read before its vectors.");
+            return false;
+        }
+        final Set<String> vocabulary = new HashSet<>(words.length * 4 / 3 + 1);
+        Collections.addAll(vocabulary, words);
+        modelVersion++;
+        embeddingStore = null;
+        nearestNeighbourIndex = null;
+        candidateSubset = null;
+        similarityCache.clear();
+        loadingVocabulary = vocabulary;
+        log.info(vocabulary.size() + " words of " + this.getName() + " are ready in "
+                + (System.currentTimeMillis() - start) + " ms, vectors are not loaded yet.");
+        return true;
+    }
+
+    /**
+     * @return true if {@link #hasWord(String)} can answer, vectors may still be loading.
+     */
+    @Override
+    public boolean isVocabularyReady() {
+
+        return loadingVocabulary != null || this.isModelReady();
+    }
+
+    /**
+     * should be called if vectors could not be loaded after {@link #loadVocabulary()}.
+     */
+    @Override
+    public void dropLoadingVocabulary() {
+
+        loadingVocabulary = null;
+    }
+
+    @Override
+    public int getModelVersion() {
+
+        return modelVersion;
+    }
+
+    @Override
+    public SimilarityCache getSimilarityCache() {
+
+        return similarityCache;
+    }
+
+    /**
+     * @return vectors of the model as normalized rows in a contiguous array.
+     */
+    protected abstract EmbeddingStore createEmbeddingStore();
+
+    protected EmbeddingStore getEmbeddingStore() {
+
+        EmbeddingStore current = embeddingStore;
+        if (current == null) {
+            synchronized (this) {
+                current = embeddingStore;
+                if (current == null) {
+                    log.info("Copying vectors of " + this.getName() + " into a contiguous store...");
+                    current = this.createEmbeddingStore();
+                    embeddingStore = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * should be called after model is trained or loaded, anything that is
+     * derived from the vectors of previous model is dropped here.
+     */
+    protected void modelChanged() {
+
+        final Set<String> vocabulary = loadingVocabulary;
+        // kelimeler önceden yüklendiyse sürüm o zaman artırıldı, aynı kelimeler geldiyse tekrar artmıyor
+        if (vocabulary == null || vocabulary.size() != this.getTotalWordSizeInVocab()) {
+            modelVersion++;
+        }
+        loadingVocabulary = null;
+        embeddingStore = null;
+        nearestNeighbourIndex = null;
+        candidateSubset = null;
+        similarityCache.clear();
+        if (buildIndexOnLoad) {
+            this.buildNearestNeighbourIndex(indexM, indexEfConstruction);
+        }
+    }
+
+    /**
+     * derived store and its index are dropped, so they are created again with new storage
+     * when they are needed. models that keep vectors only in the store should override this.
+     *
+     * @param vectorStorage one of vector storage constants in {@link Constants}.
+     */
+    @Override
+    public void setVectorStorage(int vectorStorage) {
+
+        this.vectorStorage = vectorStorage;
+        embeddingStore = null;
+        nearestNeighbourIndex = null;
+        candidateSubset = null;
+    }
+
+    @Override
+    public int getVectorStorage() {
+
+        return vectorStorage;
+    }
+
+    /**
+     * closest words of analogy queries are searched only among given words after this call,
+     * until model changes or restriction is cleared.
+     *
+     * @param words candidate words, the ones that are not in vocabulary are skipped.
+     */
+    @Override
+    public void restrictCandidates(final Collection<String> words) {
+
+        if (this.isModelReady()) {
+            candidateSubset = CandidateSubset.build(this.getEmbeddingStore(), words, vectorStorage,
+                    DefaultSettingValues.CANDIDATE_CHECK_INTERVAL);
+        } else {
+            log.warn(this.getName() + " is not created, candidates cannot be restricted.");
+        }
+    }
+
+    @Override
+    public void clearCandidateRestriction() {
+
+        candidateSubset = null;
+    }
+
+    /**
+     * @return null if analogy queries are searched in the whole vocabulary.
+     */
+    @Override
+    public CandidateSubset getCandidateSubset() {
+
+        return candidateSubset;
+    }
+
+    /**
+     * @param m              max neighbours of a word in index.
+     * @param efConstruction candidate list size while building index.
+     */
+    @Override
+    public void buildNearestNeighbourIndex(int m, int efConstruction) {
+
+        if (this.isModelReady()) {
+            this.indexM = m;
+            this.indexEfConstruction = efConstruction;
+            log.info("Building nearest neighbour index for " + this.getName() + " with M: " + m
+                    + ", efConstruction: " + efConstruction);
+            nearestNeighbourIndex = HnswIndex.build(this.getEmbeddingStore(), m, efConstruction,
+                    indexEfSearch, DefaultSettingValues.INDEX_SEED);
+        } else {
+            log.warn(this.getName() + " is not created, index cannot be built.");
+        }
+    }
+
+    /**
+     * @param file index that is saved for the same model before.
+     */
+    @Override
+    public void loadNearestNeighbourIndex(File file) throws IOException {
+
+        if (this.isModelReady()) {
+            long start = System.currentTimeMillis();
+            nearestNeighbourIndex = HnswIndex.load(file, this.getEmbeddingStore(), indexEfSearch);
+            log.info("Nearest neighbour index is loaded in "
+                    + (System.currentTimeMillis() - start) / 1000 + " seconds.");
+        } else {
+            log.warn(this.getName() + " is not created, index cannot be loaded.");
+        }
+    }
+
+    /**
+     * @return false if there is no index or it could not be written.
+     */
+    @Override
+    public boolean saveNearestNeighbourIndex(File file) {
+
+        final HnswIndex index = nearestNeighbourIndex;
+        if (index == null) {
+            log.warn(this.getName() + " does not have an index to save.");
+            return false;
+        }
+        try {
+            index.save(file);
+            return true;
+        } catch (IOException e) {
+            log.error("Index could not be written to: " + file.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public void dropNearestNeighbourIndex() {
+
+        nearestNeighbourIndex = null;
+        log.info("Queries of " + this.getName() + " will compare every word again.");
+    }
+
+    /**
+     * @param efSearch higher value gives better recall but slower queries.
+     */
+    @Override
+    public void setIndexEfSearch(int efSearch) {
+
+        this.indexEfSearch = efSearch;
+        final HnswIndex index = nearestNeighbourIndex;
+        if (index != null) {
+            index.setEfSearch(efSearch);
+        }
+    }
+
+    /**
+     * @param buildIndexOnLoad true to build index every time model is trained or loaded,
+     *                         with the last used M and efConstruction.
+     */
+    @Override
+    public void setBuildIndexOnLoad(boolean buildIndexOnLoad) {
+
+        this.buildIndexOnLoad = buildIndexOnLoad;
+    }
+
+    /**
+     * @param sampleSize how many random words are searched both in index and in all words.
+     * @return recall@k of the index where k is {@link #closestWordSize}, -1 if there is no index.
+     */
+    @Override
+    public double measureIndexRecall(int sampleSize) {
+
+        final HnswIndex index = nearestNeighbourIndex;
+        if (index == null) {
+            log.warn(this.getName() + " does not have an index.");
+            return -1.0d;
+        }
+        return index.measureRecall(sampleSize, closestWordSize, DefaultSettingValues.INDEX_SEED);
+    }
+
+    /**
+     * @return parameters of the index that change the answers of queries, null if there is no index.
+     */
+    @Override
+    public String describeNearestNeighbourIndex() {
+
+        final HnswIndex index = nearestNeighbourIndex;
+        if (index == null) {
+            return null;
+        }
+        return "hnsw M " + index.getM() + " efConstruction " + index.getEfConstruction()
+                + " efSearch " + index.getEfSearch();
+    }
+
+    /**
+     * 3CosAdd query that is answered by index.
+     */
+    protected List<String> getClosestWordsFromIndex(final HnswIndex index,
+            final List<String> positive, final List<String> negative) {
+
+        final EmbeddingStore store = this.getEmbeddingStore();
+        final float[] query = store.buildQuery(positive, negative);
+        if (query == null) {
+            return Collections.emptyList();
+        }
+        return index.nearest(query, closestWordSize, store.indexesOf(positive, negative));
+    }
+
+    protected List<String> getNearestWordsFromIndex(final HnswIndex index, final String word) {
+
+        final EmbeddingStore store = this.getEmbeddingStore();
+        final int row = store.indexOf(word);
+        if (row < 0) {
+            return Collections.emptyList();
+        }
+        final float[] query = new float[store.getDimensions()];
+        store.copyRow(row, query);
+        return index.nearest(query, closestWordSize, new int[]{row});
+    }
+
+    /**
+     * modifies corpus path if it is not a valid path.
+     */
+    protected void validateCorpusPath() throws ModelBuildException {
+
+        if (corpusPath == null || corpusPath.isEmpty()) {
+            corpusPath = System.getenv("DEFAULT_CORPUS_PATH");
+            if (corpusPath == null || corpusPath.isEmpty()) {
+                throw new ModelBuildException("DEFAULT_CORPUS_PATH is not set!");
+            }
+            log.warn("Setting corpus path to default: " + corpusPath);
+        }
+    }
+
 }
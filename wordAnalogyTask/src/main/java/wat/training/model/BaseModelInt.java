@@ -1,8 +1,10 @@
 package wat.training.model;
 
 import wat.exceptions.ModelBuildException;
+import wat.training.model.store.CandidateSubset;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 
@@ -14,25 +16,89 @@ public interface BaseModelInt {
 
     void setCorpusPath(String corpusPath);
 
+    String getCorpusPath();
+
+    BaseModelInt newEmptyModel();
+
+    long estimateMemoryFootprint();
+
+    void releaseModel();
+
+    void setMaxVocabularySize(int maxVocabularySize);
+
+    int getMaxVocabularySize();
+
+    void setLoadTrainingState(boolean loadTrainingState);
+
+    boolean isLoadTrainingState();
+
     void setClosestWordSize(int closestWordSize);
 
     boolean isModelReady();
 
     boolean hasWord(String word);
 
+    boolean loadVocabulary() throws ModelBuildException;
+
+    boolean isVocabularyReady();
+
+    void dropLoadingVocabulary();
+
     int getTotalWordSizeInVocab();
 
     boolean saveTrainedModel(File file);
 
+    boolean saveNativeModel(File file, int layout);
+
     double getSimilarity(String firstWord, String secondWord);
 
+    double getUncachedSimilarity(String firstWord, String secondWord);
+
+    boolean canCompareRows();
+
+    int[] rowsOf(List<String> words);
+
+    void similaritiesOfRows(int row, int[] rows, int from, int to, float[] dest);
+
+    SimilarityCache getSimilarityCache();
+
+    int getModelVersion();
+
     void resetParams();
 
     List<String> getClosestWords(List<String> positive, List<String> negative);
 
+    List<List<String>> getClosestWordsBatch(List<AnalogyQuery> queries);
+
     List<String> getNearestWords(String word);
 
     int getClosestWordSize();
 
     BaseTrainingParams getParams();
+
+    void setVectorStorage(int vectorStorage);
+
+    int getVectorStorage();
+
+    void restrictCandidates(Collection<String> words);
+
+    void clearCandidateRestriction();
+
+    CandidateSubset getCandidateSubset();
+
+    void buildNearestNeighbourIndex(int m, int efConstruction);
+
+    void loadNearestNeighbourIndex(File file) throws IOException;
+
+    boolean saveNearestNeighbourIndex(File file);
+
+    void dropNearestNeighbourIndex();
+
+    void setIndexEfSearch(int efSearch);
+
+    void setBuildIndexOnLoad(boolean buildIndexOnLoad);
+
+    double measureIndexRecall(int sampleSize);
+
+    String describeNearestNeighbourIndex();
 }
@@ -0,0 +1,288 @@
+package wat.training.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wat.exceptions.ModelBuildException;
+import wat.helper.Constants;
+import wat.training.model.store.NativeModelFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * keeps several loaded models in memory by their keys, so switching between them does not load
+ * them again. total footprint of resident models is kept under a memory budget, the least recently
+ * used model is evicted when it is exceeded. vectors of an evicted model are written to a native
+ * file in cache folder once, it is opened from there when it is used again.
+ */
+public class ModelRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelRegistry.class);
+
+    private static final long MB = 1024L * 1024L;
+
+    private static class Entry {
+
+        private final BaseModelInt model;
+        private final String name;
+        private final String corpusPath;
+        private File cachedFile = null;
+        private int cachedVersion = -1;
+
+        private Entry(final BaseModelInt model) {
+
+            this.model = model;
+            this.name = nameOf(model);
+            this.corpusPath = model.getCorpusPath();
+        }
+    }
+
+    /**
+     * entries are kept in access order, first one is the least recently used.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final File cacheFolder;
+    private long memoryBudget;
+
+    /**
+     * @param memoryBudget bytes that resident models can use in total.
+     * @param cacheFolder  folder to write evicted models, it is created when the first model is evicted.
+     */
+    public ModelRegistry(final long memoryBudget, final File cacheFolder) {
+
+        this.memoryBudget = memoryBudget;
+        this.cacheFolder = cacheFolder;
+    }
+
+    /**
+     * @return name that tells the type, file name and vocabulary limit of the model, it is only shown
+     * to user since files in different folders can have the same name.
+     */
+    public static String nameOf(final BaseModelInt model) {
+
+        final String path = model.getCorpusPath();
+        final String name = model.getName() + ":" + (path == null ? "default" : new File(path).getName());
+        return model.getMaxVocabularySize() > 0 ? name + ":" + model.getMaxVocabularySize() : name;
+    }
+
+    /**
+     * @return key that tells the type, canonical path of the file and vocabulary limit of the model.
+     */
+    public static String keyOf(final BaseModelInt model) {
+
+        final String path = model.getCorpusPath();
+        String file = "default";
+        if (path != null) {
+            try {
+                file = new File(path).getCanonicalPath();
+            } catch (IOException e) {
+                file = new File(path).getAbsolutePath();
+            }
+        }
+        final String key = model.getName() + ":" + file;
+        return model.getMaxVocabularySize() > 0 ? key + ":" + model.getMaxVocabularySize() : key;
+    }
+
+    /**
+     * adds a model that is just loaded or trained and marks it as the most recently used one,
+     * other models are evicted if budget is exceeded. model that has the same key is replaced.
+     */
+    public synchronized void register(final BaseModelInt model) {
+
+        final Entry added = new Entry(model);
+        // aynı model başka bir dosya ile kayıtlıysa eski kayıt geçersiz
+        entries.values().removeIf(entry -> entry.model == model);
+        final Entry previous = entries.put(keyOf(model), added);
+        if (previous != null && previous.model != model && previous.model.isModelReady()) {
+            log.info(previous.name + " is replaced by the same file that is loaded again.");
+            previous.model.releaseModel();
+        }
+        log.info(added.name + " is kept in memory with about " + model.estimateMemoryFootprint() / MB + " MB.");
+        this.evictOverBudget(model, 0L);
+    }
+
+    /**
+     * @return true if model is registered with any name, it should not be loaded with another file then.
+     */
+    public synchronized boolean isRegistered(final BaseModelInt model) {
+
+        for (Entry entry : entries.values()) {
+            if (entry.model == model) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * evicts least recently used models till given bytes fit into budget together with the resident models.
+     *
+     * @param bytes approximate size of a model that is about to be loaded.
+     */
+    public synchronized void makeRoomFor(final long bytes) {
+
+        this.evictOverBudget(null, bytes);
+    }
+
+    /**
+     * @param key key of a registered model, see {@link #getKeys()}.
+     * @return the model, it is opened from its cached file if it is evicted.
+     * @throws ModelBuildException if model cannot be opened again.
+     */
+    public synchronized BaseModelInt use(final String key) throws ModelBuildException {
+
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            throw new ModelBuildException(key + " is not registered.");
+        }
+        if (!entry.model.isModelReady()) {
+            this.reopen(entry);
+        }
+        return entry.model;
+    }
+
+    private void reopen(final Entry entry) throws ModelBuildException {
+
+        final String name = entry.name;
+        final File file = entry.cachedFile != null ? entry.cachedFile : new File(entry.corpusPath);
+        this.evictOverBudget(entry.model, file.length());
+        log.info("Opening " + name + " again from: " + file.getAbsolutePath());
+        final long start = System.currentTimeMillis();
+        if (entry.model.isLoadTrainingState() && entry.cachedFile != null) {
+            log.warn("Training state of " + name + " is not kept in cached file, it can only be queried.");
+        }
+        entry.model.setCorpusPath(file.getPath());
+        try {
+            entry.model.createModel(Constants.CORPUS_IS_PRETRAINED);
+        } finally {
+            // sonraki yüklemeler orijinal dosyadan yapılmalı
+            entry.model.setCorpusPath(entry.corpusPath);
+        }
+        entry.cachedVersion = entry.model.getModelVersion();
+        log.info(name + " is opened in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    /**
+     * @param keep  model that should not be evicted, it can be null.
+     * @param extra bytes that should fit into budget besides resident models.
+     */
+    private void evictOverBudget(final BaseModelInt keep, final long extra) {
+
+        long total = extra + this.getResidentFootprint();
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (total > memoryBudget && iterator.hasNext()) {
+            final Map.Entry<String, Entry> next = iterator.next();
+            final Entry entry = next.getValue();
+            if (entry.model != keep && entry.model.isModelReady()) {
+                final long footprint = entry.model.estimateMemoryFootprint();
+                if (this.cache(next.getKey(), entry)) {
+                    entry.model.releaseModel();
+                    total -= footprint;
+                    log.info(entry.name + " is evicted, " + footprint / MB + " MB is released.");
+                }
+            }
+        }
+        if (total > memoryBudget) {
+            log.warn("Models in memory need about " + total / MB + " MB, memory budget is "
+                    + memoryBudget / MB + " MB.");
+        }
+    }
+
+    /**
+     * native files are opened from where they are. other models are written once for every
+     * version of their vectors.
+     *
+     * @param key key of the entry, file names of models that have the same name are told apart by it.
+     * @return false if model cannot be written, so it should not be evicted.
+     */
+    private boolean cache(final String key, final Entry entry) {
+
+        final String name = entry.name;
+        if (entry.corpusPath != null && entry.cachedFile == null
+                && NativeModelFile.isNativeFile(new File(entry.corpusPath))) {
+            entry.cachedFile = new File(entry.corpusPath);
+            entry.cachedVersion = entry.model.getModelVersion();
+        }
+        if (entry.cachedFile != null && entry.cachedVersion == entry.model.getModelVersion()) {
+            return true;
+        }
+        try {
+            final File file = new File(Files.createDirectories(cacheFolder.toPath()).toFile(),
+                    name.replaceAll("[^A-Za-z0-9._-]", "_") + "_" + Integer.toHexString(key.hashCode())
+                            + NativeModelFile.FILE_EXTENSION);
+            final long start = System.currentTimeMillis();
+            if (!entry.model.saveNativeModel(file, NativeModelFile.LAYOUT_MAPPED)) {
+                return false;
+            }
+            entry.cachedFile = file;
+            entry.cachedVersion = entry.model.getModelVersion();
+            log.info(name + " is cached to " + file.getAbsolutePath() + " in "
+                    + (System.currentTimeMillis() - start) + " ms.");
+            return true;
+        } catch (IOException e) {
+            log.error("Cache folder could not be created, " + name + " is not evicted.", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return approximate heap size of all resident models.
+     */
+    public synchronized long getResidentFootprint() {
+
+        long total = 0L;
+        for (Entry entry : entries.values()) {
+            total += entry.model.estimateMemoryFootprint();
+        }
+        return total;
+    }
+
+    /**
+     * @param memoryBudget bytes that resident models can use in total, models are evicted if it is exceeded.
+     */
+    public synchronized void setMemoryBudget(final long memoryBudget) {
+
+        this.memoryBudget = memoryBudget;
+        this.evictOverBudget(null, 0L);
+    }
+
+    public synchronized long getMemoryBudget() {
+
+        return memoryBudget;
+    }
+
+    /**
+     * @return keys in the order of use, the least recently used one first.
+     */
+    public synchronized List<String> getKeys() {
+
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * @return one line for every model in the order of {@link #getKeys()}, it tells the file of the model
+     * and if it is in memory or in which file it is cached.
+     */
+    public synchronized List<String> describe() {
+
+        final List<String> lines = new ArrayList<>(entries.size());
+        // erişim sırası bozulmasın diye get çağrılmıyor
+        for (Entry entry : entries.values()) {
+            if (entry.model.isModelReady()) {
+                lines.add(entry.name + " - in memory, about " + entry.model.estimateMemoryFootprint() / MB
+                        + " MB" + (entry.corpusPath == null ? "" : ", loaded from " + entry.corpusPath));
+            } else {
+                lines.add(entry.name + " - evicted, opened from "
+                        + (entry.cachedFile != null ? entry.cachedFile.getPath() : entry.corpusPath));
+            }
+        }
+        return lines;
+    }
+
+}
@@ -0,0 +1,210 @@
+package wat.training.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * bounded cache of cosine similarities between word pairs. similarity is symmetric, so a pair
+ * is stored once whatever the order of its words is. entries are spread over segments that
+ * are locked separately, every segment evicts its least recently used pair when it is full.
+ */
+public class SimilarityCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile int capacity;
+
+    /**
+     * @param capacity max number of pairs, 0 disables the cache.
+     */
+    public SimilarityCache(final int capacity) {
+
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+        this.setCapacity(capacity);
+    }
+
+    /**
+     * @return cached similarity of the pair, null if it is not cached.
+     */
+    public Double get(final String firstWord, final String secondWord) {
+
+        if (capacity == 0) {
+            return null;
+        }
+        final WordPair pair = new WordPair(firstWord, secondWord);
+        final Segment segment = this.segmentOf(pair);
+        final Double similarity;
+        synchronized (segment) {
+            similarity = segment.get(pair);
+        }
+        if (similarity == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return similarity;
+    }
+
+    public void put(final String firstWord, final String secondWord, final double similarity) {
+
+        if (capacity == 0) {
+            return;
+        }
+        final WordPair pair = new WordPair(firstWord, secondWord);
+        final Segment segment = this.segmentOf(pair);
+        synchronized (segment) {
+            segment.put(pair, similarity);
+        }
+    }
+
+    private Segment segmentOf(final WordPair pair) {
+
+        final int hash = pair.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * removes all pairs and resets the counters.
+     */
+    public void clear() {
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * cached pairs are dropped when capacity changes.
+     *
+     * @param capacity max number of pairs, 0 disables the cache.
+     */
+    public void setCapacity(final int capacity) {
+
+        final int segmentCapacity = capacity == 0 ? 0 : Math.max(1, capacity / SEGMENTS);
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.capacity = segmentCapacity;
+            }
+        }
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+
+        return capacity;
+    }
+
+    public int size() {
+
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+
+        return hits.sum();
+    }
+
+    public long getMisses() {
+
+        return misses.sum();
+    }
+
+    /**
+     * @return ratio of hits to all lookups, 0 if there is no lookup.
+     */
+    public double getHitRate() {
+
+        final long hitCount = hits.sum();
+        final long total = hitCount + misses.sum();
+        return total == 0 ? 0.0d : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+
+        return "SimilarityCache{" +
+                "capacity=" + capacity +
+                ", size=" + this.size() +
+                ", hits=" + this.getHits() +
+                ", misses=" + this.getMisses() +
+                ", hitRate=" + this.getHitRate() +
+                '}';
+    }
+
+    private static final class Segment extends LinkedHashMap<WordPair, Double> {
+
+        private static final long serialVersionUID = 1L;
+
+        private int capacity;
+
+        Segment() {
+
+            super(64, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<WordPair, Double> eldest) {
+
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * key of a pair that does not depend on the order of words.
+     */
+    private static final class WordPair {
+
+        private final String first;
+        private final String second;
+        private final int hash;
+
+        WordPair(final String firstWord, final String secondWord) {
+
+            if (firstWord.compareTo(secondWord) <= 0) {
+                this.first = firstWord;
+                this.second = secondWord;
+            } else {
+                this.first = secondWord;
+                this.second = firstWord;
+            }
+            this.hash = 31 * first.hashCode() + second.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof WordPair)) {
+                return false;
+            }
+            final WordPair other = (WordPair) o;
+            return hash == other.hash && first.equals(other.first) && second.equals(other.second);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return hash;
+        }
+    }
+
+}
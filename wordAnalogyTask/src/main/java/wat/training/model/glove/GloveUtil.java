@@ -1,7 +1,11 @@
 package wat.training.model.glove;
 
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
 import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
 import org.deeplearning4j.models.glove.Glove;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.deeplearning4j.text.sentenceiterator.BasicLineIterator;
 import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
 import org.deeplearning4j.text.tokenization.tokenizer.preprocessor.CommonPreprocessor;
@@ -14,8 +18,15 @@ import wat.helper.Constants;
 import wat.training.model.BaseModel;
 import wat.training.model.BaseModelInt;
 import wat.training.model.BaseTrainingParams;
+import wat.training.model.store.CandidateSubset;
+import wat.training.model.store.EmbeddingStore;
+import wat.training.model.store.HnswIndex;
+import wat.training.model.store.NativeModelFile;
+import wat.training.model.store.ParallelTextVectorReader;
+import wat.training.model.store.PretrainedVectors;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.FileNotFoundException;
 import java.util.List;
 
@@ -51,13 +62,7 @@ public class GloveUtil extends BaseModel implements BaseModelInt {
 
         params.validateCommonParams();
 
-        if (corpusPath == null || corpusPath.isEmpty()) {
-            corpusPath = System.getenv("DEFAULT_CORPUS_PATH");
-            if (corpusPath == null || corpusPath.isEmpty()) {
-                throw new ModelBuildException("DEFAULT_CORPUS_PATH is not set!");
-            }
-            log.warn("Setting corpus path to default: " + corpusPath);
-        }
+        this.validateCorpusPath();
 
         SentenceIterator sentenceIterator;
         try {
@@ -72,7 +77,8 @@ public class GloveUtil extends BaseModel implements BaseModelInt {
         t.setTokenPreProcessor(new CommonPreprocessor());
 
         log.info("Building glove with parameters: " + params.toString());
-        Glove glove = new Glove.Builder()
+        glove = null;
+        glove = new Glove.Builder()
                 .iterate(sentenceIterator)
                 .tokenizerFactory(t)
                 .shuffle(params.isShuffle())
@@ -94,22 +100,40 @@ public class GloveUtil extends BaseModel implements BaseModelInt {
         glove.fit();
         log.info("Done building glove model in "
                 + (System.currentTimeMillis() - start) / 1000 + " seconds.");
+        this.modelChanged();
     }
 
     private void loadPretrainedModel() throws ModelBuildException {
 
+        this.validateCorpusPath();
+
         log.info("Starting to load glove model from: " + corpusPath + " This may take a while.");
         glove = null;
 
         long start = System.currentTimeMillis();
         try {
-            glove = (Glove) WordVectorSerializer.loadTxtVectors(new File(corpusPath));
+            final Pair<InMemoryLookupTable<VocabWord>, VocabCache<VocabWord>> lookupTable;
+            final File file = new File(corpusPath);
+            if (NativeModelFile.isNativeFile(file)) {
+                lookupTable = NativeModelFile.open(file, maxVocabularySize).toPretrainedVectors().toLookupTable();
+            } else if (file.getName().endsWith(".gz")) {
+                // sıkıştırılmış dosya bölünemiyor, tek thread ile okunuyor
+                lookupTable = PretrainedVectors.read(file, maxVocabularySize).toLookupTable();
+            } else {
+                // dosya sıklığa göre sıralı, maxVocabularySize 0 değilse ilk satırları okunuyor
+                lookupTable = ParallelTextVectorReader.read(file, maxVocabularySize).toLookupTable();
+            }
+            glove = new Glove.Builder()
+                    .lookupTable(lookupTable.getFirst())
+                    .vocabCache(lookupTable.getSecond())
+                    .build();
         } catch (Exception e) {
             glove = null;
             throw new ModelBuildException(e);
         }
         log.info("Done loading glove model in "
                 + (System.currentTimeMillis() - start) / 1000 + " seconds.");
+        this.modelChanged();
     }
 
     /**
@@ -128,6 +152,23 @@ public class GloveUtil extends BaseModel implements BaseModelInt {
         }
     }
 
+    /**
+     * @param file   file to write vectors in native format of this project.
+     * @param layout one of the layout constants of {@link NativeModelFile}.
+     * @return false if model could not be written to file.
+     */
+    @Override
+    public boolean saveNativeModel(File file, int layout) {
+
+        try {
+            NativeModelFile.write(file, glove, layout);
+            return true;
+        } catch (IOException e) {
+            log.error("Cannot write to file: " + file.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
     /**
      * @return the number of the words in vocab cache of word2vec.
      */
@@ -138,7 +179,7 @@ public class GloveUtil extends BaseModel implements BaseModelInt {
     }
 
     @Override
-    public boolean hasWord(String word) {
+    protected boolean containsWord(String word) {
 
         if (glove.hasWord(word)) {
             return true;
@@ -166,14 +207,28 @@ public class GloveUtil extends BaseModel implements BaseModelInt {
         params.reset();
     }
 
+    @Override
+    protected EmbeddingStore createEmbeddingStore() {
+
+        return EmbeddingStore.fromWordVectors(glove, vectorStorage);
+    }
+
     @Override
     public List<String> getClosestWords(List<String> positive, List<String> negative) {
 
+        final CandidateSubset subset = candidateSubset;
+        if (subset != null) {
+            return subset.nearest(positive, negative, closestWordSize);
+        }
+        final HnswIndex index = nearestNeighbourIndex;
+        if (index != null) {
+            return this.getClosestWordsFromIndex(index, positive, negative);
+        }
         return (List<String>) glove.wordsNearest(positive, negative, closestWordSize);
     }
 
     @Override
-    public double getSimilarity(String firstWord, String secondWord) {
+    protected double calculateSimilarity(String firstWord, String secondWord) {
 
         double result = glove.similarity(firstWord, secondWord);
         if (debugEnabled) {
@@ -185,6 +240,10 @@ public class GloveUtil extends BaseModel implements BaseModelInt {
     @Override
     public List<String> getNearestWords(final String word) {
 
+        final HnswIndex index = nearestNeighbourIndex;
+        if (index != null) {
+            return this.getNearestWordsFromIndex(index, word);
+        }
         return (List<String>) glove.wordsNearest(word, closestWordSize);
 
     }
@@ -195,5 +254,25 @@ public class GloveUtil extends BaseModel implements BaseModelInt {
         return params;
     }
 
+    @Override
+    protected BaseModel createEmptyModel() {
+
+        final GloveUtil model = new GloveUtil();
+        // eğitim parametreleri aynı tipteki modellerde ortak
+        model.params = params;
+        return model;
+    }
+
+    @Override
+    protected long getVectorsSizeInBytes() {
+
+        return sizeOfLookupTable(glove.lookupTable());
+    }
+
+    @Override
+    protected void releaseVectors() {
+
+        glove = null;
+    }
 
 }
@@ -0,0 +1,187 @@
+package wat.training.model.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wat.training.model.AnalogyQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * rows of a model whose words can be expected as an answer (e.g. WordNet lemmas), kept as a
+ * separate smaller store. analogy queries are built from the full store but searched only in
+ * this subset. every n-th query is also searched in the full store to see how often the
+ * restriction changes the returned words.
+ */
+public class CandidateSubset {
+
+    private static final Logger log = LoggerFactory.getLogger(CandidateSubset.class);
+
+    private final EmbeddingStore full;
+    private final EmbeddingStore subset;
+    private final int checkInterval;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong changed = new AtomicLong();
+
+    private CandidateSubset(final EmbeddingStore full, final EmbeddingStore subset, final int checkInterval) {
+
+        this.full = full;
+        this.subset = subset;
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * @param full          all rows of the model.
+     * @param words         candidate words, words that are not in full store are skipped.
+     * @param storage       how rows of subset are kept in memory.
+     * @param checkInterval every n-th query is compared with full search, 0 disables comparison.
+     * @return subset whose rows are in the same order as in full store.
+     */
+    public static CandidateSubset build(final EmbeddingStore full, final Collection<String> words,
+            final int storage, final int checkInterval) {
+
+        final long start = System.currentTimeMillis();
+        final int[] found = new int[words.size()];
+        int size = 0;
+        for (String word : words) {
+            final int row = full.indexOf(word);
+            if (row >= 0) {
+                found[size++] = row;
+            }
+        }
+        Arrays.sort(found, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || found[unique - 1] != found[i]) {
+                found[unique++] = found[i];
+            }
+        }
+
+        final String[] subsetWords = new String[unique];
+        final VectorRows rows = EmbeddingStore.createRows(storage, unique, full.getDimensions());
+        final float[] vector = new float[full.getDimensions()];
+        for (int i = 0; i < unique; i++) {
+            subsetWords[i] = full.wordAt(found[i]);
+            full.copyRow(found[i], vector);
+            rows.setRow(i, vector);
+        }
+        log.info("Candidate subset has " + unique + " of " + full.size() + " words, it is built in "
+                + (System.currentTimeMillis() - start) + " ms.");
+        return new CandidateSubset(full, new EmbeddingStore(subsetWords, rows), checkInterval);
+    }
+
+    /**
+     * 3CosAdd query that is searched only in subset.
+     *
+     * @return empty list if none of the words exists in model.
+     */
+    public List<String> nearest(final List<String> positive, final List<String> negative, final int k) {
+
+        final float[] query = full.buildQuery(positive, negative);
+        if (query == null) {
+            return Collections.emptyList();
+        }
+        final List<String> result = subset.nearest(query, k, subset.indexesOf(positive, negative));
+        this.checkIfChanged(query, positive, negative, k, result);
+        return result;
+    }
+
+    /**
+     * searches all queries in subset with one scan.
+     *
+     * @return closest words for each query in the same order.
+     */
+    public List<List<String>> nearestBatch(final List<AnalogyQuery> analogyQueries, final int k) {
+
+        final int total = analogyQueries.size();
+        final float[][] vectors = new float[total][];
+        final int[][] excluded = new int[total][];
+        final int[] positions = new int[total];
+        int valid = 0;
+        for (int i = 0; i < total; i++) {
+            final AnalogyQuery query = analogyQueries.get(i);
+            final float[] vector = full.buildQuery(query.getPositive(), query.getNegative());
+            if (vector != null) {
+                vectors[valid] = vector;
+                excluded[valid] = subset.indexesOf(query.getPositive(), query.getNegative());
+                positions[valid++] = i;
+            }
+        }
+
+        final List<List<String>> answers = subset.nearestBatch(Arrays.copyOf(vectors, valid), k,
+                Arrays.copyOf(excluded, valid));
+        final List<List<String>> result = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            result.add(Collections.emptyList());
+        }
+        for (int i = 0; i < valid; i++) {
+            final AnalogyQuery query = analogyQueries.get(positions[i]);
+            this.checkIfChanged(vectors[i], query.getPositive(), query.getNegative(), k, answers.get(i));
+            result.set(positions[i], answers.get(i));
+        }
+        return result;
+    }
+
+    private void checkIfChanged(final float[] query, final List<String> positive,
+            final List<String> negative, final int k, final List<String> restricted) {
+
+        if (checkInterval > 0 && queries.incrementAndGet() % checkInterval == 0) {
+            final List<String> unrestricted = full.nearest(query, k, full.indexesOf(positive, negative));
+            checked.incrementAndGet();
+            if (!unrestricted.equals(restricted)) {
+                changed.incrementAndGet();
+            }
+        }
+    }
+
+    public int size() {
+
+        return subset.size();
+    }
+
+    public long getCheckedQueries() {
+
+        return checked.get();
+    }
+
+    public long getChangedQueries() {
+
+        return changed.get();
+    }
+
+    /**
+     * @return ratio of checked queries whose top-k differs from full search, 0 if nothing is checked.
+     */
+    public double getChangeRate() {
+
+        final long checkedCount = checked.get();
+        return checkedCount == 0 ? 0.0d : (double) changed.get() / checkedCount;
+    }
+
+    public void resetCounters() {
+
+        queries.set(0);
+        checked.set(0);
+        changed.set(0);
+    }
+
+    @Override
+    public String toString() {
+
+        return "CandidateSubset{" +
+                "size=" + subset.size() +
+                ", fullSize=" + full.size() +
+                ", queries=" + queries.get() +
+                ", checked=" + checked.get() +
+                ", changed=" + changed.get() +
+                ", changeRate=" + this.getChangeRate() +
+                '}';
+    }
+
+}
@@ -0,0 +1,322 @@
+package wat.training.model.store;
+
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import wat.helper.Constants;
+import wat.helper.DefaultSettingValues;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * vocabulary of a model with its normalized vectors. every row is L2-normalized while it is added,
+ * so cosine similarity of two words is a plain dot product of their rows. how rows are kept in
+ * memory is decided by {@link VectorRows}. store is read only after it is built, so it can be
+ * queried from multiple threads.
+ */
+public class EmbeddingStore {
+
+    private final String[] words;
+    private final HashMap<String, Integer> wordIndex;
+    private final VectorRows rows;
+    private final int dimensions;
+
+    /**
+     * @param words      vocabulary, index of a word is its row in vectors.
+     * @param vectors    rows of words one after another, they should already be normalized.
+     * @param dimensions length of a row.
+     */
+    public EmbeddingStore(final String[] words, final float[] vectors, final int dimensions) {
+
+        this(words, checkedRows(words, vectors, dimensions));
+    }
+
+    /**
+     * @param words vocabulary, index of a word is its row.
+     * @param rows  filled rows of the words.
+     */
+    public EmbeddingStore(final String[] words, final VectorRows rows) {
+
+        if (words.length != rows.size()) {
+            throw new IllegalArgumentException(words.length + " words do not match "
+                    + rows.size() + " rows!");
+        }
+        this.words = words;
+        this.rows = rows;
+        this.dimensions = rows.getDimensions();
+        this.wordIndex = new HashMap<>(words.length * 4 / 3 + 1);
+        for (int i = 0; i < words.length; i++) {
+            // ilk gelen kelime kalsın, dl4j de aynı şekilde davranıyor
+            wordIndex.putIfAbsent(words[i], i);
+        }
+    }
+
+    private static VectorRows checkedRows(final String[] words, final float[] vectors, final int dimensions) {
+
+        if ((long) words.length * dimensions != vectors.length) {
+            throw new IllegalArgumentException(words.length + " words with " + dimensions
+                    + " dimensions do not fit into " + vectors.length + " floats!");
+        }
+        return new FloatRows(vectors, dimensions);
+    }
+
+    /**
+     * @param storage    one of vector storage constants in {@link Constants}.
+     * @param size       number of rows.
+     * @param dimensions length of a row.
+     * @return empty rows to fill.
+     */
+    public static VectorRows createRows(final int storage, final int size, final int dimensions) {
+
+        switch (storage) {
+            case Constants.VECTORS_AS_HALF_FLOAT:
+                return new HalfRows(size, dimensions);
+            case Constants.VECTORS_AS_INT8:
+                return new Int8Rows(size, dimensions, DefaultSettingValues.QUANTIZED_RERANK_FACTOR);
+            default:
+                return new FloatRows(size, dimensions);
+        }
+    }
+
+    /**
+     * copies vocabulary and weights of a dl4j model into a contiguous normalized float matrix.
+     *
+     * @param wordVectors word2vec or glove model that is already built.
+     * @return store that has the same vocabulary order with given model.
+     */
+    public static EmbeddingStore fromWordVectors(final WordVectors wordVectors) {
+
+        return fromWordVectors(wordVectors, Constants.VECTORS_AS_FLOAT);
+    }
+
+    /**
+     * copies vocabulary and weights of a dl4j model row by row, so only one float row
+     * is needed besides the rows of given storage.
+     *
+     * @param wordVectors word2vec or glove model that is already built.
+     * @param storage     how rows are kept in memory.
+     * @return store that has the same vocabulary order with given model.
+     */
+    public static EmbeddingStore fromWordVectors(final WordVectors wordVectors, final int storage) {
+
+        final VocabCache<?> vocab = wordVectors.vocab();
+        final INDArray weights = wordVectors.lookupTable().getWeights();
+        final int size = vocab.numWords();
+        final int dimensions = weights.columns();
+
+        final String[] words = new String[size];
+        final VectorRows rows = createRows(storage, size, dimensions);
+        final float[] vector = new float[dimensions];
+        for (int i = 0; i < size; i++) {
+            words[i] = vocab.wordAtIndex(i);
+            final INDArray row = weights.getRow(i);
+            for (int j = 0; j < dimensions; j++) {
+                vector[j] = row.getFloat(j);
+            }
+            normalizeRow(vector, 0, dimensions);
+            rows.setRow(i, vector);
+        }
+        return new EmbeddingStore(words, rows);
+    }
+    /**
+     * scales the row to unit length, zero rows are left as they are.
+     */
+    public static void normalizeRow(final float[] vectors, final int offset, final int dimensions) {
+
+        double norm = 0.0d;
+        for (int j = offset, end = offset + dimensions; j < end; j++) {
+            norm += vectors[j] * vectors[j];
+        }
+        if (norm > 0.0d) {
+            final float scale = (float) (1.0d / Math.sqrt(norm));
+            for (int j = offset, end = offset + dimensions; j < end; j++) {
+                vectors[j] *= scale;
+            }
+        }
+    }
+
+    /**
+     * @return row of the word, -1 if it does not exist in vocabulary.
+     */
+    public int indexOf(final String word) {
+
+        final Integer index = wordIndex.get(word);
+        return index == null ? -1 : index;
+    }
+
+    public boolean hasWord(final String word) {
+
+        return wordIndex.containsKey(word);
+    }
+
+    public String wordAt(final int row) {
+
+        return words[row];
+    }
+
+    public int size() {
+
+        return words.length;
+    }
+
+    public int getDimensions() {
+
+        return dimensions;
+    }
+
+    /**
+     * @param row  row of a word.
+     * @param dest array to copy normalized vector of the word, its length should be dimensions.
+     */
+    public void copyRow(final int row, final float[] dest) {
+
+        rows.copyRow(row, dest);
+    }
+
+    /**
+     * @return cosine similarity of two rows.
+     */
+    public float dot(final int firstRow, final int secondRow) {
+
+        return rows.dot(firstRow, secondRow);
+    }
+
+    /**
+     * @return dot product of the row with a query vector of the same length.
+     */
+    public float dot(final int row, final float[] query) {
+
+        return rows.dot(row, query);
+    }
+
+    /**
+     * cosine similarities of one row with many rows in one pass.
+     *
+     * @param row       row of the word that is compared.
+     * @param otherRows rows of other words, none of them can be -1.
+     * @param from      first index of other rows.
+     * @param to        index after the last one.
+     * @param dest      dest[i - from] gets similarity with otherRows[i].
+     */
+    public void similarities(final int row, final int[] otherRows, final int from, final int to,
+            final float[] dest) {
+
+        rows.dotRows(row, otherRows, from, to, dest);
+    }
+
+    /**
+     * @return cosine similarity of given words, NaN if any of them is not in vocabulary.
+     */
+    public double similarity(final String firstWord, final String secondWord) {
+
+        final int first = this.indexOf(firstWord);
+        final int second = this.indexOf(secondWord);
+        if (first < 0 || second < 0) {
+            return Double.NaN;
+        }
+        return this.dot(first, second);
+    }
+
+    /**
+     * 3CosAdd query, sums normalized rows of positive words and subtracts negative ones.
+     * words that do not exist in vocabulary are ignored as dl4j does.
+     *
+     * @return null if none of the words exists in vocabulary.
+     */
+    public float[] buildQuery(final List<String> positive, final List<String> negative) {
+
+        final float[] query = new float[dimensions];
+        boolean found = false;
+        for (String word : positive) {
+            found |= this.addRow(query, this.indexOf(word), 1.0f);
+        }
+        for (String word : negative) {
+            found |= this.addRow(query, this.indexOf(word), -1.0f);
+        }
+        return found ? query : null;
+    }
+
+    private boolean addRow(final float[] query, final int row, final float sign) {
+
+        if (row < 0) {
+            return false;
+        }
+        rows.addRow(row, sign, query);
+        return true;
+    }
+
+    /**
+     * @return rows of given words, words that do not exist are skipped.
+     */
+    public int[] indexesOf(final List<String> positive, final List<String> negative) {
+
+        final int[] found = new int[positive.size() + negative.size()];
+        int size = 0;
+        for (String word : positive) {
+            final int row = this.indexOf(word);
+            if (row >= 0) {
+                found[size++] = row;
+            }
+        }
+        for (String word : negative) {
+            final int row = this.indexOf(word);
+            if (row >= 0) {
+                found[size++] = row;
+            }
+        }
+        return Arrays.copyOf(found, size);
+    }
+
+    /**
+     * scans every row once and keeps the best k of them in a bounded heap.
+     *
+     * @param query    vector to compare rows with, it does not need to be normalized
+     *                 since only the order of rows matters.
+     * @param k        size of the returned list.
+     * @param excluded rows that should not be returned (words of the query).
+     * @return words in descending order of similarity.
+     */
+    public List<String> nearest(final float[] query, final int k, final int[] excluded) {
+
+        return this.toWords(rows.nearest(query, k, excluded));
+    }
+
+    /**
+     * answers many queries with one pass over the matrix when rows support it.
+     *
+     * @param queries  query vectors, none of them can be null.
+     * @param k        size of each returned list.
+     * @param excluded rows that should not be returned for the query at the same index.
+     * @return words in descending order of similarity for each query.
+     */
+    public List<List<String>> nearestBatch(final float[][] queries, final int k, final int[][] excluded) {
+
+        final int[][] nearestRows = rows.nearestBatch(queries, k, excluded);
+        final List<List<String>> result = new ArrayList<>(nearestRows.length);
+        for (int[] rowsOfQuery : nearestRows) {
+            result.add(this.toWords(rowsOfQuery));
+        }
+        return result;
+    }
+
+    /**
+     * @return approximate heap size of the vectors.
+     */
+    public long sizeInBytes() {
+
+        return rows.sizeInBytes();
+    }
+
+    List<String> toWords(final int[] rowsOfWords) {
+
+        final List<String> result = new ArrayList<>(rowsOfWords.length);
+        for (int row : rowsOfWords) {
+            result.add(words[row]);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,343 @@
+package wat.training.model.store;
+
+import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wat.exceptions.ModelBuildException;
+import wat.helper.Constants;
+import wat.training.model.AnalogyQuery;
+import wat.training.model.BaseModel;
+import wat.training.model.BaseModelInt;
+import wat.training.model.BaseTrainingParams;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * pretrained word vectors that are queried without ND4J. vectors are copied into an
+ * {@link EmbeddingStore} after loading, so every query is a tight loop over one float array.
+ */
+public class EmbeddingStoreUtil extends BaseModel implements BaseModelInt {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingStoreUtil.class);
+    private static final boolean debugEnabled = log.isDebugEnabled();
+
+    private volatile EmbeddingStore store = null;
+
+    @Override
+    public String getName() {
+
+        return "embeddingStore";
+    }
+
+    /**
+     * store cannot be trained, it can only be filled by a pretrained model.
+     *
+     * @param corpusIsPretrained should be 2 for this model.
+     * @throws ModelBuildException
+     */
+    @Override
+    public void createModel(int corpusIsPretrained) throws ModelBuildException {
+
+        if (corpusIsPretrained == Constants.CORPUS_IS_PRETRAINED) {
+            this.loadPretrainedModel();
+        } else if (corpusIsPretrained == Constants.TRAIN_CORPUS) {
+            throw new ModelBuildException(this.getName() + " cannot be trained, "
+                    + "it can only load an already trained model.");
+        }
+    }
+
+    // native, csv, binary ve dl4j compressed yüklüyor, sonra kelime matrisine kopyalıyor
+    private void loadPretrainedModel() throws ModelBuildException {
+
+        this.validateCorpusPath();
+
+        log.info("Starting to load embedding store from: " + corpusPath);
+        store = null;
+
+        long start = System.currentTimeMillis();
+        try {
+            final File file = new File(corpusPath);
+            if (NativeModelFile.isNativeFile(file)) {
+                // satırlar kopyalanmıyor, dosyadan map ediliyor
+                store = NativeModelFile.open(file, maxVocabularySize).toEmbeddingStore(vectorStorage);
+            } else if (maxVocabularySize > 0) {
+                // dosya sıklığa göre sıralı, ilk maxVocabularySize satır okunuyor
+                store = PretrainedVectors.read(file, maxVocabularySize).toEmbeddingStore(vectorStorage);
+            } else {
+                // vektörler kopyalandıktan sonra dl4j modeli bırakılıyor
+                Word2Vec word2vec = WordVectorSerializer.readWord2VecModel(file, false);
+                store = EmbeddingStore.fromWordVectors(word2vec, vectorStorage);
+            }
+            this.modelChanged();
+        } catch (IOException e) {
+            log.error("Model could not be read from: " + corpusPath);
+            throw new ModelBuildException(e);
+        } catch (OutOfMemoryError e) {
+            // release the memory if it could not be loaded properly
+            store = null;
+            throw new ModelBuildException(e);
+        }
+        log.info("Done loading embedding store with " + store.size() + " words and "
+                + store.getDimensions() + " dimensions in "
+                + (System.currentTimeMillis() - start) / 1000 + " seconds. Vectors take "
+                + store.sizeInBytes() / (1024 * 1024) + " MB.");
+    }
+
+    /**
+     * writes normalized vectors in word2vec text format, so the file can be loaded again
+     * by this model or by word2vec.
+     *
+     * @param file text file to write vectors.
+     * @return false if model could not be written to file.
+     */
+    @Override
+    public boolean saveTrainedModel(File file) {
+
+        final EmbeddingStore current = store;
+        final int dimensions = current.getDimensions();
+        final float[] row = new float[dimensions];
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(current.size() + " " + dimensions);
+            writer.newLine();
+            final StringBuilder line = new StringBuilder(dimensions * 12);
+            for (int i = 0; i < current.size(); i++) {
+                current.copyRow(i, row);
+                line.setLength(0);
+                line.append(current.wordAt(i));
+                for (float value : row) {
+                    line.append(' ').append(value);
+                }
+                writer.write(line.toString());
+                writer.newLine();
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Cannot write to file: " + file.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * writes normalized rows, so they are mapped without copying when the file is loaded again.
+     *
+     * @param file   file to write vectors in native format of this project.
+     * @param layout one of the layout constants of {@link NativeModelFile}.
+     * @return false if model could not be written to file.
+     */
+    @Override
+    public boolean saveNativeModel(File file, int layout) {
+
+        try {
+            NativeModelFile.write(file, store, layout);
+            return true;
+        } catch (IOException e) {
+            log.error("Cannot write to file: " + file.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * vectors of this model exist only in the store, so new storage is used when model is loaded again.
+     *
+     * @param vectorStorage one of vector storage constants in {@link Constants}.
+     */
+    @Override
+    public void setVectorStorage(int vectorStorage) {
+
+        this.vectorStorage = vectorStorage;
+        if (store != null) {
+            log.info("Vector storage of " + this.getName() + " will be changed when it is loaded again.");
+        }
+    }
+
+    /**
+     * store already keeps normalized rows, so it is used as it is.
+     */
+    @Override
+    protected EmbeddingStore createEmbeddingStore() {
+
+        return store;
+    }
+
+    @Override
+    public int getTotalWordSizeInVocab() {
+
+        return store.size();
+    }
+
+    @Override
+    protected boolean containsWord(String word) {
+
+        if (store.hasWord(word)) {
+            return true;
+        } else {
+            if (debugEnabled) {
+                log.debug(word + " does not exist in embedding store.");
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isModelReady() {
+
+        return store != null;
+    }
+
+    /**
+     * store is not trained, so it has no training params.
+     */
+    @Override
+    public void resetParams() {
+
+        log.info(this.getName() + " does not have any training params.");
+    }
+
+    /**
+     * @return null since store is not trained.
+     */
+    @Override
+    public BaseTrainingParams getParams() {
+
+        return null;
+    }
+
+    /**
+     * @return empty list if none of the words exists in store.
+     */
+    @Override
+    public List<String> getClosestWords(List<String> positive, List<String> negative) {
+
+        final CandidateSubset subset = candidateSubset;
+        if (subset != null) {
+            return subset.nearest(positive, negative, closestWordSize);
+        }
+        final HnswIndex index = nearestNeighbourIndex;
+        if (index != null) {
+            return this.getClosestWordsFromIndex(index, positive, negative);
+        }
+        final EmbeddingStore current = store;
+        final float[] query = current.buildQuery(positive, negative);
+        if (query == null) {
+            return Collections.emptyList();
+        }
+        return current.nearest(query, closestWordSize, current.indexesOf(positive, negative));
+    }
+
+    /**
+     * scans the matrix once for all given queries instead of once for each query.
+     *
+     * @param queries
+     * @return closest words for each query in the same order, empty list for a
+     * query if none of its words exists in store.
+     */
+    @Override
+    public List<List<String>> getClosestWordsBatch(List<AnalogyQuery> queries) {
+
+        final CandidateSubset subset = candidateSubset;
+        if (subset != null) {
+            return subset.nearestBatch(queries, closestWordSize);
+        }
+        // index answers each query by visiting only a small part of the graph, scanning is not needed
+        if (nearestNeighbourIndex != null) {
+            return super.getClosestWordsBatch(queries);
+        }
+        final EmbeddingStore current = store;
+        final int total = queries.size();
+        final float[][] vectors = new float[total][];
+        final int[][] excluded = new int[total][];
+        final int[] positions = new int[total];
+        int valid = 0;
+        for (int i = 0; i < total; i++) {
+            final AnalogyQuery query = queries.get(i);
+            final float[] vector = current.buildQuery(query.getPositive(), query.getNegative());
+            if (vector != null) {
+                vectors[valid] = vector;
+                excluded[valid] = current.indexesOf(query.getPositive(), query.getNegative());
+                positions[valid++] = i;
+            }
+        }
+
+        final List<List<String>> answers = current.nearestBatch(Arrays.copyOf(vectors, valid),
+                closestWordSize, Arrays.copyOf(excluded, valid));
+        final List<List<String>> result = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            result.add(Collections.emptyList());
+        }
+        for (int i = 0; i < valid; i++) {
+            result.set(positions[i], answers.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * this method may return NaN if any of given words does not exist in vocabulary.
+     *
+     * @param firstWord
+     * @param secondWord
+     * @return cosine value [-1,1] for proximity if both words exist.
+     */
+    @Override
+    protected double calculateSimilarity(final String firstWord, final String secondWord) {
+
+        final double result = store.similarity(firstWord, secondWord);
+        if (debugEnabled) {
+            log.debug(firstWord + " - " + secondWord + " - similarity: " + result);
+        }
+        return result;
+    }
+
+    @Override
+    public List<String> getNearestWords(final String word) {
+
+        final HnswIndex index = nearestNeighbourIndex;
+        if (index != null) {
+            return this.getNearestWordsFromIndex(index, word);
+        }
+        final EmbeddingStore current = store;
+        final int row = current.indexOf(word);
+        if (row < 0) {
+            return Collections.emptyList();
+        }
+        final float[] query = new float[current.getDimensions()];
+        current.copyRow(row, query);
+        return current.nearest(query, closestWordSize, new int[]{row});
+    }
+
+    @Override
+    protected BaseModel createEmptyModel() {
+
+        return new EmbeddingStoreUtil();
+    }
+
+    @Override
+    protected long getVectorsSizeInBytes() {
+
+        return store.sizeInBytes();
+    }
+
+    /**
+     * store of the model is used for index and candidates, it is not copied.
+     */
+    @Override
+    protected boolean isEmbeddingStoreCopied() {
+
+        return false;
+    }
+
+    @Override
+    protected void releaseVectors() {
+
+        store = null;
+    }
+
+}
@@ -0,0 +1,197 @@
+package wat.training.model.store;
+
+/**
+ * rows kept as they are in one contiguous float array, scores are exact.
+ */
+public class FloatRows extends VectorRows {
+
+    /**
+     * rows that are compared with all queries of a batch before moving to next rows. a block of
+     * 128 rows with 300 dimensions is about 150 KB, so it stays in cache while queries are scanned.
+     */
+    private static final int ROW_BLOCK_SIZE = 128;
+
+    private final float[] vectors;
+
+    public FloatRows(final int size, final int dimensions) {
+
+        this(new float[checkedLength(size, dimensions)], dimensions);
+    }
+
+    /**
+     * @param vectors    rows one after another, they should already be normalized.
+     * @param dimensions length of a row.
+     */
+    public FloatRows(final float[] vectors, final int dimensions) {
+
+        super(vectors.length / dimensions, dimensions);
+        this.vectors = vectors;
+    }
+
+    static int checkedLength(final int size, final int dimensions) {
+
+        if ((long) size * dimensions > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(size + " words with " + dimensions
+                    + " dimensions do not fit into one contiguous array!");
+        }
+        return size * dimensions;
+    }
+
+    @Override
+    public void setRow(final int row, final float[] vector) {
+
+        System.arraycopy(vector, 0, vectors, row * dimensions, dimensions);
+    }
+
+    @Override
+    public void copyRow(final int row, final float[] dest) {
+
+        System.arraycopy(vectors, row * dimensions, dest, 0, dimensions);
+    }
+
+    @Override
+    public void addRow(final int row, final float sign, final float[] dest) {
+
+        final int offset = row * dimensions;
+        for (int j = 0; j < dimensions; j++) {
+            dest[j] += sign * vectors[offset + j];
+        }
+    }
+
+    @Override
+    public float dot(final int row, final float[] query) {
+
+        final int offset = row * dimensions;
+        float sum = 0.0f;
+        for (int j = 0; j < dimensions; j++) {
+            sum += vectors[offset + j] * query[j];
+        }
+        return sum;
+    }
+
+    /**
+     * same sums with {@link #dot(int, int)} in one loop, without a call for every row.
+     */
+    @Override
+    public void dotRows(final int row, final int[] rows, final int from, final int to, final float[] dest) {
+
+        final int a = row * dimensions;
+        for (int i = from; i < to; i++) {
+            final int b = rows[i] * dimensions;
+            float sum = 0.0f;
+            for (int j = 0; j < dimensions; j++) {
+                sum += vectors[a + j] * vectors[b + j];
+            }
+            dest[i - from] = sum;
+        }
+    }
+
+    @Override
+    public float dot(final int firstRow, final int secondRow) {
+
+        final int a = firstRow * dimensions;
+        final int b = secondRow * dimensions;
+        float sum = 0.0f;
+        for (int j = 0; j < dimensions; j++) {
+            sum += vectors[a + j] * vectors[b + j];
+        }
+        return sum;
+    }
+
+    /**
+     * scans every row once and keeps the best k of them in a bounded heap.
+     */
+    @Override
+    public int[] nearest(final float[] query, final int k, final int[] excluded) {
+
+        final TopKHeap heap = new TopKHeap(k);
+        for (int row = 0; row < size; row++) {
+            final int offset = row * dimensions;
+            float sum = 0.0f;
+            for (int j = 0; j < dimensions; j++) {
+                sum += vectors[offset + j] * query[j];
+            }
+            if (sum > heap.threshold() && !contains(excluded, row)) {
+                heap.offer(row, sum);
+            }
+        }
+        return heap.drainDescending();
+    }
+
+    /**
+     * answers many queries with one pass over the matrix. rows are visited in blocks and every
+     * query of the batch is compared with the block before the next block is read, four queries
+     * at a time, so a row is loaded once for four dot products (blocked matrix-matrix product).
+     */
+    @Override
+    public int[][] nearestBatch(final float[][] queries, final int k, final int[][] excluded) {
+
+        final int total = queries.length;
+        final TopKHeap[] heaps = new TopKHeap[total];
+        for (int q = 0; q < total; q++) {
+            heaps[q] = new TopKHeap(k);
+        }
+
+        for (int blockStart = 0; blockStart < size; blockStart += ROW_BLOCK_SIZE) {
+            final int blockEnd = Math.min(size, blockStart + ROW_BLOCK_SIZE);
+            int q = 0;
+            for (; q + 4 <= total; q += 4) {
+                this.scanBlockForFourQueries(blockStart, blockEnd, queries, excluded, heaps, q);
+            }
+            for (; q < total; q++) {
+                this.scanBlockForOneQuery(blockStart, blockEnd, queries[q], excluded[q], heaps[q]);
+            }
+        }
+
+        final int[][] result = new int[total][];
+        for (int q = 0; q < total; q++) {
+            result[q] = heaps[q].drainDescending();
+        }
+        return result;
+    }
+
+    private void scanBlockForFourQueries(final int blockStart, final int blockEnd, final float[][] queries,
+            final int[][] excluded, final TopKHeap[] heaps, final int first) {
+
+        final float[] q0 = queries[first], q1 = queries[first + 1];
+        final float[] q2 = queries[first + 2], q3 = queries[first + 3];
+        for (int row = blockStart; row < blockEnd; row++) {
+            final int offset = row * dimensions;
+            float s0 = 0.0f, s1 = 0.0f, s2 = 0.0f, s3 = 0.0f;
+            for (int j = 0; j < dimensions; j++) {
+                final float value = vectors[offset + j];
+                s0 += value * q0[j];
+                s1 += value * q1[j];
+                s2 += value * q2[j];
+                s3 += value * q3[j];
+            }
+            offerIfNotExcluded(heaps[first], excluded[first], row, s0);
+            offerIfNotExcluded(heaps[first + 1], excluded[first + 1], row, s1);
+            offerIfNotExcluded(heaps[first + 2], excluded[first + 2], row, s2);
+            offerIfNotExcluded(heaps[first + 3], excluded[first + 3], row, s3);
+        }
+    }
+
+    private void scanBlockForOneQuery(final int blockStart, final int blockEnd, final float[] query,
+            final int[] excluded, final TopKHeap heap) {
+
+        for (int row = blockStart; row < blockEnd; row++) {
+            offerIfNotExcluded(heap, excluded, row, this.dot(row, query));
+        }
+    }
+
+    private static void offerIfNotExcluded(final TopKHeap heap, final int[] excluded,
+            final int row, final float score) {
+
+        if (score > heap.threshold() && !contains(excluded, row)) {
+            heap.offer(row, score);
+        }
+    }
+
+    @Override
+    public long sizeInBytes() {
+
+        return 4L * vectors.length;
+    }
+
+}
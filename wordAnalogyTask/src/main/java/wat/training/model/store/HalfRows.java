@@ -0,0 +1,161 @@
+package wat.training.model.store;
+
+/**
+ * rows kept as IEEE 754 half precision floats, two bytes for a value instead of four. normalized
+ * values are between -1 and 1, so rounding error of a value is below 0.0005 and order of the
+ * nearest words is almost always the same with float rows. scan decodes values with a table.
+ */
+public class HalfRows extends VectorRows {
+
+    private static final float[] HALF_TO_FLOAT = new float[1 << 16];
+
+    static {
+        for (int i = 0; i < HALF_TO_FLOAT.length; i++) {
+            HALF_TO_FLOAT[i] = decode((short) i);
+        }
+    }
+
+    private final short[] halfs;
+
+    public HalfRows(final int size, final int dimensions) {
+
+        super(size, dimensions);
+        this.halfs = new short[FloatRows.checkedLength(size, dimensions)];
+    }
+
+    /**
+     * @return half float bits of the value, rounded to nearest even.
+     */
+    static short toHalf(final float value) {
+
+        final int bits = Float.floatToIntBits(value);
+        final int sign = (bits >>> 16) & 0x8000;
+        final int floatExponent = (bits >>> 23) & 0xff;
+        int mantissa = bits & 0x7fffff;
+
+        // NaN or infinity
+        if (floatExponent == 0xff) {
+            return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        final int exponent = floatExponent - 127 + 15;
+        if (exponent >= 0x1f) {
+            return (short) (sign | 0x7c00);
+        }
+        if (exponent <= 0) {
+            // subnormal half or zero
+            if (exponent < -10) {
+                return (short) sign;
+            }
+            mantissa |= 0x800000;
+            final int shift = 14 - exponent;
+            int half = mantissa >> shift;
+            final int rest = mantissa & ((1 << shift) - 1);
+            final int halfway = 1 << (shift - 1);
+            if (rest > halfway || (rest == halfway && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = (exponent << 10) | (mantissa >> 13);
+        final int rest = mantissa & 0x1fff;
+        // carry of rounding may increase exponent, which is still correct
+        if (rest > 0x1000 || (rest == 0x1000 && (half & 1) != 0)) {
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    static float toFloat(final short half) {
+
+        return HALF_TO_FLOAT[half & 0xffff];
+    }
+
+    private static float decode(final short half) {
+
+        final int bits = half & 0xffff;
+        final int sign = (bits & 0x8000) << 16;
+        final int exponent = (bits >>> 10) & 0x1f;
+        final int mantissa = bits & 0x3ff;
+        if (exponent == 0) {
+            final float value = mantissa * 5.9604645e-8f;
+            return sign == 0 ? value : -value;
+        }
+        if (exponent == 0x1f) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+
+    @Override
+    public void setRow(final int row, final float[] vector) {
+
+        final int offset = row * dimensions;
+        for (int j = 0; j < dimensions; j++) {
+            halfs[offset + j] = toHalf(vector[j]);
+        }
+    }
+
+    @Override
+    public void copyRow(final int row, final float[] dest) {
+
+        final int offset = row * dimensions;
+        for (int j = 0; j < dimensions; j++) {
+            dest[j] = HALF_TO_FLOAT[halfs[offset + j] & 0xffff];
+        }
+    }
+
+    @Override
+    public void addRow(final int row, final float sign, final float[] dest) {
+
+        final int offset = row * dimensions;
+        for (int j = 0; j < dimensions; j++) {
+            dest[j] += sign * HALF_TO_FLOAT[halfs[offset + j] & 0xffff];
+        }
+    }
+
+    @Override
+    public float dot(final int row, final float[] query) {
+
+        final int offset = row * dimensions;
+        float sum = 0.0f;
+        for (int j = 0; j < dimensions; j++) {
+            sum += HALF_TO_FLOAT[halfs[offset + j] & 0xffff] * query[j];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(final int firstRow, final int secondRow) {
+
+        final int a = firstRow * dimensions;
+        final int b = secondRow * dimensions;
+        float sum = 0.0f;
+        for (int j = 0; j < dimensions; j++) {
+            sum += HALF_TO_FLOAT[halfs[a + j] & 0xffff] * HALF_TO_FLOAT[halfs[b + j] & 0xffff];
+        }
+        return sum;
+    }
+
+    /**
+     * scores of the scan are already exact for stored values, so there is nothing to re-rank.
+     */
+    @Override
+    public int[] nearest(final float[] query, final int k, final int[] excluded) {
+
+        final TopKHeap heap = new TopKHeap(k);
+        for (int row = 0; row < size; row++) {
+            final float score = this.dot(row, query);
+            if (score > heap.threshold() && !contains(excluded, row)) {
+                heap.offer(row, score);
+            }
+        }
+        return heap.drainDescending();
+    }
+
+    @Override
+    public long sizeInBytes() {
+
+        return 2L * halfs.length;
+    }
+
+}
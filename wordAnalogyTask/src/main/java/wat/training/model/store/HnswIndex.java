@@ -0,0 +1,623 @@
+package wat.training.model.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * hierarchical navigable small world graph over the normalized rows of an {@link EmbeddingStore}.
+ * search starts from the top layer and walks greedily to the closest node of each layer, on the
+ * bottom layer it keeps efSearch candidates. so a query compares only a few thousand rows instead
+ * of the whole vocabulary, in return it may miss some of the exact nearest words.
+ * <p>
+ * graph is built once by inserting rows in parallel, after that it is read only.
+ */
+public class HnswIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(HnswIndex.class);
+
+    private static final int MAGIC = 0x484e5357;
+    private static final int VERSION = 1;
+    private static final int LOCK_STRIPES = 4096;
+    private static final int[] NO_NEIGHBOURS = {0};
+
+    private final EmbeddingStore store;
+    /**
+     * max neighbours of a node in upper layers, bottom layer allows twice of it.
+     */
+    private final int m;
+    private final int efConstruction;
+    private volatile int efSearch;
+
+    /**
+     * links[node][level] holds neighbour rows of the node in that level, first element is the count.
+     */
+    private final int[][][] links;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Object entryLock = new Object();
+    private volatile int entryPoint = -1;
+    private volatile int maxLevel = -1;
+
+    private final ThreadLocal<VisitedSet> visitedSets;
+
+    private HnswIndex(final EmbeddingStore store, final int m, final int efConstruction, final int efSearch) {
+
+        this.store = store;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.links = new int[store.size()][][];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        final int size = store.size();
+        this.visitedSets = ThreadLocal.withInitial(() -> new VisitedSet(size));
+    }
+
+    /**
+     * @param store          normalized vectors to index.
+     * @param m              max neighbours of a node, higher gives better recall but takes more memory.
+     * @param efConstruction candidate list size while inserting a node.
+     * @param efSearch       candidate list size while searching.
+     * @param seed           seed for choosing levels of nodes.
+     */
+    public static HnswIndex build(final EmbeddingStore store, final int m, final int efConstruction,
+            final int efSearch, final long seed) {
+
+        final HnswIndex index = new HnswIndex(store, m, efConstruction, efSearch);
+        final int size = store.size();
+        if (size == 0) {
+            return index;
+        }
+
+        // seviyeler baştan seçiliyor ki paralel eklemede sonuç seed'e bağlı kalsın
+        final Random random = new Random(seed);
+        final double levelMultiplier = 1.0d / Math.log(Math.max(2, m));
+        for (int node = 0; node < size; node++) {
+            final int level = (int) (-Math.log(1.0d - random.nextDouble()) * levelMultiplier);
+            index.links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                index.links[node][l] = new int[index.maxNeighbours(l) + 1];
+            }
+        }
+
+        final long start = System.currentTimeMillis();
+        index.entryPoint = 0;
+        index.maxLevel = index.links[0].length - 1;
+        final AtomicInteger inserted = new AtomicInteger(1);
+        IntStream.range(1, size).parallel().forEach(node -> {
+            index.insert(node);
+            final int done = inserted.incrementAndGet();
+            if (done % 100000 == 0) {
+                log.info(done + " of " + size + " words are inserted into index.");
+            }
+        });
+        log.info("Index of " + size + " words is built in "
+                + (System.currentTimeMillis() - start) / 1000 + " seconds. M: " + m
+                + ", efConstruction: " + efConstruction + ", max level: " + index.maxLevel);
+        return index;
+    }
+
+    private int maxNeighbours(final int level) {
+
+        return level == 0 ? 2 * m : m;
+    }
+
+    private Object lockOf(final int node) {
+
+        return locks[node & (LOCK_STRIPES - 1)];
+    }
+
+    private void insert(final int node) {
+
+        final float[] vector = new float[store.getDimensions()];
+        store.copyRow(node, vector);
+        final int nodeLevel = links[node].length - 1;
+
+        int currentEntry;
+        int topLevel;
+        synchronized (entryLock) {
+            currentEntry = entryPoint;
+            topLevel = maxLevel;
+        }
+
+        for (int level = topLevel; level > nodeLevel; level--) {
+            currentEntry = this.greedyClosest(vector, currentEntry, level, true);
+        }
+
+        for (int level = Math.min(nodeLevel, topLevel); level >= 0; level--) {
+            final NodeHeap found = this.searchLayer(vector, currentEntry, efConstruction, level, true);
+            final int[] candidates = found.drainDescending();
+            final int[] selected = this.selectNeighbours(node, candidates, m);
+
+            synchronized (this.lockOf(node)) {
+                final int[] own = links[node][level];
+                own[0] = selected.length;
+                System.arraycopy(selected, 0, own, 1, selected.length);
+            }
+            for (int neighbour : selected) {
+                this.connect(neighbour, node, level);
+            }
+            currentEntry = candidates[0];
+        }
+
+        if (nodeLevel > topLevel) {
+            synchronized (entryLock) {
+                if (nodeLevel > maxLevel) {
+                    entryPoint = node;
+                    maxLevel = nodeLevel;
+                }
+            }
+        }
+    }
+
+    /**
+     * adds a back link from neighbour to new node, if neighbour already has enough links
+     * they are selected again together with the new node.
+     */
+    private void connect(final int neighbour, final int node, final int level) {
+
+        synchronized (this.lockOf(neighbour)) {
+            final int[] own = links[neighbour][level];
+            final int count = own[0];
+            if (count < own.length - 1) {
+                own[count + 1] = node;
+                own[0] = count + 1;
+                return;
+            }
+
+            final int[] candidates = new int[count + 1];
+            final float[] scores = new float[count + 1];
+            for (int i = 0; i < count; i++) {
+                candidates[i] = own[i + 1];
+            }
+            candidates[count] = node;
+            for (int i = 0; i <= count; i++) {
+                scores[i] = store.dot(neighbour, candidates[i]);
+            }
+            sortDescending(candidates, scores);
+            final int[] selected = this.selectNeighbours(neighbour, candidates, this.maxNeighbours(level));
+            own[0] = selected.length;
+            System.arraycopy(selected, 0, own, 1, selected.length);
+        }
+    }
+
+    /**
+     * heuristic of the paper, a candidate is skipped if it is closer to an already selected
+     * neighbour than to the base node, so links point to different directions. skipped
+     * candidates fill the rest of the list to keep the graph connected.
+     *
+     * @param candidates sorted by similarity to base node, closest first.
+     */
+    private int[] selectNeighbours(final int base, final int[] candidates, final int max) {
+
+        final int[] selected = new int[Math.min(max, candidates.length)];
+        final boolean[] taken = new boolean[candidates.length];
+        int size = 0;
+        for (int i = 0; i < candidates.length && size < selected.length; i++) {
+            final int candidate = candidates[i];
+            if (candidate == base) {
+                taken[i] = true;
+                continue;
+            }
+            final float toBase = store.dot(base, candidate);
+            boolean diverse = true;
+            for (int s = 0; s < size && diverse; s++) {
+                diverse = store.dot(candidate, selected[s]) <= toBase;
+            }
+            if (diverse) {
+                selected[size++] = candidate;
+                taken[i] = true;
+            }
+        }
+        for (int i = 0; i < candidates.length && size < selected.length; i++) {
+            if (!taken[i]) {
+                selected[size++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(selected, size);
+    }
+
+    private int greedyClosest(final float[] query, int current, final int level, final boolean locked) {
+
+        float best = store.dot(current, query);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            final int[] own = this.neighbours(current, level, locked);
+            for (int i = 1; i <= own[0]; i++) {
+                final int neighbour = own[i];
+                final float score = store.dot(neighbour, query);
+                if (score > best) {
+                    best = score;
+                    current = neighbour;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private NodeHeap searchLayer(final float[] query, final int entry, final int ef,
+            final int level, final boolean locked) {
+
+        final VisitedSet visited = visitedSets.get();
+        visited.clear();
+        visited.add(entry);
+
+        final float entryScore = store.dot(entry, query);
+        // candidates en yakını başta olsun diye negatif skorla tutuluyor
+        final NodeHeap candidates = new NodeHeap(ef * 2);
+        final NodeHeap results = new NodeHeap(ef + 1);
+        candidates.push(entry, -entryScore);
+        results.push(entry, entryScore);
+
+        while (candidates.size() > 0) {
+            final float closest = -candidates.peekScore();
+            final int current = candidates.pop();
+            if (results.size() >= ef && closest < results.peekScore()) {
+                break;
+            }
+            final int[] own = this.neighbours(current, level, locked);
+            for (int i = 1; i <= own[0]; i++) {
+                final int neighbour = own[i];
+                if (visited.add(neighbour)) {
+                    final float score = store.dot(neighbour, query);
+                    if (results.size() < ef || score > results.peekScore()) {
+                        candidates.push(neighbour, -score);
+                        results.push(neighbour, score);
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return neighbours of the node, first element is the count. while graph is being built
+     * a copy is returned, after that the array of the graph itself is returned.
+     */
+    private int[] neighbours(final int node, final int level, final boolean locked) {
+
+        final int[][] nodeLinks = links[node];
+        if (level >= nodeLinks.length) {
+            return NO_NEIGHBOURS;
+        }
+        if (locked) {
+            synchronized (this.lockOf(node)) {
+                final int[] own = nodeLinks[level];
+                return Arrays.copyOf(own, own[0] + 1);
+            }
+        }
+        return nodeLinks[level];
+    }
+
+    /**
+     * @param query    vector to search, it does not need to be normalized.
+     * @param k        size of the returned list.
+     * @param excluded rows that should not be returned.
+     * @return approximately nearest words in descending order of similarity.
+     */
+    public List<String> nearest(final float[] query, final int k, final int[] excluded) {
+
+        return store.toWords(this.nearestRows(query, k, excluded));
+    }
+
+    int[] nearestRows(final float[] query, final int k, final int[] excluded) {
+
+        final int entry = entryPoint;
+        if (entry < 0) {
+            return new int[0];
+        }
+        int current = entry;
+        for (int level = maxLevel; level > 0; level--) {
+            current = this.greedyClosest(query, current, level, false);
+        }
+        final int ef = Math.max(efSearch, k + excluded.length);
+        final int[] found = this.searchLayer(query, current, ef, 0, false).drainDescending();
+
+        final int[] result = new int[Math.min(k, found.length)];
+        int size = 0;
+        for (int i = 0; i < found.length && size < result.length; i++) {
+            if (!VectorRows.contains(excluded, found[i])) {
+                result[size++] = found[i];
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * compares index with exact search for the nearest words of randomly chosen words.
+     *
+     * @param sampleSize how many words are queried.
+     * @param k          size of the compared lists.
+     * @param seed       seed to choose words.
+     * @return average ratio of exact nearest words that are also found by index.
+     */
+    public double measureRecall(final int sampleSize, final int k, final long seed) {
+
+        final Random random = new Random(seed);
+        final float[] query = new float[store.getDimensions()];
+        long exactNanos = 0, indexNanos = 0, found = 0, expected = 0;
+        for (int i = 0; i < sampleSize; i++) {
+            final int row = random.nextInt(store.size());
+            store.copyRow(row, query);
+            final int[] excluded = {row};
+
+            long start = System.nanoTime();
+            final List<String> exact = store.nearest(query, k, excluded);
+            exactNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final Set<String> approximate = new HashSet<>(this.nearest(query, k, excluded));
+            indexNanos += System.nanoTime() - start;
+
+            expected += exact.size();
+            for (String word : exact) {
+                if (approximate.contains(word)) {
+                    found++;
+                }
+            }
+        }
+        final double recall = expected == 0 ? 1.0d : (double) found / expected;
+        log.info("Recall@" + k + " of index for " + sampleSize + " words: " + recall
+                + " (efSearch: " + efSearch + "). Exact search took " + exactNanos / 1000000
+                + " ms, index search took " + indexNanos / 1000000 + " ms.");
+        return recall;
+    }
+
+    public void setEfSearch(final int efSearch) {
+
+        this.efSearch = efSearch;
+    }
+
+    public int getEfSearch() {
+
+        return efSearch;
+    }
+
+    public int getM() {
+
+        return m;
+    }
+
+    public int getEfConstruction() {
+
+        return efConstruction;
+    }
+
+    /**
+     * @return approximate heap size of the links, vectors belong to the store and are not counted.
+     */
+    public long sizeInBytes() {
+
+        long bytes = 16L + 8L * links.length;
+        for (int[][] levels : links) {
+            if (levels != null) {
+                bytes += 16L + 8L * levels.length;
+                for (int[] neighbours : levels) {
+                    if (neighbours != null && neighbours != NO_NEIGHBOURS) {
+                        bytes += 16L + 4L * neighbours.length;
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @param file file to write graph, vectors are not written since they belong to model.
+     */
+    public void save(final File file) throws IOException {
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(store.size());
+            out.writeInt(store.getDimensions());
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int[][] nodeLinks : links) {
+                out.writeInt(nodeLinks.length);
+                for (int[] own : nodeLinks) {
+                    out.writeInt(own[0]);
+                    for (int i = 1; i <= own[0]; i++) {
+                        out.writeInt(own[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param file  file that is written by {@link #save(File)}.
+     * @param store vectors of the same model that index was built for.
+     */
+    public static HnswIndex load(final File file, final EmbeddingStore store,
+            final int efSearch) throws IOException {
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file.getAbsolutePath() + " is not an index file.");
+            }
+            final int size = in.readInt();
+            final int dimensions = in.readInt();
+            if (size != store.size() || dimensions != store.getDimensions()) {
+                throw new IOException("Index is built for " + size + " words with " + dimensions
+                        + " dimensions, but model has " + store.size() + " words with "
+                        + store.getDimensions() + " dimensions.");
+            }
+            final HnswIndex index = new HnswIndex(store, in.readInt(), in.readInt(), efSearch);
+            final int entry = in.readInt();
+            final int top = in.readInt();
+            for (int node = 0; node < size; node++) {
+                final int levels = in.readInt();
+                index.links[node] = new int[levels][];
+                for (int level = 0; level < levels; level++) {
+                    final int count = in.readInt();
+                    final int[] own = new int[index.maxNeighbours(level) + 1];
+                    own[0] = count;
+                    for (int i = 1; i <= count; i++) {
+                        own[i] = in.readInt();
+                    }
+                    index.links[node][level] = own;
+                }
+            }
+            index.entryPoint = entry;
+            index.maxLevel = top;
+            return index;
+        }
+    }
+
+    private static void sortDescending(final int[] rows, final float[] scores) {
+
+        // liste en fazla 2M+1 eleman, insertion sort yeterli
+        for (int i = 1; i < rows.length; i++) {
+            final int row = rows[i];
+            final float score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                rows[j + 1] = rows[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            rows[j + 1] = row;
+            scores[j + 1] = score;
+        }
+    }
+
+    /**
+     * growable min-heap of nodes, root is the lowest score.
+     */
+    private static final class NodeHeap {
+
+        private int[] nodes;
+        private float[] scores;
+        private int size = 0;
+
+        NodeHeap(final int capacity) {
+
+            nodes = new int[Math.max(4, capacity)];
+            scores = new float[nodes.length];
+        }
+
+        void push(final int node, final float score) {
+
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                final int parent = (i - 1) >>> 1;
+                if (scores[parent] <= score) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        float peekScore() {
+
+            return scores[0];
+        }
+
+        int pop() {
+
+            final int root = nodes[0];
+            final int lastNode = nodes[--size];
+            final float lastScore = scores[size];
+            int i = 0;
+            for (; ; ) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && scores[child + 1] < scores[child]) {
+                    child++;
+                }
+                if (scores[child] >= lastScore) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            scores[i] = lastScore;
+            return root;
+        }
+
+        int size() {
+
+            return size;
+        }
+
+        int[] drainDescending() {
+
+            final int[] result = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = this.pop();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * marks visited nodes of one search, clearing is done by increasing the generation.
+     */
+    private static final class VisitedSet {
+
+        private final int[] marks;
+        private int generation = 0;
+
+        VisitedSet(final int size) {
+
+            marks = new int[size];
+        }
+
+        void clear() {
+
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        boolean add(final int node) {
+
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package wat.training.model.store;
+
+/**
+ * rows kept as signed byte codes with one scale for each row, a value is code * scale. query is
+ * also quantized while scanning, so the scan is an integer dot product over one byte per value.
+ * best (k * rerankFactor) rows of the scan are scored again with the float query against
+ * dequantized rows, so only error of the stored codes remains in the returned order.
+ */
+public class Int8Rows extends VectorRows {
+
+    private static final float MAX_CODE = 127.0f;
+
+    private final byte[] codes;
+    private final float[] scales;
+    private final int rerankFactor;
+
+    /**
+     * @param rerankFactor how many times more candidates than asked are collected by the scan.
+     */
+    public Int8Rows(final int size, final int dimensions, final int rerankFactor) {
+
+        super(size, dimensions);
+        this.codes = new byte[FloatRows.checkedLength(size, dimensions)];
+        this.scales = new float[size];
+        this.rerankFactor = Math.max(1, rerankFactor);
+    }
+
+    /**
+     * quantizes values symmetrically into [-127, 127].
+     *
+     * @return scale of the codes, 0 if all values are 0.
+     */
+    static float quantize(final float[] vector, final byte[] dest, final int offset, final int length) {
+
+        float maxAbs = 0.0f;
+        for (int j = 0; j < length; j++) {
+            maxAbs = Math.max(maxAbs, Math.abs(vector[j]));
+        }
+        if (maxAbs == 0.0f) {
+            for (int j = 0; j < length; j++) {
+                dest[offset + j] = 0;
+            }
+            return 0.0f;
+        }
+        final float inverse = MAX_CODE / maxAbs;
+        for (int j = 0; j < length; j++) {
+            dest[offset + j] = (byte) Math.round(vector[j] * inverse);
+        }
+        return maxAbs / MAX_CODE;
+    }
+
+    @Override
+    public void setRow(final int row, final float[] vector) {
+
+        scales[row] = quantize(vector, codes, row * dimensions, dimensions);
+    }
+
+    @Override
+    public void copyRow(final int row, final float[] dest) {
+
+        final int offset = row * dimensions;
+        final float scale = scales[row];
+        for (int j = 0; j < dimensions; j++) {
+            dest[j] = codes[offset + j] * scale;
+        }
+    }
+
+    @Override
+    public void addRow(final int row, final float sign, final float[] dest) {
+
+        final int offset = row * dimensions;
+        final float scale = sign * scales[row];
+        for (int j = 0; j < dimensions; j++) {
+            dest[j] += codes[offset + j] * scale;
+        }
+    }
+
+    @Override
+    public float dot(final int row, final float[] query) {
+
+        final int offset = row * dimensions;
+        float sum = 0.0f;
+        for (int j = 0; j < dimensions; j++) {
+            sum += codes[offset + j] * query[j];
+        }
+        return sum * scales[row];
+    }
+
+    @Override
+    public float dot(final int firstRow, final int secondRow) {
+
+        final int a = firstRow * dimensions;
+        final int b = secondRow * dimensions;
+        int sum = 0;
+        for (int j = 0; j < dimensions; j++) {
+            sum += codes[a + j] * codes[b + j];
+        }
+        return sum * scales[firstRow] * scales[secondRow];
+    }
+
+    @Override
+    public int[] nearest(final float[] query, final int k, final int[] excluded) {
+
+        final byte[] queryCodes = new byte[dimensions];
+        quantize(query, queryCodes, 0, dimensions);
+
+        // scale of query is the same for every row, so it does not change the order
+        final TopKHeap candidates = new TopKHeap(k * rerankFactor);
+        for (int row = 0; row < size; row++) {
+            final int offset = row * dimensions;
+            int sum = 0;
+            for (int j = 0; j < dimensions; j++) {
+                sum += codes[offset + j] * queryCodes[j];
+            }
+            final float score = sum * scales[row];
+            if (score > candidates.threshold() && !contains(excluded, row)) {
+                candidates.offer(row, score);
+            }
+        }
+
+        final TopKHeap heap = new TopKHeap(k);
+        for (int row : candidates.drainDescending()) {
+            heap.offer(row, this.dot(row, query));
+        }
+        return heap.drainDescending();
+    }
+
+    @Override
+    public long sizeInBytes() {
+
+        return codes.length + 4L * scales.length;
+    }
+
+}
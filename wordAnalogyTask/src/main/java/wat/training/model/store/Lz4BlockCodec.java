@@ -0,0 +1,205 @@
+package wat.training.model.store;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * byte compression in the block format of LZ4: a sequence is a token, literals and a match that
+ * points back at most 64 KB. it is much faster than deflate, so saving a model is not slowed down
+ * by compression. floats compress poorly as they are, so {@link #shuffle(byte[], int, int, byte[])}
+ * puts the same byte of every float together before compressing, signs and exponents repeat a lot.
+ */
+public final class Lz4BlockCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 14;
+
+    private Lz4BlockCodec() {
+
+    }
+
+    /**
+     * @return size of destination array that is enough for any input of given length.
+     */
+    public static int maxCompressedLength(final int length) {
+
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * @param src    bytes to compress.
+     * @param length number of bytes from the start of src.
+     * @param dest   array of at least {@link #maxCompressedLength(int)} bytes.
+     * @return number of bytes written to dest.
+     */
+    public static int compress(final byte[] src, final int length, final byte[] dest) {
+
+        final int[] table = new int[1 << HASH_LOG];
+        Arrays.fill(table, -1);
+        final int matchLimit = length - MATCH_FIND_LIMIT;
+        final int lastMatchEnd = length - LAST_LITERALS;
+        int anchor = 0;
+        int out = 0;
+        int i = 0;
+        while (i < matchLimit) {
+            final int sequence = readInt(src, i);
+            final int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+            int ref = table[hash];
+            table[hash] = i;
+            if (ref < 0 || i - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                i++;
+                continue;
+            }
+            // eşleşme geriye doğru uzatılıyor
+            while (i > anchor && ref > 0 && src[i - 1] == src[ref - 1]) {
+                i--;
+                ref--;
+            }
+            int matchLength = MIN_MATCH;
+            while (i + matchLength < lastMatchEnd && src[i + matchLength] == src[ref + matchLength]) {
+                matchLength++;
+            }
+
+            final int token = out;
+            out = writeLiterals(src, anchor, i - anchor, dest, out);
+            dest[out++] = (byte) (i - ref);
+            dest[out++] = (byte) ((i - ref) >>> 8);
+            final int extra = matchLength - MIN_MATCH;
+            if (extra >= 15) {
+                dest[token] |= 15;
+                out = writeExtraLength(extra - 15, dest, out);
+            } else {
+                dest[token] |= (byte) extra;
+            }
+            i += matchLength;
+            anchor = i;
+        }
+        return writeLiterals(src, anchor, length - anchor, dest, out);
+    }
+
+    /**
+     * writes a token that has the literal length in its high bits, then the literals.
+     * match length is added to low bits of the token by caller.
+     */
+    private static int writeLiterals(final byte[] src, final int start, final int literals,
+            final byte[] dest, int out) {
+
+        if (literals >= 15) {
+            dest[out++] = (byte) (15 << 4);
+            out = writeExtraLength(literals - 15, dest, out);
+        } else {
+            dest[out++] = (byte) (literals << 4);
+        }
+        System.arraycopy(src, start, dest, out, literals);
+        return out + literals;
+    }
+
+    private static int writeExtraLength(int remaining, final byte[] dest, int out) {
+
+        while (remaining >= 255) {
+            dest[out++] = (byte) 255;
+            remaining -= 255;
+        }
+        dest[out++] = (byte) remaining;
+        return out;
+    }
+
+    /**
+     * @param src       compressed bytes.
+     * @param length    number of compressed bytes.
+     * @param dest      array to fill.
+     * @param rawLength number of bytes that should be decompressed.
+     * @throws IOException if bytes are not a valid block or they do not give rawLength bytes.
+     */
+    public static void decompress(final byte[] src, final int length, final byte[] dest, final int rawLength)
+            throws IOException {
+
+        int in = 0;
+        int out = 0;
+        try {
+            while (in < length) {
+                final int token = src[in++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[in++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+                if (in + literals > length || out + literals > rawLength) {
+                    throw new IOException("Literals of a compressed block exceed its length.");
+                }
+                System.arraycopy(src, in, dest, out, literals);
+                in += literals;
+                out += literals;
+                if (in == length) {
+                    break;
+                }
+
+                final int offset = (src[in] & 0xFF) | (src[in + 1] & 0xFF) << 8;
+                in += 2;
+                int matchLength = token & 15;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[in++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                if (offset == 0 || offset > out || out + matchLength > rawLength) {
+                    throw new IOException("Match of a compressed block is out of its bounds.");
+                }
+                // kaynak ve hedef üst üste binebilir, byte byte kopyalanıyor
+                for (int from = out - offset, end = out + matchLength; out < end; ) {
+                    dest[out++] = dest[from++];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Compressed block ends in the middle of a sequence.", e);
+        }
+        if (out != rawLength) {
+            throw new IOException("Compressed block gives " + out + " bytes instead of " + rawLength + ".");
+        }
+    }
+
+    /**
+     * @param src    little-endian values of 4 bytes starting from offset.
+     * @param count  number of values.
+     * @param dest   byte j of value k is written to dest[offset + j * count + k].
+     */
+    public static void shuffle(final byte[] src, final int offset, final int count, final byte[] dest) {
+
+        for (int k = 0; k < count; k++) {
+            final int from = offset + 4 * k;
+            dest[offset + k] = src[from];
+            dest[offset + count + k] = src[from + 1];
+            dest[offset + 2 * count + k] = src[from + 2];
+            dest[offset + 3 * count + k] = src[from + 3];
+        }
+    }
+
+    /**
+     * reverses {@link #shuffle(byte[], int, int, byte[])}.
+     */
+    public static void unshuffle(final byte[] src, final int offset, final int count, final byte[] dest) {
+
+        for (int k = 0; k < count; k++) {
+            final int to = offset + 4 * k;
+            dest[to] = src[offset + k];
+            dest[to + 1] = src[offset + count + k];
+            dest[to + 2] = src[offset + 2 * count + k];
+            dest[to + 3] = src[offset + 3 * count + k];
+        }
+    }
+
+    private static int readInt(final byte[] src, final int i) {
+
+        return (src[i] & 0xFF) | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF) << 16 | (src[i + 3] & 0xFF) << 24;
+    }
+
+}
@@ -0,0 +1,128 @@
+package wat.training.model.store;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * float rows that are read directly from a memory-mapped file, they are not copied into heap.
+ * a mapped buffer cannot be larger than 2 GB, so rows are split into segments of whole rows.
+ * rows are read only, pages of the file are shared with other processes through page cache.
+ */
+public class MappedRows extends VectorRows {
+
+    private final FloatBuffer[] segments;
+    private final int rowsPerSegment;
+
+    /**
+     * @param channel    channel of an open file, mapping stays valid after it is closed.
+     * @param offset     position of the first row in file, rows are little-endian floats.
+     * @param size       number of rows to map.
+     * @param dimensions length of a row.
+     */
+    MappedRows(final FileChannel channel, final long offset, final int size, final int dimensions)
+            throws IOException {
+
+        super(size, dimensions);
+        final long rowBytes = 4L * dimensions;
+        this.rowsPerSegment = (int) Math.max(1, Integer.MAX_VALUE / rowBytes);
+        final int segmentCount = size == 0 ? 0 : (size - 1) / rowsPerSegment + 1;
+        this.segments = new FloatBuffer[segmentCount];
+        for (int s = 0; s < segmentCount; s++) {
+            final int rows = Math.min(rowsPerSegment, size - s * rowsPerSegment);
+            segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, offset + s * rowsPerSegment * rowBytes,
+                    rows * rowBytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        }
+    }
+
+    /**
+     * mapped rows are read only.
+     */
+    @Override
+    public void setRow(final int row, final float[] vector) {
+
+        throw new UnsupportedOperationException("Mapped rows cannot be changed.");
+    }
+
+    @Override
+    public void copyRow(final int row, final float[] dest) {
+
+        final FloatBuffer segment = segments[row / rowsPerSegment];
+        final int offset = (row % rowsPerSegment) * dimensions;
+        for (int j = 0; j < dimensions; j++) {
+            dest[j] = segment.get(offset + j);
+        }
+    }
+
+    @Override
+    public void addRow(final int row, final float sign, final float[] dest) {
+
+        final FloatBuffer segment = segments[row / rowsPerSegment];
+        final int offset = (row % rowsPerSegment) * dimensions;
+        for (int j = 0; j < dimensions; j++) {
+            dest[j] += sign * segment.get(offset + j);
+        }
+    }
+
+    @Override
+    public float dot(final int row, final float[] query) {
+
+        final FloatBuffer segment = segments[row / rowsPerSegment];
+        final int offset = (row % rowsPerSegment) * dimensions;
+        float sum = 0.0f;
+        for (int j = 0; j < dimensions; j++) {
+            sum += segment.get(offset + j) * query[j];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(final int firstRow, final int secondRow) {
+
+        final FloatBuffer first = segments[firstRow / rowsPerSegment];
+        final FloatBuffer second = segments[secondRow / rowsPerSegment];
+        final int a = (firstRow % rowsPerSegment) * dimensions;
+        final int b = (secondRow % rowsPerSegment) * dimensions;
+        float sum = 0.0f;
+        for (int j = 0; j < dimensions; j++) {
+            sum += first.get(a + j) * second.get(b + j);
+        }
+        return sum;
+    }
+
+    /**
+     * scans segments one after another, so pages of the file are read sequentially.
+     */
+    @Override
+    public int[] nearest(final float[] query, final int k, final int[] excluded) {
+
+        final TopKHeap heap = new TopKHeap(k);
+        for (int s = 0; s < segments.length; s++) {
+            final FloatBuffer segment = segments[s];
+            final int first = s * rowsPerSegment;
+            final int rows = Math.min(rowsPerSegment, size - first);
+            for (int r = 0; r < rows; r++) {
+                final int offset = r * dimensions;
+                float sum = 0.0f;
+                for (int j = 0; j < dimensions; j++) {
+                    sum += segment.get(offset + j) * query[j];
+                }
+                if (sum > heap.threshold() && !contains(excluded, first + r)) {
+                    heap.offer(first + r, sum);
+                }
+            }
+        }
+        return heap.drainDescending();
+    }
+
+    /**
+     * @return 0 since rows are in the mapped file, not in heap.
+     */
+    @Override
+    public long sizeInBytes() {
+
+        return 0L;
+    }
+
+}
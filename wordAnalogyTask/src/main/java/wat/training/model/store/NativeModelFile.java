@@ -0,0 +1,600 @@
+package wat.training.model.store;
+
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wat.helper.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * model format of this project that is opened without parsing. file starts with a header of
+ * 64 bytes, rest of it has one of two layouts.
+ * <pre>
+ * header: magic, version, size, dimensions, flags, reserved (ints), vocabulary offset,
+ *         matrix offset (longs), block count, rows of a block (ints), block table offset (long)
+ * mapped layout:
+ *   vocabulary: length of UTF-8 bytes (int) and bytes of every word, in the order of rows
+ *   matrix: little-endian float rows one after another, starting at a multiple of 64
+ * block layout:
+ *   blocks: words of some rows followed by their floats, compressed if the flag is set
+ *   block table: first row, row count (ints), offset (long), stored length, raw length (ints)
+ *                and CRC32 of raw bytes (long) for every block
+ * </pre>
+ * mapped layout decodes only the vocabulary while opening, rows stay in the file and they are paged
+ * in by OS when they are used. block layout is read into heap, blocks are written and read in
+ * parallel and every block is checked with its checksum, so a broken file is not used silently.
+ */
+public class NativeModelFile {
+
+    private static final Logger log = LoggerFactory.getLogger(NativeModelFile.class);
+
+    public static final String FILE_EXTENSION = ".wat";
+
+    public static final int LAYOUT_MAPPED = 0;
+    public static final int LAYOUT_BLOCKS = 1;
+    public static final int LAYOUT_COMPRESSED_BLOCKS = 2;
+
+    // "WATV" olarak okunuyor
+    static final int MAGIC = 0x56544157;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int MATRIX_ALIGNMENT = 64;
+    static final int BLOCK_ENTRY_SIZE = 32;
+
+    /**
+     * rows are already L2-normalized, they can be used by {@link EmbeddingStore} as they are.
+     */
+    static final int FLAG_NORMALIZED = 1;
+    static final int FLAG_BLOCKS = 2;
+    static final int FLAG_COMPRESSED = 4;
+
+    static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * rows that are written by one task, about 4 MB of 300 dimensional rows.
+     */
+    private static final int ROWS_PER_WRITE_TASK = 4096;
+
+    /**
+     * a block is about 1 MB before compression, so it is big enough to compress well and
+     * small enough to keep a few of them for each core in memory while writing.
+     */
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    private final String[] words;
+    private final VectorRows rows;
+    private final boolean normalized;
+
+    private NativeModelFile(final String[] words, final VectorRows rows, final boolean normalized) {
+
+        this.words = words;
+        this.rows = rows;
+        this.normalized = normalized;
+    }
+
+    /**
+     * @return true if file starts with the magic number of this format.
+     */
+    public static boolean isNativeFile(final File file) {
+
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(magic, 0);
+            return magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * maps the file and decodes its vocabulary, rows are not read if file has mapped layout.
+     *
+     * @param file     file that is written by this class.
+     * @param maxWords only the first maxWords words are opened, 0 opens all of them.
+     * @throws IOException if file cannot be read, it is not in this format or a block is broken.
+     */
+    public static NativeModelFile open(final File file, final int maxWords) throws IOException {
+
+        final long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer header = readHeader(channel, file);
+            final int total = header.getInt(8);
+            final int dimensions = header.getInt(12);
+            final int flags = header.getInt(16);
+            final int size = maxWords > 0 ? Math.min(maxWords, total) : total;
+
+            final NativeModelFile result;
+            if ((flags & FLAG_BLOCKS) != 0) {
+                final float[] vectors = new float[FloatRows.checkedLength(size, dimensions)];
+                final String[] words = readBlocks(channel, header, size, dimensions, flags, vectors);
+                result = new NativeModelFile(words, new FloatRows(vectors, dimensions),
+                        (flags & FLAG_NORMALIZED) != 0);
+            } else {
+                result = mapRows(channel, header.getLong(24), header.getLong(32), total, size, dimensions, flags);
+            }
+            log.info(size + " words with " + dimensions + " dimensions are opened from " + file.getName()
+                    + " in " + (System.currentTimeMillis() - start) + " milliseconds.");
+            return result;
+        }
+    }
+
+    /**
+     * reads only the words, rows of mapped layout are not touched. blocks are still decoded
+     * since words and rows are compressed together, but rows are not copied.
+     *
+     * @param file     file that is written by this class.
+     * @param maxWords only the first maxWords words are read, 0 reads all of them.
+     * @throws IOException if file cannot be read, it is not in this format or a block is broken.
+     */
+    public static String[] readVocabulary(final File file, final int maxWords) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer header = readHeader(channel, file);
+            final int total = header.getInt(8);
+            final int flags = header.getInt(16);
+            final int size = maxWords > 0 ? Math.min(maxWords, total) : total;
+            if ((flags & FLAG_BLOCKS) != 0) {
+                return readBlocks(channel, header, size, header.getInt(12), flags, null);
+            }
+            return readWords(channel, header.getLong(24), header.getLong(32), size);
+        }
+    }
+
+    private static ByteBuffer readHeader(final FileChannel channel, final File file) throws IOException {
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header) >= 0) {
+            // header tamamen okunana kadar devam
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException(file.getName() + " is not a native model file.");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Version " + header.getInt(4) + " of native model file is not supported.");
+        }
+        return header;
+    }
+
+    private static NativeModelFile mapRows(final FileChannel channel, final long vocabOffset, final long matrixOffset,
+            final int total, final int size, final int dimensions, final int flags) throws IOException {
+
+        if (matrixOffset + 4L * total * dimensions > channel.size()) {
+            throw new IOException("File is shorter than its header says, it may be truncated.");
+        }
+        final String[] words = readWords(channel, vocabOffset, matrixOffset, size);
+        return new NativeModelFile(words, new MappedRows(channel, matrixOffset, size, dimensions),
+                (flags & FLAG_NORMALIZED) != 0);
+    }
+
+    private static String[] readWords(final FileChannel channel, final long vocabOffset, final long matrixOffset,
+            final int size) throws IOException {
+
+        final MappedByteBuffer vocab = channel.map(FileChannel.MapMode.READ_ONLY, vocabOffset,
+                matrixOffset - vocabOffset);
+        vocab.order(ByteOrder.LITTLE_ENDIAN);
+        final String[] words = new String[size];
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < size; i++) {
+            final int length = vocab.getInt();
+            if (length > bytes.length) {
+                bytes = new byte[length * 2];
+            }
+            vocab.get(bytes, 0, length);
+            words[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+        return words;
+    }
+
+    /**
+     * reads blocks that have the first size rows in parallel, every block is decoded into its
+     * own part of the words and the matrix.
+     *
+     * @param vectors matrix of size rows to fill, null to read only words.
+     * @return words of the first size rows.
+     */
+    private static String[] readBlocks(final FileChannel channel, final ByteBuffer header, final int size,
+            final int dimensions, final int flags, final float[] vectors) throws IOException {
+
+        final int blockCount = header.getInt(40);
+        final long tableOffset = header.getLong(48);
+        if (tableOffset + (long) blockCount * BLOCK_ENTRY_SIZE > channel.size()) {
+            throw new IOException("File is shorter than its header says, it may be truncated.");
+        }
+        final ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, tableOffset,
+                (long) blockCount * BLOCK_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        final boolean compressed = (flags & FLAG_COMPRESSED) != 0;
+        final String[] words = new String[size];
+        try {
+            IntStream.range(0, blockCount).parallel().forEach(b -> {
+                final int entry = b * BLOCK_ENTRY_SIZE;
+                final int firstRow = table.getInt(entry);
+                if (firstRow < size) {
+                    try {
+                        readBlock(channel, table.getLong(entry + 8), table.getInt(entry + 16),
+                                table.getInt(entry + 20), table.getLong(entry + 24), compressed, firstRow,
+                                Math.min(table.getInt(entry + 4), size - firstRow), dimensions, words, vectors);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Block " + b + " cannot be read.", e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw new IOException(e.getMessage(), e.getCause());
+        }
+        return words;
+    }
+
+    private static void readBlock(final FileChannel channel, final long offset, final int storedLength,
+            final int rawLength, final long checksum, final boolean compressed, final int firstRow, final int rowCount,
+            final int dimensions, final String[] words, final float[] vectors) throws IOException {
+
+        final byte[] stored = new byte[storedLength];
+        final ByteBuffer target = ByteBuffer.wrap(stored);
+        while (target.hasRemaining()) {
+            if (channel.read(target, offset + target.position()) < 0) {
+                throw new IOException("File ends in the middle of a block.");
+            }
+        }
+        byte[] raw = stored;
+        if (compressed) {
+            final byte[] shuffled = new byte[rawLength];
+            Lz4BlockCodec.decompress(stored, storedLength, shuffled, rawLength);
+            raw = new byte[rawLength];
+            // satır sayısı ve kelimeler karıştırılmadan yazılıyor, sadece float'lar karışık
+            final int floatsStart = rawLength - 4 * dimensions
+                    * ByteBuffer.wrap(shuffled).order(ByteOrder.LITTLE_ENDIAN).getInt(0);
+            if (floatsStart < 4 || floatsStart > rawLength) {
+                throw new IOException("Row count of the block does not match its length, file is broken.");
+            }
+            System.arraycopy(shuffled, 0, raw, 0, floatsStart);
+            Lz4BlockCodec.unshuffle(shuffled, floatsStart, (rawLength - floatsStart) / 4, raw);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(raw, 0, raw.length);
+        if (crc.getValue() != checksum) {
+            throw new IOException("Checksum of the block does not match, file is broken.");
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+        final int rowsInBlock = buffer.getInt();
+        for (int i = 0; i < rowsInBlock; i++) {
+            final int length = buffer.getInt();
+            if (i < rowCount) {
+                words[firstRow + i] = new String(raw, buffer.position(), length, StandardCharsets.UTF_8);
+            }
+            buffer.position(buffer.position() + length);
+        }
+        if (vectors != null) {
+            buffer.asFloatBuffer().get(vectors, firstRow * dimensions, rowCount * dimensions);
+        }
+    }
+
+    /**
+     * writes raw weights of a dl4j model, they are normalized again when they are opened as a store.
+     *
+     * @param file        file to create or overwrite.
+     * @param wordVectors word2vec or glove model that is already built.
+     * @param layout      one of the layout constants of this class.
+     */
+    public static void write(final File file, final WordVectors wordVectors, final int layout) throws IOException {
+
+        final VocabCache<?> vocab = wordVectors.vocab();
+        final INDArray weights = wordVectors.lookupTable().getWeights();
+        final int size = vocab.numWords();
+        final String[] words = new String[size];
+        for (int i = 0; i < size; i++) {
+            words[i] = vocab.wordAtIndex(i);
+        }
+        write(file, words, weights.columns(), false, (row, dest) -> {
+            final INDArray vector = weights.getRow(row);
+            for (int j = 0; j < dest.length; j++) {
+                dest[j] = vector.getFloat(j);
+            }
+        }, layout);
+    }
+
+    /**
+     * writes normalized rows of a store, quantized rows are written after they are dequantized.
+     *
+     * @param file   file to create or overwrite.
+     * @param store  store that is already built.
+     * @param layout one of the layout constants of this class.
+     */
+    public static void write(final File file, final EmbeddingStore store, final int layout) throws IOException {
+
+        final String[] words = new String[store.size()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = store.wordAt(i);
+        }
+        write(file, words, store.getDimensions(), true, store::copyRow, layout);
+    }
+
+    /**
+     * gives a row to writer, dest has the length of dimensions. it is called from multiple threads.
+     */
+    interface RowSource {
+
+        void copyRow(int row, float[] dest);
+    }
+
+    static void write(final File file, final String[] words, final int dimensions, final boolean normalized,
+            final RowSource source, final int layout) throws IOException {
+
+        final long start = System.currentTimeMillis();
+        if (layout == LAYOUT_MAPPED) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeMapped(channel, words, dimensions, normalized, source);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } else {
+            // bloklar writer içinde paralel kodlanıyor
+            try (NativeModelWriter writer = new NativeModelWriter(file, dimensions, normalized, layout)) {
+                final float[] row = new float[dimensions];
+                for (int i = 0; i < words.length; i++) {
+                    source.copyRow(i, row);
+                    writer.addRow(words[i], row);
+                }
+            }
+        }
+        final double seconds = Math.max(1L, System.currentTimeMillis() - start) / 1000.0d;
+        final long rawBytes = 4L * words.length * dimensions;
+        log.info(words.length + " words are written to " + file.getName() + " in "
+                + String.format("%.2f", seconds) + " seconds, " + String.format("%.1f",
+                rawBytes / (1024.0d * 1024.0d) / seconds) + " MB/s of vectors. File takes "
+                + file.length() / (1024 * 1024) + " MB for " + rawBytes / (1024 * 1024) + " MB of vectors.");
+    }
+
+    static ByteBuffer prepareHeader(final int size, final int dimensions, final int flags,
+            final long vocabOffset, final long matrixOffset) {
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(dimensions).putInt(flags).putInt(0)
+                .putLong(vocabOffset).putLong(matrixOffset);
+        return header;
+    }
+
+    /**
+     * vocabulary is written by one thread since it is small, rows have fixed positions, so row
+     * ranges are written in parallel to their own positions.
+     */
+    private static void writeMapped(final FileChannel channel, final String[] words, final int dimensions,
+            final boolean normalized, final RowSource source) throws IOException {
+
+        final byte[][] encoded = new byte[words.length][];
+        long vocabSize = 0L;
+        for (int i = 0; i < words.length; i++) {
+            encoded[i] = words[i].getBytes(StandardCharsets.UTF_8);
+            vocabSize += 4 + encoded[i].length;
+        }
+        final long matrixOffset = align(HEADER_SIZE + vocabSize);
+
+        final ByteBuffer header = prepareHeader(words.length, dimensions, normalized ? FLAG_NORMALIZED : 0,
+                HEADER_SIZE, matrixOffset);
+        header.position(HEADER_SIZE);
+        flush(channel, header, 0L);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long position = HEADER_SIZE;
+        for (byte[] word : encoded) {
+            if (buffer.remaining() < 4 + word.length) {
+                position += flush(channel, buffer, position);
+            }
+            if (buffer.remaining() < 4 + word.length) {
+                // tampondan uzun kelime doğrudan yazılıyor
+                buffer.putInt(word.length);
+                position += flush(channel, buffer, position);
+                position += writeFully(channel, ByteBuffer.wrap(word), position);
+            } else {
+                buffer.putInt(word.length).put(word);
+            }
+        }
+        flush(channel, buffer, position);
+
+        final int tasks = (words.length + ROWS_PER_WRITE_TASK - 1) / ROWS_PER_WRITE_TASK;
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            final int first = t * ROWS_PER_WRITE_TASK;
+            final int end = Math.min(words.length, first + ROWS_PER_WRITE_TASK);
+            final ByteBuffer rows = ByteBuffer.allocate(4 * dimensions * (end - first)).order(ByteOrder.LITTLE_ENDIAN);
+            final float[] row = new float[dimensions];
+            for (int i = first; i < end; i++) {
+                source.copyRow(i, row);
+                for (float value : row) {
+                    rows.putFloat(value);
+                }
+            }
+            try {
+                flush(channel, rows, matrixOffset + 4L * dimensions * first);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (channel.size() < matrixOffset) {
+            // hiç satır yoksa matris başlangıcına kadar doldur
+            writeFully(channel, ByteBuffer.allocate((int) (matrixOffset - channel.size())), channel.size());
+        }
+    }
+
+    /**
+     * @return rows that make a block of about {@link #BLOCK_SIZE} bytes.
+     */
+    static int rowsPerBlock(final int dimensions) {
+
+        return Math.max(1, BLOCK_SIZE / (4 * dimensions + 16));
+    }
+
+    static final class EncodedBlock {
+
+        int rowCount;
+        byte[] stored;
+        int storedLength;
+        int rawLength;
+        long checksum;
+    }
+
+    /**
+     * raw block is row count, words with their lengths and floats of the rows. checksum is taken
+     * before compression, so it also checks decompression while reading.
+     */
+    static EncodedBlock encodeBlock(final String[] words, final int first, final int end,
+            final int dimensions, final RowSource source, final boolean compressed) {
+
+        final int rowCount = end - first;
+        final byte[][] encodedWords = new byte[rowCount][];
+        int wordBytes = 0;
+        for (int i = 0; i < rowCount; i++) {
+            encodedWords[i] = words[first + i].getBytes(StandardCharsets.UTF_8);
+            wordBytes += 4 + encodedWords[i].length;
+        }
+        final int floatsStart = 4 + wordBytes;
+        final byte[] raw = new byte[floatsStart + 4 * rowCount * dimensions];
+        final ByteBuffer buffer = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(rowCount);
+        for (byte[] word : encodedWords) {
+            buffer.putInt(word.length).put(word);
+        }
+        final float[] row = new float[dimensions];
+        for (int i = first; i < end; i++) {
+            source.copyRow(i, row);
+            for (float value : row) {
+                buffer.putFloat(value);
+            }
+        }
+
+        final EncodedBlock block = new EncodedBlock();
+        block.rowCount = rowCount;
+        block.rawLength = raw.length;
+        final CRC32 crc = new CRC32();
+        crc.update(raw, 0, raw.length);
+        block.checksum = crc.getValue();
+        if (compressed) {
+            final byte[] shuffled = new byte[raw.length];
+            System.arraycopy(raw, 0, shuffled, 0, floatsStart);
+            Lz4BlockCodec.shuffle(raw, floatsStart, rowCount * dimensions, shuffled);
+            block.stored = new byte[Lz4BlockCodec.maxCompressedLength(raw.length)];
+            block.storedLength = Lz4BlockCodec.compress(shuffled, shuffled.length, block.stored);
+        } else {
+            block.stored = raw;
+            block.storedLength = raw.length;
+        }
+        return block;
+    }
+
+    static long align(final long position) {
+
+        return (position + MATRIX_ALIGNMENT - 1) / MATRIX_ALIGNMENT * MATRIX_ALIGNMENT;
+    }
+
+    /**
+     * writes what is between position and limit of buffer to the given position of file.
+     * positional writes do not move the channel, so threads can write to different positions.
+     *
+     * @return number of written bytes.
+     */
+    static int writeFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    /**
+     * writes bytes that are put into buffer and clears it for next bytes.
+     *
+     * @return number of written bytes.
+     */
+    static int flush(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+
+        buffer.flip();
+        final int written = writeFully(channel, buffer, position);
+        buffer.clear();
+        return written;
+    }
+
+    /**
+     * normalized rows are used without copying if storage is float, otherwise rows are copied
+     * into given storage and normalized while they are copied.
+     *
+     * @param storage one of vector storage constants in {@link Constants}.
+     */
+    public EmbeddingStore toEmbeddingStore(final int storage) {
+
+        if (normalized && storage == Constants.VECTORS_AS_FLOAT) {
+            return new EmbeddingStore(words, rows);
+        }
+        final int dimensions = rows.getDimensions();
+        final VectorRows copy = EmbeddingStore.createRows(storage, words.length, dimensions);
+        final float[] vector = new float[dimensions];
+        for (int i = 0; i < words.length; i++) {
+            rows.copyRow(i, vector);
+            EmbeddingStore.normalizeRow(vector, 0, dimensions);
+            copy.setRow(i, vector);
+        }
+        return new EmbeddingStore(words, copy);
+    }
+
+    /**
+     * copies rows into heap, so a dl4j lookup table can be built from them.
+     */
+    public PretrainedVectors toPretrainedVectors() {
+
+        final int dimensions = rows.getDimensions();
+        final float[] vectors = new float[FloatRows.checkedLength(words.length, dimensions)];
+        final float[] vector = new float[dimensions];
+        for (int i = 0; i < words.length; i++) {
+            rows.copyRow(i, vector);
+            System.arraycopy(vector, 0, vectors, i * dimensions, dimensions);
+        }
+        return new PretrainedVectors(words, vectors, dimensions);
+    }
+
+    public String wordAt(final int row) {
+
+        return words[row];
+    }
+
+    /**
+     * copies a row as it is stored, without normalizing it.
+     */
+    public void copyRow(final int row, final float[] dest) {
+
+        rows.copyRow(row, dest);
+    }
+
+    public int size() {
+
+        return words.length;
+    }
+
+    public int getDimensions() {
+
+        return rows.getDimensions();
+    }
+
+    public boolean isNormalized() {
+
+        return normalized;
+    }
+
+}
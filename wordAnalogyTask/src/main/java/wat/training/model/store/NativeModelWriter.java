@@ -0,0 +1,242 @@
+package wat.training.model.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * writes a {@link NativeModelFile} row by row when number of rows is not known before, so a model
+ * can be converted while it is streamed. only words and a few blocks are kept in memory. rows of
+ * mapped layout go to a temporary file first, since vocabulary is written before the matrix.
+ */
+public class NativeModelWriter implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(NativeModelWriter.class);
+
+    private final File file;
+    private final int dimensions;
+    private final boolean normalized;
+    private final int layout;
+    private final FileChannel channel;
+
+    // mapped layout
+    private File rowsFile;
+    private FileChannel rowsChannel;
+    private List<byte[]> encodedWords;
+    private long vocabSize;
+
+    // block layout
+    private final int rowsPerBlock;
+    private final int window;
+    private final List<String[]> pendingWords = new ArrayList<>();
+    private final List<float[]> pendingRows = new ArrayList<>();
+    private String[] blockWords;
+    private float[] blockRows;
+    private int rowsInBlock;
+    private ByteBuffer table;
+    private int blockCount;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(NativeModelFile.WRITE_BUFFER_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private long position = NativeModelFile.HEADER_SIZE;
+    private int size;
+
+    /**
+     * @param file       file to create or overwrite.
+     * @param dimensions length of every row.
+     * @param normalized true if rows are L2-normalized, so they can be mapped as they are.
+     * @param layout     one of the layout constants of {@link NativeModelFile}.
+     */
+    public NativeModelWriter(final File file, final int dimensions, final boolean normalized, final int layout)
+            throws IOException {
+
+        this.file = file;
+        this.dimensions = dimensions;
+        this.normalized = normalized;
+        this.layout = layout;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.rowsPerBlock = NativeModelFile.rowsPerBlock(dimensions);
+        this.window = Runtime.getRuntime().availableProcessors() * 2;
+        if (layout == NativeModelFile.LAYOUT_MAPPED) {
+            rowsFile = new File(file.getPath() + ".rows");
+            rowsChannel = FileChannel.open(rowsFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING);
+            encodedWords = new ArrayList<>(100000);
+        } else {
+            table = ByteBuffer.allocate(NativeModelFile.BLOCK_ENTRY_SIZE * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            this.startBlock();
+        }
+    }
+
+    /**
+     * @param word   word of the row.
+     * @param vector values of the row, it is copied, so it can be reused by caller.
+     */
+    public void addRow(final String word, final float[] vector) throws IOException {
+
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException(word + " has " + vector.length + " values instead of "
+                    + dimensions + ".");
+        }
+        if (layout == NativeModelFile.LAYOUT_MAPPED) {
+            final byte[] encoded = word.getBytes(StandardCharsets.UTF_8);
+            encodedWords.add(encoded);
+            vocabSize += 4 + encoded.length;
+            if (buffer.remaining() < 4 * dimensions) {
+                NativeModelFile.flush(rowsChannel, buffer, rowsChannel.size());
+            }
+            for (float value : vector) {
+                buffer.putFloat(value);
+            }
+        } else {
+            blockWords[rowsInBlock] = word;
+            System.arraycopy(vector, 0, blockRows, rowsInBlock * dimensions, dimensions);
+            if (++rowsInBlock == rowsPerBlock) {
+                this.finishBlock();
+            }
+        }
+        size++;
+    }
+
+    public int size() {
+
+        return size;
+    }
+
+    private void startBlock() {
+
+        blockWords = new String[rowsPerBlock];
+        blockRows = new float[rowsPerBlock * dimensions];
+        rowsInBlock = 0;
+    }
+
+    private void finishBlock() throws IOException {
+
+        if (rowsInBlock == 0) {
+            return;
+        }
+        pendingWords.add(rowsInBlock == rowsPerBlock ? blockWords : Arrays.copyOf(blockWords, rowsInBlock));
+        pendingRows.add(blockRows);
+        this.startBlock();
+        if (pendingWords.size() >= window) {
+            this.writePendingBlocks();
+        }
+    }
+
+    /**
+     * encodes waiting blocks in parallel and writes them in order.
+     */
+    private void writePendingBlocks() throws IOException {
+
+        final int count = pendingWords.size();
+        final boolean compressed = layout == NativeModelFile.LAYOUT_COMPRESSED_BLOCKS;
+        final NativeModelFile.EncodedBlock[] encoded = new NativeModelFile.EncodedBlock[count];
+        IntStream.range(0, count).parallel().forEach(b -> {
+            final String[] words = pendingWords.get(b);
+            final float[] rows = pendingRows.get(b);
+            encoded[b] = NativeModelFile.encodeBlock(words, 0, words.length, dimensions,
+                    (row, dest) -> System.arraycopy(rows, row * dimensions, dest, 0, dimensions), compressed);
+        });
+        for (NativeModelFile.EncodedBlock block : encoded) {
+            if (table.remaining() < NativeModelFile.BLOCK_ENTRY_SIZE) {
+                final ByteBuffer larger = ByteBuffer.allocate(table.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+                table.flip();
+                larger.put(table);
+                table = larger;
+            }
+            table.putInt(blockCount * rowsPerBlock).putInt(block.rowCount).putLong(position)
+                    .putInt(block.storedLength).putInt(block.rawLength).putLong(block.checksum);
+            position += NativeModelFile.writeFully(channel, ByteBuffer.wrap(block.stored, 0, block.storedLength),
+                    position);
+            blockCount++;
+        }
+        pendingWords.clear();
+        pendingRows.clear();
+    }
+
+    /**
+     * writes what is left and the header, file can be opened after it is closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        try {
+            if (layout == NativeModelFile.LAYOUT_MAPPED) {
+                this.finishMapped();
+            } else {
+                this.finishBlock();
+                this.writePendingBlocks();
+                final long tableOffset = position;
+                NativeModelFile.flush(channel, table, tableOffset);
+                final int flags = NativeModelFile.FLAG_BLOCKS | (normalized ? NativeModelFile.FLAG_NORMALIZED : 0)
+                        | (layout == NativeModelFile.LAYOUT_COMPRESSED_BLOCKS ? NativeModelFile.FLAG_COMPRESSED : 0);
+                final ByteBuffer header = NativeModelFile.prepareHeader(size, dimensions, flags, 0L, 0L);
+                header.putInt(blockCount).putInt(rowsPerBlock).putLong(tableOffset).position(
+                        NativeModelFile.HEADER_SIZE);
+                NativeModelFile.flush(channel, header, 0L);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            channel.close();
+            if (rowsChannel != null) {
+                rowsChannel.close();
+                Files.deleteIfExists(rowsFile.toPath());
+            }
+        }
+        log.info(size + " words are written to " + file.getName() + ", file takes "
+                + file.length() / (1024 * 1024) + " MB.");
+    }
+
+    /**
+     * header and vocabulary are written first, then rows are copied from temporary file.
+     */
+    private void finishMapped() throws IOException {
+
+        NativeModelFile.flush(rowsChannel, buffer, rowsChannel.size());
+        final long matrixOffset = NativeModelFile.align(NativeModelFile.HEADER_SIZE + vocabSize);
+        final ByteBuffer header = NativeModelFile.prepareHeader(size, dimensions,
+                normalized ? NativeModelFile.FLAG_NORMALIZED : 0, NativeModelFile.HEADER_SIZE, matrixOffset);
+        header.position(NativeModelFile.HEADER_SIZE);
+        NativeModelFile.flush(channel, header, 0L);
+
+        for (byte[] word : encodedWords) {
+            if (buffer.remaining() < 4 + word.length) {
+                position += NativeModelFile.flush(channel, buffer, position);
+            }
+            if (buffer.remaining() < 4 + word.length) {
+                // tampondan uzun kelime doğrudan yazılıyor
+                buffer.putInt(word.length);
+                position += NativeModelFile.flush(channel, buffer, position);
+                position += NativeModelFile.writeFully(channel, ByteBuffer.wrap(word), position);
+            } else {
+                buffer.putInt(word.length).put(word);
+            }
+        }
+        position += NativeModelFile.flush(channel, buffer, position);
+        // matris 64 byte sınırından başlıyor
+        NativeModelFile.writeFully(channel, ByteBuffer.allocate((int) (matrixOffset - position)), position);
+
+        final long rowsSize = rowsChannel.size();
+        long copied = 0L;
+        while (copied < rowsSize) {
+            copied += rowsChannel.transferTo(copied, rowsSize - copied, channel.position(matrixOffset + copied));
+        }
+    }
+
+}
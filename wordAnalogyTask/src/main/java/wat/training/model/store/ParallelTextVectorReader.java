@@ -0,0 +1,405 @@
+package wat.training.model.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * reads glove or word2vec text vectors on all cores. file is split into byte ranges that start
+ * after a new line, rows of every range are counted first, so every range knows where its rows
+ * are in the result. then ranges are parsed in parallel directly into one contiguous matrix.
+ * numbers are parsed from bytes without creating strings, only words are decoded.
+ */
+public class ParallelTextVectorReader {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelTextVectorReader.class);
+
+    /**
+     * a range is mapped at once, so it should be smaller than 2 GB.
+     */
+    private static final long MAX_RANGE_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * ranges for each core, more ranges than cores keep all cores busy till the end.
+     */
+    private static final int RANGES_PER_CORE = 4;
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1.0d;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0d;
+        }
+    }
+
+    private ParallelTextVectorReader() {
+
+    }
+
+    /**
+     * @param file     uncompressed text file, word2vec header in the first line is skipped if it exists.
+     * @param maxWords only the first maxWords rows are read, 0 reads all of them.
+     * @throws IOException if file cannot be read or rows do not have the same length.
+     */
+    public static PretrainedVectors read(final File file, final int maxWords) throws IOException {
+
+        final long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            final byte[] firstLine = readFirstLine(channel);
+            final String[] firstTokens = new String(firstLine, StandardCharsets.UTF_8).trim().split(" ");
+            final boolean hasHeader = firstTokens.length == 2 && isInteger(firstTokens[0])
+                    && isInteger(firstTokens[1]);
+            final int dimensions = hasHeader ? Integer.parseInt(firstTokens[1]) : firstTokens.length - 1;
+            if (dimensions <= 0) {
+                throw new IOException("First line of " + file.getName() + " does not have any vector.");
+            }
+            final long dataStart = hasHeader ? Math.min(fileSize, firstLine.length + 1L) : 0L;
+
+            final long[] bounds = splitIntoRanges(channel, dataStart, fileSize);
+            final int ranges = bounds.length - 1;
+            final int[] rowsOfRange = new int[ranges];
+            final int[] firstRowOfRange = new int[ranges];
+            final int size = locateRows(channel, bounds, maxWords, rowsOfRange, firstRowOfRange);
+
+            final String[] words = new String[size];
+            final float[] vectors = new float[FloatRows.checkedLength(size, dimensions)];
+            forEachRange(ranges, r -> {
+                if (firstRowOfRange[r] < size) {
+                    parseRows(map(channel, bounds[r], bounds[r + 1]), firstRowOfRange[r],
+                            Math.min(size, firstRowOfRange[r] + rowsOfRange[r]), dimensions, words, vectors);
+                }
+            });
+
+            final double seconds = Math.max(1L, System.currentTimeMillis() - start) / 1000.0d;
+            log.info(size + " words with " + dimensions + " dimensions are read from " + file.getName()
+                    + " with " + ranges + " ranges in " + String.format("%.2f", seconds) + " seconds, "
+                    + String.format("%.1f", fileSize / (1024.0d * 1024.0d) / seconds) + " MB/s, "
+                    + (long) (size / seconds) + " rows/s.");
+            return new PretrainedVectors(words, vectors, dimensions);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * reads only the first word of every row, numbers are skipped without parsing them.
+     *
+     * @param file     uncompressed text file, word2vec header in the first line is skipped if it exists.
+     * @param maxWords only the first maxWords words are read, 0 reads all of them.
+     * @throws IOException if file cannot be read.
+     */
+    public static String[] readWords(final File file, final int maxWords) throws IOException {
+
+        final long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            final byte[] firstLine = readFirstLine(channel);
+            final String[] firstTokens = new String(firstLine, StandardCharsets.UTF_8).trim().split(" ");
+            final boolean hasHeader = firstTokens.length == 2 && isInteger(firstTokens[0])
+                    && isInteger(firstTokens[1]);
+            final long dataStart = hasHeader ? Math.min(fileSize, firstLine.length + 1L) : 0L;
+
+            final long[] bounds = splitIntoRanges(channel, dataStart, fileSize);
+            final int ranges = bounds.length - 1;
+            final int[] rowsOfRange = new int[ranges];
+            final int[] firstRowOfRange = new int[ranges];
+            final int size = locateRows(channel, bounds, maxWords, rowsOfRange, firstRowOfRange);
+
+            final String[] words = new String[size];
+            forEachRange(ranges, r -> {
+                if (firstRowOfRange[r] < size) {
+                    parseWords(map(channel, bounds[r], bounds[r + 1]), firstRowOfRange[r],
+                            Math.min(size, firstRowOfRange[r] + rowsOfRange[r]), words);
+                }
+            });
+            log.info(size + " words are read from " + file.getName() + " without their vectors in "
+                    + (System.currentTimeMillis() - start) + " ms.");
+            return words;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * counts rows of every range in parallel and finds where the first row of every range is in the result.
+     *
+     * @return number of rows to read.
+     */
+    private static int locateRows(final FileChannel channel, final long[] bounds, final int maxWords,
+            final int[] rowsOfRange, final int[] firstRowOfRange) {
+
+        final int ranges = rowsOfRange.length;
+        forEachRange(ranges, r -> rowsOfRange[r] = countRows(map(channel, bounds[r], bounds[r + 1])));
+
+        // her aralığın ilk satırı sonuçta nereye yazılacak
+        long total = 0;
+        for (int r = 0; r < ranges; r++) {
+            firstRowOfRange[r] = (int) Math.min(total, Integer.MAX_VALUE);
+            total += rowsOfRange[r];
+        }
+        return (int) Math.min(maxWords > 0 ? Math.min(maxWords, total) : total, Integer.MAX_VALUE);
+    }
+
+    private interface RangeTask {
+
+        void run(int range) throws IOException;
+    }
+
+    private static void forEachRange(final int ranges, final RangeTask task) {
+
+        IntStream.range(0, ranges).parallel().forEach(r -> {
+            try {
+                task.run(r);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static byte[] readFirstLine(final FileChannel channel) throws IOException {
+
+        final MappedByteBuffer buffer = map(channel, 0, Math.min(channel.size(), 1L << 20));
+        int end = 0;
+        while (end < buffer.limit() && buffer.get(end) != '\n') {
+            end++;
+        }
+        final byte[] line = new byte[end];
+        buffer.get(line);
+        return line;
+    }
+
+    /**
+     * @return start of every range and end of file as the last element, every range starts after a new line.
+     */
+    private static long[] splitIntoRanges(final FileChannel channel, final long dataStart, final long fileSize)
+            throws IOException {
+
+        final long dataSize = fileSize - dataStart;
+        final int wanted = Runtime.getRuntime().availableProcessors() * RANGES_PER_CORE;
+        final long rangeSize = Math.max(1L, Math.min(MAX_RANGE_SIZE, dataSize / wanted + 1));
+        final long[] bounds = new long[(int) (dataSize / rangeSize) + 2];
+        int count = 0;
+        bounds[count++] = dataStart;
+        long position = dataStart + rangeSize;
+        while (position < fileSize) {
+            // bir sonraki satırın başına kadar ilerle
+            final MappedByteBuffer probe = map(channel, position, Math.min(fileSize, position + (1L << 20)));
+            int i = 0;
+            while (i < probe.limit() && probe.get(i) != '\n') {
+                i++;
+            }
+            if (position + i == fileSize) {
+                break;
+            }
+            if (i == probe.limit()) {
+                throw new IOException("A line longer than 1 MB is found at byte " + position + ".");
+            }
+            final long next = position + i + 1;
+            if (next >= fileSize) {
+                break;
+            }
+            bounds[count++] = next;
+            position = next + rangeSize;
+        }
+        bounds[count++] = fileSize;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static MappedByteBuffer map(final FileChannel channel, final long start, final long end)
+            throws IOException {
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+
+    /**
+     * a row is a line that has at least one byte other than a new line.
+     */
+    private static int countRows(final MappedByteBuffer buffer) {
+
+        int rows = 0;
+        boolean empty = true;
+        final int limit = buffer.limit();
+        for (int i = 0; i < limit; i++) {
+            final byte b = buffer.get(i);
+            if (b == '\n') {
+                if (!empty) {
+                    rows++;
+                }
+                empty = true;
+            } else if (b != '\r') {
+                empty = false;
+            }
+        }
+        return empty ? rows : rows + 1;
+    }
+
+    private static void parseRows(final MappedByteBuffer buffer, final int firstRow, final int endRow,
+            final int dimensions, final String[] words, final float[] vectors) throws IOException {
+
+        final int limit = buffer.limit();
+        byte[] wordBytes = new byte[64];
+        int i = 0;
+        int row = firstRow;
+        while (row < endRow && i < limit) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                i++;
+                continue;
+            }
+            // kelime ilk boşluğa kadar
+            int length = 0;
+            while (i < limit && (b = buffer.get(i)) != ' ' && b != '\n' && b != '\r') {
+                if (length == wordBytes.length) {
+                    wordBytes = Arrays.copyOf(wordBytes, length * 2);
+                }
+                wordBytes[length++] = b;
+                i++;
+            }
+            words[row] = new String(wordBytes, 0, length, StandardCharsets.UTF_8);
+
+            final int offset = row * dimensions;
+            for (int j = 0; j < dimensions; j++) {
+                while (i < limit && buffer.get(i) == ' ') {
+                    i++;
+                }
+                if (i == limit || buffer.get(i) == '\n' || buffer.get(i) == '\r') {
+                    throw new IOException("Row of " + words[row] + " has " + j + " values instead of "
+                            + dimensions + ".");
+                }
+                i = parseFloat(buffer, i, limit, vectors, offset + j);
+            }
+            while (i < limit && buffer.get(i) == ' ') {
+                i++;
+            }
+            if (i < limit && buffer.get(i) != '\n' && buffer.get(i) != '\r') {
+                throw new IOException("Row of " + words[row] + " has more than " + dimensions + " values.");
+            }
+            row++;
+        }
+    }
+
+    private static void parseWords(final MappedByteBuffer buffer, final int firstRow, final int endRow,
+            final String[] words) {
+
+        final int limit = buffer.limit();
+        byte[] wordBytes = new byte[64];
+        int i = 0;
+        int row = firstRow;
+        while (row < endRow && i < limit) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                i++;
+                continue;
+            }
+            int length = 0;
+            while (i < limit && (b = buffer.get(i)) != ' ' && b != '\n' && b != '\r') {
+                if (length == wordBytes.length) {
+                    wordBytes = Arrays.copyOf(wordBytes, length * 2);
+                }
+                wordBytes[length++] = b;
+                i++;
+            }
+            words[row++] = new String(wordBytes, 0, length, StandardCharsets.UTF_8);
+            // satırın geri kalanı atlanıyor
+            while (i < limit && buffer.get(i) != '\n') {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * parses a decimal number like "-0.1234e-05" without creating any object. up to 18 significant
+     * digits are kept, which is more than a float can hold.
+     *
+     * @return position after the number.
+     */
+    static int parseFloat(final MappedByteBuffer buffer, int i, final int limit, final float[] dest,
+            final int destIndex) throws IOException {
+
+        final int start = i;
+        boolean negative = false;
+        byte b = buffer.get(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+        long mantissa = 0L;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < limit; i++) {
+            b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (digits < 18) {
+                    if (mantissa != 0L || b != '0') {
+                        digits++;
+                    }
+                    mantissa = mantissa * 10L + (b - '0');
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                } else if (!seenPoint) {
+                    exponent++;
+                }
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (i < limit && (b == 'e' || b == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < limit && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negativeExponent = buffer.get(i) == '-';
+                i++;
+            }
+            int value = 0;
+            for (; i < limit && (b = buffer.get(i)) >= '0' && b <= '9'; i++) {
+                if (value < 10000) {
+                    value = value * 10 + (b - '0');
+                }
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (!seenDigit || (i < limit && (b = buffer.get(i)) != ' ' && b != '\n' && b != '\r')) {
+            throw new IOException("Invalid number at byte " + start + " of a range.");
+        }
+
+        double result = mantissa;
+        if (exponent < 0) {
+            result = exponent >= -22 ? result / POWERS_OF_TEN[-exponent] : result * Math.pow(10.0d, exponent);
+        } else if (exponent > 0) {
+            result = exponent <= 22 ? result * POWERS_OF_TEN[exponent] : result * Math.pow(10.0d, exponent);
+        }
+        dest[destIndex] = (float) (negative ? -result : result);
+        return i;
+    }
+
+    private static boolean isInteger(final String token) {
+
+        if (token.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (token.charAt(i) < '0' || token.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,376 @@
+package wat.training.model.store;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.embeddings.reader.impl.BasicModelUtils;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * reads word2vec text, word2vec binary and glove text files row by row without dl4j. pretrained
+ * files are sorted by word frequency, so reading can stop after the first n rows to keep only the
+ * most frequent words. vectors are kept as they are in the file, they are not normalized.
+ */
+public class PretrainedVectors {
+
+    private static final Logger log = LoggerFactory.getLogger(PretrainedVectors.class);
+
+    /**
+     * bytes of the second row that are checked to decide whether the file is text or binary.
+     */
+    private static final int FORMAT_PROBE_SIZE = 64;
+
+    private final String[] words;
+    private final float[] vectors;
+    private final int dimensions;
+
+    public PretrainedVectors(final String[] words, final float[] vectors, final int dimensions) {
+
+        this.words = words;
+        this.vectors = vectors;
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * gets rows of a file one by one while file is streamed.
+     */
+    public interface RowVisitor {
+
+        /**
+         * @param word   word of the row.
+         * @param vector values of the row, array is reused for the next row.
+         * @return false to stop reading.
+         */
+        boolean visit(String word, float[] vector) throws IOException;
+    }
+
+    /**
+     * format is detected from the first rows, gzipped files are read if their name ends with ".gz".
+     *
+     * @param file     word2vec text or binary file, or glove text file that does not have a header.
+     * @param maxWords only the first maxWords rows are read, 0 reads all of them.
+     * @throws IOException if file cannot be read or it is not in one of the formats.
+     */
+    public static PretrainedVectors read(final File file, final int maxWords) throws IOException {
+
+        final long start = System.currentTimeMillis();
+        final List<String> words = new ArrayList<>(maxWords > 0 ? maxWords : 100000);
+        final float[][] vectors = new float[1][];
+        final int dimensions = stream(file, maxWords, (word, vector) -> {
+            final int offset = words.size() * vector.length;
+            if (vectors[0] == null) {
+                vectors[0] = new float[FloatRows.checkedLength(maxWords > 0 ? maxWords : 100000, vector.length)];
+            } else if (offset + vector.length > vectors[0].length) {
+                vectors[0] = Arrays.copyOf(vectors[0], FloatRows.checkedLength(words.size() * 2, vector.length));
+            }
+            System.arraycopy(vector, 0, vectors[0], offset, vector.length);
+            words.add(word);
+            return true;
+        });
+        final int size = words.size();
+        final PretrainedVectors result = new PretrainedVectors(words.toArray(new String[size]),
+                size == 0 ? new float[0] : Arrays.copyOf(vectors[0], size * dimensions), dimensions);
+        log.info(result.size() + " words with " + result.dimensions + " dimensions are read from "
+                + file.getName() + " in " + (System.currentTimeMillis() - start) / 1000 + " seconds.");
+        return result;
+    }
+
+    /**
+     * reads only the words of a file, so vocabulary can be queried before vectors are loaded.
+     * words of text files are read on all cores without parsing numbers. words of binary,
+     * gzipped and dl4j files are not read, since it costs as much as reading their vectors.
+     *
+     * @param file     native file, or word2vec or glove text file.
+     * @param maxWords only the first maxWords words are read, 0 reads all of them.
+     * @return words in the order of the file, null if they cannot be read without vectors.
+     * @throws IOException if file cannot be read.
+     */
+    public static String[] readVocabulary(final File file, final int maxWords) throws IOException {
+
+        if (NativeModelFile.isNativeFile(file)) {
+            return NativeModelFile.readVocabulary(file, maxWords);
+        }
+        if (file.getName().endsWith(".gz")) {
+            return null;
+        }
+        try (InputStream in = open(file)) {
+            in.mark(2);
+            if (in.read() == 'P' && in.read() == 'K') {
+                // dl4j modeli zip dosyası
+                return null;
+            }
+            in.reset();
+            final String[] header = readToken(in, true).trim().split(" ");
+            if (header.length == 2 && isInteger(header[0]) && isInteger(header[1])
+                    && isBinary(in, Integer.parseInt(header[1]))) {
+                return null;
+            }
+        }
+        return ParallelTextVectorReader.readWords(file, maxWords);
+    }
+
+    /**
+     * reads rows one by one without keeping them, so files larger than heap can be visited.
+     *
+     * @param file     word2vec text or binary file, or glove text file that does not have a header.
+     * @param maxWords only the first maxWords rows are visited, 0 visits all of them.
+     * @param visitor  gets every row in the order of the file.
+     * @return dimensions of the vectors.
+     * @throws IOException if file cannot be read or it is not in one of the formats.
+     */
+    public static int stream(final File file, final int maxWords, final RowVisitor visitor) throws IOException {
+
+        try (InputStream in = open(file)) {
+            final String firstLine = readToken(in, true);
+            final String[] header = firstLine.trim().split(" ");
+            if (header.length == 2 && isInteger(header[0]) && isInteger(header[1])) {
+                final int total = Integer.parseInt(header[0]);
+                final int dimensions = Integer.parseInt(header[1]);
+                final int size = maxWords > 0 ? Math.min(maxWords, total) : total;
+                in.mark(1 << 16);
+                final boolean binary = isBinary(in, dimensions);
+                in.reset();
+                if (binary) {
+                    streamBinaryRows(in, size, dimensions, visitor);
+                } else {
+                    streamTextRows(in, size, dimensions, null, visitor);
+                }
+                return dimensions;
+            } else {
+                // glove dosyalarında başlık yok, ilk satır da bir kelime
+                streamTextRows(in, maxWords, header.length - 1, header, visitor);
+                return header.length - 1;
+            }
+        }
+    }
+
+    private static InputStream open(final File file) throws IOException {
+
+        InputStream in = new FileInputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        return new BufferedInputStream(in, 1 << 20);
+    }
+
+    /**
+     * word of the second row is skipped and some of the bytes after it are checked, text rows
+     * have only characters of numbers there.
+     */
+    private static boolean isBinary(final InputStream in, final int dimensions) throws IOException {
+
+        readToken(in, false);
+        final int probe = Math.min(FORMAT_PROBE_SIZE, dimensions * 4);
+        for (int i = 0; i < probe; i++) {
+            final int b = in.read();
+            if (b < 0) {
+                return false;
+            }
+            final boolean numeric = (b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+'
+                    || b == 'e' || b == 'E' || b == ' ' || b == '\n' || b == '\r' || b == '\t';
+            if (!numeric) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void streamBinaryRows(final InputStream in, final int size, final int dimensions,
+            final RowVisitor visitor) throws IOException {
+
+        final float[] vector = new float[dimensions];
+        final byte[] rowBytes = new byte[dimensions * 4];
+        final ByteBuffer buffer = ByteBuffer.wrap(rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < size; i++) {
+            final String word = readToken(in, false);
+            readFully(in, rowBytes);
+            buffer.clear();
+            buffer.asFloatBuffer().get(vector);
+            if (!visitor.visit(word, vector)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param maxWords  0 reads until the end of file.
+     * @param firstRow  tokens of a row that is already read, null if there is not.
+     */
+    private static void streamTextRows(final InputStream in, final int maxWords, final int dimensions,
+            final String[] firstRow, final RowVisitor visitor) throws IOException {
+
+        final float[] vector = new float[dimensions];
+        int rows = 0;
+        if (firstRow != null) {
+            parseRow(firstRow, vector, 0, dimensions);
+            rows++;
+            if (!visitor.visit(firstRow[0], vector)) {
+                return;
+            }
+        }
+        String line;
+        while ((maxWords == 0 || rows < maxWords) && !(line = readToken(in, true)).isEmpty()) {
+            final String[] tokens = line.trim().split(" ");
+            if (tokens.length != dimensions + 1) {
+                throw new IOException("Row " + (rows + 1) + " has " + (tokens.length - 1)
+                        + " values instead of " + dimensions + ".");
+            }
+            parseRow(tokens, vector, 0, dimensions);
+            rows++;
+            if (!visitor.visit(tokens[0], vector)) {
+                return;
+            }
+        }
+    }
+
+    private static void parseRow(final String[] tokens, final float[] vectors, final int offset,
+            final int dimensions) {
+
+        for (int j = 0; j < dimensions; j++) {
+            vectors[offset + j] = Float.parseFloat(tokens[j + 1]);
+        }
+    }
+
+    /**
+     * reads UTF-8 bytes until a new line, or until a space if wholeLine is false.
+     * leading new lines are skipped.
+     *
+     * @return empty string at the end of stream.
+     */
+    private static String readToken(final InputStream in, final boolean wholeLine) throws IOException {
+
+        byte[] bytes = new byte[64];
+        int length = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n' || b == '\r' || (!wholeLine && b == ' ')) {
+                if (length == 0) {
+                    continue;
+                }
+                break;
+            }
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = (byte) b;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(final InputStream in, final byte[] dest) throws IOException {
+
+        int read = 0;
+        while (read < dest.length) {
+            final int count = in.read(dest, read, dest.length - read);
+            if (count < 0) {
+                throw new IOException("File ended in the middle of a row.");
+            }
+            read += count;
+        }
+    }
+
+    private static boolean isInteger(final String token) {
+
+        if (token.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (token.charAt(i) < '0' || token.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return lookup table and vocabulary that dl4j models can be built from, vocabulary keeps the
+     * order of the file by giving higher frequency to earlier words.
+     */
+    public Pair<InMemoryLookupTable<VocabWord>, VocabCache<VocabWord>> toLookupTable() {
+
+        final int size = words.length;
+        final AbstractCache<VocabWord> vocab = new AbstractCache.Builder<VocabWord>().build();
+        for (int i = 0; i < size; i++) {
+            final VocabWord word = new VocabWord(size - i, words[i]);
+            word.setIndex(i);
+            vocab.addToken(word);
+            vocab.addWordToIndex(i, words[i]);
+        }
+        vocab.updateWordsOccurencies();
+
+        final InMemoryLookupTable<VocabWord> lookupTable = new InMemoryLookupTable.Builder<VocabWord>()
+                .cache(vocab).vectorLength(dimensions).build();
+        lookupTable.setSyn0(Nd4j.create(vectors, new int[]{size, dimensions}));
+        return new Pair<>(lookupTable, vocab);
+    }
+
+    /**
+     * same with WordVectorSerializer.fromPair, which takes the lookup table only with raw types.
+     *
+     * @return word2vec model that can only be queried.
+     */
+    public Word2Vec toWord2vec() {
+
+        final Pair<InMemoryLookupTable<VocabWord>, VocabCache<VocabWord>> lookupTable = this.toLookupTable();
+        final Word2Vec word2vec = new Word2Vec();
+        word2vec.setLookupTable(lookupTable.getFirst());
+        word2vec.setVocab(lookupTable.getSecond());
+        word2vec.setModelUtils(new BasicModelUtils<>());
+        return word2vec;
+    }
+
+    /**
+     * @param storage how rows are kept in memory.
+     * @return store with normalized rows in the order of the file.
+     */
+    public EmbeddingStore toEmbeddingStore(final int storage) {
+
+        final VectorRows rows = EmbeddingStore.createRows(storage, words.length, dimensions);
+        final float[] vector = new float[dimensions];
+        for (int i = 0; i < words.length; i++) {
+            System.arraycopy(vectors, i * dimensions, vector, 0, dimensions);
+            EmbeddingStore.normalizeRow(vector, 0, dimensions);
+            rows.setRow(i, vector);
+        }
+        return new EmbeddingStore(words, rows);
+    }
+
+    public String wordAt(final int row) {
+
+        return words[row];
+    }
+
+    public void copyRow(final int row, final float[] dest) {
+
+        System.arraycopy(vectors, row * dimensions, dest, 0, dimensions);
+    }
+
+    public int size() {
+
+        return words.length;
+    }
+
+    public int getDimensions() {
+
+        return dimensions;
+    }
+
+}
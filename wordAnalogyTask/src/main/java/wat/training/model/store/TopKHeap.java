@@ -0,0 +1,109 @@
+package wat.training.model.store;
+
+/**
+ * bounded min-heap that keeps the k highest scored rows of a scan. root of the heap is always
+ * the lowest score kept so far, so a row is only inserted when it beats the root.
+ */
+final class TopKHeap {
+
+    private final int[] rows;
+    private final float[] scores;
+    private int size = 0;
+
+    TopKHeap(int capacity) {
+
+        rows = new int[capacity];
+        scores = new float[capacity];
+    }
+
+    /**
+     * @return the lowest score that is kept, rows scoring below this can be skipped.
+     */
+    float threshold() {
+
+        return size < rows.length ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    void offer(final int row, final float score) {
+
+        if (size < rows.length) {
+            rows[size] = row;
+            scores[size] = score;
+            this.siftUp(size++);
+        } else if (score > scores[0]) {
+            rows[0] = row;
+            scores[0] = score;
+            this.siftDown(0);
+        }
+    }
+
+    int size() {
+
+        return size;
+    }
+
+    /**
+     * empties the heap, result is sorted by score in descending order.
+     *
+     * @return row indexes of kept rows.
+     */
+    int[] drainDescending() {
+
+        final int[] result = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = rows[0];
+            rows[0] = rows[--size];
+            scores[0] = scores[size];
+            this.siftDown(0);
+        }
+        return result;
+    }
+
+    private void siftUp(int i) {
+
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (!this.lower(i, parent)) {
+                break;
+            }
+            this.swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+
+        for (; ; ) {
+            final int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            final int right = left + 1;
+            final int child = right < size && this.lower(right, left) ? right : left;
+            if (!this.lower(child, i)) {
+                break;
+            }
+            this.swap(i, child);
+            i = child;
+        }
+    }
+
+    /**
+     * ties are broken by row index so that the same scan always gives the same order.
+     */
+    private boolean lower(int a, int b) {
+
+        return scores[a] < scores[b] || (scores[a] == scores[b] && rows[a] > rows[b]);
+    }
+
+    private void swap(int a, int b) {
+
+        final int row = rows[a];
+        rows[a] = rows[b];
+        rows[b] = row;
+        final float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+
+}
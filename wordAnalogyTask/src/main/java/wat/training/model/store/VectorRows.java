@@ -0,0 +1,109 @@
+package wat.training.model.store;
+
+/**
+ * storage of normalized word vectors, row by row. implementations decide how a row is kept in
+ * memory (float, half float or int8 codes), {@link EmbeddingStore} only sees rows and dot products.
+ * rows are written once while store is built and only read afterwards.
+ */
+public abstract class VectorRows {
+
+    protected final int size;
+    protected final int dimensions;
+
+    protected VectorRows(final int size, final int dimensions) {
+
+        this.size = size;
+        this.dimensions = dimensions;
+    }
+
+    public int size() {
+
+        return size;
+    }
+
+    public int getDimensions() {
+
+        return dimensions;
+    }
+
+    /**
+     * @param row    row to fill.
+     * @param vector normalized vector with the length of dimensions.
+     */
+    public abstract void setRow(int row, float[] vector);
+
+    /**
+     * @param row  row of a word.
+     * @param dest array to copy vector of the word, it is dequantized if rows are quantized.
+     */
+    public abstract void copyRow(int row, float[] dest);
+
+    /**
+     * adds the row to dest after multiplying it with sign.
+     */
+    public abstract void addRow(int row, float sign, float[] dest);
+
+    /**
+     * @return dot product of the row with a query vector of the same length.
+     */
+    public abstract float dot(int row, float[] query);
+
+    /**
+     * @return cosine similarity of two rows.
+     */
+    public abstract float dot(int firstRow, int secondRow);
+
+    /**
+     * dot products of one row with many rows, values are the same with {@link #dot(int, int)}.
+     *
+     * @param row   row that is compared with others.
+     * @param rows  rows to compare with, dest[i - from] gets the product with rows[i].
+     * @param from  first index of rows.
+     * @param to    index after the last one.
+     * @param dest  array that is at least (to - from) long.
+     */
+    public void dotRows(final int row, final int[] rows, final int from, final int to, final float[] dest) {
+
+        for (int i = from; i < to; i++) {
+            dest[i - from] = this.dot(row, rows[i]);
+        }
+    }
+
+    /**
+     * @param query    vector to compare rows with.
+     * @param k        size of the returned array.
+     * @param excluded rows that should not be returned.
+     * @return best k rows in descending order of similarity.
+     */
+    public abstract int[] nearest(float[] query, int k, int[] excluded);
+
+    /**
+     * answers queries one by one, implementations that can share a scan between queries override it.
+     *
+     * @return best k rows for each query in the same order.
+     */
+    public int[][] nearestBatch(final float[][] queries, final int k, final int[][] excluded) {
+
+        final int[][] result = new int[queries.length][];
+        for (int q = 0; q < queries.length; q++) {
+            result[q] = this.nearest(queries[q], k, excluded[q]);
+        }
+        return result;
+    }
+
+    /**
+     * @return approximate heap size of the rows.
+     */
+    public abstract long sizeInBytes();
+
+    static boolean contains(final int[] rows, final int row) {
+
+        for (int excludedRow : rows) {
+            if (excludedRow == row) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
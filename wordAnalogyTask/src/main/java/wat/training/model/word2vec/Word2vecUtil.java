@@ -13,8 +13,14 @@ import wat.exceptions.ModelBuildException;
 import wat.helper.Constants;
 import wat.training.model.BaseModel;
 import wat.training.model.BaseModelInt;
+import wat.training.model.store.CandidateSubset;
+import wat.training.model.store.EmbeddingStore;
+import wat.training.model.store.HnswIndex;
+import wat.training.model.store.NativeModelFile;
+import wat.training.model.store.PretrainedVectors;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 public class Word2vecUtil extends BaseModel implements BaseModelInt {
@@ -105,6 +111,7 @@ public class Word2vecUtil extends BaseModel implements BaseModelInt {
         }
         log.info("Done building word2vec model in "
                 + (System.currentTimeMillis() - start) / 1000 + " seconds.");
+        this.modelChanged();
     }
 
     // csv, binary ve dl4j compressed yüklüyor
@@ -113,21 +120,34 @@ public class Word2vecUtil extends BaseModel implements BaseModelInt {
 
         this.validateCorpusPath();
 
-        log.info("Starting to load word2vec from: " + corpusPath);
+        log.info("Starting to load word2vec from: " + corpusPath + (loadTrainingState
+                ? " with its training state." : " without its training state, it can only be queried."));
         word2vec = null;
 
         long start = System.currentTimeMillis();
         try {
-            // extendedModel: true olarak okusun
-            word2vec = WordVectorSerializer.readWord2VecModel(new File(corpusPath),
-                    true);
+            final File file = new File(corpusPath);
+            if (NativeModelFile.isNativeFile(file)) {
+                word2vec = NativeModelFile.open(file, maxVocabularySize).toPretrainedVectors().toWord2vec();
+            } else if (maxVocabularySize > 0) {
+                // dosya sıklığa göre sıralı, ilk maxVocabularySize satır okunuyor
+                word2vec = PretrainedVectors.read(file, maxVocabularySize).toWord2vec();
+            } else {
+                // extendedModel false ise syn1, syn1Neg, huffman kodları ve frekanslar okunmuyor
+                word2vec = WordVectorSerializer.readWord2VecModel(file, loadTrainingState);
+            }
+        } catch (IOException e) {
+            log.error("Model could not be read from: " + corpusPath);
+            throw new ModelBuildException(e);
         } catch (OutOfMemoryError e) {
             // release the memory if it could not be loaded properly
             word2vec = null;
             throw new ModelBuildException(e);
         }
         log.info("Done loading word2vec model in "
-                + (System.currentTimeMillis() - start) / 1000 + " seconds.");
+                + (System.currentTimeMillis() - start) / 1000 + " seconds. Vectors take "
+                + 4L * word2vec.lookupTable().getWeights().length() / (1024 * 1024) + " MB.");
+        this.modelChanged();
     }
 
     /**
@@ -147,16 +167,19 @@ public class Word2vecUtil extends BaseModel implements BaseModelInt {
     }
 
     /**
-     * modifies corpus path if it is not a valid path.
+     * @param file   file to write vectors in native format of this project.
+     * @param layout one of the layout constants of {@link NativeModelFile}.
+     * @return false if model could not be written to file.
      */
-    private void validateCorpusPath() throws ModelBuildException {
+    @Override
+    public boolean saveNativeModel(File file, int layout) {
 
-        if (corpusPath == null || corpusPath.isEmpty()) {
-            corpusPath = System.getenv("DEFAULT_CORPUS_PATH");
-            if (corpusPath == null || corpusPath.isEmpty()) {
-                throw new ModelBuildException("DEFAULT_CORPUS_PATH is not set!");
-            }
-            log.warn("Setting corpus path to default: " + corpusPath);
+        try {
+            NativeModelFile.write(file, word2vec, layout);
+            return true;
+        } catch (IOException e) {
+            log.error("Cannot write to file: " + file.getAbsolutePath(), e);
+            return false;
         }
     }
 
@@ -170,7 +193,7 @@ public class Word2vecUtil extends BaseModel implements BaseModelInt {
     }
 
     @Override
-    public boolean hasWord(String word) {
+    protected boolean containsWord(String word) {
 
         if (word2vec.hasWord(word)) {
             return true;
@@ -208,9 +231,23 @@ public class Word2vecUtil extends BaseModel implements BaseModelInt {
         return params;
     }
 
+    @Override
+    protected EmbeddingStore createEmbeddingStore() {
+
+        return EmbeddingStore.fromWordVectors(word2vec, vectorStorage);
+    }
+
     @Override
     public List<String> getClosestWords(List<String> positive, List<String> negative) {
 
+        final CandidateSubset subset = candidateSubset;
+        if (subset != null) {
+            return subset.nearest(positive, negative, closestWordSize);
+        }
+        final HnswIndex index = nearestNeighbourIndex;
+        if (index != null) {
+            return this.getClosestWordsFromIndex(index, positive, negative);
+        }
         return (List<String>) word2vec.wordsNearest(positive, negative, closestWordSize);
     }
 
@@ -223,7 +260,7 @@ public class Word2vecUtil extends BaseModel implements BaseModelInt {
      * @return cosine value [-1,1] for proximity if both words exist.
      */
     @Override
-    public double getSimilarity(final String firstWord, final String secondWord) {
+    protected double calculateSimilarity(final String firstWord, final String secondWord) {
 
         String message;
         double result;
@@ -243,7 +280,32 @@ public class Word2vecUtil extends BaseModel implements BaseModelInt {
     @Override
     public List<String> getNearestWords(final String word) {
 
+        final HnswIndex index = nearestNeighbourIndex;
+        if (index != null) {
+            return this.getNearestWordsFromIndex(index, word);
+        }
         return (List<String>) word2vec.wordsNearest(word, closestWordSize);
     }
 
+    @Override
+    protected BaseModel createEmptyModel() {
+
+        final Word2vecUtil model = new Word2vecUtil();
+        // eğitim parametreleri aynı tipteki modellerde ortak
+        model.params = params;
+        return model;
+    }
+
+    @Override
+    protected long getVectorsSizeInBytes() {
+
+        return sizeOfLookupTable(word2vec.lookupTable());
+    }
+
+    @Override
+    protected void releaseVectors() {
+
+        word2vec = null;
+    }
+
 }
@@ -0,0 +1,472 @@
+package wat.wordnet;
+
+import edu.mit.jwi.IDictionary;
+import edu.mit.jwi.item.IIndexWord;
+import edu.mit.jwi.item.IPointer;
+import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.ISynsetID;
+import edu.mit.jwi.item.IWord;
+import edu.mit.jwi.item.IWordID;
+import edu.mit.jwi.item.POS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wat.helper.WordNetPointers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * analogy task of WordNet that is compiled once into int ids, so evaluating a model does not walk the
+ * WordNet graph again. every root word keeps its (pair word, pointer) groups, every pointer keeps the
+ * words that have it together with their expected words for lexical and semantic comparison. plan
+ * does not depend on a model, vocabulary, phrase setting, iteration cap and similarity gate are applied
+ * while it is evaluated. file is memory mapped, only lemmas and pointer names are read into heap.
+ */
+final class AnalogyPlan {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalogyPlan.class);
+
+    // "WATP"
+    private static final int MAGIC = 0x57415450;
+    private static final int FORMAT_VERSION = 1;
+
+    static final String FILE_EXTENSION = ".plan";
+
+    private static final int LEXICAL = 0;
+    private static final int SEMANTIC = 1;
+
+    private final String key;
+    private final String[] lemmas;
+    private final String[] pointerNames;
+    private final int[] rootsOfPos;
+    private final IntBuffer expected, pointerStarts, entries, rootLemmas, rootStarts, groups;
+
+    private AnalogyPlan(final String key, final String[] lemmas, final String[] pointerNames,
+            final int[] rootsOfPos, final IntBuffer[] sections) {
+
+        this.key = key;
+        this.lemmas = lemmas;
+        this.pointerNames = pointerNames;
+        this.rootsOfPos = rootsOfPos;
+        this.expected = sections[0];
+        this.pointerStarts = sections[1];
+        this.entries = sections[2];
+        this.rootLemmas = sections[3];
+        this.rootStarts = sections[4];
+        this.groups = sections[5];
+    }
+
+    /**
+     * @return key that tells which WordNet and which analogy types a plan is compiled for.
+     */
+    static String keyOf(final IDictionary dict, final Set<WordNetPointers> analogyTypes) {
+
+        final TreeSet<String> types = new TreeSet<>();
+        analogyTypes.forEach(type -> types.add(type.name()));
+        return "wordnet " + dict.getVersion() + " types " + String.join(",", types);
+    }
+
+    /**
+     * @return file of the plan with given key in given folder.
+     */
+    static File fileOf(final File folder, final String key) {
+
+        return new File(folder, "analogy_" + Integer.toHexString(key.hashCode()) + FILE_EXTENSION);
+    }
+
+    /**
+     * @return plan in the file, null if file does not exist or it is compiled with another key.
+     */
+    static AnalogyPlan open(final File file, final String key) throws IOException {
+
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                log.warn(file.getName() + " is not an analogy plan of this version, it will be compiled again.");
+                return null;
+            }
+            final String fileKey = BinaryFile.readString(buffer);
+            if (!key.equals(fileKey)) {
+                log.info(file.getName() + " is compiled for " + fileKey + ", it will be compiled again.");
+                return null;
+            }
+            final String[] lemmas = new String[buffer.getInt()];
+            final String[] pointerNames = new String[buffer.getInt()];
+            final int[] rootsOfPos = new int[POS.values().length + 1];
+            for (int i = 0; i < rootsOfPos.length; i++) {
+                rootsOfPos[i] = buffer.getInt();
+            }
+            final int[] sizes = new int[6];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = buffer.getInt();
+            }
+            for (int i = 0; i < lemmas.length; i++) {
+                lemmas[i] = BinaryFile.readString(buffer);
+            }
+            for (int i = 0; i < pointerNames.length; i++) {
+                pointerNames[i] = BinaryFile.readString(buffer);
+            }
+            buffer.position(BinaryFile.align(buffer.position()));
+
+            final IntBuffer[] sections = new IntBuffer[sizes.length];
+            for (int i = 0; i < sizes.length; i++) {
+                final ByteBuffer section = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+                section.limit(4 * sizes[i]);
+                sections[i] = section.asIntBuffer();
+                buffer.position(buffer.position() + 4 * sizes[i]);
+            }
+            return new AnalogyPlan(key, lemmas, pointerNames, rootsOfPos, sections);
+        }
+    }
+
+    /**
+     * walks every index word of every POS once and writes the plan. file is written next to
+     * its final place first, so a plan that is not completely written is never opened.
+     *
+     * @param dict         opened WordNet dictionary.
+     * @param analogyTypes pointers that are checked for analogy.
+     * @param file         file to create or overwrite.
+     */
+    static void compile(final IDictionary dict, final Set<WordNetPointers> analogyTypes, final File file)
+            throws IOException {
+
+        final long start = System.currentTimeMillis();
+        final List<String> lemmaList = new ArrayList<>(200000);
+        final HashMap<String, Integer> lemmaIds = new HashMap<>(300000);
+        final HashMap<IPointer, Integer> pointerIds = new HashMap<>(32);
+        final List<IntArray> entriesOfPointer = new ArrayList<>();
+        final HashMap<ISynsetID, Integer> synsetRefs = new HashMap<>(150000);
+        final IntArray expectedPool = new IntArray();
+        final IntArray rootLemmaIds = new IntArray();
+        final IntArray rootGroupStarts = new IntArray();
+        final IntArray groupPool = new IntArray();
+        final int[] rootsOfPos = new int[POS.values().length + 1];
+
+        for (POS partOfSpeech : POS.values()) {
+            rootsOfPos[partOfSpeech.ordinal()] = rootLemmaIds.size;
+            final Iterator<IIndexWord> indexWordIterator = dict.getIndexWordIterator(partOfSpeech);
+            while (indexWordIterator.hasNext()) {
+                final IIndexWord indexWord = indexWordIterator.next();
+                final String rootWordLemma = indexWord.getLemma();
+                // rakam içeren kelimeler hiçbir ayarda kıyaslanmıyor
+                if (LemmaRegistry.hasDigit(rootWordLemma)) {
+                    continue;
+                }
+                final int groupsBefore = groupPool.size;
+                for (IWordID wordID : indexWord.getWordIDs()) {
+                    final IWord word = dict.getWord(wordID);
+                    final ISynset synset = word.getSynset();
+                    final Set<IPointer> pointersOfWord = new HashSet<>(word.getRelatedMap().keySet());
+                    pointersOfWord.addAll(synset.getRelatedMap().keySet());
+
+                    for (IPointer pointer : pointersOfWord) {
+                        if (!analogyTypes.contains(WordNetPointers.getByCode(pointer.getSymbol()))) {
+                            continue;
+                        }
+                        final IntArray pointerEntries = entriesOf(pointer, pointerIds, entriesOfPointer);
+                        pointerEntries.add(idOf(word.getLemma(), lemmaList, lemmaIds));
+                        pointerEntries.add(addExpected(dict, word.getRelatedWords(pointer), expectedPool,
+                                lemmaList, lemmaIds));
+                        Integer synsetRef = synsetRefs.get(synset.getID());
+                        if (synsetRef == null) {
+                            synsetRef = addExpected(synset.getWords(), expectedPool, lemmaList, lemmaIds);
+                            synsetRefs.put(synset.getID(), synsetRef);
+                        }
+                        pointerEntries.add(synsetRef);
+                    }
+
+                    // root kelime + lexical ilişkili kelime
+                    for (Map.Entry<IPointer, List<IWordID>> related : word.getRelatedMap().entrySet()) {
+                        if (analogyTypes.contains(WordNetPointers.getByCode(related.getKey().getSymbol()))) {
+                            final int pointerId = pointerIdOf(related.getKey(), pointerIds, entriesOfPointer);
+                            for (IWordID relatedWordID : related.getValue()) {
+                                addGroup(rootWordLemma, dict.getWord(relatedWordID).getLemma(), pointerId, LEXICAL,
+                                        groupPool, lemmaList, lemmaIds);
+                            }
+                        }
+                    }
+                    // root kelime + ilişkili synset'teki kelime
+                    for (Map.Entry<IPointer, List<ISynsetID>> related : synset.getRelatedMap().entrySet()) {
+                        if (analogyTypes.contains(WordNetPointers.getByCode(related.getKey().getSymbol()))) {
+                            final int pointerId = pointerIdOf(related.getKey(), pointerIds, entriesOfPointer);
+                            for (ISynsetID relatedSynsetID : related.getValue()) {
+                                for (IWord synsetWord : dict.getSynset(relatedSynsetID).getWords()) {
+                                    addGroup(rootWordLemma, synsetWord.getLemma(), pointerId, SEMANTIC,
+                                            groupPool, lemmaList, lemmaIds);
+                                }
+                            }
+                        }
+                    }
+                }
+                if (groupPool.size > groupsBefore) {
+                    rootLemmaIds.add(idOf(rootWordLemma, lemmaList, lemmaIds));
+                    rootGroupStarts.add(groupsBefore / 2);
+                }
+            }
+        }
+        rootsOfPos[POS.values().length] = rootLemmaIds.size;
+        rootGroupStarts.add(groupPool.size / 2);
+
+        final String[] pointerNames = new String[pointerIds.size()];
+        pointerIds.forEach((pointer, id) -> pointerNames[id] = pointer.getName());
+        final IntArray pointerEntryStarts = new IntArray();
+        final IntArray entryPool = new IntArray();
+        for (IntArray pointerEntries : entriesOfPointer) {
+            pointerEntryStarts.add(entryPool.size / 3);
+            for (int i = 0; i < pointerEntries.size; i++) {
+                entryPool.add(pointerEntries.values[i]);
+            }
+        }
+        pointerEntryStarts.add(entryPool.size / 3);
+
+        write(file, keyOf(dict, analogyTypes), lemmaList, pointerNames, rootsOfPos, new IntArray[]{expectedPool,
+                pointerEntryStarts, entryPool, rootLemmaIds, rootGroupStarts, groupPool});
+        log.info("Analogy plan with " + rootLemmaIds.size + " root words, " + groupPool.size / 2 + " word pairs and "
+                + entryPool.size / 3 + " words of " + pointerNames.length + " pointers is compiled in "
+                + (System.currentTimeMillis() - start) / 1000 + " seconds, file takes "
+                + file.length() / (1024 * 1024) + " MB.");
+    }
+
+    private static void addGroup(final String rootWordLemma, final String pairWordLemma, final int pointerId,
+            final int kind, final IntArray groupPool, final List<String> lemmaList,
+            final HashMap<String, Integer> lemmaIds) {
+
+        // pair kelime root ile aynıysa veya rakam içeriyorsa hiçbir modelde kıyaslanmıyor
+        if (LemmaRegistry.hasDigit(pairWordLemma)
+                || LemmaRegistry.fold(rootWordLemma).equals(LemmaRegistry.fold(pairWordLemma))) {
+            return;
+        }
+        groupPool.add(idOf(pairWordLemma, lemmaList, lemmaIds));
+        groupPool.add(pointerId << 1 | kind);
+    }
+
+    private static IntArray entriesOf(final IPointer pointer, final HashMap<IPointer, Integer> pointerIds,
+            final List<IntArray> entriesOfPointer) {
+
+        return entriesOfPointer.get(pointerIdOf(pointer, pointerIds, entriesOfPointer));
+    }
+
+    private static int pointerIdOf(final IPointer pointer, final HashMap<IPointer, Integer> pointerIds,
+            final List<IntArray> entriesOfPointer) {
+
+        Integer id = pointerIds.get(pointer);
+        if (id == null) {
+            id = entriesOfPointer.size();
+            pointerIds.put(pointer, id);
+            entriesOfPointer.add(new IntArray());
+        }
+        return id;
+    }
+
+    private static int idOf(final String lemma, final List<String> lemmaList, final HashMap<String, Integer> lemmaIds) {
+
+        Integer id = lemmaIds.get(lemma);
+        if (id == null) {
+            id = lemmaList.size();
+            lemmaIds.put(lemma, id);
+            lemmaList.add(lemma);
+        }
+        return id;
+    }
+
+    /**
+     * @return reference of the words in expected pool, -1 if there is not any word.
+     */
+    private static int addExpected(final IDictionary dict, final List<IWordID> wordIDs, final IntArray expectedPool,
+            final List<String> lemmaList, final HashMap<String, Integer> lemmaIds) {
+
+        final List<IWord> words = new ArrayList<>(wordIDs.size());
+        wordIDs.forEach(wordID -> words.add(dict.getWord(wordID)));
+        return addExpected(words, expectedPool, lemmaList, lemmaIds);
+    }
+
+    private static int addExpected(final List<IWord> words, final IntArray expectedPool,
+            final List<String> lemmaList, final HashMap<String, Integer> lemmaIds) {
+
+        if (words.isEmpty()) {
+            return -1;
+        }
+        final int ref = expectedPool.size;
+        expectedPool.add(words.size());
+        for (IWord word : words) {
+            expectedPool.add(idOf(word.getLemma(), lemmaList, lemmaIds));
+        }
+        return ref;
+    }
+
+    private static void write(final File file, final String key, final List<String> lemmaList,
+            final String[] pointerNames, final int[] rootsOfPos, final IntArray[] sections) throws IOException {
+
+        final File temporary = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BinaryFile.WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            BinaryFile.putInt(channel, buffer, MAGIC);
+            BinaryFile.putInt(channel, buffer, FORMAT_VERSION);
+            BinaryFile.putString(channel, buffer, key);
+            BinaryFile.putInt(channel, buffer, lemmaList.size());
+            BinaryFile.putInt(channel, buffer, pointerNames.length);
+            for (int rootStart : rootsOfPos) {
+                BinaryFile.putInt(channel, buffer, rootStart);
+            }
+            for (IntArray section : sections) {
+                BinaryFile.putInt(channel, buffer, section.size);
+            }
+            for (String lemma : lemmaList) {
+                BinaryFile.putString(channel, buffer, lemma);
+            }
+            for (String pointerName : pointerNames) {
+                BinaryFile.putString(channel, buffer, pointerName);
+            }
+            // int bölümleri 4 byte sınırından başlıyor
+            BinaryFile.padToInt(channel, buffer);
+            for (IntArray section : sections) {
+                for (int i = 0; i < section.size; i++) {
+                    BinaryFile.putInt(channel, buffer, section.values[i]);
+                }
+            }
+            BinaryFile.flush(channel, buffer);
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    String getKey() {
+
+        return key;
+    }
+
+    int lemmaCount() {
+
+        return lemmas.length;
+    }
+
+    String lemmaOf(final int id) {
+
+        return lemmas[id];
+    }
+
+    int pointerCount() {
+
+        return pointerNames.length;
+    }
+
+    String pointerNameOf(final int pointer) {
+
+        return pointerNames[pointer];
+    }
+
+    /**
+     * @return index of first root word of given POS, roots of a POS come after the roots of previous one.
+     */
+    int firstRootOf(final POS partOfSpeech) {
+
+        return rootsOfPos[partOfSpeech.ordinal()];
+    }
+
+    /**
+     * @return index after the last root word of given POS.
+     */
+    int endOfRoots(final POS partOfSpeech) {
+
+        return rootsOfPos[partOfSpeech.ordinal() + 1];
+    }
+
+    int rootLemma(final int root) {
+
+        return rootLemmas.get(root);
+    }
+
+    int firstGroupOf(final int root) {
+
+        return rootStarts.get(root);
+    }
+
+    int endOfGroups(final int root) {
+
+        return rootStarts.get(root + 1);
+    }
+
+    int pairLemma(final int group) {
+
+        return groups.get(2 * group);
+    }
+
+    int pointerOf(final int group) {
+
+        return groups.get(2 * group + 1) >>> 1;
+    }
+
+    /**
+     * @return true if pair word is related to root word lexically, false if it is in a related synset.
+     */
+    boolean isLexical(final int group) {
+
+        return (groups.get(2 * group + 1) & 1) == LEXICAL;
+    }
+
+    int firstEntryOf(final int pointer) {
+
+        return pointerStarts.get(pointer);
+    }
+
+    int endOfEntries(final int pointer) {
+
+        return pointerStarts.get(pointer + 1);
+    }
+
+    int comparedLemma(final int entry) {
+
+        return entries.get(3 * entry);
+    }
+
+    /**
+     * @return reference of words that compared word is related by the pointer, -1 if there is not any.
+     */
+    int lexicalExpectedOf(final int entry) {
+
+        return entries.get(3 * entry + 1);
+    }
+
+    /**
+     * @return reference of words in synset of compared word.
+     */
+    int semanticExpectedOf(final int entry) {
+
+        return entries.get(3 * entry + 2);
+    }
+
+    /**
+     * @param ref reference that is returned by one of expected methods.
+     * @return lemmas of expected words.
+     */
+    List<String> expectedLemmasOf(final int ref) {
+
+        final int size = expected.get(ref);
+        final List<String> expectedLemmas = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            expectedLemmas.add(lemmas[expected.get(ref + i)]);
+        }
+        return expectedLemmas;
+    }
+
+}
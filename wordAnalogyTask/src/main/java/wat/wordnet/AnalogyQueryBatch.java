@@ -0,0 +1,151 @@
+package wat.wordnet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wat.calculator.Calculator;
+import wat.training.model.AnalogyQuery;
+import wat.training.model.BaseModelInt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * queues analogy queries with their expected words and sends them to model all together, so that
+ * model can answer them with one scan of its vocabulary. scores are updated when batch is flushed.
+ * a query that is answered before in the run is scored from {@link AnalogyQueryMemo} right away,
+ * same query that is already waiting in batch is sent once for all of its expected words.
+ */
+class AnalogyQueryBatch {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalogyQueryBatch.class);
+    private static final boolean debugEnabled = log.isDebugEnabled();
+
+    private final Calculator calc;
+    private final AnalogyQueryMemo memo;
+    private int batchSize;
+    private List<AnalogyQuery> queries;
+    private List<Long> keys;
+    private List<List<List<String>>> expectedWords;
+    private HashMap<Long, Integer> waitingKeys;
+
+    /**
+     * @param calc      calculator that scores are added to.
+     * @param batchSize how many queries are sent to model at once.
+     * @param memo      answers of the run, queries are not kept if it is null.
+     */
+    AnalogyQueryBatch(final Calculator calc, final int batchSize, final AnalogyQueryMemo memo) {
+
+        this.calc = calc;
+        this.memo = memo;
+        this.setBatchSize(batchSize);
+    }
+
+    /**
+     * adds query to batch and flushes the batch if it is full.
+     *
+     * @param usedModel
+     * @param query                    root and pair word as positive, compared word as negative.
+     * @param key                      key of the query in memo, -1 if it should not be kept.
+     * @param expectedWordsForCompared lemmas of words that should be returned by model for the query.
+     */
+    void add(final BaseModelInt usedModel, final AnalogyQuery query, final long key,
+            final List<String> expectedWordsForCompared) {
+
+        if (memo != null) {
+            final List<String> answer = memo.lookUp(key);
+            if (answer != null) {
+                this.score(query, answer, expectedWordsForCompared);
+                return;
+            }
+            final Integer waiting = key < 0 ? null : waitingKeys.get(key);
+            if (waiting != null) {
+                memo.countHit();
+                expectedWords.get(waiting).add(expectedWordsForCompared);
+                return;
+            }
+            if (key >= 0) {
+                waitingKeys.put(key, queries.size());
+            }
+        }
+        queries.add(query);
+        keys.add(key);
+        final List<List<String>> expectedSets = new ArrayList<>(1);
+        expectedSets.add(expectedWordsForCompared);
+        expectedWords.add(expectedSets);
+        if (queries.size() >= batchSize) {
+            this.flush(usedModel);
+        }
+    }
+
+    /**
+     * sends all waiting queries to model and updates analogy score with returned words.
+     * should be called at the end of every iteration so no query is left behind.
+     *
+     * @param usedModel
+     */
+    void flush(final BaseModelInt usedModel) {
+
+        if (queries.isEmpty()) {
+            return;
+        }
+        final List<List<String>> answers = usedModel.getClosestWordsBatch(queries);
+
+        final int total = queries.size();
+        for (int q = 0; q < total; q++) {
+            final List<String> closestWords = answers.get(q);
+            if (memo != null) {
+                memo.keep(keys.get(q), closestWords);
+            }
+            for (List<String> expectedWordsForCompared : expectedWords.get(q)) {
+                this.score(queries.get(q), closestWords, expectedWordsForCompared);
+            }
+        }
+        this.clear();
+    }
+
+    private void score(final AnalogyQuery query, final List<String> closestWords,
+            final List<String> expectedWordsForCompared) {
+
+        // a returned word is matched with only one of the expected words
+        calc.updateAnalogicalAccuracy(expectedWordsForCompared, closestWords);
+        // which words came from model and which words are expected will be logged in the end for a word
+        if (debugEnabled) {
+            log.debug(query.toString() + "\nReturned words from model: " + closestWords.toString()
+                    + "\nExpected words of compared word: " + String.join(" - ", expectedWordsForCompared));
+        }
+    }
+
+    private void clear() {
+
+        queries = new ArrayList<>(batchSize);
+        keys = new ArrayList<>(batchSize);
+        expectedWords = new ArrayList<>(batchSize);
+        waitingKeys = new HashMap<>();
+    }
+
+    /**
+     * waiting queries should be flushed before changing the size.
+     *
+     * @param batchSize 1 sends every query to model as soon as it is added.
+     */
+    void setBatchSize(final int batchSize) {
+
+        this.batchSize = batchSize;
+        this.clear();
+    }
+
+    int getBatchSize() {
+
+        return batchSize;
+    }
+
+    /**
+     * @return calculator that scores of this batch are added to.
+     */
+    Calculator getCalc() {
+
+        return calc;
+    }
+
+}
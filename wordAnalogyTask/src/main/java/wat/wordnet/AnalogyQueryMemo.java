@@ -0,0 +1,92 @@
+package wat.wordnet;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * keeps closest words of analogy queries during one evaluation run, so a (root, pair, compared) triple
+ * that comes again from another sense or another synset member is not sent to model again. triples
+ * are keyed by lemma ids of {@link LemmaRegistry}, answers are shared by all threads of the run.
+ */
+final class AnalogyQueryMemo {
+
+    private static final int ID_BITS = 21;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+
+    private final ConcurrentHashMap<Long, List<String>> answers = new ConcurrentHashMap<>(1 << 16);
+    private final int capacity;
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * @param capacity answers that are kept at most, new answers are not kept after that.
+     */
+    AnalogyQueryMemo(final int capacity) {
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return key of the triple, -1 if any of the ids is not registered so query cannot be kept.
+     */
+    static long keyOf(final int rootWordId, final int pairWordId, final int comparedWordId) {
+
+        if (rootWordId < 0 || pairWordId < 0 || comparedWordId < 0 || rootWordId > ID_MASK
+                || pairWordId > ID_MASK || comparedWordId > ID_MASK) {
+            return -1L;
+        }
+        return (long) rootWordId << 2 * ID_BITS | (long) pairWordId << ID_BITS | comparedWordId;
+    }
+
+    /**
+     * counts a query of the run and returns its answer if it is known.
+     *
+     * @param key key of the query, -1 is never known.
+     * @return closest words for the query or null.
+     */
+    List<String> lookUp(final long key) {
+
+        queries.increment();
+        if (key < 0) {
+            return null;
+        }
+        final List<String> answer = answers.get(key);
+        if (answer != null) {
+            hits.increment();
+        }
+        return answer;
+    }
+
+    /**
+     * counts a query that is answered together with the same query waiting in a batch.
+     */
+    void countHit() {
+
+        hits.increment();
+    }
+
+    /**
+     * @param key    key of the query, it is not kept if it is -1.
+     * @param answer closest words that model returned, list should not be changed after this.
+     */
+    void keep(final long key, final List<String> answer) {
+
+        if (key >= 0 && answers.size() < capacity) {
+            answers.putIfAbsent(key, answer);
+        }
+    }
+
+    /**
+     * @return one line about how many queries are answered without model.
+     */
+    String report() {
+
+        final long total = queries.sum();
+        final long saved = hits.sum();
+        return total + " analogy queries, " + saved + " of them (" + String.format("%.1f",
+                total == 0 ? 0.0d : 100.0d * saved / total) + "%) are answered from memo, "
+                + (total - saved) + " are sent to model, " + answers.size() + " answers are kept.";
+    }
+
+}
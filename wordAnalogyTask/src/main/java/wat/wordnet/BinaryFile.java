@@ -0,0 +1,74 @@
+package wat.wordnet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * little endian file helpers of analogy plan and pointer index. values are collected in a buffer
+ * and the buffer is written to channel when it is full.
+ */
+final class BinaryFile {
+
+    static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private BinaryFile() {
+
+    }
+
+    static void putInt(final FileChannel channel, final ByteBuffer buffer, final int value)
+            throws IOException {
+
+        if (buffer.remaining() < 4) {
+            flush(channel, buffer);
+        }
+        buffer.putInt(value);
+    }
+
+    static void putString(final FileChannel channel, final ByteBuffer buffer, final String value)
+            throws IOException {
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(channel, buffer, bytes.length);
+        if (buffer.remaining() < bytes.length) {
+            flush(channel, buffer);
+        }
+        buffer.put(bytes);
+    }
+
+    /**
+     * pads the file with zeros, so the next int starts at a 4 byte boundary of the file.
+     */
+    static void padToInt(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+
+        if (buffer.remaining() < 4) {
+            flush(channel, buffer);
+        }
+        while ((channel.position() + buffer.position()) % 4 != 0) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    static String readString(final ByteBuffer buffer) {
+
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    static int align(final int position) {
+
+        return (position + 3) & ~3;
+    }
+
+}
@@ -0,0 +1,191 @@
+package wat.wordnet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * position of a long evaluation and everything that is needed to continue it. items of a run are
+ * evaluated in segments, checkpoint is written after a segment is finished, so calculator has scores of
+ * exactly the items before the position. settings that change the score are kept to be set again, since
+ * calculator's totals are integer sums, continued run gives the same score with a run that is never stopped.
+ * model, WordNet, vector storage and index cannot be set from a checkpoint, it is not resumed if they differ.
+ */
+final class EvaluationCheckpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(EvaluationCheckpoint.class);
+
+    private static final int MAGIC = 0x57414343;
+    private static final int FORMAT_VERSION = 2;
+    static final String FILE_EXTENSION = ".checkpoint";
+
+    /**
+     * part of speech name that is written for runs of all words.
+     */
+    static final String ALL_WORDS = "ALL";
+
+    /**
+     * written when model has no nearest neighbour index.
+     */
+    static final String NO_INDEX = "none";
+
+    // run
+    String modelName;
+    // model file and its vectors, file of the checkpoint is named by it
+    String modelKey;
+    String wordNetKey;
+    String partOfSpeech;
+    boolean isAnalogyTest;
+    boolean onlySynsetComparison;
+    boolean usesPlan;
+    int itemCount;
+    int position;
+
+    // settings that change the score
+    int closestWordSize;
+    boolean calculationOption;
+    int sensitivity;
+    int iterationCapForPointer;
+    boolean dontComparePhrases;
+    boolean searchOnlyWordNetLemmas;
+    boolean useSimilarityPreFilter;
+    boolean usesPreFilter;
+    int vectorStorage;
+    String nearestNeighbourIndex;
+
+    // calculator
+    double foldedAnalogyScore;
+    long[] accumulators;
+
+    /**
+     * @param modelKey key of the model and its vectors, see {@link #modelKey}.
+     * @return file of the checkpoint of given model in given folder, one model has one checkpoint.
+     */
+    static File fileOf(final File folder, final String modelKey) {
+
+        return new File(folder, "evaluation_" + Integer.toHexString(modelKey.hashCode()) + FILE_EXTENSION);
+    }
+
+    /**
+     * @param current checkpoint that is taken from current model and settings.
+     * @return why this checkpoint cannot be resumed with current model, null if it can be.
+     */
+    String mismatchWith(final EvaluationCheckpoint current) {
+
+        if (!modelKey.equals(current.modelKey)) {
+            return "it is written for model " + modelKey + ", current model is " + current.modelKey;
+        }
+        if (!wordNetKey.equals(current.wordNetKey)) {
+            return "it is written for " + wordNetKey + ", current WordNet is " + current.wordNetKey;
+        }
+        if (vectorStorage != current.vectorStorage) {
+            return "vector storage was " + vectorStorage + ", it is " + current.vectorStorage + " now";
+        }
+        if (!nearestNeighbourIndex.equals(current.nearestNeighbourIndex)) {
+            return "nearest neighbour index was " + nearestNeighbourIndex + ", it is "
+                    + current.nearestNeighbourIndex + " now";
+        }
+        return null;
+    }
+
+    /**
+     * file is written next to its final place first, so a run that stops while writing keeps the last one.
+     *
+     * @param file file to create or overwrite.
+     */
+    void save(final File file) throws IOException {
+
+        final File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporary.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(modelName);
+            out.writeUTF(modelKey);
+            out.writeUTF(wordNetKey);
+            out.writeUTF(partOfSpeech);
+            out.writeBoolean(isAnalogyTest);
+            out.writeBoolean(onlySynsetComparison);
+            out.writeBoolean(usesPlan);
+            out.writeInt(itemCount);
+            out.writeInt(position);
+            out.writeInt(closestWordSize);
+            out.writeBoolean(calculationOption);
+            out.writeInt(sensitivity);
+            out.writeInt(iterationCapForPointer);
+            out.writeBoolean(dontComparePhrases);
+            out.writeBoolean(searchOnlyWordNetLemmas);
+            out.writeBoolean(useSimilarityPreFilter);
+            out.writeBoolean(usesPreFilter);
+            out.writeInt(vectorStorage);
+            out.writeUTF(nearestNeighbourIndex);
+            // double bit bit yazılıyor, devam eden skor kesilmemiş skorla aynı olmalı
+            out.writeLong(Double.doubleToRawLongBits(foldedAnalogyScore));
+            out.writeInt(accumulators.length);
+            for (long accumulator : accumulators) {
+                out.writeLong(accumulator);
+            }
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param file file that is written by {@link #save(File)}.
+     * @return checkpoint in the file, null if file does not exist or it is not a checkpoint of this version.
+     */
+    static EvaluationCheckpoint open(final File file) throws IOException {
+
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                log.warn(file.getName() + " is not a checkpoint of this version.");
+                return null;
+            }
+            final EvaluationCheckpoint checkpoint = new EvaluationCheckpoint();
+            checkpoint.modelName = in.readUTF();
+            checkpoint.modelKey = in.readUTF();
+            checkpoint.wordNetKey = in.readUTF();
+            checkpoint.partOfSpeech = in.readUTF();
+            checkpoint.isAnalogyTest = in.readBoolean();
+            checkpoint.onlySynsetComparison = in.readBoolean();
+            checkpoint.usesPlan = in.readBoolean();
+            checkpoint.itemCount = in.readInt();
+            checkpoint.position = in.readInt();
+            checkpoint.closestWordSize = in.readInt();
+            checkpoint.calculationOption = in.readBoolean();
+            checkpoint.sensitivity = in.readInt();
+            checkpoint.iterationCapForPointer = in.readInt();
+            checkpoint.dontComparePhrases = in.readBoolean();
+            checkpoint.searchOnlyWordNetLemmas = in.readBoolean();
+            checkpoint.useSimilarityPreFilter = in.readBoolean();
+            checkpoint.usesPreFilter = in.readBoolean();
+            checkpoint.vectorStorage = in.readInt();
+            checkpoint.nearestNeighbourIndex = in.readUTF();
+            checkpoint.foldedAnalogyScore = Double.longBitsToDouble(in.readLong());
+            checkpoint.accumulators = new long[in.readInt()];
+            for (int i = 0; i < checkpoint.accumulators.length; i++) {
+                checkpoint.accumulators[i] = in.readLong();
+            }
+            return checkpoint;
+        }
+    }
+
+    public String toString() {
+
+        return (isAnalogyTest ? (onlySynsetComparison ? "synset analogy" : "analogy") : "similarity")
+                + " of " + partOfSpeech + " for " + modelName + ", " + position + " of " + itemCount
+                + (usesPlan ? " plan roots" : " index words") + " are done";
+    }
+
+}
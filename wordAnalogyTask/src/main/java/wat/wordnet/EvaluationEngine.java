@@ -0,0 +1,196 @@
+package wat.wordnet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wat.calculator.Calculator;
+import wat.helper.DefaultSettingValues;
+import wat.training.model.BaseModelInt;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.IntToLongFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * evaluates WordNet items on a fork join pool. items are split into chunks of about the same cost,
+ * every chunk sends its queries with its own analogy batch. threads update shards of the calculator,
+ * so score is the same with one thread or many.
+ */
+class EvaluationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(EvaluationEngine.class);
+
+    /**
+     * work that is done for one item, queries of the item are added to the batch of its chunk.
+     */
+    interface ItemEvaluation<T> {
+
+        void evaluate(T item, AnalogyQueryBatch batch);
+    }
+
+    /**
+     * same with {@link ItemEvaluation} for items that are known by their index.
+     */
+    interface IndexEvaluation {
+
+        void evaluate(int item, AnalogyQueryBatch batch);
+    }
+
+    /**
+     * splits the range of chunks into halves till one chunk is left.
+     */
+    private static class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IntConsumer chunk;
+        private final int from, to;
+
+        private ChunkTask(final IntConsumer chunk, final int from, final int to) {
+
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from == 1) {
+                chunk.accept(from);
+            } else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(chunk, from, middle), new ChunkTask(chunk, middle, to));
+            }
+        }
+    }
+
+    private int parallelism;
+    private ForkJoinPool pool = null;
+
+    EvaluationEngine(final int parallelism) {
+
+        this.setParallelism(parallelism);
+    }
+
+    /**
+     * @param usedModel  model that answers the queries.
+     * @param items      items in the order of sequential iteration.
+     * @param costOf     approximate cost of evaluating an item.
+     * @param evaluation work to do for every item.
+     * @param calc       calculator that is updated by all threads.
+     * @param batchSize  size of analogy batch of every chunk.
+     * @param memo       answers of analogy queries that are shared by chunks, can be null.
+     */
+    <T> void evaluate(final BaseModelInt usedModel, final List<T> items, final ToLongFunction<T> costOf,
+            final ItemEvaluation<T> evaluation, final Calculator calc, final int batchSize,
+            final AnalogyQueryMemo memo) {
+
+        this.evaluate(usedModel, items.size(), i -> costOf.applyAsLong(items.get(i)),
+                (i, batch) -> evaluation.evaluate(items.get(i), batch), calc, batchSize, memo);
+    }
+
+    /**
+     * @param usedModel  model that answers the queries.
+     * @param itemCount  items are evaluated from 0 to this.
+     * @param costOf     approximate cost of evaluating the item at an index.
+     * @param evaluation work to do for every index.
+     * @param calc       calculator that is updated by all threads.
+     * @param batchSize  size of analogy batch of every chunk.
+     * @param memo       answers of analogy queries that are shared by chunks, can be null.
+     */
+    void evaluate(final BaseModelInt usedModel, final int itemCount, final IntToLongFunction costOf,
+            final IndexEvaluation evaluation, final Calculator calc, final int batchSize,
+            final AnalogyQueryMemo memo) {
+
+        final int[] bounds = split(itemCount, costOf, DefaultSettingValues.EVALUATION_CHUNK_COUNT);
+        final int chunkCount = bounds.length - 1;
+        final AtomicInteger done = new AtomicInteger();
+        final int logInterval = Math.max(1, chunkCount / 20);
+
+        final IntConsumer chunk = c -> {
+            final AnalogyQueryBatch batch = new AnalogyQueryBatch(calc, batchSize, memo);
+            for (int i = bounds[c]; i < bounds[c + 1]; i++) {
+                evaluation.evaluate(i, batch);
+            }
+            // chunk'ın son sorguları da skora dahil olmalı
+            batch.flush(usedModel);
+            final int finished = done.incrementAndGet();
+            if (finished % logInterval == 0) {
+                log.info("Done " + finished + " of " + chunkCount + " chunks, analogy score: "
+                        + calc.getAnalogicalPercentage());
+            }
+        };
+
+        final int threads = this.getParallelism();
+        log.info(itemCount + " words are split into " + chunkCount + " chunks, calculating with "
+                + threads + " threads...");
+        if (threads <= 1 || chunkCount <= 1) {
+            for (int c = 0; c < chunkCount; c++) {
+                chunk.accept(c);
+            }
+        } else {
+            this.getPool().invoke(new ChunkTask(chunk, 0, chunkCount));
+        }
+    }
+
+    /**
+     * @return bounds of consecutive chunks, chunk c starts at bounds[c] and ends before bounds[c + 1].
+     */
+    static int[] split(final int size, final IntToLongFunction costOf, final int chunkCount) {
+
+        final long[] costs = new long[size];
+        long total = 0L;
+        for (int i = 0; i < size; i++) {
+            costs[i] = Math.max(1L, costOf.applyAsLong(i));
+            total += costs[i];
+        }
+        final long target = Math.max(1L, (total + chunkCount - 1) / chunkCount);
+
+        final int[] bounds = new int[Math.min(size, chunkCount) + 2];
+        int chunks = 0;
+        long cost = 0L;
+        for (int i = 0; i < size; i++) {
+            cost += costs[i];
+            if (cost >= target && i < size - 1 && chunks + 2 < bounds.length) {
+                bounds[++chunks] = i + 1;
+                cost = 0L;
+            }
+        }
+        if (size > 0) {
+            bounds[++chunks] = size;
+        }
+        final int[] result = new int[chunks + 1];
+        System.arraycopy(bounds, 0, result, 0, chunks + 1);
+        return result;
+    }
+
+    private synchronized ForkJoinPool getPool() {
+
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    /**
+     * @param parallelism number of threads that evaluate chunks, 1 evaluates them on calling thread.
+     */
+    synchronized void setParallelism(final int parallelism) {
+
+        if (pool != null && this.parallelism != parallelism) {
+            pool.shutdown();
+            pool = null;
+        }
+        this.parallelism = parallelism;
+    }
+
+    synchronized int getParallelism() {
+
+        return parallelism;
+    }
+
+}
@@ -0,0 +1,46 @@
+package wat.wordnet;
+
+import java.util.Arrays;
+
+/**
+ * growing int array, analogy plan and pointer index are built into these before they are fixed.
+ */
+final class IntArray {
+
+    int[] values;
+    int size = 0;
+
+    IntArray() {
+
+        this(1024);
+    }
+
+    IntArray(final int capacity) {
+
+        this.values = new int[Math.max(1, capacity)];
+    }
+
+    void add(final int value) {
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * @return last added value, size should be checked before.
+     */
+    int last() {
+
+        return values[size - 1];
+    }
+
+    /**
+     * @return added values in an array of their own size.
+     */
+    int[] toArray() {
+
+        return Arrays.copyOf(values, size);
+    }
+}
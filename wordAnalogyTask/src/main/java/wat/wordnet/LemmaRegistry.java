@@ -0,0 +1,239 @@
+package wat.wordnet;
+
+import edu.mit.jwi.IDictionary;
+import edu.mit.jwi.item.IIndexWord;
+import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.IWord;
+import edu.mit.jwi.item.POS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wat.training.model.BaseModelInt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * gives every lemma of WordNet an int id and keeps what evaluation loops need to know about it as
+ * bit flags, so that the loops compare ints instead of running regex, hasWord and equalsIgnoreCase
+ * on the same strings again and again. in-vocabulary flag belongs to the model that registry is
+ * built for, so registry should be built again when model changes.
+ */
+final class LemmaRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(LemmaRegistry.class);
+
+    /**
+     * lemma does not have any digit.
+     */
+    static final byte VALID = 1;
+
+    /**
+     * lemma is a phrase connected with '_'.
+     */
+    static final byte PHRASE = 1 << 1;
+
+    /**
+     * lemma exists in model's vocabulary.
+     */
+    static final byte IN_VOCAB = 1 << 2;
+
+    /**
+     * lemma is already in lower case, so it is its own case folded form.
+     */
+    static final byte CASE_FOLDED = 1 << 3;
+
+    private final HashMap<String, Integer> ids;
+    private final String[] lemmas;
+    private final byte[] flags;
+    private final int[] foldedIds;
+
+    private final BaseModelInt model;
+    private final int modelVersion;
+
+    private LemmaRegistry(final List<String> lemmaList, final HashMap<String, Integer> ids,
+            final BaseModelInt model) {
+
+        this.ids = ids;
+        this.model = model;
+        this.modelVersion = model.getModelVersion();
+
+        final int size = lemmaList.size();
+        this.lemmas = lemmaList.toArray(new String[size]);
+        this.flags = new byte[size];
+        this.foldedIds = new int[size];
+        for (int id = 0; id < size; id++) {
+            final String lemma = lemmas[id];
+            final String folded = fold(lemma);
+            foldedIds[id] = ids.get(folded);
+
+            byte lemmaFlags = 0;
+            if (!hasDigit(lemma)) {
+                lemmaFlags |= VALID;
+            }
+            if (isPhrase(lemma)) {
+                lemmaFlags |= PHRASE;
+            }
+            if (model.hasWord(lemma)) {
+                lemmaFlags |= IN_VOCAB;
+            }
+            if (folded.equals(lemma)) {
+                lemmaFlags |= CASE_FOLDED;
+            }
+            flags[id] = lemmaFlags;
+        }
+    }
+
+    /**
+     * registers lemmas of all index words and all words in synsets, together with their lower case forms.
+     *
+     * @param dict  opened WordNet dictionary.
+     * @param model model whose vocabulary is checked for every lemma.
+     */
+    static LemmaRegistry build(final IDictionary dict, final BaseModelInt model) {
+
+        final long start = System.currentTimeMillis();
+        final List<String> lemmaList = new ArrayList<>(300000);
+        final HashMap<String, Integer> ids = new HashMap<>(400000);
+        for (POS partOfSpeech : POS.values()) {
+            final Iterator<IIndexWord> indexWordIterator = dict.getIndexWordIterator(partOfSpeech);
+            while (indexWordIterator.hasNext()) {
+                register(indexWordIterator.next().getLemma(), lemmaList, ids);
+            }
+            final Iterator<ISynset> synsetIterator = dict.getSynsetIterator(partOfSpeech);
+            while (synsetIterator.hasNext()) {
+                for (IWord word : synsetIterator.next().getWords()) {
+                    register(word.getLemma(), lemmaList, ids);
+                }
+            }
+        }
+        final LemmaRegistry registry = new LemmaRegistry(lemmaList, ids, model);
+        log.info(registry.size() + " lemmas are registered for " + model.getName() + " in "
+                + (System.currentTimeMillis() - start) + " ms.");
+        return registry;
+    }
+
+    /**
+     * @return lemmas of all index words and all words in synsets, together with their lower case forms.
+     */
+    static HashSet<String> collectLemmas(final IDictionary dict) {
+
+        final HashSet<String> lemmas = new HashSet<>(400000);
+        for (POS partOfSpeech : POS.values()) {
+            final Iterator<IIndexWord> indexWordIterator = dict.getIndexWordIterator(partOfSpeech);
+            while (indexWordIterator.hasNext()) {
+                final String lemma = indexWordIterator.next().getLemma();
+                lemmas.add(lemma);
+                lemmas.add(fold(lemma));
+            }
+            final Iterator<ISynset> synsetIterator = dict.getSynsetIterator(partOfSpeech);
+            while (synsetIterator.hasNext()) {
+                for (IWord word : synsetIterator.next().getWords()) {
+                    lemmas.add(word.getLemma());
+                    lemmas.add(fold(word.getLemma()));
+                }
+            }
+        }
+        return lemmas;
+    }
+
+    private static void register(final String lemma, final List<String> lemmaList,
+            final HashMap<String, Integer> ids) {
+
+        if (!ids.containsKey(lemma)) {
+            ids.put(lemma, lemmaList.size());
+            lemmaList.add(lemma);
+            final String folded = fold(lemma);
+            if (!ids.containsKey(folded)) {
+                ids.put(folded, lemmaList.size());
+                lemmaList.add(folded);
+            }
+        }
+    }
+
+    static String fold(final String lemma) {
+
+        return lemma.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * same check with regex ".*\\d+.*" without compiling a pattern.
+     */
+    static boolean hasDigit(final String lemma) {
+
+        for (int i = 0, length = lemma.length(); i < length; i++) {
+            final char c = lemma.charAt(i);
+            if (c >= '0' && c <= '9') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isPhrase(final String lemma) {
+
+        return lemma.indexOf('_') >= 0;
+    }
+
+    /**
+     * @return true if registry is built for given model and model has not changed since then.
+     */
+    boolean isBuiltFor(final BaseModelInt usedModel) {
+
+        return model == usedModel && modelVersion == usedModel.getModelVersion();
+    }
+
+    /**
+     * @return id of the lemma, -1 if it is not in WordNet.
+     */
+    int idOf(final String lemma) {
+
+        final Integer id = ids.get(lemma);
+        return id == null ? -1 : id;
+    }
+
+    String lemmaOf(final int id) {
+
+        return lemmas[id];
+    }
+
+    /**
+     * @return true if lemma can be sent to model for comparison, it is valid
+     * and in vocabulary, and it is not a phrase if phrases are not compared.
+     */
+    boolean isUsable(final int id, final boolean dontComparePhrases) {
+
+        return id >= 0 && this.isValid(id, dontComparePhrases) && (flags[id] & IN_VOCAB) != 0;
+    }
+
+    /**
+     * same result with validateWord of {@link WordNetUtil}.
+     */
+    boolean isValid(final int id, final boolean dontComparePhrases) {
+
+        final byte lemmaFlags = flags[id];
+        return (lemmaFlags & VALID) != 0 && !(dontComparePhrases && (lemmaFlags & PHRASE) != 0);
+    }
+
+    boolean isInVocab(final int id) {
+
+        return (flags[id] & IN_VOCAB) != 0;
+    }
+
+    /**
+     * @return true if lemmas are equal ignoring case, false if any of them is not registered.
+     */
+    boolean isSameIgnoringCase(final int firstId, final int secondId) {
+
+        return firstId >= 0 && secondId >= 0 && foldedIds[firstId] == foldedIds[secondId];
+    }
+
+    int size() {
+
+        return lemmas.length;
+    }
+
+}
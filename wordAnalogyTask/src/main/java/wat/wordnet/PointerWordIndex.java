@@ -0,0 +1,371 @@
+package wat.wordnet;
+
+import edu.mit.jwi.IDictionary;
+import edu.mit.jwi.item.IIndexWord;
+import edu.mit.jwi.item.IPointer;
+import edu.mit.jwi.item.IWord;
+import edu.mit.jwi.item.IWordID;
+import edu.mit.jwi.item.POS;
+import edu.mit.jwi.item.Pointer;
+import edu.mit.jwi.item.WordID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wat.helper.WordNetPointers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * words that have each analogy pointer, either lexically or by their synset. words are numbered in the
+ * order of WordNet's index words (POS, index word, sense), which is also the order of
+ * {@link AnalogyPlan}, and every pointer keeps ids of its words as a sorted int array. it is not
+ * changed after it is built, so threads can read it together. index can be saved to a file and
+ * opened again for the same WordNet and settings, words are found by their ids then.
+ */
+final class PointerWordIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PointerWordIndex.class);
+
+    // "WAPI"
+    private static final int MAGIC = 0x57415049;
+    private static final int FORMAT_VERSION = 1;
+
+    static final String FILE_EXTENSION = ".index";
+
+    // kelimeler thread sayısından bağımsız olarak bu kadar parçada toplanıyor
+    private static final int BUILD_CHUNK_COUNT = 64;
+
+    private final String key;
+    private final IWord[] words;
+    private final HashMap<IPointer, Integer> ordinals;
+    private final IPointer[] pointers;
+    private final int[][] wordsOfPointer;
+
+    private PointerWordIndex(final String key, final IWord[] words, final HashMap<IPointer, Integer> ordinals,
+            final IPointer[] pointers, final int[][] wordsOfPointer) {
+
+        this.key = key;
+        this.words = words;
+        this.ordinals = ordinals;
+        this.pointers = pointers;
+        this.wordsOfPointer = wordsOfPointer;
+    }
+
+    /**
+     * index words are split into chunks and chunks are read in parallel, lists of chunks are joined
+     * in their order, so the index is the same with any number of threads.
+     *
+     * @param dict         opened WordNet dictionary.
+     * @param analogyTypes pointers that are checked for analogy.
+     * @param isValidLemma words of index words that fail this are not added.
+     * @param key          key of the index by {@link #keyOf(IDictionary, Set, boolean)}.
+     */
+    static PointerWordIndex build(final IDictionary dict, final Set<WordNetPointers> analogyTypes,
+            final Predicate<String> isValidLemma, final String key) {
+
+        final HashMap<IPointer, Integer> ordinals = new HashMap<>(64);
+        final List<IPointer> pointerList = ordinalsOf(analogyTypes, ordinals);
+        final int pointerCount = pointerList.size();
+
+        final List<IIndexWord> indexWords = new ArrayList<>(160000);
+        for (POS partOfSpeech : POS.values()) {
+            final Iterator<IIndexWord> indexWordIterator = dict.getIndexWordIterator(partOfSpeech);
+            while (indexWordIterator.hasNext()) {
+                indexWords.add(indexWordIterator.next());
+            }
+        }
+        final int indexWordCount = indexWords.size();
+        final int[] firstWordOf = new int[indexWordCount + 1];
+        for (int i = 0; i < indexWordCount; i++) {
+            firstWordOf[i + 1] = firstWordOf[i] + indexWords.get(i).getWordIDs().size();
+        }
+        final IWord[] words = new IWord[firstWordOf[indexWordCount]];
+
+        final int chunkCount = Math.max(1, Math.min(BUILD_CHUNK_COUNT, indexWordCount));
+        final IntArray[][] listsOfChunk = new IntArray[chunkCount][];
+        IntStream.range(0, chunkCount).parallel().forEach(c -> {
+            final IntArray[] lists = new IntArray[pointerCount];
+            for (int p = 0; p < pointerCount; p++) {
+                lists[p] = new IntArray(64);
+            }
+            final int end = (int) ((long) indexWordCount * (c + 1) / chunkCount);
+            for (int i = (int) ((long) indexWordCount * c / chunkCount); i < end; i++) {
+                final IIndexWord indexWord = indexWords.get(i);
+                // word2vec'de kontrol etmek istemediğimiz kelimeleri eklemesin, gerek yok.
+                if (!isValidLemma.test(indexWord.getLemma())) {
+                    continue;
+                }
+                final List<IWordID> wordIDs = indexWord.getWordIDs();
+                for (int k = 0; k < wordIDs.size(); k++) {
+                    // bir kelimenin farklı anlamları varsa o kelime için farklı Word objeleri
+                    // olabiliyor, bunların hepsi farklı kelime gibi ele alınmalı
+                    final int wordId = firstWordOf[i] + k;
+                    final IWord word = dict.getWord(wordIDs.get(k));
+                    words[wordId] = word;
+                    // lexical ve semantic pointer'lar
+                    addWord(word.getRelatedMap().keySet(), wordId, ordinals, lists);
+                    addWord(word.getSynset().getRelatedMap().keySet(), wordId, ordinals, lists);
+                }
+            }
+            listsOfChunk[c] = lists;
+        });
+
+        final int[][] wordsOfPointer = new int[pointerCount][];
+        for (int p = 0; p < pointerCount; p++) {
+            int total = 0;
+            for (IntArray[] lists : listsOfChunk) {
+                total += lists[p].size;
+            }
+            // parçalar sırayla birleşince liste de sıralı kalıyor
+            final int[] joined = new int[total];
+            int position = 0;
+            for (IntArray[] lists : listsOfChunk) {
+                System.arraycopy(lists[p].values, 0, joined, position, lists[p].size);
+                position += lists[p].size;
+            }
+            wordsOfPointer[p] = joined;
+        }
+        return new PointerWordIndex(key, words, ordinals, pointerList.toArray(new IPointer[pointerCount]),
+                wordsOfPointer);
+    }
+
+    /**
+     * ordinals come from the order of JWI's pointers, so they are the same for the same analogy types.
+     * pointers with the same symbol are kept apart.
+     *
+     * @return pointers in the order of their ordinals.
+     */
+    private static List<IPointer> ordinalsOf(final Set<WordNetPointers> analogyTypes,
+            final HashMap<IPointer, Integer> ordinals) {
+
+        final List<IPointer> pointerList = new ArrayList<>();
+        for (Pointer pointer : Pointer.values()) {
+            if (analogyTypes.contains(WordNetPointers.getByCode(pointer.getSymbol()))) {
+                ordinals.put(pointer, pointerList.size());
+                pointerList.add(pointer);
+            }
+        }
+        return pointerList;
+    }
+
+    /**
+     * @return key that tells which WordNet, analogy types and phrase setting an index is built with.
+     */
+    static String keyOf(final IDictionary dict, final Set<WordNetPointers> analogyTypes,
+            final boolean dontComparePhrases) {
+
+        return AnalogyPlan.keyOf(dict, analogyTypes) + " phrases " + (dontComparePhrases ? "skipped" : "compared");
+    }
+
+    /**
+     * @return file of the index with given key in given folder.
+     */
+    static File fileOf(final File folder, final String key) {
+
+        return new File(folder, "pointers_" + Integer.toHexString(key.hashCode()) + FILE_EXTENSION);
+    }
+
+    /**
+     * writes ids of the words and the sorted lists, file is written next to its final place first.
+     *
+     * @param file file to create or overwrite.
+     */
+    void save(final File file) throws IOException {
+
+        final File temporary = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BinaryFile.WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            BinaryFile.putInt(channel, buffer, MAGIC);
+            BinaryFile.putInt(channel, buffer, FORMAT_VERSION);
+            BinaryFile.putString(channel, buffer, key);
+            BinaryFile.putInt(channel, buffer, words.length);
+            BinaryFile.putInt(channel, buffer, pointers.length);
+            for (IPointer pointer : pointers) {
+                BinaryFile.putString(channel, buffer, pointer.getName());
+            }
+            BinaryFile.padToInt(channel, buffer);
+            // kelime başına synset offset'i ve POS ile synset'teki sırası, eklenmeyen kelimeler -1
+            for (IWord word : words) {
+                if (word == null) {
+                    BinaryFile.putInt(channel, buffer, -1);
+                    BinaryFile.putInt(channel, buffer, -1);
+                } else {
+                    BinaryFile.putInt(channel, buffer, word.getSynset().getOffset());
+                    BinaryFile.putInt(channel, buffer, word.getPOS().ordinal() << 16 | word.getID().getWordNumber());
+                }
+            }
+            int start = 0;
+            for (int[] wordIds : wordsOfPointer) {
+                BinaryFile.putInt(channel, buffer, start);
+                start += wordIds.length;
+            }
+            BinaryFile.putInt(channel, buffer, start);
+            for (int[] wordIds : wordsOfPointer) {
+                for (int wordId : wordIds) {
+                    BinaryFile.putInt(channel, buffer, wordId);
+                }
+            }
+            BinaryFile.flush(channel, buffer);
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param file         file that is written by {@link #save(File)}.
+     * @param key          key of current WordNet and settings.
+     * @param dict         opened WordNet dictionary that words are taken from.
+     * @param analogyTypes pointers that are checked for analogy.
+     * @return index in the file, null if file does not exist or it is built with another key.
+     */
+    static PointerWordIndex open(final File file, final String key, final IDictionary dict,
+            final Set<WordNetPointers> analogyTypes) throws IOException {
+
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                log.warn(file.getName() + " is not a pointer index of this version, it will be built again.");
+                return null;
+            }
+            final String fileKey = BinaryFile.readString(buffer);
+            if (!key.equals(fileKey)) {
+                log.info(file.getName() + " is built for " + fileKey + ", it will be built again.");
+                return null;
+            }
+            final IWord[] words = new IWord[buffer.getInt()];
+            final HashMap<IPointer, Integer> ordinals = new HashMap<>(64);
+            final List<IPointer> pointerList = ordinalsOf(analogyTypes, ordinals);
+            if (buffer.getInt() != pointerList.size()) {
+                log.warn(file.getName() + " has other pointers, it will be built again.");
+                return null;
+            }
+            for (IPointer pointer : pointerList) {
+                if (!pointer.getName().equals(BinaryFile.readString(buffer))) {
+                    log.warn(file.getName() + " has other pointers, it will be built again.");
+                    return null;
+                }
+            }
+            buffer.position(BinaryFile.align(buffer.position()));
+            final IntBuffer ints = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+            final POS[] partsOfSpeech = POS.values();
+            for (int i = 0; i < words.length; i++) {
+                final int offset = ints.get();
+                final int posAndNumber = ints.get();
+                if (offset >= 0) {
+                    words[i] = dict.getWord(new WordID(offset, partsOfSpeech[posAndNumber >>> 16],
+                            posAndNumber & 0xffff));
+                    if (words[i] == null) {
+                        log.warn(file.getName() + " has a word that is not in WordNet, it will be built again.");
+                        return null;
+                    }
+                }
+            }
+            final int[] starts = new int[pointerList.size() + 1];
+            ints.get(starts);
+            final int[][] wordsOfPointer = new int[pointerList.size()][];
+            for (int p = 0; p < wordsOfPointer.length; p++) {
+                wordsOfPointer[p] = new int[starts[p + 1] - starts[p]];
+                ints.get(wordsOfPointer[p]);
+            }
+            return new PointerWordIndex(key, words, ordinals, pointerList.toArray(new IPointer[pointerList.size()]),
+                    wordsOfPointer);
+        }
+    }
+
+    private static void addWord(final Set<IPointer> pointersOfWord, final int wordId,
+            final HashMap<IPointer, Integer> ordinals, final IntArray[] lists) {
+
+        for (IPointer pointer : pointersOfWord) {
+            final Integer ordinal = ordinals.get(pointer);
+            // kelime pointer'a hem lexical hem semantic olarak sahipse bir kere ekleniyor
+            if (ordinal != null && (lists[ordinal].size == 0 || lists[ordinal].last() != wordId)) {
+                lists[ordinal].add(wordId);
+            }
+        }
+    }
+
+    /**
+     * @return sorted ids of words that have the pointer, null if pointer is not checked for analogy.
+     * array is shared, it should not be changed.
+     */
+    int[] wordsOf(final IPointer pointer) {
+
+        final int ordinal = this.ordinalOf(pointer);
+        return ordinal < 0 ? null : wordsOfPointer[ordinal];
+    }
+
+    /**
+     * @return ordinal of the pointer, -1 if pointer is not checked for analogy.
+     */
+    int ordinalOf(final IPointer pointer) {
+
+        final Integer ordinal = ordinals.get(pointer);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * @return same array with {@link #wordsOf(IPointer)} for the pointer of given ordinal.
+     */
+    int[] wordsOfOrdinal(final int ordinal) {
+
+        return wordsOfPointer[ordinal];
+    }
+
+    int pointerCount() {
+
+        return pointers.length;
+    }
+
+    String getKey() {
+
+        return key;
+    }
+
+    IWord wordOf(final int wordId) {
+
+        return words[wordId];
+    }
+
+    /**
+     * @return pointers that are checked for analogy in the order of their ordinals.
+     */
+    List<IPointer> getPointers() {
+
+        return Collections.unmodifiableList(Arrays.asList(pointers));
+    }
+
+    /**
+     * @return number of (pointer, word) entries in the index.
+     */
+    int size() {
+
+        int size = 0;
+        for (int[] wordIds : wordsOfPointer) {
+            size += wordIds.length;
+        }
+        return size;
+    }
+
+}
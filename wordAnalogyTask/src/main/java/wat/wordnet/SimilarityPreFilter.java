@@ -0,0 +1,147 @@
+package wat.wordnet;
+
+import wat.helper.DefaultSettingValues;
+import wat.training.model.BaseModelInt;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * similarity gate of compared words. instead of asking similarity of root word and a compared word one
+ * by one, similarities of root word with a block of words of a pointer are calculated by one pass over
+ * their rows in the model. words of a pointer keep their order, so eligible words come in the same
+ * order with the scalar gate. rows are taken once for a model, filter is read only after it is built.
+ * <p>
+ * it is built only if {@link BaseModelInt#canCompareRows()}. a dl4j model is compared by the float
+ * copy of its vectors that is already made for candidates or index, similarities can differ from the
+ * model only in last float bits then. a store model is compared by its own rows, with half float or
+ * int8 storage both gates use the same quantized rows of the store.
+ */
+final class SimilarityPreFilter {
+
+    /**
+     * eligible words of one pointer for one root word, blocks are compared only when they are needed.
+     * it is used by one thread.
+     */
+    static final class Candidates {
+
+        private final BaseModelInt usedModel;
+        private final int rootRow;
+        private final int[] positions;
+        private final int[] rows;
+        private final IntArray eligible = new IntArray(16);
+        private float[] similarities = null;
+        private int scanned = 0;
+
+        private Candidates(final BaseModelInt usedModel, final int rootRow, final int[] positions, final int[] rows) {
+
+            this.usedModel = usedModel;
+            this.rootRow = rootRow;
+            this.positions = positions;
+            this.rows = rows;
+        }
+
+        /**
+         * @param position position in pointer's list, -1 to start from the first word.
+         * @return first position after the given one whose similarity with root passes the gate,
+         * -1 if there is none.
+         */
+        int nextAfter(final int position) {
+
+            int index = Arrays.binarySearch(eligible.values, 0, eligible.size, position + 1);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            while (index == eligible.size && scanned < rows.length) {
+                this.scanBlock();
+            }
+            return index < eligible.size ? eligible.values[index] : -1;
+        }
+
+        private void scanBlock() {
+
+            if (similarities == null) {
+                similarities = new float[DefaultSettingValues.PRE_FILTER_BLOCK_SIZE];
+            }
+            final int to = Math.min(rows.length, scanned + similarities.length);
+            usedModel.similaritiesOfRows(rootRow, rows, scanned, to, similarities);
+            for (int i = scanned; i < to; i++) {
+                // sim == sim kontrolüne gerek yok, NaN karşılaştırmayı geçemiyor
+                if (similarities[i - scanned] > DefaultSettingValues.MIN_SIMILARITY_FOR_COMPARISON) {
+                    eligible.add(positions[i]);
+                }
+            }
+            scanned = to;
+        }
+    }
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Object source;
+    private final LemmaRegistry registry;
+    private final int[][] positionsOfPointer;
+    private final int[][] rowsOfPointer;
+
+    private SimilarityPreFilter(final Object source, final LemmaRegistry registry, final int[][] positionsOfPointer,
+            final int[][] rowsOfPointer) {
+
+        this.source = source;
+        this.registry = registry;
+        this.positionsOfPointer = positionsOfPointer;
+        this.rowsOfPointer = rowsOfPointer;
+    }
+
+    /**
+     * words that are not in vocabulary of the model are left out, their similarity is always NaN.
+     *
+     * @param usedModel       model whose vectors are loaded.
+     * @param lemmasOfPointer lemmas of compared words of every pointer in the order they are visited.
+     * @param source          pointer map or plan that the lemmas come from.
+     * @param registry        registry of the model at the time filter is built.
+     */
+    static SimilarityPreFilter build(final BaseModelInt usedModel, final List<List<String>> lemmasOfPointer,
+            final Object source, final LemmaRegistry registry) {
+
+        final int pointerCount = lemmasOfPointer.size();
+        final int[][] positionsOfPointer = new int[pointerCount][];
+        final int[][] rowsOfPointer = new int[pointerCount][];
+        for (int p = 0; p < pointerCount; p++) {
+            final int[] rowsOfWords = usedModel.rowsOf(lemmasOfPointer.get(p));
+            final IntArray positions = new IntArray(rowsOfWords.length);
+            final IntArray rows = new IntArray(rowsOfWords.length);
+            for (int i = 0; i < rowsOfWords.length; i++) {
+                if (rowsOfWords[i] >= 0) {
+                    positions.add(i);
+                    rows.add(rowsOfWords[i]);
+                }
+            }
+            positionsOfPointer[p] = positions.toArray();
+            rowsOfPointer[p] = rows.toArray();
+        }
+        return new SimilarityPreFilter(source, registry, positionsOfPointer, rowsOfPointer);
+    }
+
+    /**
+     * @return true if filter is built from given source for the model that registry is built for.
+     */
+    boolean isBuiltFor(final Object source, final LemmaRegistry registry) {
+
+        return this.source == source && this.registry == registry;
+    }
+
+    /**
+     * @param usedModel     model that the filter is built for.
+     * @param pointer       index of the pointer in lemma lists that filter is built with.
+     * @param rootWordLemma word that compared words should be similar to.
+     */
+    Candidates candidatesOf(final BaseModelInt usedModel, final int pointer, final String rootWordLemma) {
+
+        final int rootRow = usedModel.rowsOf(Collections.singletonList(rootWordLemma))[0];
+        if (rootRow < 0) {
+            return new Candidates(usedModel, rootRow, EMPTY, EMPTY);
+        }
+        return new Candidates(usedModel, rootRow, positionsOfPointer[pointer], rowsOfPointer[pointer]);
+    }
+
+}
@@ -6,13 +6,21 @@ import edu.mit.jwi.item.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import wat.calculator.Calculator;
+import wat.calculator.SamplingEstimate;
 import wat.helper.DefaultSettingValues;
 import wat.helper.WordNetPointers;
+import wat.training.model.AnalogyQuery;
 import wat.training.model.BaseModelInt;
+import wat.training.model.ModelRegistry;
 
+import wat.file.FileActions;
+
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.function.IntToLongFunction;
 
 public class WordNetUtil implements WordNetUtilInt {
 
@@ -23,9 +31,9 @@ public class WordNetUtil implements WordNetUtilInt {
     private static final boolean debugEnabled = log.isDebugEnabled();
 
     /**
-     * holds mapping of pointers in {@link #analogyTypes} to words.
+     * holds mapping of pointers in {@link #analogyTypes} to words, as sorted ids of words in WordNet order.
      */
-    private HashMap<IPointer, HashSet<IWord>> pointerToWordMap = null;
+    private PointerWordIndex pointerToWordMap = null;
 
     /**
      * while doing analogy test, this setting controls how many words of a root word's pointer are going
@@ -39,9 +47,69 @@ public class WordNetUtil implements WordNetUtilInt {
      */
     private boolean dontComparePhrases = DefaultSettingValues.DONT_COMPARE_PHRASES;
 
+    /**
+     * setting to search closest words of analogy queries only among valid WordNet lemmas,
+     * since an answer that is not a WordNet lemma can never match an expected word.
+     */
+    private boolean searchOnlyWordNetLemmas = DefaultSettingValues.SEARCH_ONLY_WORDNET_LEMMAS;
+
+    /**
+     * registry and phrase setting that candidate subset of the model is built with.
+     */
+    private LemmaRegistry candidatesBuiltWith = null;
+    private boolean candidatesBuiltWithoutPhrases;
+
     private IRAMDictionary dict = null;
     private Calculator calc = new Calculator();
 
+    /**
+     * ids and flags of WordNet lemmas for the model that is evaluated last.
+     */
+    private LemmaRegistry lemmaRegistry = null;
+
+    /**
+     * analogy queries wait in a batch of this size until it is full, then model answers them in one pass.
+     */
+    private int analogyBatchSize = DefaultSettingValues.ANALOGY_BATCH_SIZE;
+
+    /**
+     * scores index words in chunks on several threads, every chunk has its own batch
+     * with the size of {@link #analogyBatchSize}.
+     */
+    private final EvaluationEngine engine = new EvaluationEngine(DefaultSettingValues.EVALUATION_PARALLELISM);
+
+    /**
+     * setting to gate compared words by similarities that are calculated for all words of a pointer at once.
+     */
+    private boolean useSimilarityPreFilter = DefaultSettingValues.USE_SIMILARITY_PRE_FILTER;
+
+    /**
+     * rows of pointers' words in the model that is evaluated last, null if it is not used.
+     */
+    private SimilarityPreFilter similarityPreFilter = null;
+
+    /**
+     * setting to evaluate analogy by {@link #analogyPlan} instead of walking WordNet for every model.
+     */
+    private boolean useAnalogyPlan = DefaultSettingValues.USE_ANALOGY_PLAN;
+
+    /**
+     * compiled analogy task, it is opened from plan folder or compiled there once for every WordNet version.
+     */
+    private AnalogyPlan analogyPlan = null;
+
+    /**
+     * position and settings of the evaluation of all words or a POS that is running, null otherwise.
+     */
+    private EvaluationCheckpoint checkpoint = null;
+
+    /**
+     * fingerprint of the vectors of a model is calculated once for every version of it.
+     */
+    private BaseModelInt fingerprintedModel = null;
+    private int fingerprintedVersion = -1;
+    private long vectorFingerprint;
+
     private HashSet<WordNetPointers> analogyTypes = new HashSet<WordNetPointers>(21) {{
 //        add(WordNetPointers.ATTRIBUTE);
 //        add(WordNetPointers.CAUSE);
@@ -107,6 +175,19 @@ public class WordNetUtil implements WordNetUtilInt {
         log.info("Dictionary is closed.");
     }
 
+    /**
+     * @return every lemma of WordNet and its lower case form, models can be restricted to them.
+     */
+    @Override
+    public Set<String> getAllLemmas() {
+
+        final long start = System.currentTimeMillis();
+        final Set<String> lemmas = LemmaRegistry.collectLemmas(dict);
+        log.info(lemmas.size() + " lemmas are collected from WordNet in "
+                + (System.currentTimeMillis() - start) + " ms.");
+        return lemmas;
+    }
+
     /**
      * loads the {@link #dict WordNet dictionary} into memory for querying words quicker.
      */
@@ -128,6 +209,65 @@ public class WordNetUtil implements WordNetUtilInt {
         }
     }
 
+    /**
+     * builds lemma registry and pointer map that evaluation needs. only vocabulary of the model is
+     * used, so it can be called while vectors of a pretrained model are still loading.
+     *
+     * @param usedModel            model whose vocabulary is ready.
+     * @param isAnalogyTest        true if analogy score will be calculated.
+     * @param onlySynsetComparison true if analogy score will be calculated within synsets of words.
+     */
+    @Override
+    public void prepareFromVocabulary(final BaseModelInt usedModel, final boolean isAnalogyTest,
+            final boolean onlySynsetComparison) {
+
+        this.prepareLemmaRegistry(usedModel);
+        // sadece analoji testi standart algoritma ile çalıştırınca gerekli
+        if (isAnalogyTest && !onlySynsetComparison) {
+            if (!useAnalogyPlan || !this.prepareAnalogyPlan()) {
+                this.preparePointerToWordMap();
+            }
+        }
+    }
+
+    /**
+     * opens the plan of current WordNet and analogy types, compiles it first if it is not compiled yet.
+     *
+     * @return false if plan cannot be prepared, WordNet should be walked then.
+     */
+    private boolean prepareAnalogyPlan() {
+
+        final String key = AnalogyPlan.keyOf(dict, analogyTypes);
+        if (analogyPlan != null && analogyPlan.getKey().equals(key)) {
+            return true;
+        }
+        try {
+            final File file = AnalogyPlan.fileOf(FileActions.createDirectoryWithFolderName(
+                    DefaultSettingValues.ANALOGY_PLAN_FOLDER).toFile(), key);
+            AnalogyPlan plan = AnalogyPlan.open(file, key);
+            if (plan == null) {
+                log.info("Compiling analogy plan of " + key + " to " + file.getAbsolutePath());
+                AnalogyPlan.compile(dict, analogyTypes, file);
+                plan = AnalogyPlan.open(file, key);
+            } else {
+                log.info("Analogy plan of " + key + " is opened from " + file.getAbsolutePath());
+            }
+            analogyPlan = plan;
+            return plan != null;
+        } catch (IOException e) {
+            log.error("Analogy plan could not be prepared, WordNet will be walked instead.", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return true if analogy score of given mode is calculated by {@link #analogyPlan}.
+     */
+    private boolean isPlanUsed(final boolean isAnalogyTest, final boolean onlySynsetComparison) {
+
+        return isAnalogyTest && !onlySynsetComparison && useAnalogyPlan && analogyPlan != null;
+    }
+
     /**
      * this method calls {@link #preparePointerToWordMap()} before calculating analogy score.
      *
@@ -138,13 +278,15 @@ public class WordNetUtil implements WordNetUtilInt {
     public void calculateScoreForAllWords(final BaseModelInt usedModel,
             final boolean isAnalogyTest, final boolean onlySynsetComparison) {
 
-        if (isAnalogyTest && !onlySynsetComparison) {
-            this.preparePointerToWordMap();
+        this.prepareFromVocabulary(usedModel, isAnalogyTest, onlySynsetComparison);
+        if (isAnalogyTest) {
+            this.prepareCandidateRestriction(usedModel);
         }
         long started = System.currentTimeMillis();
-        for (POS partOfSpeech : POS.values()) {
-            this.calculateScoreForPOS(usedModel, partOfSpeech, isAnalogyTest, onlySynsetComparison);
-        }
+        this.startCheckpoint(usedModel, EvaluationCheckpoint.ALL_WORDS, isAnalogyTest, onlySynsetComparison);
+        // bütün POS'ların kelimeleri birlikte parçalara bölünüyor
+        this.calculateScoreOfPartsOfSpeech(usedModel, isAnalogyTest, onlySynsetComparison, POS.values());
+        this.finishCheckpoint();
         log.info(((System.currentTimeMillis() - started) / 1000)
                 + " seconds passed while calculating score for all words."
                 + "\nAnalogy Score: " + calc.getAnalogicalPercentage()
@@ -152,45 +294,441 @@ public class WordNetUtil implements WordNetUtilInt {
     }
 
     /**
-     * calls {@link #preparePointerToWordMap()} before
-     * calling {@link #calculateScoreForPOS(BaseModelInt, POS, boolean, boolean)}.
+     * calls {@link #preparePointerToWordMap()} before calculating score of index words of given POS.
      */
     @Override
     public void calculateScoreForPOSFromController(final BaseModelInt usedModel,
             final POS partOfSpeech, final boolean isAnalogyTest, final boolean onlySynsetComparison) {
 
-        // sadece analoji testi standart algoritma ile çalıştırınca gerekli
-        if (isAnalogyTest && !onlySynsetComparison) {
-            this.preparePointerToWordMap();
+        this.prepareFromVocabulary(usedModel, isAnalogyTest, onlySynsetComparison);
+        if (isAnalogyTest) {
+            this.prepareCandidateRestriction(usedModel);
         }
         long started = System.currentTimeMillis();
-        this.calculateScoreForPOS(usedModel, partOfSpeech, isAnalogyTest, onlySynsetComparison);
+        this.startCheckpoint(usedModel, partOfSpeech.name(), isAnalogyTest, onlySynsetComparison);
+        this.calculateScoreOfPartsOfSpeech(usedModel, isAnalogyTest, onlySynsetComparison, partOfSpeech);
+        this.finishCheckpoint();
         log.info(((System.currentTimeMillis() - started) / 1000)
                 + " seconds passed while iterating " + partOfSpeech.toString() + "\nAnalogy Score: "
                 + calc.getAnalogicalPercentage() + " Similarity Score: " + calc.getSimilarityPercentage());
     }
 
     /**
+     * continues the evaluation in the checkpoint of given model. settings of the checkpoint are set
+     * again and calculator starts from the scores in the checkpoint, so final score is the same with
+     * an evaluation that is never stopped. model, WordNet, vector storage and index are not changed,
+     * checkpoint is not resumed if they are not the same with the ones it is written with.
+     *
+     * @param usedModel model that the checkpoint is written for.
+     * @return false if there is no checkpoint that can be continued with current model and WordNet.
+     */
+    @Override
+    public boolean resumeEvaluation(final BaseModelInt usedModel) {
+
+        final String modelName = ModelRegistry.nameOf(usedModel);
+        final String modelKey = this.modelKeyOf(usedModel);
+        final EvaluationCheckpoint saved;
+        try {
+            saved = EvaluationCheckpoint.open(EvaluationCheckpoint.fileOf(FileActions.createDirectoryWithFolderName(
+                    DefaultSettingValues.CHECKPOINT_FOLDER).toFile(), modelKey));
+        } catch (IOException e) {
+            log.error("Checkpoint of " + modelName + " could not be read.", e);
+            return false;
+        }
+        if (saved == null) {
+            log.warn("There is no checkpoint of " + modelName + " with its current vectors to resume.");
+            return false;
+        }
+        final String mismatch = saved.mismatchWith(this.newCheckpoint(usedModel, saved.partOfSpeech,
+                saved.isAnalogyTest, saved.onlySynsetComparison));
+        if (mismatch != null) {
+            log.warn("Checkpoint cannot be resumed, " + mismatch + ".");
+            return false;
+        }
+        log.info("Resuming " + saved);
+
+        // skoru değiştiren ayarlar checkpoint'teki gibi yapılıyor
+        usedModel.setClosestWordSize(saved.closestWordSize);
+        calc.setCalculationOption(saved.calculationOption);
+        calc.prepareScoresForAnalogyTask(saved.sensitivity, saved.closestWordSize);
+        this.setIterationCapForPointer(saved.iterationCapForPointer);
+        this.setPhraseComparisonSetting(saved.dontComparePhrases);
+        this.setCandidateRestriction(saved.searchOnlyWordNetLemmas);
+        this.setAnalogyPlanUsage(saved.usesPlan);
+        this.setSimilarityPreFilterUsage(saved.useSimilarityPreFilter);
+
+        this.prepareFromVocabulary(usedModel, saved.isAnalogyTest, saved.onlySynsetComparison);
+        if (saved.isAnalogyTest) {
+            this.prepareCandidateRestriction(usedModel);
+        }
+        if (this.isPlanUsed(saved.isAnalogyTest, saved.onlySynsetComparison) != saved.usesPlan) {
+            log.warn("Analogy plan cannot be prepared as it was in checkpoint, it cannot be resumed.");
+            return false;
+        }
+        if (this.isPreFilterUsed(usedModel, saved.isAnalogyTest, saved.onlySynsetComparison)
+                != saved.usesPreFilter) {
+            log.warn("Similarity pre-filter cannot be used as it was in checkpoint, it cannot be resumed.");
+            return false;
+        }
+        final POS[] partsOfSpeech = EvaluationCheckpoint.ALL_WORDS.equals(saved.partOfSpeech)
+                ? POS.values() : new POS[]{POS.valueOf(saved.partOfSpeech)};
+        calc.restoreAccumulators(saved.foldedAnalogyScore, saved.accumulators);
+        checkpoint = saved;
+
+        long started = System.currentTimeMillis();
+        this.calculateScoreOfPartsOfSpeech(usedModel, saved.isAnalogyTest, saved.onlySynsetComparison,
+                partsOfSpeech);
+        this.finishCheckpoint();
+        log.info(((System.currentTimeMillis() - started) / 1000)
+                + " seconds passed while resuming " + saved.partOfSpeech + "\nAnalogy Score: "
+                + calc.getAnalogicalPercentage() + " Similarity Score: " + calc.getSimilarityPercentage());
+        return true;
+    }
+
+    /**
+     * items of given POS are evaluated from the position of {@link #checkpoint}, all of them if it is 0.
+     */
+    private void calculateScoreOfPartsOfSpeech(final BaseModelInt usedModel, final boolean isAnalogyTest,
+            final boolean onlySynsetComparison, final POS... partsOfSpeech) {
+
+        if (this.isPlanUsed(isAnalogyTest, onlySynsetComparison)) {
+            this.calculateAnalogyScoreByPlan(usedModel, analogyPlan.firstRootOf(partsOfSpeech[0]),
+                    analogyPlan.endOfRoots(partsOfSpeech[partsOfSpeech.length - 1]));
+        } else {
+            this.calculateScoreOfIndexWords(usedModel, this.collectIndexWords(partsOfSpeech), isAnalogyTest,
+                    onlySynsetComparison);
+        }
+    }
+
+    /**
+     * checkpoint of a new evaluation starts from the first item, it is written after the first segment.
+     */
+    private void startCheckpoint(final BaseModelInt usedModel, final String partOfSpeech,
+            final boolean isAnalogyTest, final boolean onlySynsetComparison) {
+
+        checkpoint = this.newCheckpoint(usedModel, partOfSpeech, isAnalogyTest, onlySynsetComparison);
+    }
+
+    /**
+     * @return checkpoint of current model and settings before its first item.
+     */
+    private EvaluationCheckpoint newCheckpoint(final BaseModelInt usedModel, final String partOfSpeech,
+            final boolean isAnalogyTest, final boolean onlySynsetComparison) {
+
+        final EvaluationCheckpoint started = new EvaluationCheckpoint();
+        started.modelName = ModelRegistry.nameOf(usedModel);
+        started.modelKey = this.modelKeyOf(usedModel);
+        started.wordNetKey = AnalogyPlan.keyOf(dict, analogyTypes);
+        started.partOfSpeech = partOfSpeech;
+        started.isAnalogyTest = isAnalogyTest;
+        started.onlySynsetComparison = onlySynsetComparison;
+        started.usesPlan = this.isPlanUsed(isAnalogyTest, onlySynsetComparison);
+        started.itemCount = -1;
+        started.position = 0;
+        started.closestWordSize = usedModel.getClosestWordSize();
+        started.calculationOption = calc.getCalculationOption();
+        started.sensitivity = calc.getSensitivity();
+        started.iterationCapForPointer = iterationCapForPointer;
+        started.dontComparePhrases = dontComparePhrases;
+        started.searchOnlyWordNetLemmas = searchOnlyWordNetLemmas;
+        started.useSimilarityPreFilter = useSimilarityPreFilter;
+        started.usesPreFilter = this.isPreFilterUsed(usedModel, isAnalogyTest, onlySynsetComparison);
+        started.vectorStorage = usedModel.getVectorStorage();
+        final String index = usedModel.describeNearestNeighbourIndex();
+        started.nearestNeighbourIndex = index == null ? EvaluationCheckpoint.NO_INDEX : index;
+        return started;
+    }
+
+    /**
+     * key of the model in registry does not change when it is trained again or its file is replaced, so
+     * size and modification time of the file and fingerprint of its vectors are added to it.
+     *
+     * @return key that is the same only for the same vectors of the model.
+     */
+    private String modelKeyOf(final BaseModelInt usedModel) {
+
+        final StringBuilder key = new StringBuilder(ModelRegistry.keyOf(usedModel));
+        key.append(" words ").append(usedModel.getTotalWordSizeInVocab());
+        final String path = usedModel.getCorpusPath();
+        if (path != null && new File(path).isFile()) {
+            final File file = new File(path);
+            key.append(" file ").append(file.length()).append(' ').append(file.lastModified());
+        }
+        return key.append(" vectors ").append(Long.toHexString(this.fingerprintOf(usedModel))).toString();
+    }
+
+    /**
+     * similarities of a few WordNet lemmas are calculated by the model without its similarity cache,
+     * so fingerprint does not change the statistics of the cache.
+     *
+     * @return fingerprint that changes when vectors of the model change.
+     */
+    private long fingerprintOf(final BaseModelInt usedModel) {
+
+        if (fingerprintedModel == usedModel && fingerprintedVersion == usedModel.getModelVersion()) {
+            return vectorFingerprint;
+        }
+        this.prepareLemmaRegistry(usedModel);
+        final List<String> lemmas = new ArrayList<>();
+        for (int id = 0; id < lemmaRegistry.size(); id++) {
+            if (lemmaRegistry.isInVocab(id)) {
+                lemmas.add(lemmaRegistry.lemmaOf(id));
+            }
+        }
+        // registry sırası HashSet'ten geliyor, her çalıştırmada aynı kelimeler seçilsin diye sıralanıyor
+        Collections.sort(lemmas);
+        final int step = Math.max(1, lemmas.size() / DefaultSettingValues.CHECKPOINT_FINGERPRINT_WORDS);
+        long fingerprint = 17L;
+        for (int i = step; i < lemmas.size(); i += step) {
+            final double similarity = usedModel.getUncachedSimilarity(lemmas.get(i - step), lemmas.get(i));
+            fingerprint = 31L * fingerprint + Double.doubleToLongBits(similarity);
+        }
+        fingerprintedModel = usedModel;
+        fingerprintedVersion = usedModel.getModelVersion();
+        vectorFingerprint = fingerprint;
+        return fingerprint;
+    }
+
+    /**
+     * @return true if words of pointers are gated by {@link #similarityPreFilter} in the evaluation.
+     */
+    private boolean isPreFilterUsed(final BaseModelInt usedModel, final boolean isAnalogyTest,
+            final boolean onlySynsetComparison) {
+
+        return isAnalogyTest && !onlySynsetComparison && useSimilarityPreFilter && usedModel.canCompareRows();
+    }
+
+    /**
+     * evaluates items in {@link DefaultSettingValues#CHECKPOINT_SEGMENT_COUNT} segments from the position
+     * of {@link #checkpoint}, checkpoint is written after every segment. segments start at the same items
+     * whether evaluation is resumed or not.
+     *
+     * @param usedModel  model that answers the queries.
+     * @param itemCount  items are evaluated from position of checkpoint to this.
+     * @param costOf     approximate cost of evaluating the item at an index.
+     * @param evaluation work to do for every index.
+     * @param memo       answers of analogy queries that are shared by segments, can be null.
+     */
+    private void evaluateInSegments(final BaseModelInt usedModel, final int itemCount, final IntToLongFunction costOf,
+            final EvaluationEngine.IndexEvaluation evaluation, final AnalogyQueryMemo memo) {
+
+        if (checkpoint.itemCount >= 0 && checkpoint.itemCount != itemCount) {
+            throw new IllegalStateException("Checkpoint has " + checkpoint.itemCount + " items, there are "
+                    + itemCount + " items to evaluate now.");
+        }
+        checkpoint.itemCount = itemCount;
+        final int segmentSize = Math.max(1, (itemCount + DefaultSettingValues.CHECKPOINT_SEGMENT_COUNT - 1)
+                / DefaultSettingValues.CHECKPOINT_SEGMENT_COUNT);
+        for (int from = checkpoint.position; from < itemCount; from += segmentSize) {
+            final int first = from;
+            final int end = Math.min(itemCount, first + segmentSize);
+            engine.evaluate(usedModel, end - first, i -> costOf.applyAsLong(first + i),
+                    (i, batch) -> evaluation.evaluate(first + i, batch), calc, analogyBatchSize, memo);
+            this.saveCheckpoint(end);
+        }
+    }
+
+    /**
+     * writes position and calculator of {@link #checkpoint}, evaluation goes on if it cannot be written.
+     *
+     * @param position items before this are evaluated, all of them are in calculator.
+     */
+    private void saveCheckpoint(final int position) {
+
+        checkpoint.position = position;
+        checkpoint.foldedAnalogyScore = calc.getFoldedAnalogyScore();
+        checkpoint.accumulators = calc.getAccumulators();
+        try {
+            checkpoint.save(EvaluationCheckpoint.fileOf(FileActions.createDirectoryWithFolderName(
+                    DefaultSettingValues.CHECKPOINT_FOLDER).toFile(), checkpoint.modelKey));
+            log.info("Checkpoint is saved, " + position + " of " + checkpoint.itemCount + " items are done.");
+        } catch (IOException e) {
+            log.error("Checkpoint could not be saved, evaluation goes on.", e);
+        }
+    }
+
+    /**
+     * evaluation is finished, there is nothing to resume for the model.
+     */
+    private void finishCheckpoint() {
+
+        try {
+            Files.deleteIfExists(EvaluationCheckpoint.fileOf(FileActions.createDirectoryWithFolderName(
+                    DefaultSettingValues.CHECKPOINT_FOLDER).toFile(), checkpoint.modelKey).toPath());
+        } catch (IOException e) {
+            log.warn("Checkpoint of finished evaluation could not be deleted.", e);
+        }
+        checkpoint = null;
+    }
+
+    /**
+     * scores are calculated by {@link #engine}, all modes give the same score with any parallelism.
+     *
      * @param usedModel            can be glove or word2vec model that is being used.
-     * @param partOfSpeech         can be noun, verb, adjective or adverb.
+     * @param indexWords           index words of one or more POS.
      * @param isAnalogyTest        true to calculate analogical relationship.
      * @param onlySynsetComparison true to calculate analogy score within synsets of words.
      */
-    private void calculateScoreForPOS(final BaseModelInt usedModel, final POS partOfSpeech,
+    private void calculateScoreOfIndexWords(final BaseModelInt usedModel, final List<IIndexWord> indexWords,
+            final boolean isAnalogyTest, final boolean onlySynsetComparison) {
+
+        final EvaluationEngine.ItemEvaluation<IIndexWord> evaluation = this.evaluationOfIndexWords(usedModel,
+                isAnalogyTest, onlySynsetComparison);
+        final AnalogyQueryMemo memo = isAnalogyTest ? this.newQueryMemo() : null;
+        this.evaluateInSegments(usedModel, indexWords.size(), i -> this.estimateCost(indexWords.get(i),
+                isAnalogyTest, onlySynsetComparison), (i, batch) -> evaluation.evaluate(indexWords.get(i), batch),
+                memo);
+        if (memo != null) {
+            log.info(memo.report());
+        }
+    }
+
+    /**
+     * prepares the similarity filter if it is needed by the evaluation.
+     *
+     * @return work to do for an index word in the given test.
+     */
+    private EvaluationEngine.ItemEvaluation<IIndexWord> evaluationOfIndexWords(final BaseModelInt usedModel,
             final boolean isAnalogyTest, final boolean onlySynsetComparison) {
 
+        if (isAnalogyTest && !onlySynsetComparison) {
+            this.prepareSimilarityPreFilter(usedModel, pointerToWordMap);
+        }
+        if (!isAnalogyTest) {
+            return (indexWord, batch) -> this.calculateSimilarityScoreOfRootIndexWord(usedModel, indexWord, batch);
+        } else if (onlySynsetComparison) {
+            return (indexWord, batch) -> this.calculateAnalogyScoreOfSynsetsOfIndexWord(usedModel, indexWord, batch);
+        } else {
+            return (indexWord, batch) -> this.calculateAnalogyScoreOfRootIndexWord(usedModel, indexWord, batch);
+        }
+    }
+
+    /**
+     * index words of all POS are shuffled with the seed and evaluated in rounds of
+     * {@link DefaultSettingValues#SAMPLING_ROUND_SIZE} words, so the words that are evaluated till a round
+     * are a uniform sample without replacement. sampling stops after the round that makes the half width
+     * of the interval less than epsilon, when time budget runs out or when all words are evaluated.
+     * analogy plan is not used, its roots are streamed in WordNet order.
+     *
+     * @param usedModel            can be glove or word2vec model that is being used.
+     * @param isAnalogyTest        true to calculate analogical relationship.
+     * @param onlySynsetComparison true to calculate analogy score within synsets of words.
+     * @param seed                 same seed draws the same words in the same order.
+     * @param epsilon              half width of the interval of the percentage to stop at.
+     * @param timeBudget           seconds to stop after, rounds are not cut in the middle.
+     * @return intervals of the sampled scores, they are also kept in calculator.
+     */
+    @Override
+    public SamplingEstimate calculateScoreBySampling(final BaseModelInt usedModel, final boolean isAnalogyTest,
+            final boolean onlySynsetComparison, final long seed, final double epsilon, final int timeBudget) {
+
+        this.prepareFromVocabulary(usedModel, isAnalogyTest, onlySynsetComparison);
         if (isAnalogyTest) {
-            if (onlySynsetComparison) {
-                this.calculateAnalogyScoreBySynsetIterator(usedModel,
-                        dict.getSynsetIterator(partOfSpeech));
-            } else {
-                this.calculateAnalogyScoreOfWordIterator(usedModel,
-                        dict.getIndexWordIterator(partOfSpeech));
+            this.prepareCandidateRestriction(usedModel);
+        }
+        final long started = System.currentTimeMillis();
+        final long deadline = started + timeBudget * 1000L;
+        final List<IIndexWord> indexWords = this.collectIndexWords(POS.values());
+        Collections.shuffle(indexWords, new Random(seed));
+
+        final EvaluationEngine.ItemEvaluation<IIndexWord> evaluation = this.evaluationOfIndexWords(usedModel,
+                isAnalogyTest, onlySynsetComparison);
+        final AnalogyQueryMemo memo = isAnalogyTest ? this.newQueryMemo() : null;
+        final SamplingEstimate estimate = new SamplingEstimate(indexWords.size(),
+                DefaultSettingValues.SAMPLING_CONFIDENCE_Z);
+        calc.setSamplingEstimate(estimate);
+        int sampled = 0;
+        while (sampled < indexWords.size()) {
+            final List<IIndexWord> round = indexWords.subList(sampled,
+                    Math.min(indexWords.size(), sampled + DefaultSettingValues.SAMPLING_ROUND_SIZE));
+            final double[] before = calc.getTotals();
+            engine.evaluate(usedModel, round, indexWord -> this.estimateCost(indexWord, isAnalogyTest,
+                    onlySynsetComparison), evaluation, calc, analogyBatchSize, memo);
+            estimate.addRound(round.size(), before, calc.getTotals());
+            sampled += round.size();
+
+            final double halfWidth = estimate.getHalfWidth(isAnalogyTest);
+            log.info("Sampled " + sampled + " of " + indexWords.size() + " words, score: " + (isAnalogyTest
+                    ? estimate.getAnalogicalPercentage() : estimate.getSimilarityPercentage()) + " +- " + halfWidth);
+            if (estimate.getRounds() >= DefaultSettingValues.SAMPLING_MIN_ROUNDS && halfWidth < epsilon) {
+                log.info("Confidence interval is narrower than " + epsilon + ", sampling is stopped.");
+                break;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                log.info("Time budget of " + timeBudget + " seconds is over, sampling is stopped.");
+                break;
             }
-        } else {
-            this.calculateSimilarityScoreOfWordIterator(usedModel,
-                    dict.getIndexWordIterator(partOfSpeech));
         }
+        if (memo != null) {
+            log.info(memo.report());
+        }
+        log.info(((System.currentTimeMillis() - started) / 1000)
+                + " seconds passed while sampling words.\n" + estimate);
+        return estimate;
+    }
+
+    /**
+     * streams root words of {@link #analogyPlan} in given range on {@link #engine}.
+     *
+     * @param usedModel
+     * @param firstRoot index of first root word to evaluate.
+     * @param endOfRoots index after the last root word to evaluate.
+     */
+    private void calculateAnalogyScoreByPlan(final BaseModelInt usedModel, final int firstRoot, final int endOfRoots) {
+
+        final AnalogyPlan plan = analogyPlan;
+        // plandaki lemma id'leri modelin registry'sindeki id'lere bir kere çevriliyor
+        final int[] registryIds = new int[plan.lemmaCount()];
+        for (int id = 0; id < registryIds.length; id++) {
+            registryIds[id] = lemmaRegistry.idOf(plan.lemmaOf(id));
+        }
+        this.prepareSimilarityPreFilter(usedModel, plan);
+        final AnalogyQueryMemo memo = this.newQueryMemo();
+        this.evaluateInSegments(usedModel, endOfRoots - firstRoot,
+                i -> plan.endOfGroups(firstRoot + i) - plan.firstGroupOf(firstRoot + i),
+                (i, batch) -> this.calculateAnalogyScoreOfPlanRoot(usedModel, plan, registryIds, firstRoot + i, batch),
+                memo);
+        log.info(memo.report());
+    }
+
+    /**
+     * answers of a run are kept only during the run, model or settings may change till the next one.
+     */
+    private AnalogyQueryMemo newQueryMemo() {
+
+        return new AnalogyQueryMemo(DefaultSettingValues.QUERY_MEMO_CAPACITY);
+    }
+
+    /**
+     * @return index words of given POS in the order of WordNet's iterators.
+     */
+    private List<IIndexWord> collectIndexWords(final POS... partsOfSpeech) {
+
+        final List<IIndexWord> indexWords = new ArrayList<>(160000);
+        for (POS partOfSpeech : partsOfSpeech) {
+            final Iterator<IIndexWord> indexWordIterator = dict.getIndexWordIterator(partOfSpeech);
+            while (indexWordIterator.hasNext()) {
+                indexWords.add(indexWordIterator.next());
+            }
+        }
+        return indexWords;
+    }
+
+    /**
+     * cost is estimated by the number of senses, every pointer of a sense adds queries in analogy test.
+     * words that are skipped cost almost nothing.
+     */
+    private long estimateCost(final IIndexWord indexWord, final boolean isAnalogyTest,
+            final boolean onlySynsetComparison) {
+
+        final int senses = indexWord.getWordIDs().size();
+        if (onlySynsetComparison && isAnalogyTest) {
+            return senses;
+        }
+        if (!this.isUsable(lemmaRegistry.idOf(indexWord.getLemma()))) {
+            return 1L;
+        }
+        return isAnalogyTest ? (long) senses * (1 + indexWord.getPointers().size()) : senses;
     }
 
     /**
@@ -198,43 +736,45 @@ public class WordNetUtil implements WordNetUtilInt {
      * its both synset's words and lexically tagged relations.
      *
      * @param usedModel
-     * @param indexWordIterator
+     * @param indexWord
+     * @param batch     batch of the chunk, similarities are added to its calculator.
      */
-    private void calculateSimilarityScoreOfWordIterator(final BaseModelInt usedModel,
-            final Iterator<IIndexWord> indexWordIterator) {
+    private void calculateSimilarityScoreOfRootIndexWord(final BaseModelInt usedModel,
+            final IIndexWord indexWord, final AnalogyQueryBatch batch) {
 
-        while (indexWordIterator.hasNext()) {
-            final IIndexWord indexWord = indexWordIterator.next();
-            final String rootWordLemma = indexWord.getLemma();
-            if (this.validateWord(rootWordLemma) && usedModel.hasWord(rootWordLemma)) {
-                this.calculateSimilarityScoreOfIndexWord(usedModel, indexWord, rootWordLemma);
-            }
+        final String rootWordLemma = indexWord.getLemma();
+        final int rootWordId = lemmaRegistry.idOf(rootWordLemma);
+        if (this.isUsable(rootWordId)) {
+            this.calculateSimilarityScoreOfIndexWord(usedModel, indexWord, rootWordLemma, rootWordId, batch);
         }
     }
 
     private void calculateSimilarityScoreOfIndexWord(final BaseModelInt usedModel, final IIndexWord
-            indexWord, final String rootWordLemma) {
+            indexWord, final String rootWordLemma, final int rootWordId, final AnalogyQueryBatch batch) {
 
         final List<IWordID> wordIDs = indexWord.getWordIDs();
         int totalWordsForWordID = wordIDs.size();
         for (int i = 0; i < totalWordsForWordID; i++) {
-            this.calculateSimilarityScoreOfWord(usedModel, dict.getWord(wordIDs.get(i)), rootWordLemma);
+            this.calculateSimilarityScoreOfWord(usedModel, dict.getWord(wordIDs.get(i)),
+                    rootWordLemma, rootWordId, batch);
         }
     }
 
     private void calculateSimilarityScoreOfWord(final BaseModelInt usedModel, final IWord rootWord,
-            final String rootWordLemma) {
+            final String rootWordLemma, final int rootWordId, final AnalogyQueryBatch batch) {
 
         // compares with words that lexically related to root word
-        this.calculateSimilarityWithRelatedWords(usedModel, rootWordLemma,
-                this.getWordsFromWordIDs(rootWord.getRelatedWords()));
+        this.calculateSimilarityWithRelatedWords(usedModel, rootWordLemma, rootWordId,
+                this.getWordsFromWordIDs(rootWord.getRelatedWords()), batch);
 
         // compares with words in root word's synset
-        this.calculateSimilarityWithRelatedWords(usedModel, rootWordLemma, rootWord.getSynset().getWords());
+        this.calculateSimilarityWithRelatedWords(usedModel, rootWordLemma, rootWordId,
+                rootWord.getSynset().getWords(), batch);
     }
 
     private void calculateSimilarityWithRelatedWords(final BaseModelInt usedModel,
-            final String rootWordLemma, final List<IWord> relatedWords) {
+            final String rootWordLemma, final int rootWordId, final List<IWord> relatedWords,
+            final AnalogyQueryBatch batch) {
 
         double sim;
         int relatedWordSize = relatedWords.size();
@@ -244,7 +784,7 @@ public class WordNetUtil implements WordNetUtilInt {
 
             // usedModel.hasWord(relatedWordLemma) kontrolü yapılmıyor çünkü zaten
             // Double.NaN ile similarity metodu içinde kontrol yapılıyor
-            if (rootWordLemma.equalsIgnoreCase(relatedWordLemma)) {
+            if (lemmaRegistry.isSameIgnoringCase(rootWordId, lemmaRegistry.idOf(relatedWordLemma))) {
                 if (debugEnabled) {
                     log.debug(relatedWordLemma + " is same as root word, similarity is skipped.");
                 }
@@ -258,7 +798,7 @@ public class WordNetUtil implements WordNetUtilInt {
                     if (sim < 0) {
                         sim = 0;
                     }
-                    calc.updateSimilarity(sim);
+                    batch.getCalc().updateSimilarity(sim);
                 }
             }
         }
@@ -288,14 +828,20 @@ public class WordNetUtil implements WordNetUtilInt {
                 if (indexWord == null) {
                     log.warn(wordInput + " could not be found in WordNet.");
                 } else {
+                    this.prepareLemmaRegistry(usedModel);
+                    this.prepareCandidateRestriction(usedModel);
                     // sadece synsetler kıyaslanacaksa pointerToWordMap'e gerek yok
                     if (!onlySynsetComparison) {
                         this.preparePointerToWordMap();
+                        this.prepareSimilarityPreFilter(usedModel, pointerToWordMap);
                     }
-                    this.calculateAnalogyScoreOfIndexWord(usedModel, indexWord, onlySynsetComparison);
+                    final AnalogyQueryMemo memo = this.newQueryMemo();
+                    final AnalogyQueryBatch batch = new AnalogyQueryBatch(calc, analogyBatchSize, memo);
+                    this.calculateAnalogyScoreOfIndexWord(usedModel, indexWord, onlySynsetComparison, batch);
+                    batch.flush(usedModel);
                     log.info("Took " + (System.currentTimeMillis() - start) / 1000
                             + " seconds for word: " + wordInput + "\nAnalogy Score: "
-                            + calc.getAnalogicalPercentage());
+                            + calc.getAnalogicalPercentage() + "\n" + memo.report());
                 }
             } else if (!debugEnabled) {
                 log.info(wordInput + " is not in model's vocabulary.");
@@ -305,36 +851,29 @@ public class WordNetUtil implements WordNetUtilInt {
         }
     }
 
-    private void calculateAnalogyScoreOfWordIterator(final BaseModelInt usedModel,
-            final Iterator<IIndexWord> indexWordIterator) {
+    private void calculateAnalogyScoreOfRootIndexWord(final BaseModelInt usedModel,
+            final IIndexWord indexWord, final AnalogyQueryBatch batch) {
 
-        int i = 1;
-        while (indexWordIterator.hasNext()) {
-            if (i++ % 100 == 0) {
-                log.info("Done iterating " + i + " words, analogy score: "
-                        + calc.getAnalogicalPercentage());
-            }
-            final IIndexWord indexWord = indexWordIterator.next();
+        final int rootWordId = lemmaRegistry.idOf(indexWord.getLemma());
 
-            // kelime word2vec'e yollanmaya uygun mu
-            if (this.validateWord(indexWord.getLemma())) {
+        // kelime word2vec'e yollanmaya uygun mu
+        if (rootWordId >= 0 && lemmaRegistry.isValid(rootWordId, dontComparePhrases)) {
 
-                // kelime word2vec sözlüğünde kayıtlı mı
-                if (usedModel.hasWord(indexWord.getLemma())) {
+            // kelime word2vec sözlüğünde kayıtlı mı
+            if (lemmaRegistry.isInVocab(rootWordId)) {
 
-                    // indexWord'ler iterate edilirken pointer'a bağlı
-                    // analogy check eden algoritma çalışacak, onlySynsetComparison: false olacak
-                    this.calculateAnalogyScoreOfIndexWord(usedModel, indexWord, false);
-                } else {
-                    if (debugEnabled) {
-                        log.debug(indexWord.getLemma() + " is not in model's vocabulary.");
-                    }
-                }
+                // indexWord'ler iterate edilirken pointer'a bağlı
+                // analogy check eden algoritma çalışacak, onlySynsetComparison: false olacak
+                this.calculateAnalogyScoreOfIndexWord(usedModel, indexWord, false, batch);
             } else {
                 if (debugEnabled) {
-                    log.debug(indexWord.getLemma() + " is not a valid word.");
+                    log.debug(indexWord.getLemma() + " is not in model's vocabulary.");
                 }
             }
+        } else {
+            if (debugEnabled) {
+                log.debug(indexWord.getLemma() + " is not a valid word.");
+            }
         }
     }
 
@@ -343,20 +882,24 @@ public class WordNetUtil implements WordNetUtilInt {
      *
      * @param usedModel
      * @param indexWord
+     * @param batch     batch that queries of the word are added to.
      */
     private void calculateAnalogyScoreOfIndexWord(final BaseModelInt usedModel,
-            final IIndexWord indexWord, boolean onlySynsetComparison) {
+            final IIndexWord indexWord, boolean onlySynsetComparison, final AnalogyQueryBatch batch) {
 
         final String rootWordLemma = indexWord.getLemma();
+        final int rootWordId = lemmaRegistry.idOf(rootWordLemma);
         final List<IWordID> wordIDs = indexWord.getWordIDs();
         int totalWordsForWordID = wordIDs.size();
         for (int i = 0; i < totalWordsForWordID; i++) {
             // esas işlenen kelime
             final IWord rootWord = dict.getWord(wordIDs.get(i));
             if (onlySynsetComparison) {
-                this.calculateAnalogyScoreByComparingRelatedSynsets(usedModel, rootWord, rootWordLemma);
+                this.calculateAnalogyScoreByComparingRelatedSynsets(usedModel, rootWord,
+                        rootWordLemma, rootWordId, batch);
             } else {
-                this.calculateAnalogyScoreOfWordWithAllRelations(usedModel, rootWord, rootWordLemma);
+                this.calculateAnalogyScoreOfWordWithAllRelations(usedModel, rootWord,
+                        rootWordLemma, rootWordId, batch);
             }
         }
     }
@@ -367,12 +910,15 @@ public class WordNetUtil implements WordNetUtilInt {
      * @param usedModel
      * @param rootWord
      * @param rootWordLemma
+     * @param rootWordId    id of root word in {@link #lemmaRegistry}.
      */
     private void calculateAnalogyScoreOfWordWithAllRelations(final BaseModelInt usedModel,
-            final IWord rootWord, final String rootWordLemma) {
+            final IWord rootWord, final String rootWordLemma, final int rootWordId,
+            final AnalogyQueryBatch batch) {
 
-        this.calculateLexicalAnalogy(usedModel, rootWord.getRelatedMap(), rootWordLemma);
-        this.calculateSemanticAnalogy(usedModel, rootWord.getSynset().getRelatedMap(), rootWordLemma);
+        this.calculateLexicalAnalogy(usedModel, rootWord.getRelatedMap(), rootWordLemma, rootWordId, batch);
+        this.calculateSemanticAnalogy(usedModel, rootWord.getSynset().getRelatedMap(),
+                rootWordLemma, rootWordId, batch);
     }
 
     /**
@@ -381,17 +927,23 @@ public class WordNetUtil implements WordNetUtilInt {
      * @param usedModel
      * @param relatedWordMap
      * @param rootWordLemma
+     * @param rootWordId
      */
     private void calculateLexicalAnalogy(final BaseModelInt usedModel,
-            final Map<IPointer, List<IWordID>> relatedWordMap, final String rootWordLemma) {
+            final Map<IPointer, List<IWordID>> relatedWordMap, final String rootWordLemma,
+            final int rootWordId, final AnalogyQueryBatch batch) {
 
         String relatedWordLemma, comparedWordLemma;
         for (IPointer currentPointer : relatedWordMap.keySet()) {
 
-            final HashSet<IWord> wordsOfPointer = pointerToWordMap.get(currentPointer);
+            final int ordinal = pointerToWordMap.ordinalOf(currentPointer);
 
             // pointer analojik olarak manalıysa
-            if (wordsOfPointer != null) {
+            if (ordinal >= 0) {
+
+                final int[] wordsOfPointer = pointerToWordMap.wordsOfOrdinal(ordinal);
+                final SimilarityPreFilter.Candidates candidates = this.candidatesOf(usedModel, ordinal,
+                        rootWordLemma);
 
                 // root kelimenin lexical yakın kelimeleri
                 final List<IWordID> lexicallyRelatedWordIDs = relatedWordMap.get(currentPointer);
@@ -400,25 +952,27 @@ public class WordNetUtil implements WordNetUtilInt {
                 for (int k = 0; k < relatedWordSizeForPointer; k++) {
                     final IWord relatedWord = dict.getWord(lexicallyRelatedWordIDs.get(k));
                     relatedWordLemma = relatedWord.getLemma();
+                    final int relatedWordId = lemmaRegistry.idOf(relatedWordLemma);
 
                     // related kelime ile root aynı olmamalı
-                    if (rootWordLemma.equalsIgnoreCase(relatedWordLemma)) {
+                    if (lemmaRegistry.isSameIgnoringCase(rootWordId, relatedWordId)) {
                         if (debugEnabled) {
                             log.debug(relatedWordLemma + " is same as root word, it cannot be checked.");
                         }
-                    } else if (this.validateWord(relatedWordLemma)
-                            && usedModel.hasWord(relatedWordLemma)) {
+                    } else if (this.isUsable(relatedWordId)) {
 
                         int counterForPointerCap = 0;
-                        final Iterator<IWord> iterator = wordsOfPointer.iterator();
-                        while (iterator.hasNext() && counterForPointerCap < iterationCapForPointer) {
+                        int w = -1;
+                        while (counterForPointerCap < iterationCapForPointer
+                                && (w = nextCompared(candidates, w, wordsOfPointer.length)) >= 0) {
 
-                            final IWord comparedWord = iterator.next();
+                            final IWord comparedWord = pointerToWordMap.wordOf(wordsOfPointer[w]);
                             comparedWordLemma = comparedWord.getLemma();
+                            final int comparedWordId = lemmaRegistry.idOf(comparedWordLemma);
 
                             // kıyaslanan kelime root veya related'la aynı olamaz
-                            if (comparedWordLemma.equalsIgnoreCase(rootWordLemma)
-                                    || comparedWordLemma.equalsIgnoreCase(relatedWordLemma)) {
+                            if (lemmaRegistry.isSameIgnoringCase(comparedWordId, rootWordId)
+                                    || lemmaRegistry.isSameIgnoringCase(comparedWordId, relatedWordId)) {
                                 if (debugEnabled) {
                                     log.debug("Word to be compared: " + comparedWordLemma
                                             + " is same as one of the words in pair: "
@@ -427,24 +981,20 @@ public class WordNetUtil implements WordNetUtilInt {
                                 // compared word pointerToWordMap'den geliyor,
                                 // o yüzden tekrardan validate edilmesine gerek yok
                                 // } else if (this.validateWord(comparedWordLemma)) {
-                            } else {
+                            } else if (this.passesSimilarityGate(usedModel, candidates, rootWordLemma,
+                                    comparedWordLemma)) {
 
-                                // hasWord kontrolü similarity'nin içinde var
-                                final double sim = usedModel.getSimilarity(rootWordLemma, comparedWordLemma);
+                                // increase counter only if the analogy comparison is done
+                                counterForPointerCap++;
 
-                                // sim == sim checks for NaN
-                                if (sim == sim && sim > DefaultSettingValues.MIN_SIMILARITY_FOR_COMPARISON) {
+                                final List<IWordID> relatedWordsOfCompared =
+                                        comparedWord.getRelatedWords(currentPointer);
 
-                                    // increase counter only if the analogy comparison is done
-                                    counterForPointerCap++;
-
-                                    final List<IWordID> relatedWordsOfCompared =
-                                            comparedWord.getRelatedWords(currentPointer);
-
-                                    this.compareWordPairWithGivenThird(usedModel,
-                                            this.getWordsFromWordIDs(relatedWordsOfCompared),
-                                            rootWordLemma, relatedWordLemma, comparedWordLemma);
-                                }
+                                this.compareWordPairWithGivenThird(usedModel,
+                                        this.getWordsFromWordIDs(relatedWordsOfCompared),
+                                        rootWordLemma, relatedWordLemma, comparedWordLemma,
+                                        AnalogyQueryMemo.keyOf(rootWordId, relatedWordId, comparedWordId),
+                                        batch);
                             }
                         }
                     }
@@ -459,9 +1009,11 @@ public class WordNetUtil implements WordNetUtilInt {
      * @param usedModel
      * @param relatedSynsetMap
      * @param rootWordLemma
+     * @param rootWordId
      */
     private void calculateSemanticAnalogy(final BaseModelInt usedModel,
-            final Map<IPointer, List<ISynsetID>> relatedSynsetMap, final String rootWordLemma) {
+            final Map<IPointer, List<ISynsetID>> relatedSynsetMap, final String rootWordLemma,
+            final int rootWordId, final AnalogyQueryBatch batch) {
 
         // rootWordLemma + synsetWordLemma analojik pair
         String synsetWordLemma, comparedWordLemma;
@@ -469,10 +1021,14 @@ public class WordNetUtil implements WordNetUtilInt {
         // kelimenin synsetindeki her ilişki için yap
         for (final IPointer iPointer : relatedSynsetMap.keySet()) {
 
-            // o andaki pointer'a sahip bütün kelimeleri çek
-            final HashSet<IWord> wordsOfPointer = pointerToWordMap.get(iPointer);
+            final int ordinal = pointerToWordMap.ordinalOf(iPointer);
             // pointer karşılaştırma için uygunsa
-            if (wordsOfPointer != null) {
+            if (ordinal >= 0) {
+
+                // o andaki pointer'a sahip bütün kelimeleri çek
+                final int[] wordsOfPointer = pointerToWordMap.wordsOfOrdinal(ordinal);
+                final SimilarityPreFilter.Candidates candidates = this.candidatesOf(usedModel, ordinal,
+                        rootWordLemma);
 
                 // root kelimenin synset'inin ilişkili olduğu synset'leri bu ilişki döngüsünde çek
                 final List<ISynsetID> semanticallyRelatedSynsetIDs = relatedSynsetMap.get(iPointer);
@@ -492,14 +1048,14 @@ public class WordNetUtil implements WordNetUtilInt {
                     }
                     for (IWord relatedSynsetWord : relatedSynsetWords) {
                         synsetWordLemma = relatedSynsetWord.getLemma();
+                        final int synsetWordId = lemmaRegistry.idOf(synsetWordLemma);
 
                         // başka synset'teki kelime ile root aynı olmamalı
-                        if (rootWordLemma.equalsIgnoreCase(synsetWordLemma)) {
+                        if (lemmaRegistry.isSameIgnoringCase(rootWordId, synsetWordId)) {
                             if (debugEnabled) {
                                 strBuilder.append(synsetWordLemma).append(" is same as root word - ");
                             }
-                        } else if (this.validateWord(synsetWordLemma)
-                                && usedModel.hasWord(synsetWordLemma)) {
+                        } else if (this.isUsable(synsetWordId)) {
 
                             if (debugEnabled) {
                                 // root word'ün synset'inin ilişkili olduğu synset'teki kelimeyi logla
@@ -507,27 +1063,24 @@ public class WordNetUtil implements WordNetUtilInt {
                             }
 
                             int counterForPointerCap = 0;
-                            final Iterator<IWord> iterator = wordsOfPointer.iterator();
-                            while (iterator.hasNext() && counterForPointerCap < iterationCapForPointer) {
+                            int w = -1;
+                            while (counterForPointerCap < iterationCapForPointer
+                                    && (w = nextCompared(candidates, w, wordsOfPointer.length)) >= 0) {
 
-                                final IWord comparedWord = iterator.next();
+                                final IWord comparedWord = pointerToWordMap.wordOf(wordsOfPointer[w]);
                                 comparedWordLemma = comparedWord.getLemma();
+                                final int comparedWordId = lemmaRegistry.idOf(comparedWordLemma);
 
-                                if (comparedWordLemma.equalsIgnoreCase(rootWordLemma) ||
-                                        comparedWordLemma.equalsIgnoreCase(synsetWordLemma)) {
+                                if (lemmaRegistry.isSameIgnoringCase(comparedWordId, rootWordId) ||
+                                        lemmaRegistry.isSameIgnoringCase(comparedWordId, synsetWordId)) {
                                     if (debugEnabled) {
                                         log.debug("Word to be compared: " + comparedWordLemma
                                                 + " is same as one of the words in pair: "
                                                 + rootWordLemma + " - " + synsetWordLemma);
                                     }
                                 } else {
-                                    // hasWord kontrolü similarity'nin içinde var
-                                    final double sim = usedModel.getSimilarity(rootWordLemma,
-                                            comparedWordLemma);
-
-                                    // sim == sim checks for NaN
-                                    if (sim == sim && sim > DefaultSettingValues
-                                            .MIN_SIMILARITY_FOR_COMPARISON) {
+                                    if (this.passesSimilarityGate(usedModel, candidates, rootWordLemma,
+                                            comparedWordLemma)) {
 
                                         // bir kelime compare edildiği zaman arttırması için burada
                                         counterForPointerCap++;
@@ -536,7 +1089,9 @@ public class WordNetUtil implements WordNetUtilInt {
                                                 .getWords();
 
                                         this.compareWordPairWithGivenThird(usedModel, synsetWordsOfCompared,
-                                                rootWordLemma, synsetWordLemma, comparedWordLemma);
+                                                rootWordLemma, synsetWordLemma, comparedWordLemma,
+                                                AnalogyQueryMemo.keyOf(rootWordId, synsetWordId, comparedWordId),
+                                                batch);
                                     }
                                 }
                             }
@@ -552,7 +1107,8 @@ public class WordNetUtil implements WordNetUtilInt {
 
     /**
      * all three words are for sure in model's vocabulary at the point
-     * when there is a call to this method.
+     * when there is a call to this method. query is sent to model
+     * when given batch is full.
      *
      * @param usedModel
      * @param expectedWordsForCompared can be words in synset or words that are directly related to
@@ -560,80 +1116,243 @@ public class WordNetUtil implements WordNetUtilInt {
      * @param rootWordLemma            root word that has started iteration.
      * @param pairWordLemma            related word of root either lexically or semantically.
      * @param comparedWordLemma        third word to be compared.
+     * @param queryKey                 key of the three words in {@link AnalogyQueryMemo}.
+     * @param batch                    batch of the chunk or of the given word.
      */
     private void compareWordPairWithGivenThird(final BaseModelInt usedModel,
             final List<IWord> expectedWordsForCompared, final String rootWordLemma,
-            final String pairWordLemma, final String comparedWordLemma) {
+            final String pairWordLemma, final String comparedWordLemma, final long queryKey,
+            final AnalogyQueryBatch batch) {
+
+        final List<String> expectedLemmas = new ArrayList<>(expectedWordsForCompared.size());
+        expectedWordsForCompared.forEach(word -> expectedLemmas.add(word.getLemma()));
+        this.addAnalogyQuery(usedModel, expectedLemmas, rootWordLemma, pairWordLemma, comparedWordLemma,
+                queryKey, batch);
+    }
+
+    private void addAnalogyQuery(final BaseModelInt usedModel, final List<String> expectedLemmas,
+            final String rootWordLemma, final String pairWordLemma, final String comparedWordLemma,
+            final long queryKey, final AnalogyQueryBatch batch) {
 
-        if (expectedWordsForCompared.isEmpty()) {
+        if (expectedLemmas.isEmpty()) {
 
             log.error(comparedWordLemma + " does not have any related words when it should have!");
         } else {
             // word2vec sorgusu, sorgulanan kelimenin tüm related kelimeleri için tekrar tekrar
             // yapılmasın diye burada
-            final List<String> closestWords = usedModel.getClosestWords(Arrays.asList(rootWordLemma,
-                    pairWordLemma), Arrays.asList(comparedWordLemma));
+            batch.add(usedModel, new AnalogyQuery(Arrays.asList(rootWordLemma, pairWordLemma),
+                    Arrays.asList(comparedWordLemma)), queryKey, expectedLemmas);
+        }
+    }
 
-            final StringBuilder strBuilder = new StringBuilder();
-            if (debugEnabled) {
-                strBuilder.append(rootWordLemma).append(" - ").append(pairWordLemma)
-                        .append(", compared with: ").append(comparedWordLemma)
-                        .append("\nReturned words from model: ").append(closestWords.toString())
-                        .append("\nExpected words of compared word: ");
-            }
+    /**
+     * @param candidates eligible words of the pointer, null if every word is checked one by one.
+     * @param position   last position that is checked, -1 at the start.
+     * @param size       number of words of the pointer.
+     * @return next position of pointer's words to check, -1 if there is no more.
+     */
+    private static int nextCompared(final SimilarityPreFilter.Candidates candidates, final int position,
+            final int size) {
 
-            int sizeOfExpectedWords = expectedWordsForCompared.size();
-            for (int i = 0; i < sizeOfExpectedWords; i++) {
+        if (candidates != null) {
+            return candidates.nextAfter(position);
+        }
+        return position + 1 < size ? position + 1 : -1;
+    }
 
-                final String expectedWordOfCompared = expectedWordsForCompared.get(i).getLemma();
+    /**
+     * words that are given by candidates have already passed the gate, others are asked to model.
+     */
+    private boolean passesSimilarityGate(final BaseModelInt usedModel,
+            final SimilarityPreFilter.Candidates candidates, final String rootWordLemma,
+            final String comparedWordLemma) {
 
-                if (debugEnabled) {
-                    strBuilder.append(expectedWordOfCompared).append(" - ");
+        if (candidates != null) {
+            return true;
+        }
+        // hasWord kontrolü similarity'nin içinde var
+        final double sim = usedModel.getSimilarity(rootWordLemma, comparedWordLemma);
+
+        // sim == sim checks for NaN
+        return sim == sim && sim > DefaultSettingValues.MIN_SIMILARITY_FOR_COMPARISON;
+    }
+
+    /**
+     * @return null if {@link #similarityPreFilter} is not used.
+     */
+    private SimilarityPreFilter.Candidates candidatesOf(final BaseModelInt usedModel, final int pointer,
+            final String rootWordLemma) {
+
+        final SimilarityPreFilter filter = similarityPreFilter;
+        return filter == null ? null : filter.candidatesOf(usedModel, pointer, rootWordLemma);
+    }
+
+    /**
+     * builds {@link #similarityPreFilter} for words of pointers of given source if setting is on and
+     * model can compare its rows without copying its vectors, see {@link BaseModelInt#canCompareRows()}.
+     * compared words are gated one by one otherwise. vectors of the model should be loaded.
+     *
+     * @param usedModel
+     * @param source    {@link #pointerToWordMap} or {@link #analogyPlan}.
+     */
+    private void prepareSimilarityPreFilter(final BaseModelInt usedModel, final Object source) {
+
+        if (!useSimilarityPreFilter) {
+            similarityPreFilter = null;
+            return;
+        }
+        if (!usedModel.canCompareRows()) {
+            // dl4j vektörlerinin kopyası sadece filtre için oluşturulmuyor
+            log.info("Similarity pre-filter is not used, " + usedModel.getName()
+                    + " has no float store of its vectors, compared words are gated one by one.");
+            similarityPreFilter = null;
+            return;
+        }
+        if (similarityPreFilter != null && similarityPreFilter.isBuiltFor(source, lemmaRegistry)) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        final List<List<String>> lemmasOfPointer = new ArrayList<>();
+        if (source == analogyPlan) {
+            for (int pointer = 0; pointer < analogyPlan.pointerCount(); pointer++) {
+                final int endOfEntries = analogyPlan.endOfEntries(pointer);
+                final List<String> lemmas = new ArrayList<>(endOfEntries - analogyPlan.firstEntryOf(pointer));
+                for (int entry = analogyPlan.firstEntryOf(pointer); entry < endOfEntries; entry++) {
+                    lemmas.add(analogyPlan.lemmaOf(analogyPlan.comparedLemma(entry)));
                 }
-                // update analogy score and remove the word from closestWords list if there is a match
-                calc.updateAnalogicalAccuracy(expectedWordOfCompared, closestWords);
+                lemmasOfPointer.add(lemmas);
             }
-            // which words came from model and which words are expected will be logged in the end for a word
-            if (debugEnabled) {
-                log.debug(strBuilder.toString());
+        } else {
+            for (int ordinal = 0; ordinal < pointerToWordMap.pointerCount(); ordinal++) {
+                final int[] wordsOfPointer = pointerToWordMap.wordsOfOrdinal(ordinal);
+                final List<String> lemmas = new ArrayList<>(wordsOfPointer.length);
+                for (int wordId : wordsOfPointer) {
+                    lemmas.add(pointerToWordMap.wordOf(wordId).getLemma());
+                }
+                lemmasOfPointer.add(lemmas);
             }
         }
+        similarityPreFilter = SimilarityPreFilter.build(usedModel, lemmasOfPointer, source, lemmaRegistry);
+        log.info("Similarity pre-filter is built in " + (System.currentTimeMillis() - start) + " ms.");
     }
 
-    private void calculateAnalogyScoreBySynsetIterator(final BaseModelInt usedModel,
-            final Iterator<ISynset> synsetIterator) {
-
-        ISynset rootSynset;
-        List<ISynsetID> relatedSynsets;
-        List<IWord> words;
-        while (synsetIterator.hasNext()) {
+    /**
+     * same comparisons with {@link #calculateLexicalAnalogy(BaseModelInt, Map, String, int, AnalogyQueryBatch)}
+     * and {@link #calculateSemanticAnalogy(BaseModelInt, Map, String, int, AnalogyQueryBatch)} for one root
+     * word of {@link #analogyPlan}. words of a pointer are visited in WordNet order like in
+     * {@link #pointerToWordMap}, so a capped iteration picks the same words with the live walk.
+     *
+     * @param usedModel
+     * @param plan        plan that is being evaluated.
+     * @param registryIds ids of plan's lemmas in {@link #lemmaRegistry}.
+     * @param root        index of root word in plan.
+     * @param batch       batch of the chunk.
+     */
+    private void calculateAnalogyScoreOfPlanRoot(final BaseModelInt usedModel, final AnalogyPlan plan,
+            final int[] registryIds, final int root, final AnalogyQueryBatch batch) {
 
-            rootSynset = synsetIterator.next();
-            relatedSynsets = rootSynset.getRelatedSynsets();
-            words = rootSynset.getWords();
+        final int rootWordId = registryIds[plan.rootLemma(root)];
+        if (!this.isUsable(rootWordId)) {
+            if (debugEnabled) {
+                log.debug(plan.lemmaOf(plan.rootLemma(root)) + " is not valid or not in model's vocabulary.");
+            }
+            return;
+        }
+        final String rootWordLemma = lemmaRegistry.lemmaOf(rootWordId);
+        // aynı pointer'ın grupları root için bir kere filtrelenmiş kelimeleri paylaşıyor
+        final SimilarityPreFilter.Candidates[] candidatesOfPointer = similarityPreFilter == null ? null
+                : new SimilarityPreFilter.Candidates[plan.pointerCount()];
+        final int endOfGroups = plan.endOfGroups(root);
+        for (int group = plan.firstGroupOf(root); group < endOfGroups; group++) {
+
+            final int pairWordId = registryIds[plan.pairLemma(group)];
+            if (!this.isUsable(pairWordId)) {
+                continue;
+            }
+            final String pairWordLemma = lemmaRegistry.lemmaOf(pairWordId);
+            final int pointer = plan.pointerOf(group);
+            final boolean lexical = plan.isLexical(group);
+
+            SimilarityPreFilter.Candidates candidates = null;
+            if (candidatesOfPointer != null) {
+                if (candidatesOfPointer[pointer] == null) {
+                    candidatesOfPointer[pointer] = this.candidatesOf(usedModel, pointer, rootWordLemma);
+                }
+                candidates = candidatesOfPointer[pointer];
+            }
 
-            for (final IWord wordInRootSynset : words) {
+            int counterForPointerCap = 0;
+            final int firstEntry = plan.firstEntryOf(pointer);
+            final int entryCount = plan.endOfEntries(pointer) - firstEntry;
+            int position = -1;
+            while (counterForPointerCap < iterationCapForPointer
+                    && (position = nextCompared(candidates, position, entryCount)) >= 0) {
+
+                final int entry = firstEntry + position;
+                final int comparedWordId = registryIds[plan.comparedLemma(entry)];
+
+                // pointerToWordMap'te olduğu gibi geçerli olmayan kelimeler kıyaslanmıyor,
+                // kıyaslanan kelime root veya pair'le aynı olamaz
+                if (comparedWordId < 0 || !lemmaRegistry.isValid(comparedWordId, dontComparePhrases)
+                        || lemmaRegistry.isSameIgnoringCase(comparedWordId, rootWordId)
+                        || lemmaRegistry.isSameIgnoringCase(comparedWordId, pairWordId)) {
+                    continue;
+                }
+                final String comparedWordLemma = lemmaRegistry.lemmaOf(comparedWordId);
 
-                this.calculateAnalogyScoreWithinSynset(usedModel, rootSynset, relatedSynsets,
-                        wordInRootSynset.getLemma());
+                if (this.passesSimilarityGate(usedModel, candidates, rootWordLemma, comparedWordLemma)) {
 
+                    counterForPointerCap++;
+                    final int expectedRef = lexical ? plan.lexicalExpectedOf(entry) : plan.semanticExpectedOf(entry);
+                    if (debugEnabled) {
+                        log.debug(rootWordLemma + " - " + pairWordLemma + " (" + plan.pointerNameOf(pointer)
+                                + ") is compared with " + comparedWordLemma);
+                    }
+                    this.addAnalogyQuery(usedModel, expectedRef < 0 ? Collections.emptyList()
+                            : plan.expectedLemmasOf(expectedRef), rootWordLemma, pairWordLemma, comparedWordLemma,
+                            AnalogyQueryMemo.keyOf(rootWordId, pairWordId, comparedWordId), batch);
+                }
             }
         }
     }
 
+    /**
+     * every sense of the index word is compared within its own synset with its own lemma, so all
+     * words of all synsets are visited once when all index words are visited.
+     *
+     * @param usedModel
+     * @param indexWord
+     * @param batch     batch of the chunk.
+     */
+    private void calculateAnalogyScoreOfSynsetsOfIndexWord(final BaseModelInt usedModel,
+            final IIndexWord indexWord, final AnalogyQueryBatch batch) {
+
+        final List<IWordID> wordIDs = indexWord.getWordIDs();
+        int totalWordsForWordID = wordIDs.size();
+        for (int i = 0; i < totalWordsForWordID; i++) {
+            final IWord wordInRootSynset = dict.getWord(wordIDs.get(i));
+            final ISynset rootSynset = wordInRootSynset.getSynset();
+            final String rootWordLemma = wordInRootSynset.getLemma();
+            this.calculateAnalogyScoreWithinSynset(usedModel, rootSynset, rootSynset.getRelatedSynsets(),
+                    rootWordLemma, lemmaRegistry.idOf(rootWordLemma), batch);
+        }
+    }
+
     private void calculateAnalogyScoreByComparingRelatedSynsets(final BaseModelInt usedModel,
-            final IWord rootWord, final String rootWordLemma) {
+            final IWord rootWord, final String rootWordLemma, final int rootWordId,
+            final AnalogyQueryBatch batch) {
 
 //        this.calculateLexicalAnalogy(usedModel, rootWord.getRelatedMap(), rootWordLemma);
 
         final ISynset synset = rootWord.getSynset();
         this.calculateAnalogyScoreWithinSynset(usedModel, synset, synset.getRelatedSynsets(),
-                rootWordLemma);
+                rootWordLemma, rootWordId, batch);
     }
 
     // bir karşılaştırma başarılı olursa root synset'teki diğer kelimeleri es geçme yapılabilir
     private void calculateAnalogyScoreWithinSynset(final BaseModelInt usedModel, final ISynset rootSynset,
-            final List<ISynsetID> relatedSynsets, final String rootWordLemma) {
+            final List<ISynsetID> relatedSynsets, final String rootWordLemma, final int rootWordId,
+            final AnalogyQueryBatch batch) {
 
         List<IWord> relatedSynWords;
         ISynset relatedSynset;
@@ -643,28 +1362,35 @@ public class WordNetUtil implements WordNetUtilInt {
             relatedSynWords = relatedSynset.getWords();
 
             int relatedSynWordSize = relatedSynWords.size();
+            final int[] relatedSynWordIds = new int[relatedSynWordSize];
+            for (int i = 0; i < relatedSynWordSize; i++) {
+                relatedSynWordIds[i] = lemmaRegistry.idOf(relatedSynWords.get(i).getLemma());
+            }
 
             // index 'i' is for pair word in related set
             for (int i = 0; i < relatedSynWordSize; i++) {
                 final String pairWordLemma = relatedSynWords.get(i).getLemma();
 
                 // pair word should exist in model vocab
-                if (this.validateWord(pairWordLemma) && usedModel.hasWord(pairWordLemma)) {
+                if (this.isUsable(relatedSynWordIds[i])) {
 
                     // index 'k' is for iterating in related set to pick the word to compare
                     for (int k = 0; k < relatedSynWordSize; k++) {
 
-                        final String comparedLemma = relatedSynWords.get(k).getLemma();
+                        final int comparedId = relatedSynWordIds[k];
 
                         // do not compare the pair word with itself (compared == pair ? continue : compared)
                         // and if the compared word is the same as root word
                         // and if the compared word does not exist in model's vocab or not valid
-                        if (i != k && !comparedLemma.equalsIgnoreCase(rootWordLemma) &&
-                                this.validateWord(comparedLemma) && usedModel.hasWord(comparedLemma)) {
+                        if (i != k && !lemmaRegistry.isSameIgnoringCase(comparedId, rootWordId)
+                                && this.isUsable(comparedId)) {
+
+                            final String comparedLemma = relatedSynWords.get(k).getLemma();
 
                             // words -> root synset's words, so expected result should be in this set
                             this.compareWordPairWithGivenThird(usedModel, words, rootWordLemma,
-                                    pairWordLemma, comparedLemma);
+                                    pairWordLemma, comparedLemma,
+                                    AnalogyQueryMemo.keyOf(rootWordId, relatedSynWordIds[i], comparedId), batch);
                         }
                     }
                 }
@@ -684,67 +1410,97 @@ public class WordNetUtil implements WordNetUtilInt {
     }
 
     /**
-     * creates and fills {@link #pointerToWordMap} by {@link #mapPointerToWord(IWord, Set)}.
+     * opens {@link #pointerToWordMap} of current WordNet, analogy types and phrase setting from its file,
+     * builds and saves it first if there is no file for them. map is built again when any of them changes.
      */
     public void preparePointerToWordMap() {
 
-        if (pointerToWordMap == null) {
-            log.info("Creating pointer-word map...");
-            // map'teki toplam kelime sayısı
-            int wordCounter = 0;
-            // toplamda 29 tane pointer var
-            pointerToWordMap = new HashMap<>(32);
-            for (POS partOfSpeech : POS.values()) {
-                final Iterator<IIndexWord> indexWordIterator = dict.getIndexWordIterator(partOfSpeech);
-                while (indexWordIterator.hasNext()) {
-                    final IIndexWord indexWord = indexWordIterator.next();
-                    // word2vec'de kontrol etmek istemediğimiz kelimeleri eklemesin, gerek yok.
-                    if (this.validateWord(indexWord.getLemma())) {
-                        wordCounter += this.addWordIDsToPointerMap(indexWord.getWordIDs());
-                    }
-                }
-            }
-            log.info(wordCounter + " words are mapped to pointers.");
-        } else {
+        final String key = PointerWordIndex.keyOf(dict, analogyTypes, dontComparePhrases);
+        if (pointerToWordMap != null && pointerToWordMap.getKey().equals(key)) {
             log.info("Pointer to word mapping is already done.");
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        File file = null;
+        try {
+            file = PointerWordIndex.fileOf(FileActions.createDirectoryWithFolderName(
+                    DefaultSettingValues.ANALOGY_PLAN_FOLDER).toFile(), key);
+            pointerToWordMap = PointerWordIndex.open(file, key, dict, analogyTypes);
+        } catch (IOException e) {
+            log.warn("Pointer-word map could not be read, it will be created again.", e);
+            pointerToWordMap = null;
+        }
+        if (pointerToWordMap != null) {
+            log.info("Pointer-word map of " + key + " is opened from " + file.getAbsolutePath() + " in "
+                    + (System.currentTimeMillis() - start) + " ms.");
+            return;
+        }
+        log.info("Creating pointer-word map...");
+        pointerToWordMap = PointerWordIndex.build(dict, analogyTypes, this::validateWord, key);
+        log.info(pointerToWordMap.size() + " words are mapped to " + pointerToWordMap.getPointers().size()
+                + " pointers in " + (System.currentTimeMillis() - start) + " ms.");
+        if (file != null) {
+            try {
+                pointerToWordMap.save(file);
+                log.info("Pointer-word map is saved to " + file.getAbsolutePath());
+            } catch (IOException e) {
+                log.error("Pointer-word map could not be saved, it will be created again in next session.", e);
+            }
         }
     }
 
-    private int addWordIDsToPointerMap(final List<IWordID> wordIDs) {
+    /**
+     * builds {@link #lemmaRegistry} if it is not built for given model or model has changed since then.
+     *
+     * @param usedModel
+     */
+    private void prepareLemmaRegistry(final BaseModelInt usedModel) {
 
-        final int totalWordsForWordID = wordIDs.size();
-        for (int i = 0; i < totalWordsForWordID; i++) {
-            // bir kelimenin farklı anlamları varsa o kelime için farklı Word objeleri
-            // olabiliyor, bunların hepsi farklı kelime gibi ele alınmalı
-            this.addToOnePointerMap(dict.getWord(wordIDs.get(i)));
+        if (lemmaRegistry == null || !lemmaRegistry.isBuiltFor(usedModel)) {
+            lemmaRegistry = LemmaRegistry.build(dict, usedModel);
         }
-        return totalWordsForWordID;
-    }
-
-    private void addToOnePointerMap(final IWord rootWord) {
-        // lexical pointer'ın setine koy
-        this.mapPointerToWord(rootWord, rootWord.getRelatedMap().keySet());
-        // semantic pointer'ın setine koy
-        this.mapPointerToWord(rootWord, rootWord.getSynset().getRelatedMap().keySet());
     }
 
-    private void mapPointerToWord(IWord word, Set<IPointer> pointers) {
+    /**
+     * restricts candidates of the model to usable lemmas of {@link #lemmaRegistry} if the setting is on,
+     * restriction is built again if model or phrase setting has changed since it was built.
+     *
+     * @param usedModel
+     */
+    private void prepareCandidateRestriction(final BaseModelInt usedModel) {
 
-        for (IPointer pointer : pointers) {
-            if (analogyTypes.contains(WordNetPointers.getByCode(pointer.getSymbol()))) {
-                HashSet<IWord> words = pointerToWordMap.get(pointer);
-                if (words == null) {
-                    words = new HashSet<IWord>() {{
-                        add(word);
-                    }};
-                    pointerToWordMap.put(pointer, words);
-                } else {
-                    words.add(word);
+        if (!searchOnlyWordNetLemmas) {
+            if (usedModel.getCandidateSubset() != null) {
+                usedModel.clearCandidateRestriction();
+            }
+            return;
+        }
+        if (usedModel.getCandidateSubset() == null || candidatesBuiltWith != lemmaRegistry
+                || candidatesBuiltWithoutPhrases != dontComparePhrases) {
+            final List<String> candidates = new ArrayList<>(lemmaRegistry.size());
+            for (int id = 0; id < lemmaRegistry.size(); id++) {
+                if (this.isUsable(id)) {
+                    candidates.add(lemmaRegistry.lemmaOf(id));
                 }
             }
+            usedModel.restrictCandidates(candidates);
+            candidatesBuiltWith = lemmaRegistry;
+            candidatesBuiltWithoutPhrases = dontComparePhrases;
         }
     }
 
+    /**
+     * same check with {@link #validateWord(String)} and {@link BaseModelInt#hasWord(String)}
+     * together, answered by flags of {@link #lemmaRegistry}.
+     *
+     * @param lemmaId id of a lemma in registry.
+     * @return false if lemma is not registered or it should not be sent to model.
+     */
+    private boolean isUsable(final int lemmaId) {
+
+        return lemmaRegistry.isUsable(lemmaId, dontComparePhrases);
+    }
+
     /**
      * WordNet has phrases which are connected to each other by '_'. Also it has words as '.22' or '10'
      * that we don't want to check for analogy. (method is public for testing)
@@ -754,8 +1510,8 @@ public class WordNetUtil implements WordNetUtilInt {
      */
     public boolean validateWord(final String wordLemma) {
 
-        // regex checks if a number exists
-        if ((dontComparePhrases && wordLemma.contains("_")) || wordLemma.matches(".*\\d+.*")) {
+        // checks if a number exists
+        if ((dontComparePhrases && LemmaRegistry.isPhrase(wordLemma)) || LemmaRegistry.hasDigit(wordLemma)) {
             if (debugEnabled) {
                 log.debug(wordLemma + " is not a valid word.");
             }
@@ -773,9 +1529,9 @@ public class WordNetUtil implements WordNetUtilInt {
         long start = System.currentTimeMillis();
         this.preparePointerToWordMap();
         log.info("Seconds passed to prepare map: " + (System.currentTimeMillis() - start) / 1000);
-        for (IPointer iPointer : pointerToWordMap.keySet()) {
-            HashSet<IWord> words = pointerToWordMap.get(iPointer);
-            for (IWord word : words) {
+        for (IPointer iPointer : pointerToWordMap.getPointers()) {
+            for (int wordId : pointerToWordMap.wordsOf(iPointer)) {
+                final IWord word = pointerToWordMap.wordOf(wordId);
                 strBuilder.append("\n\n").append(iPointer.getName()).append("\nWord: ")
                         .append(word.getLemma()).append(" - ").append(word.getSynset().getGloss());
                 if ((counter++) % 4000 == 1) {
@@ -965,6 +1721,72 @@ public class WordNetUtil implements WordNetUtilInt {
         this.iterationCapForPointer = iterationCap;
     }
 
+    /**
+     * @param batchSize how many analogy queries are sent to model at once.
+     */
+    @Override
+    public void setAnalogyBatchSize(int batchSize) {
+
+        log.info("Analogy queries will be sent to model in batches of " + batchSize);
+        this.analogyBatchSize = batchSize;
+    }
+
+    /**
+     * subset of the model is built when the next analogy calculation starts.
+     *
+     * @param searchOnlyWordNetLemmas true to search analogy answers only among valid WordNet lemmas.
+     */
+    @Override
+    public void setCandidateRestriction(boolean searchOnlyWordNetLemmas) {
+
+        if (searchOnlyWordNetLemmas) {
+            log.info("Analogy answers will be searched only among WordNet lemmas.");
+        } else {
+            log.info("Analogy answers will be searched in whole vocabulary of model.");
+        }
+        this.searchOnlyWordNetLemmas = searchOnlyWordNetLemmas;
+    }
+
+    /**
+     * @param parallelism threads that calculate scores of index words, 1 calculates on calling thread.
+     */
+    @Override
+    public void setEvaluationParallelism(int parallelism) {
+
+        log.info("Scores will be calculated with " + parallelism + " threads.");
+        engine.setParallelism(parallelism);
+    }
+
+    /**
+     * @param useSimilarityPreFilter true to gate compared words by similarities of a pointer's words at
+     *                               once, when model can compare its rows.
+     */
+    @Override
+    public void setSimilarityPreFilterUsage(boolean useSimilarityPreFilter) {
+
+        if (useSimilarityPreFilter) {
+            log.info("Similarity of compared words will be calculated for all words of a pointer at once.");
+        } else {
+            log.info("Similarity of compared words will be asked to model one by one.");
+            this.similarityPreFilter = null;
+        }
+        this.useSimilarityPreFilter = useSimilarityPreFilter;
+    }
+
+    /**
+     * @param useAnalogyPlan true to evaluate analogy by a plan that is compiled once for WordNet.
+     */
+    @Override
+    public void setAnalogyPlanUsage(boolean useAnalogyPlan) {
+
+        if (useAnalogyPlan) {
+            log.info("Analogy will be calculated by compiled plan of WordNet.");
+        } else {
+            log.info("Analogy will be calculated by walking WordNet.");
+        }
+        this.useAnalogyPlan = useAnalogyPlan;
+    }
+
     @Override
     public void setPhraseComparisonSetting(boolean dontComparePhrases) {
 
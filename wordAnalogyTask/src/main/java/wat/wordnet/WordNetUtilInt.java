@@ -2,18 +2,28 @@ package wat.wordnet;
 
 import edu.mit.jwi.item.POS;
 import wat.calculator.Calculator;
+import wat.calculator.SamplingEstimate;
 import wat.training.model.BaseModelInt;
 
 import java.io.IOException;
+import java.util.Set;
 
 public interface WordNetUtilInt {
 
+    void prepareFromVocabulary(final BaseModelInt usedModel, final boolean isAnalogyTest,
+            final boolean onlySynsetComparison);
+
     void calculateScoreForAllWords(final BaseModelInt usedModel,
             final boolean isAnalogyTest, final boolean onlySynsetComparison) throws IOException;
 
     void calculateScoreForPOSFromController(final BaseModelInt usedModel, final POS partOfSpeech,
             final boolean isAnalogyTest, final boolean onlySynsetComparison) throws IOException;
 
+    SamplingEstimate calculateScoreBySampling(final BaseModelInt usedModel, final boolean isAnalogyTest,
+            final boolean onlySynsetComparison, final long seed, final double epsilon, final int timeBudget);
+
+    boolean resumeEvaluation(final BaseModelInt usedModel);
+
     void calculateAnalogyScoreOfWordInput(final BaseModelInt usedModel, final String wordInput,
             boolean onlySynsetComparison);
 
@@ -21,6 +31,8 @@ public interface WordNetUtilInt {
 
     void closeDictionary();
 
+    Set<String> getAllLemmas();
+
     void listWordsSemanticPointers();
 
     void listWordsLexicalPointers();
@@ -40,4 +52,14 @@ public interface WordNetUtilInt {
     void setIterationCapForPointer(int iterationCap);
 
     void setPhraseComparisonSetting(boolean dontComparePhrases);
+
+    void setAnalogyBatchSize(int batchSize);
+
+    void setCandidateRestriction(boolean searchOnlyWordNetLemmas);
+
+    void setEvaluationParallelism(int parallelism);
+
+    void setAnalogyPlanUsage(boolean useAnalogyPlan);
+
+    void setSimilarityPreFilterUsage(boolean useSimilarityPreFilter);
 }
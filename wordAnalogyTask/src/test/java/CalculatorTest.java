@@ -0,0 +1,124 @@
+import org.junit.Assert;
+import org.junit.Test;
+import wat.calculator.Calculator;
+import wat.calculator.SamplingEstimate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class CalculatorTest {
+
+    @Test
+    public void testMatchedWordIsNotCountedInRanks() {
+
+        final Calculator calc = new Calculator();
+        calc.prepareScoresForAnalogyTask(3);
+        final List<String> closestWords = Collections.unmodifiableList(Arrays.asList("a", "b", "c"));
+
+        // b, a eşleştikten sonra ilk sırada sayılıyor
+        calc.updateAnalogicalAccuracy(Arrays.asList("A", "b", "x"), closestWords);
+
+        // max score 18, 1. kelime 17 puan: (17 + 17) / 3 hesaplama
+        Assert.assertEquals(100 * 34.0d / 3 / 18, calc.getAnalogicalPercentage(), 1e-9);
+        Assert.assertEquals(3, closestWords.size());
+    }
+
+    @Test
+    public void testTotalsDoNotDependOnThreads() {
+
+        final double[] similarities = new Random(24).doubles(200000).toArray();
+        final Calculator sequential = new Calculator();
+        for (double similarity : similarities) {
+            sequential.updateSimilarity(similarity);
+        }
+        final List<String> closestWords = Arrays.asList("a", "b", "c", "d");
+        for (int i = 0; i < 1000; i++) {
+            sequential.updateAnalogicalAccuracy(Collections.singletonList(i % 2 == 0 ? "c" : "z"), closestWords);
+        }
+
+        final Calculator parallel = new Calculator();
+        IntStream.range(0, similarities.length).parallel().forEach(i -> parallel.updateSimilarity(similarities[i]));
+        IntStream.range(0, 1000).parallel().forEach(i -> parallel.updateAnalogicalAccuracy(
+                Collections.singletonList(i % 2 == 0 ? "c" : "z"), closestWords));
+
+        Assert.assertEquals(sequential.getSimilarityPercentage(), parallel.getSimilarityPercentage(), 0.0d);
+        Assert.assertEquals(sequential.getAnalogicalPercentage(), parallel.getAnalogicalPercentage(), 0.0d);
+    }
+
+    @Test
+    public void testScoreIsKeptWhenScoresChange() {
+
+        final Calculator calc = new Calculator();
+        calc.prepareScoresForAnalogyTask(3);
+        calc.updateAnalogicalAccuracy(Collections.singletonList("a"), Arrays.asList("a", "b", "c"));
+        final double before = calc.getAnalogicalPercentage();
+
+        // skorlar değişince önceki eşleşme eski skoruyla kalıyor, sadece max score değişiyor
+        calc.prepareScoresForAnalogyTask(4);
+        Assert.assertEquals(before * 18 / 32, calc.getAnalogicalPercentage(), 1e-9);
+
+        calc.resetProperties();
+        Assert.assertEquals(-1.0d, calc.getAnalogicalPercentage(), 0.0d);
+    }
+
+    @Test
+    public void testSampledPercentageIsSameWithCalculator() {
+
+        // 10000 kelimelik bir popülasyon, sırası rastgele olduğu için her tur iadesiz bir örnek
+        final double[] similarities = new Random(7).doubles(10000).toArray();
+        final double populationPercentage = 100 * Arrays.stream(similarities).sum() / similarities.length;
+        final Calculator calc = new Calculator();
+        final SamplingEstimate estimate = new SamplingEstimate(similarities.length, 1.96d);
+        for (int round = 0; round < 20; round++) {
+            final double[] before = calc.getTotals();
+            for (int word = round * 500; word < (round + 1) * 500; word++) {
+                calc.updateSimilarity(similarities[word]);
+            }
+            estimate.addRound(500, before, calc.getTotals());
+            if (round == 9) {
+                // yarısı örneklendiğinde yarı genişlik 1.96 * 28.9 * sqrt(0.5 / 5000) civarı
+                final double halfWidth = estimate.getSimilarityHalfWidth();
+                Assert.assertTrue(halfWidth > 0.2d && halfWidth < 0.9d);
+                Assert.assertTrue(Math.abs(estimate.getSimilarityPercentage() - populationPercentage) < 2 * halfWidth);
+            }
+        }
+
+        Assert.assertEquals(calc.getSimilarityPercentage(), estimate.getSimilarityPercentage(), 1e-9);
+        Assert.assertEquals(populationPercentage, estimate.getSimilarityPercentage(), 1e-9);
+        // bütün kelimeler örneklendiğinde aralık kalmıyor
+        Assert.assertEquals(0.0d, estimate.getSimilarityHalfWidth(), 1e-9);
+    }
+
+    @Test
+    public void testRestoredCalculatorGivesSameScore() {
+
+        final double[] similarities = new Random(25).doubles(1000).toArray();
+        final List<String> closestWords = Arrays.asList("a", "b", "c", "d");
+        final Calculator uninterrupted = new Calculator();
+        final Calculator stopped = new Calculator();
+        for (int i = 0; i < 1000; i++) {
+            uninterrupted.updateSimilarity(similarities[i]);
+            uninterrupted.updateAnalogicalAccuracy(Collections.singletonList(i % 3 == 0 ? "b" : "d"), closestWords);
+            if (i < 600) {
+                stopped.updateSimilarity(similarities[i]);
+                stopped.updateAnalogicalAccuracy(Collections.singletonList(i % 3 == 0 ? "b" : "d"), closestWords);
+            }
+        }
+
+        // checkpoint'ten devam eden hesaplama
+        final Calculator resumed = new Calculator();
+        resumed.restoreAccumulators(stopped.getFoldedAnalogyScore(), stopped.getAccumulators());
+        for (int i = 600; i < 1000; i++) {
+            resumed.updateSimilarity(similarities[i]);
+            resumed.updateAnalogicalAccuracy(Collections.singletonList(i % 3 == 0 ? "b" : "d"), closestWords);
+        }
+
+        Assert.assertEquals(uninterrupted.getSimilarityPercentage(), resumed.getSimilarityPercentage(), 0.0d);
+        Assert.assertEquals(uninterrupted.getAnalogicalPercentage(), resumed.getAnalogicalPercentage(), 0.0d);
+        Assert.assertArrayEquals(uninterrupted.getAccumulators(), resumed.getAccumulators());
+    }
+
+}
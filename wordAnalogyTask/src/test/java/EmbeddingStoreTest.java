@@ -0,0 +1,143 @@
+import org.junit.Assert;
+import org.junit.Test;
+import wat.helper.Constants;
+import wat.training.model.store.CandidateSubset;
+import wat.training.model.store.EmbeddingStore;
+import wat.training.model.store.VectorRows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class EmbeddingStoreTest {
+
+    public static EmbeddingStore prepareStore() {
+
+        final String[] words = {"king", "queen", "man", "woman", "apple", "orange"};
+        final float[] vectors = {
+                0.9f, 0.8f, 0.1f,
+                0.9f, 0.1f, 0.8f,
+                0.1f, 0.9f, 0.1f,
+                0.1f, 0.2f, 0.9f,
+                -0.5f, 0.1f, 0.1f,
+                -0.6f, 0.1f, 0.2f
+        };
+        for (int i = 0; i < words.length; i++) {
+            EmbeddingStore.normalizeRow(vectors, i * 3, 3);
+        }
+        return new EmbeddingStore(words, vectors, 3);
+    }
+
+    /**
+     * words are named word0, word1 and so on, their rows are normalized gaussian vectors.
+     */
+    public static EmbeddingStore prepareRandomStore(final int size, final int dimensions, final int storage,
+            final long seed) {
+
+        final Random random = new Random(seed);
+        final String[] words = new String[size];
+        final VectorRows rows = EmbeddingStore.createRows(storage, size, dimensions);
+        final float[] vector = new float[dimensions];
+        for (int i = 0; i < size; i++) {
+            words[i] = "word" + i;
+            for (int j = 0; j < dimensions; j++) {
+                vector[j] = (float) random.nextGaussian();
+            }
+            EmbeddingStore.normalizeRow(vector, 0, dimensions);
+            rows.setRow(i, vector);
+        }
+        return new EmbeddingStore(words, rows);
+    }
+
+    @Test
+    public void testRowsAreNormalized() {
+
+        final EmbeddingStore store = prepareStore();
+        for (int i = 0; i < store.size(); i++) {
+            Assert.assertEquals(1.0f, store.dot(i, i), 1e-5f);
+        }
+        Assert.assertTrue(Double.isNaN(store.similarity("king", "prince")));
+    }
+
+    @Test
+    public void testAnalogyQuery() {
+
+        final EmbeddingStore store = prepareStore();
+        final List<String> positive = Arrays.asList("king", "woman");
+        final List<String> negative = Collections.singletonList("man");
+        final List<String> closest = store.nearest(store.buildQuery(positive, negative), 2,
+                store.indexesOf(positive, negative));
+
+        Assert.assertEquals("queen", closest.get(0));
+        Assert.assertFalse("Words of the query should not be returned.", closest.contains("king"));
+    }
+
+    @Test
+    public void testNearestIsSortedAndBounded() {
+
+        final EmbeddingStore store = prepareStore();
+        final float[] query = new float[store.getDimensions()];
+        store.copyRow(store.indexOf("apple"), query);
+        final List<String> nearest = store.nearest(query, 3, new int[]{store.indexOf("apple")});
+
+        Assert.assertEquals(3, nearest.size());
+        Assert.assertEquals("orange", nearest.get(0));
+        for (int i = 1; i < nearest.size(); i++) {
+            Assert.assertTrue(store.similarity("apple", nearest.get(i - 1))
+                    >= store.similarity("apple", nearest.get(i)));
+        }
+    }
+
+    @Test
+    public void testSimilaritiesAreSameWithPairwiseSimilarity() {
+
+        final EmbeddingStore store = prepareStore();
+        final int[] rows = {5, 0, 3, 3, 1};
+        final float[] similarities = new float[3];
+        store.similarities(store.indexOf("man"), rows, 1, 4, similarities);
+
+        // tek tek hesaplanan benzerlikle bit bit aynı olmalı
+        for (int i = 1; i < 4; i++) {
+            Assert.assertEquals(store.similarity("man", store.wordAt(rows[i])), similarities[i - 1], 0.0d);
+        }
+    }
+
+    @Test
+    public void testBatchGivesSameResultAsSingleQueries() {
+
+        final EmbeddingStore store = prepareStore();
+        final String[][] triples = {{"king", "woman", "man"}, {"apple", "queen", "orange"},
+                {"man", "king", "woman"}, {"orange", "apple", "king"}, {"woman", "man", "queen"}};
+        final float[][] queries = new float[triples.length][];
+        final int[][] excluded = new int[triples.length][];
+        for (int i = 0; i < triples.length; i++) {
+            final List<String> positive = Arrays.asList(triples[i][0], triples[i][1]);
+            final List<String> negative = Collections.singletonList(triples[i][2]);
+            queries[i] = store.buildQuery(positive, negative);
+            excluded[i] = store.indexesOf(positive, negative);
+        }
+
+        final List<List<String>> batch = store.nearestBatch(queries, 3, excluded);
+        for (int i = 0; i < triples.length; i++) {
+            Assert.assertEquals(store.nearest(queries[i], 3, excluded[i]), batch.get(i));
+        }
+    }
+
+    @Test
+    public void testCandidateSubsetSearchesOnlyGivenWords() {
+
+        final EmbeddingStore store = prepareStore();
+        final CandidateSubset subset = CandidateSubset.build(store,
+                Arrays.asList("king", "man", "woman", "apple", "orange", "prince"), Constants.VECTORS_AS_FLOAT, 1);
+        final List<String> positive = Arrays.asList("king", "woman");
+        final List<String> negative = Collections.singletonList("man");
+        final List<String> closest = subset.nearest(positive, negative, 2);
+
+        Assert.assertEquals(5, subset.size());
+        Assert.assertFalse("Words out of subset should not be returned.", closest.contains("queen"));
+        Assert.assertEquals(1, subset.getCheckedQueries());
+        Assert.assertEquals(1, subset.getChangedQueries());
+    }
+
+}
@@ -0,0 +1,46 @@
+import org.junit.Assert;
+import org.junit.Test;
+import wat.helper.Constants;
+import wat.training.model.store.EmbeddingStore;
+import wat.training.model.store.HnswIndex;
+
+import java.io.File;
+import java.util.List;
+
+public class HnswIndexTest {
+
+    private static final int WORDS = 3000;
+    private static final int DIMENSIONS = 24;
+
+    private static EmbeddingStore prepareRandomStore() {
+
+        return EmbeddingStoreTest.prepareRandomStore(WORDS, DIMENSIONS, Constants.VECTORS_AS_FLOAT, 7);
+    }
+
+    @Test
+    public void testRecallIsHigh() {
+
+        final HnswIndex index = HnswIndex.build(prepareRandomStore(), 16, 100, 100, 24);
+        Assert.assertTrue(index.measureRecall(100, 10, 24) > 0.9d);
+    }
+
+    @Test
+    public void testSavedIndexGivesSameResults() throws Exception {
+
+        final EmbeddingStore store = prepareRandomStore();
+        final HnswIndex index = HnswIndex.build(store, 8, 50, 40, 24);
+        final File file = File.createTempFile("hnsw", ".index");
+        file.deleteOnExit();
+        index.save(file);
+        final HnswIndex loaded = HnswIndex.load(file, store, 40);
+
+        final float[] query = new float[DIMENSIONS];
+        for (int row = 0; row < 50; row++) {
+            store.copyRow(row, query);
+            final List<String> expected = index.nearest(query, 10, new int[]{row});
+            Assert.assertEquals(expected, loaded.nearest(query, 10, new int[]{row}));
+            Assert.assertFalse(expected.contains(store.wordAt(row)));
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import wat.helper.Constants;
+import wat.training.model.BaseModelInt;
+import wat.training.model.ModelRegistry;
+import wat.training.model.store.EmbeddingStoreUtil;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+
+public class ModelRegistryTest {
+
+    private File cacheFolder;
+
+    @Before
+    public void createCacheFolder() throws Exception {
+
+        cacheFolder = Files.createTempDirectory("wat_model_cache").toFile();
+    }
+
+    /**
+     * evicted models are written into cache folder, nothing should be left in home directory.
+     */
+    @After
+    public void deleteCacheFolder() throws Exception {
+
+        final File[] files = cacheFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(cacheFolder.toPath());
+    }
+
+    private static BaseModelInt loadModel(final String... words) throws Exception {
+
+        final File file = File.createTempFile("vectors", ".txt");
+        file.deleteOnExit();
+        return loadModel(file, words);
+    }
+
+    private static BaseModelInt loadModel(final File file, final String... words) throws Exception {
+
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.print(words.length + " 3\n");
+            for (int i = 0; i < words.length; i++) {
+                writer.print(words[i] + " " + (i + 1) + ".0 0.5 -" + i + ".25\n");
+            }
+        }
+        final BaseModelInt model = new EmbeddingStoreUtil();
+        model.setCorpusPath(file.getPath());
+        model.createModel(Constants.CORPUS_IS_PRETRAINED);
+        return model;
+    }
+
+    @Test
+    public void testLeastRecentlyUsedModelIsEvictedAndOpenedAgain() throws Exception {
+
+        final ModelRegistry registry = new ModelRegistry(Long.MAX_VALUE, cacheFolder);
+        final BaseModelInt first = loadModel("king", "queen", "man", "woman");
+        final BaseModelInt second = loadModel("apple", "pear", "plum");
+        registry.register(first);
+        registry.register(second);
+        Assert.assertTrue(first.isModelReady());
+        Assert.assertTrue(second.isModelReady());
+
+        // bütçe her iki modele de yetmiyor, ilk kaydedilen çıkarılıyor
+        registry.setMemoryBudget(second.estimateMemoryFootprint());
+        Assert.assertFalse(first.isModelReady());
+        Assert.assertTrue(second.isModelReady());
+
+        final String firstKey = ModelRegistry.keyOf(first);
+        Assert.assertSame(first, registry.use(firstKey));
+        Assert.assertTrue(first.isModelReady());
+        Assert.assertFalse(second.isModelReady());
+        Assert.assertEquals(4, first.getTotalWordSizeInVocab());
+        Assert.assertTrue(first.hasWord("queen"));
+        Assert.assertEquals(2, cacheFolder.listFiles().length);
+        Assert.assertTrue(registry.getKeys().indexOf(firstKey) > registry.getKeys().indexOf(
+                ModelRegistry.keyOf(second)));
+    }
+
+    @Test
+    public void testFilesWithSameNameAreKeptApart() throws Exception {
+
+        final File firstFolder = Files.createTempDirectory("wat").toFile();
+        final File secondFolder = Files.createTempDirectory("wat").toFile();
+        firstFolder.deleteOnExit();
+        secondFolder.deleteOnExit();
+        final File firstFile = new File(firstFolder, "vectors.txt");
+        final File secondFile = new File(secondFolder, "vectors.txt");
+        firstFile.deleteOnExit();
+        secondFile.deleteOnExit();
+        final BaseModelInt first = loadModel(firstFile, "king", "queen");
+        final BaseModelInt second = loadModel(secondFile, "apple", "pear");
+
+        final ModelRegistry registry = new ModelRegistry(Long.MAX_VALUE, cacheFolder);
+        registry.register(first);
+        registry.register(second);
+
+        Assert.assertEquals(ModelRegistry.nameOf(first), ModelRegistry.nameOf(second));
+        Assert.assertFalse(ModelRegistry.keyOf(first).equals(ModelRegistry.keyOf(second)));
+        Assert.assertEquals(2, registry.getKeys().size());
+        Assert.assertTrue(first.isModelReady());
+        Assert.assertTrue(second.isModelReady());
+    }
+
+    @Test
+    public void testEmptyModelKeepsSettings() throws Exception {
+
+        final BaseModelInt model = loadModel("king", "queen");
+        model.setClosestWordSize(25);
+        model.setMaxVocabularySize(1000);
+        final BaseModelInt empty = model.newEmptyModel();
+
+        Assert.assertFalse(empty.isModelReady());
+        Assert.assertEquals(0L, empty.estimateMemoryFootprint());
+        Assert.assertEquals(25, empty.getClosestWordSize());
+        Assert.assertEquals(1000, empty.getMaxVocabularySize());
+        Assert.assertEquals(model.getCorpusPath(), empty.getCorpusPath());
+    }
+
+}
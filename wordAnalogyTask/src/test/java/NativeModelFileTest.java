@@ -0,0 +1,178 @@
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.junit.Assert;
+import org.junit.Test;
+import wat.helper.Constants;
+import wat.training.model.store.EmbeddingStore;
+import wat.training.model.store.Lz4BlockCodec;
+import wat.training.model.store.NativeModelFile;
+import wat.training.model.store.NativeModelWriter;
+import wat.training.model.store.PretrainedVectors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+public class NativeModelFileTest {
+
+    private static File writeStore(final EmbeddingStore store) throws Exception {
+
+        final File file = File.createTempFile("model", NativeModelFile.FILE_EXTENSION);
+        file.deleteOnExit();
+        NativeModelFile.write(file, store, NativeModelFile.LAYOUT_MAPPED);
+        return file;
+    }
+
+    @Test
+    public void testMappedStoreGivesSameResults() throws Exception {
+
+        final EmbeddingStore store = EmbeddingStoreTest.prepareStore();
+        final File file = writeStore(store);
+        Assert.assertTrue(NativeModelFile.isNativeFile(file));
+
+        final NativeModelFile opened = NativeModelFile.open(file, 0);
+        Assert.assertTrue(opened.isNormalized());
+        final EmbeddingStore mapped = opened.toEmbeddingStore(Constants.VECTORS_AS_FLOAT);
+        Assert.assertEquals(store.size(), mapped.size());
+        Assert.assertEquals(0L, mapped.sizeInBytes());
+
+        final float[] expected = new float[store.getDimensions()];
+        final float[] actual = new float[store.getDimensions()];
+        for (int i = 0; i < store.size(); i++) {
+            Assert.assertEquals(store.wordAt(i), mapped.wordAt(i));
+            store.copyRow(i, expected);
+            mapped.copyRow(i, actual);
+            for (int j = 0; j < expected.length; j++) {
+                Assert.assertEquals(expected[j], actual[j], 0.0f);
+            }
+            Assert.assertEquals(store.nearest(expected, 3, new int[]{i}), mapped.nearest(expected, 3, new int[]{i}));
+        }
+    }
+
+    @Test
+    public void testOpenedVocabularyIsTruncated() throws Exception {
+
+        final File file = writeStore(EmbeddingStoreTest.prepareStore());
+        final EmbeddingStore mapped = NativeModelFile.open(file, 4).toEmbeddingStore(Constants.VECTORS_AS_HALF_FLOAT);
+
+        Assert.assertEquals(4, mapped.size());
+        Assert.assertTrue(mapped.hasWord("woman"));
+        Assert.assertFalse(mapped.hasWord("apple"));
+        Assert.assertEquals(4, NativeModelFile.open(file, 4).toPretrainedVectors().size());
+        Assert.assertFalse(NativeModelFile.isNativeFile(File.createTempFile("empty", ".txt")));
+    }
+
+    @Test
+    public void testRawWeightsOfModelAreKept() throws Exception {
+
+        final String[] words = {"king", "queen", "man"};
+        final float[] vectors = {2.0f, 0.0f, 1.0f, -1.0f, 3.0f, 0.5f};
+        final Word2Vec word2vec = new PretrainedVectors(words, vectors, 2).toWord2vec();
+        final File file = File.createTempFile("model", NativeModelFile.FILE_EXTENSION);
+        file.deleteOnExit();
+        NativeModelFile.write(file, word2vec, NativeModelFile.LAYOUT_MAPPED);
+
+        final NativeModelFile opened = NativeModelFile.open(file, 0);
+        Assert.assertFalse(opened.isNormalized());
+        final PretrainedVectors raw = opened.toPretrainedVectors();
+        final float[] row = new float[2];
+        raw.copyRow(2, row);
+        Assert.assertEquals("man", raw.wordAt(2));
+        Assert.assertEquals(3.0f, row[0], 0.0f);
+        Assert.assertEquals(1.0f, opened.toEmbeddingStore(Constants.VECTORS_AS_FLOAT).dot(0, 0), 1e-5f);
+    }
+
+    @Test
+    public void testBlocksGiveSameRows() throws Exception {
+
+        final EmbeddingStore store = EmbeddingStoreTest.prepareRandomStore(12000, 50, Constants.VECTORS_AS_FLOAT, 3);
+        final float[] expected = new float[50];
+        final float[] actual = new float[50];
+        for (int layout : new int[]{NativeModelFile.LAYOUT_BLOCKS, NativeModelFile.LAYOUT_COMPRESSED_BLOCKS}) {
+            final File file = File.createTempFile("model", NativeModelFile.FILE_EXTENSION);
+            file.deleteOnExit();
+            NativeModelFile.write(file, store, layout);
+
+            final EmbeddingStore loaded = NativeModelFile.open(file, 0).toEmbeddingStore(Constants.VECTORS_AS_FLOAT);
+            Assert.assertEquals(store.size(), loaded.size());
+            for (int i = 0; i < store.size(); i += 7) {
+                Assert.assertEquals(store.wordAt(i), loaded.wordAt(i));
+                store.copyRow(i, expected);
+                loaded.copyRow(i, actual);
+                for (int j = 0; j < expected.length; j++) {
+                    Assert.assertEquals(expected[j], actual[j], 0.0f);
+                }
+            }
+            final EmbeddingStore truncated = NativeModelFile.open(file, 5000).toEmbeddingStore(
+                    Constants.VECTORS_AS_FLOAT);
+            Assert.assertEquals(5000, truncated.size());
+            Assert.assertEquals("word4999", truncated.wordAt(4999));
+        }
+    }
+
+    @Test
+    public void testStreamedRowsAreMapped() throws Exception {
+
+        final EmbeddingStore store = EmbeddingStoreTest.prepareRandomStore(3000, 20, Constants.VECTORS_AS_FLOAT, 3);
+        final File file = File.createTempFile("model", NativeModelFile.FILE_EXTENSION);
+        file.deleteOnExit();
+        final float[] row = new float[store.getDimensions()];
+        try (NativeModelWriter writer = new NativeModelWriter(file, store.getDimensions(), true,
+                NativeModelFile.LAYOUT_MAPPED)) {
+            for (int i = 0; i < store.size(); i++) {
+                store.copyRow(i, row);
+                writer.addRow(store.wordAt(i), row);
+            }
+        }
+        Assert.assertFalse(new File(file.getPath() + ".rows").exists());
+
+        final NativeModelFile opened = NativeModelFile.open(file, 0);
+        Assert.assertTrue(opened.isNormalized());
+        Assert.assertEquals(store.size(), opened.size());
+        final float[] actual = new float[store.getDimensions()];
+        for (int i = 0; i < store.size(); i++) {
+            Assert.assertEquals(store.wordAt(i), opened.wordAt(i));
+            store.copyRow(i, row);
+            opened.copyRow(i, actual);
+            for (int j = 0; j < row.length; j++) {
+                Assert.assertEquals(row[j], actual[j], 0.0f);
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testBrokenBlockIsDetected() throws Exception {
+
+        final File file = writeStore(EmbeddingStoreTest.prepareStore());
+        final File blocks = File.createTempFile("model", NativeModelFile.FILE_EXTENSION);
+        blocks.deleteOnExit();
+        NativeModelFile.write(blocks, NativeModelFile.open(file, 0).toEmbeddingStore(Constants.VECTORS_AS_FLOAT),
+                NativeModelFile.LAYOUT_BLOCKS);
+        try (RandomAccessFile broken = new RandomAccessFile(blocks, "rw")) {
+            broken.seek(100);
+            final int value = broken.read();
+            broken.seek(100);
+            broken.write(value ^ 0x10);
+        }
+        NativeModelFile.open(blocks, 0);
+    }
+
+    @Test
+    public void testCompressedBytesAreRestored() throws Exception {
+
+        final Random random = new Random(9);
+        final byte[] src = new byte[100000];
+        for (int i = 0; i < src.length; i++) {
+            // yarısı tekrar eden, yarısı rastgele byte
+            src[i] = i < src.length / 2 ? (byte) (i % 37) : (byte) random.nextInt(256);
+        }
+        final byte[] compressed = new byte[Lz4BlockCodec.maxCompressedLength(src.length)];
+        final int length = Lz4BlockCodec.compress(src, src.length, compressed);
+        Assert.assertTrue(length < src.length * 3 / 4);
+
+        final byte[] restored = new byte[src.length];
+        Lz4BlockCodec.decompress(compressed, length, restored, src.length);
+        Assert.assertArrayEquals(src, restored);
+    }
+
+}
@@ -0,0 +1,70 @@
+import org.junit.Assert;
+import org.junit.Test;
+import wat.training.model.store.ParallelTextVectorReader;
+import wat.training.model.store.PretrainedVectors;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.Random;
+
+public class ParallelTextVectorReaderTest {
+
+    private static final int WORDS = 5000;
+    private static final int DIMENSIONS = 20;
+
+    private static File writeRandomVectors(final boolean header, final String newLine) throws Exception {
+
+        final Random random = new Random(5);
+        final File file = File.createTempFile("glove", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            if (header) {
+                writer.print(WORDS + " " + DIMENSIONS + newLine);
+            }
+            for (int i = 0; i < WORDS; i++) {
+                writer.print("word" + i + (i % 7 == 0 ? "ğü" : ""));
+                for (int j = 0; j < DIMENSIONS; j++) {
+                    final double value = random.nextGaussian() * Math.pow(10, random.nextInt(9) - 6);
+                    writer.print(" " + (j % 2 == 0 ? Double.toString(value) : String.format("%.6f", value)));
+                }
+                writer.print(newLine);
+            }
+        }
+        return file;
+    }
+
+    private static void assertSameVectors(final PretrainedVectors expected, final PretrainedVectors actual) {
+
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(expected.getDimensions(), actual.getDimensions());
+        final float[] expectedRow = new float[DIMENSIONS];
+        final float[] actualRow = new float[DIMENSIONS];
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.wordAt(i), actual.wordAt(i));
+            expected.copyRow(i, expectedRow);
+            actual.copyRow(i, actualRow);
+            for (int j = 0; j < DIMENSIONS; j++) {
+                Assert.assertEquals(expectedRow[j], actualRow[j], Math.abs(expectedRow[j]) * 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelReadMatchesSequentialRead() throws Exception {
+
+        final File glove = writeRandomVectors(false, "\n");
+        assertSameVectors(PretrainedVectors.read(glove, 0), ParallelTextVectorReader.read(glove, 0));
+        final File word2vec = writeRandomVectors(true, "\r\n");
+        assertSameVectors(PretrainedVectors.read(word2vec, 0), ParallelTextVectorReader.read(word2vec, 0));
+    }
+
+    @Test
+    public void testOnlyFirstRowsAreRead() throws Exception {
+
+        final File glove = writeRandomVectors(false, "\n");
+        final PretrainedVectors truncated = ParallelTextVectorReader.read(glove, 1234);
+        assertSameVectors(PretrainedVectors.read(glove, 1234), truncated);
+        Assert.assertEquals("word1233", truncated.wordAt(1233));
+    }
+
+}
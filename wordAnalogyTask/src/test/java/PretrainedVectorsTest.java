@@ -0,0 +1,120 @@
+import org.junit.Assert;
+import org.junit.Test;
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import wat.helper.Constants;
+import wat.training.model.store.NativeModelFile;
+import wat.training.model.store.PretrainedVectors;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+public class PretrainedVectorsTest {
+
+    private static final String[] WORDS = {"the", "of", "and", "king", "queen", "apple"};
+    private static final int DIMENSIONS = 3;
+
+    private static float valueOf(final int row, final int column) {
+
+        return (row + 1) * 0.25f - column * 0.5f;
+    }
+
+    private static File writeText(final boolean header) throws Exception {
+
+        final File file = File.createTempFile("vectors", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            if (header) {
+                writer.print(WORDS.length + " " + DIMENSIONS + "\n");
+            }
+            for (int i = 0; i < WORDS.length; i++) {
+                writer.print(WORDS[i]);
+                for (int j = 0; j < DIMENSIONS; j++) {
+                    writer.print(" " + valueOf(i, j));
+                }
+                writer.print("\n");
+            }
+        }
+        return file;
+    }
+
+    private static File writeBinary() throws Exception {
+
+        final File file = File.createTempFile("vectors", ".bin");
+        file.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.write((WORDS.length + " " + DIMENSIONS + "\n").getBytes(StandardCharsets.UTF_8));
+            final ByteBuffer row = ByteBuffer.allocate(DIMENSIONS * 4).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < WORDS.length; i++) {
+                out.write((WORDS[i] + " ").getBytes(StandardCharsets.UTF_8));
+                row.clear();
+                for (int j = 0; j < DIMENSIONS; j++) {
+                    row.putFloat(valueOf(i, j));
+                }
+                out.write(row.array());
+                out.write('\n');
+            }
+        }
+        return file;
+    }
+
+    private static void assertFirstRows(final PretrainedVectors vectors, final int size) {
+
+        Assert.assertEquals(size, vectors.size());
+        Assert.assertEquals(DIMENSIONS, vectors.getDimensions());
+        final float[] row = new float[DIMENSIONS];
+        for (int i = 0; i < size; i++) {
+            Assert.assertEquals(WORDS[i], vectors.wordAt(i));
+            vectors.copyRow(i, row);
+            for (int j = 0; j < DIMENSIONS; j++) {
+                Assert.assertEquals(valueOf(i, j), row[j], 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void testAllFormatsAreTruncated() throws Exception {
+
+        assertFirstRows(PretrainedVectors.read(writeText(true), 4), 4);
+        assertFirstRows(PretrainedVectors.read(writeText(false), 4), 4);
+        assertFirstRows(PretrainedVectors.read(writeBinary(), 4), 4);
+    }
+
+    @Test
+    public void testAllWordsAreReadWithoutLimit() throws Exception {
+
+        assertFirstRows(PretrainedVectors.read(writeText(true), 0), WORDS.length);
+        assertFirstRows(PretrainedVectors.read(writeText(false), 0), WORDS.length);
+        assertFirstRows(PretrainedVectors.read(writeBinary(), 100), WORDS.length);
+        Assert.assertEquals(4, PretrainedVectors.read(writeText(false), 4).toEmbeddingStore(1).size());
+    }
+
+    @Test
+    public void testLookupTableKeepsOnlyReadWords() throws Exception {
+
+        final Word2Vec word2vec = PretrainedVectors.read(writeBinary(), 4).toWord2vec();
+        Assert.assertTrue(word2vec.hasWord("king"));
+        Assert.assertFalse(word2vec.hasWord("queen"));
+        Assert.assertEquals(valueOf(3, 1), word2vec.getWordVector("king")[1], 1e-6d);
+    }
+
+    @Test
+    public void testVocabularyIsReadWithoutVectors() throws Exception {
+
+        Assert.assertArrayEquals(WORDS, PretrainedVectors.readVocabulary(writeText(true), 0));
+        Assert.assertArrayEquals(new String[]{"the", "of", "and", "king"},
+                PretrainedVectors.readVocabulary(writeText(false), 4));
+        Assert.assertNull(PretrainedVectors.readVocabulary(writeBinary(), 0));
+
+        final File file = File.createTempFile("model", NativeModelFile.FILE_EXTENSION);
+        file.deleteOnExit();
+        NativeModelFile.write(file, PretrainedVectors.read(writeText(true), 0)
+                .toEmbeddingStore(Constants.VECTORS_AS_FLOAT), NativeModelFile.LAYOUT_COMPRESSED_BLOCKS);
+        Assert.assertArrayEquals(new String[]{"the", "of"}, PretrainedVectors.readVocabulary(file, 2));
+    }
+
+}
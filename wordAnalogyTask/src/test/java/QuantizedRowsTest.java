@@ -0,0 +1,70 @@
+import org.junit.Assert;
+import org.junit.Test;
+import wat.helper.Constants;
+import wat.training.model.store.EmbeddingStore;
+
+import java.util.List;
+
+public class QuantizedRowsTest {
+
+    private static final int WORDS = 2000;
+    private static final int DIMENSIONS = 50;
+
+    private static EmbeddingStore prepareRandomStore(final int storage) {
+
+        return EmbeddingStoreTest.prepareRandomStore(WORDS, DIMENSIONS, storage, 11);
+    }
+
+    private static void assertClose(final float[] expected, final float[] actual, final float delta) {
+
+        for (int j = 0; j < expected.length; j++) {
+            Assert.assertEquals(expected[j], actual[j], delta);
+        }
+    }
+
+    @Test
+    public void testDequantizedRowsAreClose() {
+
+        final EmbeddingStore floats = prepareRandomStore(Constants.VECTORS_AS_FLOAT);
+        final EmbeddingStore halfs = prepareRandomStore(Constants.VECTORS_AS_HALF_FLOAT);
+        final EmbeddingStore codes = prepareRandomStore(Constants.VECTORS_AS_INT8);
+        final float[] expected = new float[DIMENSIONS];
+        final float[] actual = new float[DIMENSIONS];
+        for (int row = 0; row < WORDS; row += 97) {
+            floats.copyRow(row, expected);
+            halfs.copyRow(row, actual);
+            assertClose(expected, actual, 5e-4f);
+            codes.copyRow(row, actual);
+            assertClose(expected, actual, 1e-2f);
+        }
+        Assert.assertEquals(floats.sizeInBytes() / 2, halfs.sizeInBytes());
+        Assert.assertTrue(codes.sizeInBytes() * 3 < floats.sizeInBytes());
+    }
+
+    @Test
+    public void testQuantizedNearestMatchesFloatNearest() {
+
+        final EmbeddingStore floats = prepareRandomStore(Constants.VECTORS_AS_FLOAT);
+        final EmbeddingStore halfs = prepareRandomStore(Constants.VECTORS_AS_HALF_FLOAT);
+        final EmbeddingStore codes = prepareRandomStore(Constants.VECTORS_AS_INT8);
+        final float[] query = new float[DIMENSIONS];
+        int found = 0;
+        int total = 0;
+        for (int row = 0; row < 100; row++) {
+            floats.copyRow(row, query);
+            final int[] excluded = {row};
+            final List<String> expected = floats.nearest(query, 10, excluded);
+            final List<String> approximate = codes.nearest(query, 10, excluded);
+            Assert.assertEquals(expected.get(0), halfs.nearest(query, 10, excluded).get(0));
+            Assert.assertFalse(approximate.contains(floats.wordAt(row)));
+            for (String word : approximate) {
+                if (expected.contains(word)) {
+                    found++;
+                }
+            }
+            total += expected.size();
+        }
+        Assert.assertTrue("Recall of int8 rows is too low: " + found + "/" + total, found >= total * 0.95d);
+    }
+
+}
@@ -0,0 +1,34 @@
+import org.junit.Assert;
+import org.junit.Test;
+import wat.training.model.SimilarityCache;
+
+public class SimilarityCacheTest {
+
+    @Test
+    public void testPairIsSymmetricAndCounted() {
+
+        final SimilarityCache cache = new SimilarityCache(100);
+        Assert.assertNull(cache.get("king", "queen"));
+        cache.put("king", "queen", 0.7d);
+
+        Assert.assertEquals(0.7d, cache.get("queen", "king"), 0.0d);
+        Assert.assertEquals(0.7d, cache.get("king", "queen"), 0.0d);
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+
+        final SimilarityCache cache = new SimilarityCache(160);
+        for (int i = 0; i < 10000; i++) {
+            cache.put("word" + i, "other" + i, i);
+        }
+        Assert.assertTrue(cache.size() <= 160);
+
+        cache.setCapacity(0);
+        cache.put("king", "queen", 0.7d);
+        Assert.assertNull(cache.get("king", "queen"));
+    }
+
+}
@@ -0,0 +1,127 @@
+package wat.wordnet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import wat.helper.Constants;
+
+import java.io.File;
+
+public class EvaluationCheckpointTest {
+
+    private static EvaluationCheckpoint prepareCheckpoint() {
+
+        final EvaluationCheckpoint checkpoint = new EvaluationCheckpoint();
+        checkpoint.modelName = "word2vec:corpus.txt";
+        checkpoint.modelKey = "word2vec:corpus.txt words 120 vectors 5f3a";
+        checkpoint.wordNetKey = "wordnet 3.1";
+        checkpoint.partOfSpeech = EvaluationCheckpoint.ALL_WORDS;
+        checkpoint.isAnalogyTest = true;
+        checkpoint.onlySynsetComparison = false;
+        checkpoint.usesPlan = true;
+        checkpoint.itemCount = 700;
+        checkpoint.position = 140;
+        checkpoint.closestWordSize = 10;
+        checkpoint.calculationOption = true;
+        checkpoint.sensitivity = 3;
+        checkpoint.iterationCapForPointer = 25;
+        checkpoint.dontComparePhrases = true;
+        checkpoint.searchOnlyWordNetLemmas = false;
+        checkpoint.useSimilarityPreFilter = true;
+        checkpoint.usesPreFilter = false;
+        checkpoint.vectorStorage = Constants.VECTORS_AS_HALF_FLOAT;
+        checkpoint.nearestNeighbourIndex = "hnsw M 16 efConstruction 200 efSearch 64";
+        checkpoint.foldedAnalogyScore = 0.1d + 0.2d;
+        checkpoint.accumulators = new long[]{0L, 42L, -7L, Long.MIN_VALUE, Long.MAX_VALUE};
+        return checkpoint;
+    }
+
+    private static EvaluationCheckpoint copyOf(final EvaluationCheckpoint checkpoint) throws Exception {
+
+        final File file = File.createTempFile("checkpoint", EvaluationCheckpoint.FILE_EXTENSION);
+        file.deleteOnExit();
+        checkpoint.save(file);
+        return EvaluationCheckpoint.open(file);
+    }
+
+    @Test
+    public void testSavedCheckpointIsOpenedAsItWas() throws Exception {
+
+        final EvaluationCheckpoint saved = prepareCheckpoint();
+        final EvaluationCheckpoint opened = copyOf(saved);
+
+        Assert.assertNotNull(opened);
+        Assert.assertEquals(saved.modelName, opened.modelName);
+        Assert.assertEquals(saved.modelKey, opened.modelKey);
+        Assert.assertEquals(saved.wordNetKey, opened.wordNetKey);
+        Assert.assertEquals(saved.partOfSpeech, opened.partOfSpeech);
+        Assert.assertEquals(saved.isAnalogyTest, opened.isAnalogyTest);
+        Assert.assertEquals(saved.onlySynsetComparison, opened.onlySynsetComparison);
+        Assert.assertEquals(saved.usesPlan, opened.usesPlan);
+        Assert.assertEquals(saved.itemCount, opened.itemCount);
+        Assert.assertEquals(saved.position, opened.position);
+        Assert.assertEquals(saved.closestWordSize, opened.closestWordSize);
+        Assert.assertEquals(saved.calculationOption, opened.calculationOption);
+        Assert.assertEquals(saved.sensitivity, opened.sensitivity);
+        Assert.assertEquals(saved.iterationCapForPointer, opened.iterationCapForPointer);
+        Assert.assertEquals(saved.dontComparePhrases, opened.dontComparePhrases);
+        Assert.assertEquals(saved.searchOnlyWordNetLemmas, opened.searchOnlyWordNetLemmas);
+        Assert.assertEquals(saved.useSimilarityPreFilter, opened.useSimilarityPreFilter);
+        Assert.assertEquals(saved.usesPreFilter, opened.usesPreFilter);
+        Assert.assertEquals(saved.vectorStorage, opened.vectorStorage);
+        Assert.assertEquals(saved.nearestNeighbourIndex, opened.nearestNeighbourIndex);
+        Assert.assertEquals(Double.doubleToRawLongBits(saved.foldedAnalogyScore),
+                Double.doubleToRawLongBits(opened.foldedAnalogyScore));
+        Assert.assertArrayEquals(saved.accumulators, opened.accumulators);
+        Assert.assertNull(saved.mismatchWith(opened));
+    }
+
+    @Test
+    public void testMissingFileIsNotOpened() throws Exception {
+
+        final File folder = new File(System.getProperty("java.io.tmpdir"));
+        final File file = EvaluationCheckpoint.fileOf(folder, "no such model " + System.nanoTime());
+        Assert.assertNull(EvaluationCheckpoint.open(file));
+    }
+
+    @Test
+    public void testModelsWithSameNameHaveTheirOwnFiles() throws Exception {
+
+        final File folder = new File(System.getProperty("java.io.tmpdir"));
+        final EvaluationCheckpoint first = prepareCheckpoint();
+        final EvaluationCheckpoint second = prepareCheckpoint();
+        second.modelKey = "word2vec:/other/corpus.txt words 120 vectors 5f3a";
+
+        Assert.assertEquals(first.modelName, second.modelName);
+        Assert.assertFalse(EvaluationCheckpoint.fileOf(folder, first.modelKey).equals(
+                EvaluationCheckpoint.fileOf(folder, second.modelKey)));
+    }
+
+    @Test
+    public void testCheckpointOfAnotherModelIsRejected() throws Exception {
+
+        final EvaluationCheckpoint saved = copyOf(prepareCheckpoint());
+        final EvaluationCheckpoint current = prepareCheckpoint();
+        current.modelKey = "word2vec:corpus.txt words 120 vectors 9c01";
+
+        Assert.assertNotNull(saved.mismatchWith(current));
+    }
+
+    @Test
+    public void testCheckpointOfOtherStorageOrIndexIsRejected() throws Exception {
+
+        final EvaluationCheckpoint saved = copyOf(prepareCheckpoint());
+
+        final EvaluationCheckpoint otherStorage = prepareCheckpoint();
+        otherStorage.vectorStorage = Constants.VECTORS_AS_INT8;
+        Assert.assertNotNull(saved.mismatchWith(otherStorage));
+
+        final EvaluationCheckpoint withoutIndex = prepareCheckpoint();
+        withoutIndex.nearestNeighbourIndex = EvaluationCheckpoint.NO_INDEX;
+        Assert.assertNotNull(saved.mismatchWith(withoutIndex));
+
+        final EvaluationCheckpoint otherWordNet = prepareCheckpoint();
+        otherWordNet.wordNetKey = "wordnet 3.0";
+        Assert.assertNotNull(saved.mismatchWith(otherWordNet));
+    }
+
+}